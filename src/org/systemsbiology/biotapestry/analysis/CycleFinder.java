@@ -19,15 +19,14 @@
 
 package org.systemsbiology.biotapestry.analysis;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Set;
-import java.util.HashSet;
-import java.util.Iterator;
 
 /****************************************************************************
 **
-** A Class
+** Answers if a graph has a cycle.  A front end on the iterative
+** StrongComponents search.  To drop the links that close cycles
+** from a ranked list, use StrongComponents.CycleBreaker instead of asking
+** this class after each addition.
 */
 
 public class CycleFinder {
@@ -52,10 +51,6 @@ public class CycleFinder {
   
   private Set<String> nodes_;
   private Set<Link> links_;
-  private HashMap<String, Set<Link>> linksForNode_;  
-  private Integer white_;
-  private Integer grey_;
-  private Integer black_;
   
   ////////////////////////////////////////////////////////////////////////////
   //
@@ -71,20 +66,6 @@ public class CycleFinder {
   public CycleFinder(Set<String> nodes, Set<Link> links) {
     nodes_ = nodes;
     links_ = links;
-    linksForNode_ = new HashMap<String, Set<Link>>();
-    Iterator<Link> lit = links_.iterator();
-    while (lit.hasNext()) {
-      Link link = lit.next();
-      Set<Link> linksForSrc = linksForNode_.get(link.getSrc());
-      if (linksForSrc == null) {
-        linksForSrc = new HashSet<Link>();
-        linksForNode_.put(link.getSrc(), linksForSrc);
-      }
-      linksForSrc.add(link);
-    }
-    white_ = new Integer(0);
-    grey_ = new Integer(1);
-    black_ = new Integer(2);    
   }
 
   ////////////////////////////////////////////////////////////////////////////
@@ -99,60 +80,8 @@ public class CycleFinder {
   */
 
   public boolean hasACycle() {
-    
-    //
-    // Color vertices white:
-    //
-    
-    HashMap<String, Integer> colors = new HashMap<String, Integer>();
-    Iterator<String> vit = nodes_.iterator();
-    while (vit.hasNext()) {
-      String node = vit.next();
-      colors.put(node, white_);
-    }
-    
-    //
-    // Visit each white vertex:
-    //
-    
-    vit = nodes_.iterator();
-    while (vit.hasNext()) {
-      String node = vit.next();
-      Integer color = colors.get(node);
-      if (color.equals(white_)) {
-        if (visit(node, colors)) {
-          return (true);
-        }
-      }
-    }
-    
-    return (false);
-  }
- 
-  /***************************************************************************
-  ** 
-  ** Visit a node.  Return true if a cycle
-  */
-
-  private boolean visit(String vertex, Map<String, Integer> colors) {
-    colors.put(vertex, grey_);
-    Set<Link> linksForVertex = linksForNode_.get(vertex);
-    if (linksForVertex != null) {
-      Iterator<Link> lit = linksForVertex.iterator();
-      while (lit.hasNext()) {
-        Link link = lit.next();
-        Integer targColor = colors.get(link.getTrg());
-        if (targColor.equals(grey_)) {
-          return (true);
-        } else if (targColor.equals(white_)) {
-          if (visit(link.getTrg(), colors)) {
-            return (true);
-          }
-        }
-      }
-    }
-    colors.put(vertex, black_);
-    return (false);
+    StrongComponents sc = new StrongComponents(nodes_, links_);
+    return (sc.hasACycle());
   }
 
   ////////////////////////////////////////////////////////////////////////////
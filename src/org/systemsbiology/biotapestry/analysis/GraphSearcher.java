@@ -24,6 +24,7 @@ import java.util.Map;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Iterator;
@@ -65,6 +66,7 @@ public class GraphSearcher {
   private HashSet<Link> allEdges_;
   private ArrayList<String> nodeOrder_;
   private ArrayList<Link> edgeOrder_;
+  private CompactGraph compact_;
   
   ////////////////////////////////////////////////////////////////////////////
   //
@@ -243,41 +245,60 @@ public class GraphSearcher {
     }
     
     //
-    // Assign all roots to level 0, add them to return list at that level.
-    // Delete them and edges from them.  Recalulate root list and continue.
+    // Kahn's algorithm: roots go to level 0, and each node lands one level
+    // past its deepest source once the last of its inbound edges has been
+    // used up.  Nodes in (or downstream of) a cycle never make it in.  Edges
+    // from something outside the node set are never used up, so their targets
+    // do not make it in either.
     //
     
-    HashMap<String, Integer> retval = new HashMap<String, Integer>();
-    Set<String> currentNodes = new HashSet<String>(allNodes_);
-    //
-    // Deep copy:
-    //
-    Set<Link> currentEdges = new HashSet<Link>();
-    Iterator<Link> li = allEdges_.iterator();
-    while (li.hasNext()) {
-      Link link = li.next();
-      currentEdges.add(link.clone());
+    CompactGraph cg = getCompactGraph();
+    int numNodes = cg.numNodes;
+    int[] inDegree = cg.inDegree.clone();
+    int[] level = new int[cg.names.length];
+    Arrays.fill(level, -1);
+    int[] queue = new int[numNodes];
+    int tail = 0;
+    for (int i = 0; i < numNodes; i++) {
+      if (inDegree[i] == 0) {
+        level[i] = 0;
+        queue[tail++] = i;
       }
-      
-    Map<String, Set<String>> outEdges = calcOutboundEdges(currentEdges);
-    Set<String> rootNodes = buildRootList(currentNodes, currentEdges);
-  
-    int level = 0;
-    while (!rootNodes.isEmpty()) {
-      Integer ilevel = new Integer(level++);
-      Iterator<String> rit = rootNodes.iterator();
-      while (rit.hasNext()) {
-        String nodeID = rit.next();
-        retval.put(nodeID, ilevel);
-        outEdges.remove(nodeID);
-        currentNodes.remove(nodeID);
+    }
+    
+    int maxLevel = -1;
+    int head = 0;
+    while (head < tail) {
+      int curr = queue[head++];
+      int currLevel = level[curr];
+      if (currLevel > maxLevel) {
+        maxLevel = currLevel;
+      }
+      int end = cg.outStart[curr + 1];
+      for (int j = cg.outStart[curr]; j < end; j++) {
+        int trg = cg.outTarg[j];
+        if (level[trg] <= currLevel) {
+          level[trg] = currLevel + 1;
+        }
+        if ((--inDegree[trg] == 0) && (trg < numNodes)) {
+          queue[tail++] = trg;
         }
-      currentEdges = invertOutboundEdges(outEdges);
-      rootNodes = buildRootList(currentNodes, currentEdges);
       }
+    }
     
     if (compress) {
-      contractTopoSort(retval);
+      contractTopoSort(cg, queue, tail, level, inDegree, maxLevel);
+    }
+    
+    HashMap<String, Integer> retval = new HashMap<String, Integer>();
+    Integer[] levObj = new Integer[maxLevel + 1];
+    for (int i = 0; i < tail; i++) {
+      int node = queue[i];
+      int nodeLevel = level[node];
+      if (levObj[nodeLevel] == null) {
+        levObj[nodeLevel] = new Integer(nodeLevel);
+      }
+      retval.put(cg.names[node], levObj[nodeLevel]);
     }
     return (retval);
   }
@@ -704,30 +725,6 @@ public class GraphSearcher {
     return (retval);
   }
   
-  /***************************************************************************
-  **
-  ** Invert
-  */
-
-  private Set<Link> invertOutboundEdges(Map<String, Set<String>> outEdges) {
-    
-    HashSet<Link> retval = new HashSet<Link>();
-    Iterator<String> ki = outEdges.keySet().iterator();
-
-    while (ki.hasNext()) {
-      String src = ki.next();
-      Set<String> links = outEdges.get(src);
-      Iterator<String> sit = links.iterator();
-      while (sit.hasNext()) {
-        String trg = sit.next();
-        Link link = new Link(src, trg);
-        retval.add(link);
-      }
-    }
- 
-    return (retval);
-  }  
-
   /***************************************************************************
   ** 
   ** Depth-First Search guts
@@ -804,77 +801,59 @@ public class GraphSearcher {
     return;
   }
   
+  /***************************************************************************
+  ** 
+  ** Build (once) the int-indexed version of the graph
+  */
+
+  private CompactGraph getCompactGraph() {
+    if (compact_ == null) {
+      compact_ = new CompactGraph(allNodes_, allEdges_);
+    }
+    return (compact_);
+  }
+  
   /***************************************************************************
   ** 
   ** Contract the topo sort by moving nodes as far downstream as possible without
-  ** breaking the partial ordering.
+  ** breaking the partial ordering.  Every target sits at a higher level than its
+  ** source, so if we go through the nodes from the highest level down, each node's
+  ** targets are already where they will end up, and one pass does it: a node
+  ** with targets moves to one level short of the closest one.  The nodes that got
+  ** a level are in sorted[0..count); targets that did not get one (their
+  ** leftover in-degree is not zero) are skipped.
   */
 
-  private void contractTopoSort(Map<String, Integer> topoSort) {
-    
-    //
-    // Make a list of nodes for each level.  Starting at the highest level,
-    // get a node, and go through all the outbound links from that node.
-    // Get the minimum level of all targets, and then move the node to
-    // level min - 1.
-    //
-    // Iterate this process until no more changes can occur.
-    //
-    
-    HashMap<Integer, List<String>> nodesAtLevel = new HashMap<Integer, List<String>>();
-    int maxLevel = invertTopoSort(topoSort, nodesAtLevel);    
+  private void contractTopoSort(CompactGraph cg, int[] sorted, int count, int[] level, 
+                                int[] inDegree, int maxLevel) {
     
     if (maxLevel == -1) {  // nothing to do
       return;
     }
     
-    Map<String, Set<String>> outEdges = calcOutboundEdges(allEdges_);    
+    //
+    // Kahn hands the nodes back in level order, so walk it backwards:
+    //
     
-    while (true) {
-      boolean changed = false;
-      for (int i = maxLevel; i >= 0; i--) {
-        List<String> nodeList = nodesAtLevel.get(new Integer(i));
-        List<String> listCopy = new ArrayList<String>(nodeList);
-        int numNodes = nodeList.size();
-        for (int j = 0; j < numNodes; j++) {
-          String currNode = listCopy.get(j);
-          Set<String> targsForNode = outEdges.get(currNode);
-          int min = getMinLevel(targsForNode, topoSort, i, maxLevel);
-          if (min > i + 1) {
-            List<String> higherNodeList = nodesAtLevel.get(new Integer(min - 1));
-            higherNodeList.add(currNode);
-            nodeList.remove(currNode);
-            topoSort.put(currNode, new Integer(min - 1));
-            changed = true;
-          }
+    for (int i = count - 1; i >= 0; i--) {
+      int node = sorted[i];
+      int min = Integer.MAX_VALUE;
+      int end = cg.outStart[node + 1];
+      for (int j = cg.outStart[node]; j < end; j++) {
+        int trg = cg.outTarg[j];
+        if ((trg >= cg.numNodes) || (inDegree[trg] != 0)) {
+          continue;
+        }
+        int trgLevel = level[trg];
+        if (trgLevel < min) {
+          min = trgLevel;
         }
       }
-      if (!changed) {
-        return;
+      if ((min != Integer.MAX_VALUE) && (min > level[node] + 1)) {
+        level[node] = min - 1;
       }
     }
-  }  
-  
-  /***************************************************************************
-  ** 
-  ** Get the minimum level of all the target nodes
-  */
-
-  private int getMinLevel(Set<String> targs, Map<String, Integer> topoSort, int currLevel, int maxLevel) {
-    if (targs == null) {
-      return (currLevel);
-    }
-    int min = maxLevel;    
-    Iterator<String> trgit = targs.iterator();
-    while (trgit.hasNext()) {
-      String trg = trgit.next();
-      Integer level = topoSort.get(trg);
-      int currLev = level.intValue();
-      if (min > currLev) {
-        min = currLev;
-      }
-    }
-    return (min);
+    return;
   }  
   
   ////////////////////////////////////////////////////////////////////////////
@@ -882,4 +861,65 @@ public class GraphSearcher {
   // PRIVATE INNER CLASSES
   //
   ////////////////////////////////////////////////////////////////////////////  
+
+  /***************************************************************************
+  ** 
+  ** The graph with nodes as ints and outbound edges packed into one array.
+  ** Nodes in the node set come first; link ends that are not in the node set
+  ** follow.  Edge counts come from the link set, so links differing only by sign
+  ** show up twice, which is fine for counting in-degree.
+  */
+
+  private static class CompactGraph {
+    String[] names;
+    int numNodes;
+    int[] outStart;
+    int[] outTarg;
+    int[] inDegree;
+
+    CompactGraph(Set<String> nodes, Set<Link> links) {
+      HashMap<String, Integer> index = new HashMap<String, Integer>();
+      ArrayList<String> nameList = new ArrayList<String>(nodes);
+      numNodes = nameList.size();
+      for (int i = 0; i < numNodes; i++) {
+        index.put(nameList.get(i), new Integer(i));
+      }
+      int numLinks = links.size();
+      int[] srcs = new int[numLinks];
+      int[] trgs = new int[numLinks];
+      int count = 0;
+      Iterator<Link> lit = links.iterator();
+      while (lit.hasNext()) {
+        Link link = lit.next();
+        srcs[count] = indexFor(link.getSrc(), index, nameList);
+        trgs[count++] = indexFor(link.getTrg(), index, nameList);
+      }
+      names = nameList.toArray(new String[nameList.size()]);
+      int numAll = names.length;
+      outStart = new int[numAll + 1];
+      inDegree = new int[numAll];
+      for (int i = 0; i < numLinks; i++) {
+        outStart[srcs[i] + 1]++;
+        inDegree[trgs[i]]++;
+      }
+      for (int i = 0; i < numAll; i++) {
+        outStart[i + 1] += outStart[i];
+      }
+      outTarg = new int[numLinks];
+      int[] fill = outStart.clone();
+      for (int i = 0; i < numLinks; i++) {
+        outTarg[fill[srcs[i]]++] = trgs[i];
+      }
+    }
+    
+    private static int indexFor(String name, HashMap<String, Integer> index, ArrayList<String> nameList) {
+      Integer retval = index.get(name);
+      if (retval == null) {
+        retval = new Integer(nameList.size());
+        nameList.add(name);
+        index.put(name, retval);
+      }
+      return (retval.intValue());
+    }
+  }
 }
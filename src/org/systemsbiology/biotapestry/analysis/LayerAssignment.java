@@ -19,6 +19,7 @@
 
 package org.systemsbiology.biotapestry.analysis;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -102,6 +103,13 @@ public class LayerAssignment {
       allNodes.add(node);
     }
     
+    //
+    // Coffman-Graham needs a DAG.  Nodes on a cycle never become eligible,
+    // so they would just vanish from the result:
+    //
+    
+    links = dropFeedback(allNodes, links);
+    
     Map<String, Integer> node2Label = assignLabels(nodesAtPos, links);
     
     Map<String, Set<String>> targsFromNode = targetsFromNode(links);
@@ -183,6 +191,34 @@ public class LayerAssignment {
   //
   ////////////////////////////////////////////////////////////////////////////
   
+  /***************************************************************************
+  ** 
+  ** Drop feedback links, if there are any
+  */
+
+  private Set<SimpleLink> dropFeedback(Set<String> allNodes, Set<SimpleLink> links) {
+    ArrayList<Link> asLinks = new ArrayList<Link>();
+    Iterator<SimpleLink> lit = links.iterator();
+    while (lit.hasNext()) {
+      SimpleLink link = lit.next();
+      asLinks.add(new Link(link.getSrc(), link.getTrg()));
+    }
+    StrongComponents sc = new StrongComponents(allNodes, asLinks);
+    if (!sc.hasACycle()) {
+      return (links);
+    }
+    Set<Link> feedback = sc.getFeedbackLinks();
+    HashSet<SimpleLink> retval = new HashSet<SimpleLink>();
+    lit = links.iterator();
+    while (lit.hasNext()) {
+      SimpleLink link = lit.next();
+      if (!feedback.contains(new Link(link.getSrc(), link.getTrg()))) {
+        retval.add(link);
+      }
+    }
+    return (retval);
+  }
+
   /***************************************************************************
   ** 
   ** Maintain the set of nodes eligible for placement:
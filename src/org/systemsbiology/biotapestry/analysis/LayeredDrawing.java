@@ -0,0 +1,673 @@
+/*
+**    Copyright (C) 2003-2014 Institute for Systems Biology
+**                            Seattle, Washington, USA.
+**
+**    This library is free software; you can redistribute it and/or
+**    modify it under the terms of the GNU Lesser General Public
+**    License as published by the Free Software Foundation; either
+**    version 2.1 of the License, or (at your option) any later version.
+**
+**    This library is distributed in the hope that it will be useful,
+**    but WITHOUT ANY WARRANTY; without even the implied warranty of
+**    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+**    Lesser General Public License for more details.
+**
+**    You should have received a copy of the GNU Lesser General Public
+**    License along with this library; if not, write to the Free Software
+**    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+package org.systemsbiology.biotapestry.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.systemsbiology.biotapestry.util.SimpleLink;
+
+/****************************************************************************
+**
+** Layered (Sugiyama-style) drawing over int arrays.  Layers come from a
+** width-bounded Coffman-Graham assignment (Battista et. al. pp 272 - 278), and
+** orderings inside the layers come from alternating barycenter and median sweeps
+** with adjacent-swap (transposition) refinement.  Links spanning several layers
+** are threaded through dummy nodes while ordering, and crossings between two
+** layers are counted with a Fenwick tree in O(E log V).
+*/
+
+public class LayeredDrawing {
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC CONSTANTS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  public static final int DEFAULT_SWEEPS = 12;
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE CONSTANTS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  private static final int MAX_STALE_SWEEPS_ = 2;
+  private static final int MAX_TRANSPOSE_PASSES_ = 8;
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE VARIABLES
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  private ArrayList<String> nodeNames_;
+  private HashMap<String, Integer> nodeIndex_;
+  private int[] linkSrc_;
+  private int[] linkTrg_;
+  private boolean[] isFeedback_;
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC CONSTRUCTORS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Constructor.  Links touching nodes outside the node set, and self-links,
+  ** are ignored.
+  */
+
+  public LayeredDrawing(Set<String> nodes, Set<SimpleLink> links) {
+    //
+    // Sorted node numbering keeps results reproducible run to run:
+    //
+    nodeNames_ = new ArrayList<String>(new TreeSet<String>(nodes));
+    nodeIndex_ = new HashMap<String, Integer>();
+    int numNodes = nodeNames_.size();
+    for (int i = 0; i < numNodes; i++) {
+      nodeIndex_.put(nodeNames_.get(i), new Integer(i));
+    }
+
+    ArrayList<Link> asLinks = new ArrayList<Link>();
+    Iterator<SimpleLink> lit = links.iterator();
+    while (lit.hasNext()) {
+      SimpleLink link = lit.next();
+      if (link.getSrc().equals(link.getTrg())) {
+        continue;
+      }
+      if (nodeIndex_.containsKey(link.getSrc()) && nodeIndex_.containsKey(link.getTrg())) {
+        asLinks.add(new Link(link.getSrc(), link.getTrg()));
+      }
+    }
+    int numLinks = asLinks.size();
+    linkSrc_ = new int[numLinks];
+    linkTrg_ = new int[numLinks];
+    isFeedback_ = new boolean[numLinks];
+    for (int i = 0; i < numLinks; i++) {
+      Link link = asLinks.get(i);
+      linkSrc_[i] = nodeIndex_.get(link.getSrc()).intValue();
+      linkTrg_[i] = nodeIndex_.get(link.getTrg()).intValue();
+    }
+
+    //
+    // Layering needs a DAG.  Feedback links still count when ordering.
+    //
+
+    StrongComponents sc = new StrongComponents(nodeIndex_.keySet(), asLinks);
+    if (sc.hasACycle()) {
+      Set<Link> feedback = sc.getFeedbackLinks();
+      for (int i = 0; i < numLinks; i++) {
+        isFeedback_[i] = feedback.contains(asLinks.get(i));
+      }
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC METHODS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Assign layers using Coffman-Graham, with no more than maxPerLayer nodes in
+  ** a layer (no bound if maxPerLayer <= 0).  Sources end up in low layers,
+  ** starting at zero.  Works best on a transitively reduced graph.
+  */
+
+  public Map<String, Integer> assignLayers(int maxPerLayer) {
+
+    int numNodes = nodeNames_.size();
+    int[] predStart = new int[numNodes + 1];
+    int[] succStart = new int[numNodes + 1];
+    int numLinks = linkSrc_.length;
+    for (int i = 0; i < numLinks; i++) {
+      if (!isFeedback_[i]) {
+        predStart[linkTrg_[i] + 1]++;
+        succStart[linkSrc_[i] + 1]++;
+      }
+    }
+    for (int i = 0; i < numNodes; i++) {
+      predStart[i + 1] += predStart[i];
+      succStart[i + 1] += succStart[i];
+    }
+    int[] preds = new int[predStart[numNodes]];
+    int[] succs = new int[succStart[numNodes]];
+    int[] predFill = predStart.clone();
+    int[] succFill = succStart.clone();
+    for (int i = 0; i < numLinks; i++) {
+      if (!isFeedback_[i]) {
+        preds[predFill[linkTrg_[i]]++] = linkSrc_[i];
+        succs[succFill[linkSrc_[i]]++] = linkTrg_[i];
+      }
+    }
+
+    //
+    // Labeling: next label goes to the node, with all its sources labeled, whose
+    // source labels (sorted high to low) are lexicographically smallest.  Once a
+    // node is ready its list never changes, so a sorted set does the job.
+    //
+
+    final int[][] predLabels = new int[numNodes][];
+    Comparator<Integer> byPredLabels = new Comparator<Integer>() {
+      public int compare(Integer node1, Integer node2) {
+        int[] labels1 = predLabels[node1.intValue()];
+        int[] labels2 = predLabels[node2.intValue()];
+        int common = Math.min(labels1.length, labels2.length);
+        for (int i = 0; i < common; i++) {
+          if (labels1[i] != labels2[i]) {
+            return ((labels1[i] < labels2[i]) ? -1 : 1);
+          }
+        }
+        if (labels1.length != labels2.length) {
+          return ((labels1.length < labels2.length) ? -1 : 1);
+        }
+        return (node1.compareTo(node2));
+      }
+    };
+
+    final int[] label = new int[numNodes];
+    int[] waitingOn = new int[numNodes];
+    TreeSet<Integer> ready = new TreeSet<Integer>(byPredLabels);
+    for (int i = 0; i < numNodes; i++) {
+      waitingOn[i] = predStart[i + 1] - predStart[i];
+      if (waitingOn[i] == 0) {
+        predLabels[i] = new int[0];
+        ready.add(new Integer(i));
+      }
+    }
+    int nextLabel = 0;
+    while (!ready.isEmpty()) {
+      int node = ready.pollFirst().intValue();
+      label[node] = nextLabel++;
+      for (int j = succStart[node]; j < succStart[node + 1]; j++) {
+        int succ = succs[j];
+        if (--waitingOn[succ] == 0) {
+          int numPreds = predStart[succ + 1] - predStart[succ];
+          int[] labels = new int[numPreds];
+          for (int k = 0; k < numPreds; k++) {
+            labels[k] = -label[preds[predStart[succ] + k]];
+          }
+          Arrays.sort(labels);
+          for (int k = 0; k < numPreds; k++) {
+            labels[k] = -labels[k];
+          }
+          predLabels[succ] = labels;
+          ready.add(new Integer(succ));
+        }
+      }
+    }
+
+    //
+    // Fill layers from the sinks up.  Take the highest label whose targets are
+    // all in lower layers.  A node whose last target just went into the current
+    // layer has to wait for the next one.
+    //
+
+    PriorityQueue<Integer> canPlace = new PriorityQueue<Integer>(Math.max(numNodes, 1), new Comparator<Integer>() {
+      public int compare(Integer node1, Integer node2) {
+        int label1 = label[node1.intValue()];
+        int label2 = label[node2.intValue()];
+        return ((label1 > label2) ? -1 : ((label1 < label2) ? 1 : 0));
+      }
+    });
+    ArrayList<Integer> nextLayer = new ArrayList<Integer>();
+    int[] layerOf = new int[numNodes];
+    for (int i = 0; i < numNodes; i++) {
+      waitingOn[i] = succStart[i + 1] - succStart[i];
+      if (waitingOn[i] == 0) {
+        canPlace.add(new Integer(i));
+      }
+    }
+
+    int currLayer = 0;
+    int numInLayer = 0;
+    int placed = 0;
+    while (placed < numNodes) {
+      if (!canPlace.isEmpty() && ((maxPerLayer <= 0) || (numInLayer < maxPerLayer))) {
+        int node = canPlace.poll().intValue();
+        layerOf[node] = currLayer;
+        numInLayer++;
+        placed++;
+        for (int j = predStart[node]; j < predStart[node + 1]; j++) {
+          int pred = preds[j];
+          if (--waitingOn[pred] == 0) {
+            nextLayer.add(new Integer(pred));
+          }
+        }
+      } else {
+        currLayer++;
+        numInLayer = 0;
+        canPlace.addAll(nextLayer);
+        nextLayer.clear();
+      }
+    }
+
+    HashMap<String, Integer> retval = new HashMap<String, Integer>();
+    for (int i = 0; i < numNodes; i++) {
+      retval.put(nodeNames_.get(i), new Integer(currLayer - layerOf[i]));
+    }
+    return (retval);
+  }
+
+  /***************************************************************************
+  **
+  ** Order the nodes inside each layer to cut down link crossings.  Layers are
+  ** given in order, each in its starting order.  Links between nodes in the same
+  ** layer are ignored, and links running backwards count like forward ones.
+  ** Nodes not in the node set stay put.  The result is never worse than the
+  ** starting order.
+  */
+
+  public List<List<String>> orderLayers(List<List<String>> layers, int maxSweeps) {
+
+    ProperGraph pg = new ProperGraph(layers);
+    int numLayers = pg.order.length;
+
+    long bestCross = pg.countAllCrossings();
+    int[][] best = pg.copyOrder();
+    int stale = 0;
+
+    for (int sweep = 0; (sweep < maxSweeps) && (bestCross > 0L); sweep++) {
+      boolean useMedian = ((sweep % 2) == 1);
+      for (int i = 1; i < numLayers; i++) {
+        pg.reorderLayer(i, true, useMedian);
+      }
+      for (int i = numLayers - 2; i >= 0; i--) {
+        pg.reorderLayer(i, false, useMedian);
+      }
+      pg.transpose();
+      long cross = pg.countAllCrossings();
+      if (cross < bestCross) {
+        bestCross = cross;
+        best = pg.copyOrder();
+        stale = 0;
+      } else if (++stale >= MAX_STALE_SWEEPS_) {
+        break;
+      }
+    }
+
+    ArrayList<List<String>> retval = new ArrayList<List<String>>();
+    for (int i = 0; i < numLayers; i++) {
+      ArrayList<String> layer = new ArrayList<String>();
+      int[] order = best[i];
+      for (int j = 0; j < order.length; j++) {
+        String name = pg.names.get(order[j]);
+        if (name != null) {
+          layer.add(name);
+        }
+      }
+      retval.add(layer);
+    }
+    return (retval);
+  }
+
+  /***************************************************************************
+  **
+  ** Count the crossings for the given layers and orders, with long links
+  ** threaded through dummy nodes.
+  */
+
+  public long countCrossings(List<List<String>> layers) {
+    return (new ProperGraph(layers).countAllCrossings());
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC CLASS METHODS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Count crossings between two layers.  The links are given by their positions
+  ** in the lower layer, in order of their upper layer position (links sharing
+  ** an upper end sorted by lower position).  Every pair of links out of order is
+  ** a crossing; a Fenwick tree over the lower layer counts them.
+  */
+
+  public static long countCrossings(int[] lowerPos, int numLinks, int lowerSize) {
+    int[] tree = new int[lowerSize + 1];
+    long retval = 0L;
+    for (int i = 0; i < numLinks; i++) {
+      //
+      // Links already in with a lower end to the right of this one cross it:
+      //
+      int atOrLeft = 0;
+      for (int j = lowerPos[i] + 1; j > 0; j -= (j & -j)) {
+        atOrLeft += tree[j];
+      }
+      retval += (i - atOrLeft);
+      for (int j = lowerPos[i] + 1; j <= lowerSize; j += (j & -j)) {
+        tree[j]++;
+      }
+    }
+    return (retval);
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE INNER CLASSES
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Layers with long links split up by dummy nodes, so every link joins two
+  ** neighboring layers.  Vertex names are null for dummies.
+  */
+
+  private class ProperGraph {
+    ArrayList<String> names;
+    int[][] order;
+    int[] pos;
+    int[] upStart;
+    int[] up;
+    int[] downStart;
+    int[] down;
+    private int[] scratchA_;
+    private int[] scratchB_;
+    private double[] keyScratch_;
+
+    ProperGraph(List<List<String>> layers) {
+      int numLayers = layers.size();
+      names = new ArrayList<String>();
+      ArrayList<ArrayList<Integer>> inLayers = new ArrayList<ArrayList<Integer>>();
+      ArrayList<Integer> layerOfVert = new ArrayList<Integer>();
+      int[] vertForNode = new int[nodeNames_.size()];
+      Arrays.fill(vertForNode, -1);
+      for (int i = 0; i < numLayers; i++) {
+        ArrayList<Integer> verts = new ArrayList<Integer>();
+        Iterator<String> lit = layers.get(i).iterator();
+        while (lit.hasNext()) {
+          String name = lit.next();
+          int vert = names.size();
+          names.add(name);
+          layerOfVert.add(new Integer(i));
+          verts.add(new Integer(vert));
+          Integer node = nodeIndex_.get(name);
+          if (node != null) {
+            vertForNode[node.intValue()] = vert;
+          }
+        }
+        inLayers.add(verts);
+      }
+
+      //
+      // Thread the links through the layers, top end first:
+      //
+
+      int numLinks = linkSrc_.length;
+      int[] edgeUp = new int[numLinks];
+      int[] edgeDown = new int[numLinks];
+      int numEdges = 0;
+      for (int i = 0; i < numLinks; i++) {
+        int vert1 = vertForNode[linkSrc_[i]];
+        int vert2 = vertForNode[linkTrg_[i]];
+        if ((vert1 == -1) || (vert2 == -1)) {
+          continue;
+        }
+        int layer1 = layerOfVert.get(vert1).intValue();
+        int layer2 = layerOfVert.get(vert2).intValue();
+        if (layer1 == layer2) {
+          continue;
+        }
+        if (layer1 > layer2) {
+          int swap = vert1;
+          vert1 = vert2;
+          vert2 = swap;
+          swap = layer1;
+          layer1 = layer2;
+          layer2 = swap;
+        }
+        int prev = vert1;
+        for (int j = layer1 + 1; j <= layer2; j++) {
+          int next = vert2;
+          if (j < layer2) {
+            next = names.size();
+            names.add(null);
+            layerOfVert.add(new Integer(j));
+            inLayers.get(j).add(new Integer(next));
+          }
+          if (numEdges == edgeUp.length) {
+            edgeUp = Arrays.copyOf(edgeUp, numEdges * 2);
+            edgeDown = Arrays.copyOf(edgeDown, numEdges * 2);
+          }
+          edgeUp[numEdges] = prev;
+          edgeDown[numEdges++] = next;
+          prev = next;
+        }
+      }
+
+      int numVerts = names.size();
+      order = new int[numLayers][];
+      pos = new int[numVerts];
+      for (int i = 0; i < numLayers; i++) {
+        ArrayList<Integer> verts = inLayers.get(i);
+        int numInLayer = verts.size();
+        order[i] = new int[numInLayer];
+        for (int j = 0; j < numInLayer; j++) {
+          int vert = verts.get(j).intValue();
+          order[i][j] = vert;
+          pos[vert] = j;
+        }
+      }
+
+      upStart = new int[numVerts + 1];
+      downStart = new int[numVerts + 1];
+      for (int i = 0; i < numEdges; i++) {
+        downStart[edgeUp[i] + 1]++;
+        upStart[edgeDown[i] + 1]++;
+      }
+      int maxDegree = 0;
+      for (int i = 0; i < numVerts; i++) {
+        maxDegree = Math.max(maxDegree, Math.max(downStart[i + 1], upStart[i + 1]));
+        downStart[i + 1] += downStart[i];
+        upStart[i + 1] += upStart[i];
+      }
+      up = new int[numEdges];
+      down = new int[numEdges];
+      int[] upFill = upStart.clone();
+      int[] downFill = downStart.clone();
+      for (int i = 0; i < numEdges; i++) {
+        down[downFill[edgeUp[i]]++] = edgeDown[i];
+        up[upFill[edgeDown[i]]++] = edgeUp[i];
+      }
+      scratchA_ = new int[maxDegree];
+      scratchB_ = new int[maxDegree];
+      keyScratch_ = new double[names.size()];
+    }
+
+    //
+    // Sorted positions of the neighbors of a vertex, either above or below:
+    //
+
+    int neighborPositions(int vert, boolean above, int[] buf) {
+      int[] starts = (above) ? upStart : downStart;
+      int[] nbrs = (above) ? up : down;
+      int count = 0;
+      for (int i = starts[vert]; i < starts[vert + 1]; i++) {
+        buf[count++] = pos[nbrs[i]];
+      }
+      Arrays.sort(buf, 0, count);
+      return (count);
+    }
+
+    //
+    // Sort a layer by the barycenter or median of its neighbors in the layer
+    // above (or below).  Vertices with no neighbors there keep their spots.
+    //
+
+    void reorderLayer(int layer, boolean above, boolean useMedian) {
+      int[] verts = order[layer];
+      int numVerts = verts.length;
+      final double[] key = keyScratch_;
+      Integer[] sorted = new Integer[numVerts];
+      for (int i = 0; i < numVerts; i++) {
+        int vert = verts[i];
+        sorted[i] = new Integer(vert);
+        int count = neighborPositions(vert, above, scratchA_);
+        if (count == 0) {
+          key[vert] = i;
+        } else if (useMedian) {
+          key[vert] = median(scratchA_, count);
+        } else {
+          double sum = 0.0;
+          for (int j = 0; j < count; j++) {
+            sum += scratchA_[j];
+          }
+          key[vert] = sum / count;
+        }
+      }
+      final int[] oldPos = pos;
+      Arrays.sort(sorted, new Comparator<Integer>() {
+        public int compare(Integer vert1, Integer vert2) {
+          int v1 = vert1.intValue();
+          int v2 = vert2.intValue();
+          if (key[v1] != key[v2]) {
+            return ((key[v1] < key[v2]) ? -1 : 1);
+          }
+          return (oldPos[v1] - oldPos[v2]);
+        }
+      });
+      for (int i = 0; i < numVerts; i++) {
+        verts[i] = sorted[i].intValue();
+      }
+      for (int i = 0; i < numVerts; i++) {
+        pos[verts[i]] = i;
+      }
+      return;
+    }
+
+    //
+    // Weighted median of sorted positions (Gansner et. al.):
+    //
+
+    double median(int[] posns, int count) {
+      int mid = count / 2;
+      if ((count % 2) == 1) {
+        return (posns[mid]);
+      }
+      if (count == 2) {
+        return ((posns[0] + posns[1]) / 2.0);
+      }
+      double left = posns[mid - 1] - posns[0];
+      double right = posns[count - 1] - posns[mid];
+      if ((left + right) == 0.0) {
+        return ((posns[mid - 1] + posns[mid]) / 2.0);
+      }
+      return (((posns[mid - 1] * right) + (posns[mid] * left)) / (left + right));
+    }
+
+    //
+    // Swap neighbors in a layer while that cuts crossings with both adjacent layers:
+    //
+
+    void transpose() {
+      for (int pass = 0; pass < MAX_TRANSPOSE_PASSES_; pass++) {
+        boolean improved = false;
+        for (int i = 0; i < order.length; i++) {
+          int[] verts = order[i];
+          for (int j = 0; j < verts.length - 1; j++) {
+            int vert1 = verts[j];
+            int vert2 = verts[j + 1];
+            long asIs = pairCrossings(vert1, vert2, true) + pairCrossings(vert1, vert2, false);
+            long swapped = pairCrossings(vert2, vert1, true) + pairCrossings(vert2, vert1, false);
+            if (swapped < asIs) {
+              verts[j] = vert2;
+              verts[j + 1] = vert1;
+              pos[vert2] = j;
+              pos[vert1] = j + 1;
+              improved = true;
+            }
+          }
+        }
+        if (!improved) {
+          return;
+        }
+      }
+      return;
+    }
+
+    //
+    // Crossings between the links of two vertices, with the first to the left:
+    //
+
+    long pairCrossings(int leftVert, int rightVert, boolean above) {
+      int countL = neighborPositions(leftVert, above, scratchA_);
+      if (countL == 0) {
+        return (0L);
+      }
+      int countR = neighborPositions(rightVert, above, scratchB_);
+      long retval = 0L;
+      int j = 0;
+      for (int i = 0; i < countR; i++) {
+        while ((j < countL) && (scratchA_[j] <= scratchB_[i])) {
+          j++;
+        }
+        retval += (countL - j);
+      }
+      return (retval);
+    }
+
+    //
+    // Total crossings over all neighboring layer pairs:
+    //
+
+    long countAllCrossings() {
+      long retval = 0L;
+      int[] lowerPos = new int[down.length];
+      for (int i = 0; i < order.length - 1; i++) {
+        int count = 0;
+        int[] verts = order[i];
+        for (int j = 0; j < verts.length; j++) {
+          int degree = neighborPositions(verts[j], false, scratchA_);
+          System.arraycopy(scratchA_, 0, lowerPos, count, degree);
+          count += degree;
+        }
+        retval += countCrossings(lowerPos, count, order[i + 1].length);
+      }
+      return (retval);
+    }
+
+    //
+    // Snapshot of the current orders:
+    //
+
+    int[][] copyOrder() {
+      int[][] retval = new int[order.length][];
+      for (int i = 0; i < order.length; i++) {
+        retval[i] = order[i].clone();
+      }
+      return (retval);
+    }
+  }
+}
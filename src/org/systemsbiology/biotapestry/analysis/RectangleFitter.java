@@ -294,13 +294,12 @@ public class RectangleFitter {
     //
     
     HashSet linkSet = new HashSet();    
+    StrongComponents.CycleBreaker breaker = new StrongComponents.CycleBreaker(links);
     int numLinks = links.size();
     for (int i = 0; i < numLinks; i++) {
       Link cfl = (Link)links.get(i);
-      linkSet.add(cfl);
-      CycleFinder cf = new CycleFinder(nodes, linkSet);
-      if (cf.hasACycle()) {
-        linkSet.remove(cfl);
+      if (breaker.addIfAcyclic(cfl)) {
+        linkSet.add(cfl);
       }
     }   
     GraphSearcher searcher = new GraphSearcher(nodes, linkSet);    
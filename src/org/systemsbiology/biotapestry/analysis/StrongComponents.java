@@ -0,0 +1,479 @@
+/*
+**    Copyright (C) 2003-2014 Institute for Systems Biology
+**                            Seattle, Washington, USA.
+**
+**    This library is free software; you can redistribute it and/or
+**    modify it under the terms of the GNU Lesser General Public
+**    License as published by the Free Software Foundation; either
+**    version 2.1 of the License, or (at your option) any later version.
+**
+**    This library is distributed in the hope that it will be useful,
+**    but WITHOUT ANY WARRANTY; without even the implied warranty of
+**    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+**    Lesser General Public License for more details.
+**
+**    You should have received a copy of the GNU Lesser General Public
+**    License along with this library; if not, write to the Free Software
+**    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+package org.systemsbiology.biotapestry.analysis;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/****************************************************************************
+**
+** Strongly connected components, using an iterative Tarjan over an int-indexed
+** copy of the graph (so no recursion depth limits on long chains).  Reports
+** the components in topological order of the condensation, the feedback
+** (DFS back) links, and the condensation DAG itself.
+*/
+
+public class StrongComponents {
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE VARIABLES
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  private ArrayList<String> nodeNames_;
+  private HashMap<String, Integer> nodeIndex_;
+  private Link[] links_;
+  private int[] adjStart_;
+  private int[] adjLink_;
+  private int[] linkTrg_;
+  private int[] compForNode_;
+  private int[] compSize_;
+  private int numComps_;
+  private boolean[] isBackLink_;
+  private boolean hasCycle_;
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC CONSTRUCTORS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Constructor.  Link endpoints missing from the node set are added.
+  */
+
+  public StrongComponents(Set<String> nodes, Collection<? extends Link> links) {
+    nodeNames_ = new ArrayList<String>();
+    nodeIndex_ = new HashMap<String, Integer>();
+    Iterator<String> nit = nodes.iterator();
+    while (nit.hasNext()) {
+      indexFor(nit.next());
+    }
+    links_ = links.toArray(new Link[links.size()]);
+    int numLinks = links_.length;
+    int[] linkSrc = new int[numLinks];
+    linkTrg_ = new int[numLinks];
+    for (int i = 0; i < numLinks; i++) {
+      linkSrc[i] = indexFor(links_[i].getSrc());
+      linkTrg_[i] = indexFor(links_[i].getTrg());
+    }
+
+    //
+    // Compressed adjacency lists:
+    //
+
+    int numNodes = nodeNames_.size();
+    adjStart_ = new int[numNodes + 1];
+    for (int i = 0; i < numLinks; i++) {
+      adjStart_[linkSrc[i] + 1]++;
+    }
+    for (int i = 0; i < numNodes; i++) {
+      adjStart_[i + 1] += adjStart_[i];
+    }
+    adjLink_ = new int[numLinks];
+    int[] fill = new int[numNodes];
+    for (int i = 0; i < numLinks; i++) {
+      int src = linkSrc[i];
+      adjLink_[adjStart_[src] + fill[src]++] = i;
+    }
+
+    findComponents();
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC METHODS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Answer if there is a cycle (including a self-loop)
+  */
+
+  public boolean hasACycle() {
+    return (hasCycle_);
+  }
+
+  /***************************************************************************
+  **
+  ** Number of components
+  */
+
+  public int getComponentCount() {
+    return (numComps_);
+  }
+
+  /***************************************************************************
+  **
+  ** Component index for the node, or -1 if we do not know it.  Components
+  ** are numbered in topological order: links only go from lower to higher
+  ** numbered components.
+  */
+
+  public int getComponentIndex(String node) {
+    Integer index = nodeIndex_.get(node);
+    return ((index == null) ? -1 : compForNode_[index.intValue()]);
+  }
+
+  /***************************************************************************
+  **
+  ** Answer if the component has a cycle (more than one node, or a self-loop)
+  */
+
+  public boolean isCyclic(int comp) {
+    if (compSize_[comp] > 1) {
+      return (true);
+    }
+    int numLinks = links_.length;
+    for (int i = 0; i < numLinks; i++) {
+      if (isBackLink_[i] && (compForNode_[linkTrg_[i]] == comp)) {
+        return (true);
+      }
+    }
+    return (false);
+  }
+
+  /***************************************************************************
+  **
+  ** All the components, in topological order
+  */
+
+  public List<Set<String>> getComponents() {
+    ArrayList<Set<String>> retval = new ArrayList<Set<String>>();
+    for (int i = 0; i < numComps_; i++) {
+      retval.add(new HashSet<String>());
+    }
+    int numNodes = nodeNames_.size();
+    for (int i = 0; i < numNodes; i++) {
+      retval.get(compForNode_[i]).add(nodeNames_.get(i));
+    }
+    return (retval);
+  }
+
+  /***************************************************************************
+  **
+  ** The feedback links: dropping these leaves the graph acyclic
+  */
+
+  public Set<Link> getFeedbackLinks() {
+    HashSet<Link> retval = new HashSet<Link>();
+    int numLinks = links_.length;
+    for (int i = 0; i < numLinks; i++) {
+      if (isBackLink_[i]) {
+        retval.add(links_[i]);
+      }
+    }
+    return (retval);
+  }
+
+  /***************************************************************************
+  **
+  ** The condensation DAG nodes.  Node names are the component indices.
+  */
+
+  public Set<String> getCondensationNodes() {
+    HashSet<String> retval = new HashSet<String>();
+    for (int i = 0; i < numComps_; i++) {
+      retval.add(Integer.toString(i));
+    }
+    return (retval);
+  }
+
+  /***************************************************************************
+  **
+  ** The condensation DAG links.  Node names are the component indices.
+  */
+
+  public Set<Link> getCondensationLinks() {
+    HashSet<Link> retval = new HashSet<Link>();
+    int numNodes = nodeNames_.size();
+    for (int i = 0; i < numNodes; i++) {
+      int srcComp = compForNode_[i];
+      for (int j = adjStart_[i]; j < adjStart_[i + 1]; j++) {
+        int trgComp = compForNode_[linkTrg_[adjLink_[j]]];
+        if (srcComp != trgComp) {
+          retval.add(new Link(Integer.toString(srcComp), Integer.toString(trgComp)));
+        }
+      }
+    }
+    return (retval);
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC INNER CLASSES
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Builds an acyclic link set by offering links one at a time, in priority
+  ** order, and keeping each one that does not close a cycle with the ones
+  ** already kept.  This gives the same answer as adding each link and asking
+  ** a CycleFinder, but a kept link u->v only closes a cycle if v already
+  ** reaches u, so we just search from v.  If the candidate links are known
+  ** up front, links between different components of the full candidate
+  ** graph are kept without any search at all.
+  */
+
+  public static class CycleBreaker {
+
+    private HashMap<String, Integer> nodeIndex_;
+    private ArrayList<int[]> adjacent_;
+    private int[] adjCount_;
+    private int[] seen_;
+    private int[] stack_;
+    private int stamp_;
+    private StrongComponents comps_;
+
+    public CycleBreaker() {
+      this(null);
+    }
+
+    public CycleBreaker(Collection<? extends Link> candidates) {
+      nodeIndex_ = new HashMap<String, Integer>();
+      adjacent_ = new ArrayList<int[]>();
+      adjCount_ = new int[16];
+      seen_ = new int[16];
+      stack_ = new int[16];
+      stamp_ = 0;
+      comps_ = (candidates == null) ? null : new StrongComponents(new HashSet<String>(), candidates);
+    }
+
+    /***************************************************************************
+    **
+    ** Keep the link if it does not close a cycle.  Answers if it was kept.
+    */
+
+    public boolean addIfAcyclic(Link link) {
+      String src = link.getSrc();
+      String trg = link.getTrg();
+      if (comps_ != null) {
+        int srcComp = comps_.getComponentIndex(src);
+        int trgComp = comps_.getComponentIndex(trg);
+        if ((srcComp != -1) && (trgComp != -1) && (srcComp != trgComp)) {
+          // Cannot be on a cycle, and will never be searched through, so we do not store it
+          return (true);
+        }
+      }
+      int srcIndex = indexFor(src);
+      int trgIndex = indexFor(trg);
+      if (reaches(trgIndex, srcIndex)) {
+        return (false);
+      }
+      int[] adj = adjacent_.get(srcIndex);
+      int count = adjCount_[srcIndex];
+      if (count == adj.length) {
+        int[] grown = new int[adj.length * 2];
+        System.arraycopy(adj, 0, grown, 0, count);
+        adj = grown;
+        adjacent_.set(srcIndex, adj);
+      }
+      adj[count] = trgIndex;
+      adjCount_[srcIndex] = count + 1;
+      return (true);
+    }
+
+    private boolean reaches(int from, int to) {
+      if (from == to) {
+        return (true);
+      }
+      if (++stamp_ == Integer.MAX_VALUE) {
+        stamp_ = 1;
+        seen_ = new int[seen_.length];
+      }
+      int top = 0;
+      stack_[top++] = from;
+      seen_[from] = stamp_;
+      while (top > 0) {
+        int curr = stack_[--top];
+        int[] adj = adjacent_.get(curr);
+        int count = adjCount_[curr];
+        for (int i = 0; i < count; i++) {
+          int next = adj[i];
+          if (next == to) {
+            return (true);
+          }
+          if (seen_[next] != stamp_) {
+            seen_[next] = stamp_;
+            stack_[top++] = next;
+          }
+        }
+      }
+      return (false);
+    }
+
+    private int indexFor(String node) {
+      Integer index = nodeIndex_.get(node);
+      if (index != null) {
+        return (index.intValue());
+      }
+      int retval = adjacent_.size();
+      nodeIndex_.put(node, Integer.valueOf(retval));
+      adjacent_.add(new int[2]);
+      if (retval == adjCount_.length) {
+        int newSize = retval * 2;
+        int[] grown = new int[newSize];
+        System.arraycopy(adjCount_, 0, grown, 0, retval);
+        adjCount_ = grown;
+        grown = new int[newSize];
+        System.arraycopy(seen_, 0, grown, 0, retval);
+        seen_ = grown;
+        stack_ = new int[newSize];
+      }
+      return (retval);
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE INSTANCE METHODS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Get the node index, adding it if needed
+  */
+
+  private int indexFor(String node) {
+    Integer index = nodeIndex_.get(node);
+    if (index != null) {
+      return (index.intValue());
+    }
+    int retval = nodeNames_.size();
+    nodeNames_.add(node);
+    nodeIndex_.put(node, Integer.valueOf(retval));
+    return (retval);
+  }
+
+  /***************************************************************************
+  **
+  ** Iterative Tarjan.  The explicit call stack holds the node and the next
+  ** adjacency slot to look at.
+  */
+
+  private void findComponents() {
+    int numNodes = nodeNames_.size();
+    int numLinks = links_.length;
+    int[] order = new int[numNodes];
+    int[] low = new int[numNodes];
+    boolean[] onStack = new boolean[numNodes];
+    boolean[] onPath = new boolean[numNodes];
+    int[] compStack = new int[numNodes];
+    int compTop = 0;
+    int[] callNode = new int[numNodes];
+    int[] callNext = new int[numNodes];
+    int callTop = 0;
+    int nextOrder = 1;  // zero means unvisited
+
+    compForNode_ = new int[numNodes];
+    isBackLink_ = new boolean[numLinks];
+    ArrayList<Integer> sizes = new ArrayList<Integer>();
+    int tarjanComps = 0;
+    hasCycle_ = false;
+
+    for (int root = 0; root < numNodes; root++) {
+      if (order[root] != 0) {
+        continue;
+      }
+      order[root] = low[root] = nextOrder++;
+      compStack[compTop++] = root;
+      onStack[root] = true;
+      onPath[root] = true;
+      callNode[callTop] = root;
+      callNext[callTop++] = adjStart_[root];
+
+      while (callTop > 0) {
+        int curr = callNode[callTop - 1];
+        int slot = callNext[callTop - 1];
+        if (slot < adjStart_[curr + 1]) {
+          callNext[callTop - 1] = slot + 1;
+          int link = adjLink_[slot];
+          int next = linkTrg_[link];
+          if (order[next] == 0) {
+            order[next] = low[next] = nextOrder++;
+            compStack[compTop++] = next;
+            onStack[next] = true;
+            onPath[next] = true;
+            callNode[callTop] = next;
+            callNext[callTop++] = adjStart_[next];
+          } else {
+            if (onPath[next]) {
+              isBackLink_[link] = true;
+              hasCycle_ = true;
+            }
+            if (onStack[next] && (order[next] < low[curr])) {
+              low[curr] = order[next];
+            }
+          }
+          continue;
+        }
+
+        //
+        // Done with this node:
+        //
+
+        callTop--;
+        onPath[curr] = false;
+        if (low[curr] == order[curr]) {
+          int size = 0;
+          int member;
+          do {
+            member = compStack[--compTop];
+            onStack[member] = false;
+            compForNode_[member] = tarjanComps;
+            size++;
+          } while (member != curr);
+          sizes.add(Integer.valueOf(size));
+          tarjanComps++;
+        }
+        if (callTop > 0) {
+          int parent = callNode[callTop - 1];
+          if (low[curr] < low[parent]) {
+            low[parent] = low[curr];
+          }
+        }
+      }
+    }
+
+    //
+    // Tarjan finishes components in reverse topological order; flip them:
+    //
+
+    numComps_ = tarjanComps;
+    compSize_ = new int[numComps_];
+    for (int i = 0; i < numComps_; i++) {
+      compSize_[numComps_ - 1 - i] = sizes.get(i).intValue();
+    }
+    for (int i = 0; i < numNodes; i++) {
+      compForNode_[i] = numComps_ - 1 - compForNode_[i];
+    }
+    return;
+  }
+}
@@ -19,7 +19,9 @@
 
 package org.systemsbiology.biotapestry.analysis;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.ArrayList;
 import java.util.List;
@@ -32,9 +34,7 @@ import java.awt.Point;
 
 import org.systemsbiology.biotapestry.util.AsynchExitRequestException;
 import org.systemsbiology.biotapestry.util.BTProgressMonitor;
-import org.systemsbiology.biotapestry.util.Pattern;
 import org.systemsbiology.biotapestry.util.UiUtil;
-import org.systemsbiology.biotapestry.util.PatternGrid;
 import org.systemsbiology.biotapestry.util.MinMax;
 
 /****************************************************************************
@@ -94,12 +94,11 @@ public class TopLeftPacker {
                              throws AsynchExitRequestException {
     
     //
-    // Sort the rectangles by decreasing width.  Build a pattern for each.
+    // Sort the rectangles by decreasing width.
     //
     
-    HashMap<String, Pattern> patterns = new HashMap<String, Pattern>();
     HashMap<String, PlacementElement> fullSizeElems = new HashMap<String, PlacementElement>();
-    SortedSet<PlacementElement> queue = sortElements(elements, patterns, padding, fullSizeElems, true);
+    SortedSet<PlacementElement> queue = sortElements(elements, padding, fullSizeElems, true);
     
     //
     // Figure out the maximum height.  Assume we can pack a square; the
@@ -113,50 +112,28 @@ public class TopLeftPacker {
       gridHeight = maxHeight;
     }
     
-    //
-    // Make the grid:
-    // 
-    
-    PatternGrid grid = new PatternGrid();    
-    
     //
     // Place elements:
     //
     
+    ArrayList<Rectangle> placed = new ArrayList<Rectangle>();
     int maxX = Integer.MIN_VALUE;
     Iterator<PlacementElement> qit = queue.iterator();
     while (qit.hasNext()) {
       PlacementElement elem = qit.next();
-      Pattern pat = patterns.get(elem.id);
       int maxY = gridHeight - elem.rect.height;
-      boolean placed = false; 
-      
-      for (int x = 0; (x < Integer.MAX_VALUE) && !placed; x++) {
-        for (int y = 0; y <= maxY; y++) {
-          if (grid.emptyIntersection(pat, x, y)) {
-            placed = true;
-            grid.place(pat, x, y);
-            int topX = x + elem.rect.width;
-            if (topX > maxX) {
-              maxX = topX;
-            }
-            Point resPt = new Point((x * UiUtil.GRID_SIZE_INT) + padding,
-                                    (y * UiUtil.GRID_SIZE_INT) + padding);
-            pointResults.put(elem.id, resPt);
-            PlacementElement pe = fullSizeElems.get(elem.id);
-            pe.rect.x = resPt.x;
-            pe.rect.y = resPt.y;
-            break;
-          }
-          
-          if ((monitor != null) && !monitor.keepGoing()) {
-            throw new AsynchExitRequestException();
-          }          
-        }
-      }
-      if (!placed) {
-        throw new IllegalStateException();
+      Point spot = findSpot(placed, elem.rect.width, elem.rect.height, maxY, false, monitor);
+      placed.add(new Rectangle(spot.x, spot.y, elem.rect.width, elem.rect.height));
+      int topX = spot.x + elem.rect.width;
+      if (topX > maxX) {
+        maxX = topX;
       }
+      Point resPt = new Point((spot.x * UiUtil.GRID_SIZE_INT) + padding,
+                              (spot.y * UiUtil.GRID_SIZE_INT) + padding);
+      pointResults.put(elem.id, resPt);
+      PlacementElement pe = fullSizeElems.get(elem.id);
+      pe.rect.x = resPt.x;
+      pe.rect.y = resPt.y;
     }
     
     //
@@ -178,12 +155,11 @@ public class TopLeftPacker {
                                      throws AsynchExitRequestException {
     
     //
-    // Sort the rectangles by decreasing height.  Build a pattern for each.
+    // Sort the rectangles by decreasing height.
     //
     
-    HashMap patterns = new HashMap();
     HashMap fullSizeElems = new HashMap();
-    SortedSet queue = sortElements(elements, patterns, padding, fullSizeElems, false);
+    SortedSet queue = sortElements(elements, padding, fullSizeElems, false);
     
     //
     // Figure out the maximum height.  Assume we can pack a square; the
@@ -197,48 +173,28 @@ public class TopLeftPacker {
       gridWidth = maxWidth;
     }
     
-    //
-    // Make the grid:
-    // 
-    
-    PatternGrid grid = new PatternGrid();    
-    
     //
     // Place elements:
     //
     
+    ArrayList<Rectangle> placed = new ArrayList<Rectangle>();
     int maxXAll = Integer.MIN_VALUE;
     Iterator qit = queue.iterator();
     while (qit.hasNext()) {
       PlacementElement elem = (PlacementElement)qit.next();
-      Pattern pat = (Pattern)patterns.get(elem.id);
       int maxX = gridWidth - elem.rect.width;
-      boolean placed = false; 
-      for (int y = 0; (y < Integer.MAX_VALUE) && !placed; y++) {
-        for (int x = 0; x <= maxX; x++) {
-          if (grid.emptyIntersection(pat, x, y)) {
-            placed = true;
-            grid.place(pat, x, y);
-            int topX = x + elem.rect.width;
-            if (topX > maxXAll) {
-              maxXAll = topX;
-            }
-            Point resPt = new Point((x * UiUtil.GRID_SIZE_INT) + padding,
-                                    (y * UiUtil.GRID_SIZE_INT) + padding);
-            pointResults.put(elem.id, resPt);
-            PlacementElement pe = (PlacementElement)fullSizeElems.get(elem.id);
-            pe.rect.x = resPt.x;
-            pe.rect.y = resPt.y;
-            break;
-          }
-          if ((monitor != null) && !monitor.keepGoing()) {
-            throw new AsynchExitRequestException();
-          }
-        }
-      }
-      if (!placed) {
-        throw new IllegalStateException();
+      Point spot = findSpot(placed, elem.rect.width, elem.rect.height, maxX, true, monitor);
+      placed.add(new Rectangle(spot.x, spot.y, elem.rect.width, elem.rect.height));
+      int topX = spot.x + elem.rect.width;
+      if (topX > maxXAll) {
+        maxXAll = topX;
       }
+      Point resPt = new Point((spot.x * UiUtil.GRID_SIZE_INT) + padding,
+                              (spot.y * UiUtil.GRID_SIZE_INT) + padding);
+      pointResults.put(elem.id, resPt);
+      PlacementElement pe = (PlacementElement)fullSizeElems.get(elem.id);
+      pe.rect.x = resPt.x;
+      pe.rect.y = resPt.y;
     }
     
     //
@@ -268,6 +224,66 @@ public class TopLeftPacker {
   //
   ////////////////////////////////////////////////////////////////////////////
 
+  /***************************************************************************
+  ** 
+  ** Find the first open spot for a rectangle, in grid units.  Going rightward,
+  ** columns are scanned left to right, and each column top to bottom down to
+  ** the limit; going downward, rows then columns.  This finds the same spot
+  ** as probing the grid cell by cell: an open spot can only start at zero
+  ** or at the far edge of a placed rectangle, so those are the only columns
+  ** to try, and in a column the answer is the first gap tall enough between
+  ** the rectangles that overlap it.
+  */
+
+  private Point findSpot(List<Rectangle> placed, int width, int height, int limit, 
+                         boolean downward, BTProgressMonitor monitor) throws AsynchExitRequestException {
+    int majorSize = (downward) ? height : width;
+    int minorSize = (downward) ? width : height;
+    int numPlaced = placed.size();
+    TreeSet<Integer> majors = new TreeSet<Integer>();
+    majors.add(new Integer(0));
+    for (int i = 0; i < numPlaced; i++) {
+      Rectangle rect = placed.get(i);
+      majors.add(new Integer((downward) ? rect.y + rect.height : rect.x + rect.width));
+    }
+    
+    long[] spans = new long[numPlaced];
+    Iterator<Integer> mit = majors.iterator();
+    while (mit.hasNext()) {
+      int major = mit.next().intValue();
+      int numSpans = 0;
+      for (int i = 0; i < numPlaced; i++) {
+        Rectangle rect = placed.get(i);
+        int majStart = (downward) ? rect.y : rect.x;
+        int majEnd = majStart + ((downward) ? rect.height : rect.width);
+        if ((majStart < major + majorSize) && (majEnd > major)) {
+          int minStart = (downward) ? rect.x : rect.y;
+          int minEnd = minStart + ((downward) ? rect.width : rect.height);
+          spans[numSpans++] = ((long)minStart << 32) | minEnd;
+        }
+      }
+      Arrays.sort(spans, 0, numSpans);
+      int minor = 0;
+      for (int i = 0; i < numSpans; i++) {
+        int spanStart = (int)(spans[i] >>> 32);
+        if (spanStart - minor >= minorSize) {
+          break;
+        }
+        int spanEnd = (int)spans[i];
+        if (spanEnd > minor) {
+          minor = spanEnd;
+        }
+      }
+      if (minor <= limit) {
+        return ((downward) ? new Point(minor, major) : new Point(major, minor));
+      }
+      if ((monitor != null) && !monitor.keepGoing()) {
+        throw new AsynchExitRequestException();
+      }
+    }
+    throw new IllegalStateException();
+  }
+
   /***************************************************************************
   ** 
   ** Return the minimum required area
@@ -319,13 +335,14 @@ public class TopLeftPacker {
   
   /***************************************************************************
   ** 
-  ** Sort the elements and build patterns
+  ** Sort the elements, making sure the IDs are unique
   */
 
-  private SortedSet<PlacementElement> sortElements(List<PlacementElement> elements, Map<String, Pattern> patterns, int padding, 
+  private SortedSet<PlacementElement> sortElements(List<PlacementElement> elements, int padding, 
                                                    Map<String, PlacementElement> fullSizeElems, boolean widthFirst) {
     
     TreeSet<PlacementElement> retval = new TreeSet<PlacementElement>(Collections.reverseOrder());
+    HashSet<String> seenIDs = new HashSet<String>();
     
     int num = elements.size();
     for (int i = 0; i < num; i++) {
@@ -337,11 +354,9 @@ public class TopLeftPacker {
                                      (elem.rect.width / UiUtil.GRID_SIZE_INT) + (2 * padding / UiUtil.GRID_SIZE_INT), 
                                      (elem.rect.height / UiUtil.GRID_SIZE_INT) + (2 * padding / UiUtil.GRID_SIZE_INT));
       retval.add(new PlacementElement(rect, elem.id, widthFirst));      
-      Pattern pat = new Pattern(rect.width, rect.height, elem.id);
-      if (patterns.get(elem.id) != null) {
+      if (!seenIDs.add(elem.id)) {
         throw new IllegalArgumentException();
       }
-      patterns.put(elem.id, pat);
     }
   
     return (retval);
@@ -20,15 +20,18 @@
 package org.systemsbiology.biotapestry.analysis;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.systemsbiology.biotapestry.util.SimpleLink;
 
 /****************************************************************************
 **
-** A class for building a transitive reduction of a topologically sorted DAG
+** A class for building a transitive reduction of a graph
 */
 
 public class TransReducer {
@@ -38,6 +41,12 @@ public class TransReducer {
   // PRIVATE CONSTANTS
   //
   //////////////////////////////////////////////////////////////////////////// 
+
+  //
+  // Caps the reachability bitsets at 32 MB:
+  //
+  
+  private static final int MAX_BITSET_WORDS_ = 1 << 22;
    
   ////////////////////////////////////////////////////////////////////////////
   //
@@ -73,28 +82,84 @@ public class TransReducer {
   
   /***************************************************************************
   ** 
-  ** Return a set of reduced links
+  ** Return a set of reduced links.  Strongly connected components are
+  ** condensed first; the condensation DAG is reduced using reachability
+  ** bitsets, and the few links inside a cyclic component are reduced by
+  ** searching within the component.
   */
 
   public Set<SimpleLink> reduceGraph(Set<SimpleLink> links) {
     
+    ArrayList<SimpleLink> linkList = new ArrayList<SimpleLink>(links);
+    int numLinks = linkList.size();
+    ArrayList<Link> asLinks = new ArrayList<Link>(numLinks);
+    for (int i = 0; i < numLinks; i++) {
+      SimpleLink slink = linkList.get(i);
+      asLinks.add(new Link(slink.getSrc(), slink.getTrg()));
+    }
+    StrongComponents sc = new StrongComponents(new HashSet<String>(), asLinks);
+    int numComps = sc.getComponentCount();
+    
     //
-    // Go through each link.  If we can omit it and still reach the
-    // target from the source, drop it from the list.
+    // Links between components collapse to one representative per component
+    // pair (the rest would be redundant anyway).  Links inside a component
+    // get handled separately:
     //
     
-    HashSet<SimpleLink> retval = new HashSet<SimpleLink>(links);
-    ArrayList<SimpleLink> linkList = new ArrayList<SimpleLink>(links);
-    int currLink = 0;
-    while (currLink < linkList.size()) {
-      SimpleLink omitLink = linkList.get(currLink);
-      if (reachable(omitLink.getSrc(), omitLink.getTrg(), retval, omitLink)) {
-        retval.remove(omitLink);
-        linkList.remove(currLink);
-      } else {
-        currLink++;
+    HashMap<Long, SimpleLink> reps = new HashMap<Long, SimpleLink>();
+    HashMap<Integer, List<SimpleLink>> inside = new HashMap<Integer, List<SimpleLink>>();
+    int[] succCount = new int[numComps + 1];
+    for (int i = 0; i < numLinks; i++) {
+      SimpleLink slink = linkList.get(i);
+      int srcComp = sc.getComponentIndex(slink.getSrc());
+      int trgComp = sc.getComponentIndex(slink.getTrg());
+      if (srcComp == trgComp) {
+        Integer compKey = Integer.valueOf(srcComp);
+        List<SimpleLink> forComp = inside.get(compKey);
+        if (forComp == null) {
+          forComp = new ArrayList<SimpleLink>();
+          inside.put(compKey, forComp);
+        }
+        forComp.add(slink);
+        continue;
+      }
+      Long pairKey = Long.valueOf(((long)srcComp * numComps) + trgComp);
+      if (!reps.containsKey(pairKey)) {
+        reps.put(pairKey, slink);
+        succCount[srcComp + 1]++;
       }
     }
+    
+    //
+    // Successor lists for the condensation:
+    //
+    
+    for (int i = 0; i < numComps; i++) {
+      succCount[i + 1] += succCount[i];
+    }
+    int[] succ = new int[reps.size()];
+    int[] fill = new int[numComps];
+    Iterator<Long> rit = reps.keySet().iterator();
+    while (rit.hasNext()) {
+      long pairKey = rit.next().longValue();
+      int srcComp = (int)(pairKey / numComps);
+      succ[succCount[srcComp] + fill[srcComp]++] = (int)(pairKey % numComps);
+    }
+    boolean[] redundant = new boolean[succ.length];
+    markRedundant(numComps, succCount, succ, redundant);
+
+    HashSet<SimpleLink> retval = new HashSet<SimpleLink>();
+    for (int i = 0; i < numComps; i++) {
+      for (int j = succCount[i]; j < succCount[i + 1]; j++) {
+        if (!redundant[j]) {
+          retval.add(reps.get(Long.valueOf(((long)i * numComps) + succ[j])));
+        }
+      }
+    }
+    Iterator<List<SimpleLink>> iit = inside.values().iterator();
+    while (iit.hasNext()) {
+      retval.addAll(reduceInside(iit.next()));
+    }
     return (retval);
   }
     
@@ -118,42 +183,130 @@ public class TransReducer {
 
   /***************************************************************************
   ** 
-  ** Answer if the second node is reachable from the first while omitting the
-  ** given link
+  ** Reduce the condensation DAG.  Components are numbered in topological
+  ** order, so working from the last one back, everything a component reaches
+  ** is known before we get to it.  A link c->s is redundant if s is reachable
+  ** from some successor of c.  To bound memory on big graphs, the reachability
+  ** bitsets only cover a window of target components at a time.
   */
 
-  private boolean reachable(String from, String to, Set<SimpleLink> links, SimpleLink omit) {
-    HashSet<String> visited = new HashSet<String>();
-    return (reachableGuts(from, to, visited, links, omit));
+  private void markRedundant(int numComps, int[] succStart, int[] succ, boolean[] redundant) {
+    if (numComps == 0) {
+      return;
+    }
+    int totalWords = ((numComps - 1) >> 6) + 1;
+    int windowWords = Math.max(1, Math.min(totalWords, MAX_BITSET_WORDS_ / numComps));
+    long[] reach = new long[numComps * windowWords];
+    long[] union = new long[windowWords];
+    for (int winStart = 0; winStart < totalWords; winStart += windowWords) {
+      int words = Math.min(windowWords, totalWords - winStart);
+      int loBit = winStart << 6;
+      int hiBit = Math.min(numComps, (winStart + words) << 6);
+      for (int comp = numComps - 1; comp >= 0; comp--) {
+        int base = comp * windowWords;
+        for (int w = 0; w < words; w++) {
+          union[w] = 0L;
+        }
+        //
+        // Components at or before comp (or before the window) cannot be
+        // reached from it, so there is nothing to gather:
+        //
+        if (comp + 1 < hiBit) {
+          for (int j = succStart[comp]; j < succStart[comp + 1]; j++) {
+            int sbase = succ[j] * windowWords;
+            for (int w = 0; w < words; w++) {
+              union[w] |= reach[sbase + w];
+            }
+          }
+        }
+        for (int j = succStart[comp]; j < succStart[comp + 1]; j++) {
+          int target = succ[j];
+          if ((target >= loBit) && (target < hiBit)) {
+            int bit = target - loBit;
+            if ((union[bit >> 6] & (1L << (bit & 63))) != 0L) {
+              redundant[j] = true;
+            }
+          }
+        }
+        for (int j = succStart[comp]; j < succStart[comp + 1]; j++) {
+          int target = succ[j];
+          if ((target >= loBit) && (target < hiBit)) {
+            int bit = target - loBit;
+            union[bit >> 6] |= (1L << (bit & 63));
+          }
+        }
+        System.arraycopy(union, 0, reach, base, words);
+      }
+    }
+    return;
   }
 
   /***************************************************************************
   ** 
-  ** Reachable recursive guts
+  ** Reduce the links inside one strongly connected component.  Go through
+  ** each link; if we can omit it and still reach the target from the source,
+  ** drop it.
   */
 
-  private boolean reachableGuts(String from, String to, HashSet<String> visited, Set<SimpleLink> links, SimpleLink omit) {
-
-    if (visited.contains(from)) {
-      return (false);
+  private List<SimpleLink> reduceInside(List<SimpleLink> links) {
+    HashMap<String, List<SimpleLink>> outLinks = new HashMap<String, List<SimpleLink>>();
+    int numLinks = links.size();
+    for (int i = 0; i < numLinks; i++) {
+      SimpleLink slink = links.get(i);
+      List<SimpleLink> forSrc = outLinks.get(slink.getSrc());
+      if (forSrc == null) {
+        forSrc = new ArrayList<SimpleLink>();
+        outLinks.put(slink.getSrc(), forSrc);
+      }
+      forSrc.add(slink);
     }
-    visited.add(from);
-    
+    HashSet<SimpleLink> dropped = new HashSet<SimpleLink>();
+    ArrayList<SimpleLink> retval = new ArrayList<SimpleLink>();
+    for (int i = 0; i < numLinks; i++) {
+      SimpleLink omitLink = links.get(i);
+      if (reachable(omitLink.getSrc(), omitLink.getTrg(), outLinks, dropped, omitLink)) {
+        dropped.add(omitLink);
+      } else {
+        retval.add(omitLink);
+      }
+    }
+    return (retval);
+  }
+
+  /***************************************************************************
+  ** 
+  ** Answer if the second node is reachable from the first while omitting the
+  ** given link and the dropped ones
+  */
+
+  private boolean reachable(String from, String to, Map<String, List<SimpleLink>> outLinks, 
+                            Set<SimpleLink> dropped, SimpleLink omit) {
     if (from.equals(to)) {
       return (true);
     }
-    
-    Iterator<SimpleLink> lit = links.iterator();
-    while (lit.hasNext()) {
-      SimpleLink slink = lit.next();
-      if (!slink.getSrc().equals(from)) {
-        continue;
-      }
-      if ((omit != null) && omit.equals(slink)) {
+    HashSet<String> visited = new HashSet<String>();
+    ArrayList<String> stack = new ArrayList<String>();
+    visited.add(from);
+    stack.add(from);
+    while (!stack.isEmpty()) {
+      String curr = stack.remove(stack.size() - 1);
+      List<SimpleLink> forCurr = outLinks.get(curr);
+      if (forCurr == null) {
         continue;
       }
-      if (reachableGuts(slink.getTrg(), to, visited, links, omit)) {
-        return (true);
+      int numOut = forCurr.size();
+      for (int i = 0; i < numOut; i++) {
+        SimpleLink slink = forCurr.get(i);
+        if (slink.equals(omit) || dropped.contains(slink)) {
+          continue;
+        }
+        String next = slink.getTrg();
+        if (next.equals(to)) {
+          return (true);
+        }
+        if (visited.add(next)) {
+          stack.add(next);
+        }
       }
     }
     return (false);
@@ -41,6 +41,7 @@ import org.systemsbiology.biotapestry.cmd.flow.FlowMeister;
 import org.systemsbiology.biotapestry.cmd.flow.WebServerControlFlowHarness;
 import org.systemsbiology.biotapestry.cmd.flow.add.PropagateDown;
 import org.systemsbiology.biotapestry.cmd.flow.io.LoadSaveSupport;
+import org.systemsbiology.biotapestry.cmd.flow.search.NetworkSearchIndex;
 import org.systemsbiology.biotapestry.cmd.undo.SelectionChangeCmd;
 import org.systemsbiology.biotapestry.db.Database;
 import org.systemsbiology.biotapestry.db.DataAccessContext;
@@ -156,6 +157,7 @@ public class BTState implements OverlayStateOracle, HandlerAndManagerSource {
   private ZoomCommandSupport zcs_;
   private EventManager eventMgr_;
   private DataPopupManager dpm_;
+  private NetworkSearchIndex searchIdx_;
   private DisplayOptionsManager dom_;
   private PlugInManager plum_;
   private UserTreePathManager utpm_;
@@ -235,6 +237,7 @@ public class BTState implements OverlayStateOracle, HandlerAndManagerSource {
     revealed_ = new TaggedSet();
     showingNetModuleComponents_ = false;    
     dpm_ = new DataPopupManager(this);
+    searchIdx_ = new NetworkSearchIndex(this);
     plum_ = new PlugInManager(this);
     undoChangeCount_ = 0;
     downProp_ = new PropagateDown.DownPropState();
@@ -654,6 +657,15 @@ public class BTState implements OverlayStateOracle, HandlerAndManagerSource {
   public DataPopupManager getDataPopupMgr() {
     return (dpm_);
   } 
+  
+  /***************************************************************************
+  **
+  ** Get the network search index
+  */ 
+    
+  public NetworkSearchIndex getSearchIndex() {
+    return (searchIdx_);
+  } 
  
   /***************************************************************************
   **
@@ -201,7 +201,7 @@ public class ImageGeneratorApplication {
   ** Following a CSV load, this map is filled in with:
   **   (String)(CSV model name)->(String)(Internal model ID)
   ** Not thread-safe; assuming you are calling on the same thread as
-  ** the process() call.
+  ** the process() call, or after the ImageGeneratorPool future has returned.
   */
 
   public Map<String, String> getModelIDMap() {
@@ -214,7 +214,7 @@ public class ImageGeneratorApplication {
   **   (NodeRegionModelNameTuple)->(ModelNodeIDPair)
   ** for each node in the model hierarchy
   ** Not thread-safe; assuming you are calling on the same thread as
-  ** the process() call.
+  ** the process() call, or after the ImageGeneratorPool future has returned.
   */
 
   public Map<NodeRegionModelNameTuple, ModelNodeIDPair> getNodeIDMap() {
@@ -226,7 +226,7 @@ public class ImageGeneratorApplication {
   ** Following a FULL_HIERARCHY_OUTPUT_ output, this map is filled in.
   **  (WebPublisher.ModelScale)->(SUPanel.BoundsMaps)
   ** Not thread-safe; assuming you are calling on the same thread as
-  ** the process() call.
+  ** the process() call, or after the ImageGeneratorPool future has returned.
   */
 
   public Map<WebPublisher.ModelScale, ViewExporter.BoundsMaps> getIntersectionMap() {
@@ -236,184 +236,36 @@ public class ImageGeneratorApplication {
   /***************************************************************************
   ** 
   ** In-process processing entry point.  This method is synchronized internally
-  ** on a global basis to insure one process call at a time.
+  ** on a global basis to insure one process call at a time.  To run several
+  ** jobs at once, submit them to an ImageGeneratorPool instead.
   */
 
   public void process() throws GeneratorException {    
   
     //
-    // Processing of all requests by all IGAs MUST be globally 
-    // serialized in a multi-threaded environment.  At this time, 
-    // BioTapestry core code must run on one thread when in batch mode.
+    // Callers of this entry point may share an IGA (and thus its BTState)
+    // across threads, so requests coming in here are still globally
+    // serialized.
     //
     
     synchronized (MainCommands.class) {
-         
-      boolean needInit = (appState_ == null);
-
-      if (needInit) {
-        System.setProperty("java.awt.headless", "true"); 
-      }
-
-      try {  
-        ResourceManager rMan = appState_.getRMan();
-        HashMap<String, Object> args = new HashMap<String, Object>();   
-        if (needInit) {
-          appState_ = new BTState("WJRL", args, true, false);
-          appState_.setExceptionHandler(new ExceptionHandler(appState_, appState_.getRMan(), true));
-          appState_.getDB().newModelViaDACX(); // Bogus, but no DACX yet
-          appState_.setIsEditor(true);
-          CommonView cview = new CommonView(appState_);
-          cview.buildTheView();       
-        }
-        FlowMeister flom = appState_.getFloM();
-        boolean haveInput = false;
-        DataAccessContext dacx = new DataAccessContext(appState_, appState_.getGenome());
-
-        switch (inputType_) {
-          case BTP_INPUT:
-            Object[] osArgs = new Object[2];
-            osArgs[0] = Boolean.valueOf(false);
-            osArgs[1] = input_;
-            BatchJobControlFlowHarness dcf0 = new BatchJobControlFlowHarness(appState_, null); 
-            ControlFlow myFlow0 = flom.getControlFlow(FlowMeister.MainFlow.LOAD, null);
-            LoadSaveOps.StepState pre0 = (LoadSaveOps.StepState)myFlow0.getEmptyStateForPreload(dacx);
-            pre0.setParams(osArgs);     
-            dcf0.initFlow(myFlow0, dacx);
-            DialogAndInProcessCmd daipc0 = dcf0.stepTheFlow(pre0);          
-            if (daipc0.state != DialogAndInProcessCmd.Progress.DONE) {
-              throw new GeneratorException(rMan.getString("headless.btpInputFailure"));
-            }
-            haveInput = true;
-            break;
-          case CSV_INPUT:
-            osArgs = new Object[7];
-            osArgs[0] = csvCompress_;
-            osArgs[1] = csvMode_;
-            osArgs[2] = csvOverlayMode_;
-            osArgs[3] = Boolean.valueOf(false);
-            osArgs[4] = input_;
-            osArgs[5] = nodeIDMap_;
-            osArgs[6] = modelIDMap_;
-            BatchJobControlFlowHarness dcf1 = new BatchJobControlFlowHarness(appState_, null); 
-            ControlFlow myFlow1 = flom.getControlFlow(FlowMeister.MainFlow.LOAD, null);
-            ImportCSV.StepState pre1 = (ImportCSV.StepState)myFlow1.getEmptyStateForPreload(dacx);
-            pre1.setParams(osArgs);     
-            dcf1.initFlow(myFlow1, dacx);
-            DialogAndInProcessCmd daipc1 = dcf1.stepTheFlow(pre1);          
-            if (daipc1.state != DialogAndInProcessCmd.Progress.DONE) {
-              throw new GeneratorException(rMan.getString("headless.csvInputFailure"));
-            }
-            haveInput = true;
-            break;
-          case BTP_PRE_INPUT_CSV_PRUNED:
-            osArgs = new Object[2];
-            osArgs[0] = Boolean.valueOf(false);
-            osArgs[1] = input_;
-            BatchJobControlFlowHarness dcf2 = new BatchJobControlFlowHarness(appState_, null); 
-            ControlFlow myFlow2 = flom.getControlFlow(FlowMeister.MainFlow.LOAD, null);
-            LoadSaveOps.StepState pre2 = (LoadSaveOps.StepState)myFlow2.getEmptyStateForPreload(dacx);
-            pre2.setParams(osArgs);     
-            dcf2.initFlow(myFlow2, dacx);
-            DialogAndInProcessCmd daipc2 = dcf2.stepTheFlow(pre2);          
-            if (daipc2.state != DialogAndInProcessCmd.Progress.DONE) {
-              throw new GeneratorException(rMan.getString("headless.btpInputFailure"));
-            }
-            osArgs = new Object[7];
-            osArgs[0] = csvCompress_;
-            osArgs[1] = csvMode_;
-            osArgs[2] = csvOverlayMode_;
-            osArgs[3] = Boolean.valueOf(false);
-            osArgs[4] = input2_;
-            osArgs[5] = nodeIDMap_;
-            osArgs[6] = modelIDMap_;
-            BatchJobControlFlowHarness dcf3 = new BatchJobControlFlowHarness(appState_, null); 
-            ControlFlow myFlow3 = flom.getControlFlow(FlowMeister.MainFlow.IMPORT_FULL_HIERARCHY_FROM_CSV, null);
-            ImportCSV.StepState pre3 = (ImportCSV.StepState)myFlow3.getEmptyStateForPreload(dacx);
-            pre3.setParams(osArgs);     
-            dcf3.initFlow(myFlow3, dacx);
-            DialogAndInProcessCmd daipc3 = dcf3.stepTheFlow(pre3);          
-            if (daipc3.state != DialogAndInProcessCmd.Progress.DONE) {
-              throw new GeneratorException(rMan.getString("headless.csvInputFailure"));
-            }
-            haveInput = true;
-            break;
-          default:
-            throw new IllegalArgumentException();
-        }   
-        if (!haveInput) {
-          throw new GeneratorException(rMan.getString("headless.noInputFailure"));
-        }   
-
-        boolean haveOutput = false;
-        switch (outputType_) {
-          case PNG_OUTPUT:
-            Object[] osArgs = imageExportPrepForStream(args, output_);       
-            if (osArgs != null) {
-              BatchJobControlFlowHarness dcf = new BatchJobControlFlowHarness(appState_, null); 
-              ControlFlow myFlow = flom.getControlFlow(FlowMeister.MainFlow.EXPORT, null);
-              LoadSaveOps.StepState pre = (LoadSaveOps.StepState)myFlow.getEmptyStateForPreload(dacx);
-              pre.setParams(osArgs);     
-              dcf.initFlow(myFlow, dacx);
-              DialogAndInProcessCmd daipc = dcf.stepTheFlow(pre);          
-              if (daipc.state != DialogAndInProcessCmd.Progress.DONE) {
-                throw new GeneratorException(rMan.getString("headless.imageExportFailure"));
-              } else {
-                haveOutput = true;
-              }
-            } else {
-              throw new GeneratorException(rMan.getString("headless.imageExportFailure"));
-            }
-            break;
-          case BTP_OUTPUT:
-            osArgs = new Object[2];
-            osArgs[0] = Boolean.valueOf(false);
-            osArgs[1] = output_;
-            BatchJobControlFlowHarness dcf = new BatchJobControlFlowHarness(appState_, null); 
-            ControlFlow myFlow = flom.getControlFlow(FlowMeister.MainFlow.SAVE_AS, null);
-            LoadSaveOps.StepState pre = (LoadSaveOps.StepState)myFlow.getEmptyStateForPreload(dacx);
-            pre.setParams(osArgs);     
-            dcf.initFlow(myFlow, dacx);
-            DialogAndInProcessCmd daipc = dcf.stepTheFlow(pre);          
-            if (daipc.state != DialogAndInProcessCmd.Progress.DONE) {
-              throw new GeneratorException(rMan.getString("headless.btpExportFailure"));
-            } else {
-              haveOutput = true;
-            }
-            break;
-          case FULL_HIERARCHY_OUTPUT_:
-            osArgs = new Object[4];
-            osArgs[0] = Boolean.valueOf(false);
-            osArgs[1] = noss_;
-            osArgs[2] = intersectionMap_;
-            osArgs[3] = publishKeys_;
-            BatchJobControlFlowHarness dcf2 = new BatchJobControlFlowHarness(appState_, null); 
-            ControlFlow myFlow2 = flom.getControlFlow(FlowMeister.MainFlow.WEB, null);
-            ExportWeb.StepState pre2 = (ExportWeb.StepState)myFlow2.getEmptyStateForPreload(dacx);
-            pre2.setParams(osArgs);     
-            dcf2.initFlow(myFlow2, dacx);
-            DialogAndInProcessCmd daipc2 = dcf2.stepTheFlow(pre2);          
-            if (daipc2.state != DialogAndInProcessCmd.Progress.DONE) {
-              throw new GeneratorException(rMan.getString("headless.webExportFailure"));
-            } else {
-              haveOutput = true;
-            }
-            break;
-          default:
-            throw new IllegalArgumentException();
-        }   
-
-        if (!haveOutput) {
-          throw new GeneratorException(rMan.getString("headless.totalExportFailure"));
-        }
-      } catch (ExceptionHandler.HeadlessException hex) {
-        throw new GeneratorException(appState_.getRMan().getString("headless.wrappedExceptionFailure"), hex);
-      }
+      processGuts();
     }
- 
     return;
-  }    
+  }
+  
+  /***************************************************************************
+  ** 
+  ** Entry point for ImageGeneratorPool workers.  Each job owns its own
+  ** BTState, so there is no need to serialize against other jobs.  The
+  ** lock on this IGA just keeps a single job from being run twice at once.
+  */
 
+  synchronized void processIsolated() throws GeneratorException {
+    processGuts();
+    return;
+  }
+  
   ////////////////////////////////////////////////////////////////////////////
   //
   // PRIVATE VARIABLES
@@ -468,6 +320,177 @@ public class ImageGeneratorApplication {
   //
   ////////////////////////////////////////////////////////////////////////////    
   
+  /***************************************************************************
+  ** 
+  ** Does the in-process load and export.  Everything touched here hangs
+  ** off of this IGA's own BTState.
+  */
+
+  private void processGuts() throws GeneratorException {    
+         
+    boolean needInit = (appState_ == null);
+
+    if (needInit) {
+      System.setProperty("java.awt.headless", "true"); 
+    }
+
+    try {  
+      HashMap<String, Object> args = new HashMap<String, Object>();   
+      if (needInit) {
+        appState_ = new BTState("WJRL", args, true, false);
+        appState_.setExceptionHandler(new ExceptionHandler(appState_, appState_.getRMan(), true));
+        appState_.getDB().newModelViaDACX(); // Bogus, but no DACX yet
+        appState_.setIsEditor(true);
+        CommonView cview = new CommonView(appState_);
+        cview.buildTheView();       
+      }
+      ResourceManager rMan = appState_.getRMan();
+      FlowMeister flom = appState_.getFloM();
+      boolean haveInput = false;
+      DataAccessContext dacx = new DataAccessContext(appState_, appState_.getGenome());
+
+      switch (inputType_) {
+        case BTP_INPUT:
+          Object[] osArgs = new Object[2];
+          osArgs[0] = Boolean.valueOf(false);
+          osArgs[1] = input_;
+          BatchJobControlFlowHarness dcf0 = new BatchJobControlFlowHarness(appState_, null); 
+          ControlFlow myFlow0 = flom.getControlFlow(FlowMeister.MainFlow.LOAD, null);
+          LoadSaveOps.StepState pre0 = (LoadSaveOps.StepState)myFlow0.getEmptyStateForPreload(dacx);
+          pre0.setParams(osArgs);     
+          dcf0.initFlow(myFlow0, dacx);
+          DialogAndInProcessCmd daipc0 = dcf0.stepTheFlow(pre0);          
+          if (daipc0.state != DialogAndInProcessCmd.Progress.DONE) {
+            throw new GeneratorException(rMan.getString("headless.btpInputFailure"));
+          }
+          haveInput = true;
+          break;
+        case CSV_INPUT:
+          osArgs = new Object[7];
+          osArgs[0] = csvCompress_;
+          osArgs[1] = csvMode_;
+          osArgs[2] = csvOverlayMode_;
+          osArgs[3] = Boolean.valueOf(false);
+          osArgs[4] = input_;
+          osArgs[5] = nodeIDMap_;
+          osArgs[6] = modelIDMap_;
+          BatchJobControlFlowHarness dcf1 = new BatchJobControlFlowHarness(appState_, null); 
+          ControlFlow myFlow1 = flom.getControlFlow(FlowMeister.MainFlow.LOAD, null);
+          ImportCSV.StepState pre1 = (ImportCSV.StepState)myFlow1.getEmptyStateForPreload(dacx);
+          pre1.setParams(osArgs);     
+          dcf1.initFlow(myFlow1, dacx);
+          DialogAndInProcessCmd daipc1 = dcf1.stepTheFlow(pre1);          
+          if (daipc1.state != DialogAndInProcessCmd.Progress.DONE) {
+            throw new GeneratorException(rMan.getString("headless.csvInputFailure"));
+          }
+          haveInput = true;
+          break;
+        case BTP_PRE_INPUT_CSV_PRUNED:
+          osArgs = new Object[2];
+          osArgs[0] = Boolean.valueOf(false);
+          osArgs[1] = input_;
+          BatchJobControlFlowHarness dcf2 = new BatchJobControlFlowHarness(appState_, null); 
+          ControlFlow myFlow2 = flom.getControlFlow(FlowMeister.MainFlow.LOAD, null);
+          LoadSaveOps.StepState pre2 = (LoadSaveOps.StepState)myFlow2.getEmptyStateForPreload(dacx);
+          pre2.setParams(osArgs);     
+          dcf2.initFlow(myFlow2, dacx);
+          DialogAndInProcessCmd daipc2 = dcf2.stepTheFlow(pre2);          
+          if (daipc2.state != DialogAndInProcessCmd.Progress.DONE) {
+            throw new GeneratorException(rMan.getString("headless.btpInputFailure"));
+          }
+          osArgs = new Object[7];
+          osArgs[0] = csvCompress_;
+          osArgs[1] = csvMode_;
+          osArgs[2] = csvOverlayMode_;
+          osArgs[3] = Boolean.valueOf(false);
+          osArgs[4] = input2_;
+          osArgs[5] = nodeIDMap_;
+          osArgs[6] = modelIDMap_;
+          BatchJobControlFlowHarness dcf3 = new BatchJobControlFlowHarness(appState_, null); 
+          ControlFlow myFlow3 = flom.getControlFlow(FlowMeister.MainFlow.IMPORT_FULL_HIERARCHY_FROM_CSV, null);
+          ImportCSV.StepState pre3 = (ImportCSV.StepState)myFlow3.getEmptyStateForPreload(dacx);
+          pre3.setParams(osArgs);     
+          dcf3.initFlow(myFlow3, dacx);
+          DialogAndInProcessCmd daipc3 = dcf3.stepTheFlow(pre3);          
+          if (daipc3.state != DialogAndInProcessCmd.Progress.DONE) {
+            throw new GeneratorException(rMan.getString("headless.csvInputFailure"));
+          }
+          haveInput = true;
+          break;
+        default:
+          throw new IllegalArgumentException();
+      }   
+      if (!haveInput) {
+        throw new GeneratorException(rMan.getString("headless.noInputFailure"));
+      }   
+
+      boolean haveOutput = false;
+      switch (outputType_) {
+        case PNG_OUTPUT:
+          Object[] osArgs = imageExportPrepForStream(args, output_);       
+          if (osArgs != null) {
+            BatchJobControlFlowHarness dcf = new BatchJobControlFlowHarness(appState_, null); 
+            ControlFlow myFlow = flom.getControlFlow(FlowMeister.MainFlow.EXPORT, null);
+            LoadSaveOps.StepState pre = (LoadSaveOps.StepState)myFlow.getEmptyStateForPreload(dacx);
+            pre.setParams(osArgs);     
+            dcf.initFlow(myFlow, dacx);
+            DialogAndInProcessCmd daipc = dcf.stepTheFlow(pre);          
+            if (daipc.state != DialogAndInProcessCmd.Progress.DONE) {
+              throw new GeneratorException(rMan.getString("headless.imageExportFailure"));
+            } else {
+              haveOutput = true;
+            }
+          } else {
+            throw new GeneratorException(rMan.getString("headless.imageExportFailure"));
+          }
+          break;
+        case BTP_OUTPUT:
+          osArgs = new Object[2];
+          osArgs[0] = Boolean.valueOf(false);
+          osArgs[1] = output_;
+          BatchJobControlFlowHarness dcf = new BatchJobControlFlowHarness(appState_, null); 
+          ControlFlow myFlow = flom.getControlFlow(FlowMeister.MainFlow.SAVE_AS, null);
+          LoadSaveOps.StepState pre = (LoadSaveOps.StepState)myFlow.getEmptyStateForPreload(dacx);
+          pre.setParams(osArgs);     
+          dcf.initFlow(myFlow, dacx);
+          DialogAndInProcessCmd daipc = dcf.stepTheFlow(pre);          
+          if (daipc.state != DialogAndInProcessCmd.Progress.DONE) {
+            throw new GeneratorException(rMan.getString("headless.btpExportFailure"));
+          } else {
+            haveOutput = true;
+          }
+          break;
+        case FULL_HIERARCHY_OUTPUT_:
+          osArgs = new Object[4];
+          osArgs[0] = Boolean.valueOf(false);
+          osArgs[1] = noss_;
+          osArgs[2] = intersectionMap_;
+          osArgs[3] = publishKeys_;
+          BatchJobControlFlowHarness dcf2 = new BatchJobControlFlowHarness(appState_, null); 
+          ControlFlow myFlow2 = flom.getControlFlow(FlowMeister.MainFlow.WEB, null);
+          ExportWeb.StepState pre2 = (ExportWeb.StepState)myFlow2.getEmptyStateForPreload(dacx);
+          pre2.setParams(osArgs);     
+          dcf2.initFlow(myFlow2, dacx);
+          DialogAndInProcessCmd daipc2 = dcf2.stepTheFlow(pre2);          
+          if (daipc2.state != DialogAndInProcessCmd.Progress.DONE) {
+            throw new GeneratorException(rMan.getString("headless.webExportFailure"));
+          } else {
+            haveOutput = true;
+          }
+          break;
+        default:
+          throw new IllegalArgumentException();
+      }   
+
+      if (!haveOutput) {
+        throw new GeneratorException(rMan.getString("headless.totalExportFailure"));
+      }
+    } catch (ExceptionHandler.HeadlessException hex) {
+      throw new GeneratorException(appState_.getRMan().getString("headless.wrappedExceptionFailure"), hex);
+    }
+    return;
+  }    
+
   /***************************************************************************
   ** 
   ** Check args:
@@ -0,0 +1,168 @@
+/*
+**    Copyright (C) 2003-2014 Institute for Systems Biology
+**                            Seattle, Washington, USA.
+**
+**    This library is free software; you can redistribute it and/or
+**    modify it under the terms of the GNU Lesser General Public
+**    License as published by the Free Software Foundation; either
+**    version 2.1 of the License, or (at your option) any later version.
+**
+**    This library is distributed in the hope that it will be useful,
+**    but WITHOUT ANY WARRANTY; without even the implied warranty of
+**    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+**    Lesser General Public License for more details.
+**
+**    You should have received a copy of the GNU Lesser General Public
+**    License along with this library; if not, write to the Free Software
+**    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+
+package org.systemsbiology.biotapestry.app;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/****************************************************************************
+**
+** Runs a farm of headless image generation jobs in one JVM.  Each job is an
+** ImageGeneratorApplication built with the in-process constructors; a job
+** builds its own BTState on the worker thread that picks it up, so jobs do
+** not share model state and are not serialized against each other.
+** Results (the output streams, getNodeIDMap(), getModelIDMap(),
+** getIntersectionMap()) are safe to read once the job's Future returns.
+*/
+
+public class ImageGeneratorPool {
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE VARIABLES
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  private ThreadPoolExecutor workers_;
+  private int jobCount_;
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC CONSTRUCTORS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Constructor.  Jobs beyond numWorkers wait in an unbounded FIFO queue.
+  */
+
+  public ImageGeneratorPool(int numWorkers) {
+    if (numWorkers < 1) {
+      throw new IllegalArgumentException();
+    }
+    workers_ = new ThreadPoolExecutor(numWorkers, numWorkers, 0L, TimeUnit.MILLISECONDS,
+                                      new LinkedBlockingQueue<Runnable>(), new WorkerFactory());
+    jobCount_ = 0;
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC METHODS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Queue up a job.  The Future hands back the same IGA once it has run;
+  ** a failure comes back as an ExecutionException wrapping the
+  ** ImageGeneratorApplication.GeneratorException.  A given IGA must only
+  ** be submitted once.
+  */
+
+  public synchronized Future<ImageGeneratorApplication> submit(ImageGeneratorApplication job) {
+    jobCount_++;
+    return (workers_.submit(new Job(job)));
+  }
+
+  /***************************************************************************
+  **
+  ** Number of jobs waiting for a worker
+  */
+
+  public int getQueuedCount() {
+    return (workers_.getQueue().size());
+  }
+
+  /***************************************************************************
+  **
+  ** Number of jobs submitted over the life of the pool
+  */
+
+  public synchronized int getSubmittedCount() {
+    return (jobCount_);
+  }
+
+  /***************************************************************************
+  **
+  ** Stop taking jobs.  Queued jobs still run.
+  */
+
+  public void shutdown() {
+    workers_.shutdown();
+    return;
+  }
+
+  /***************************************************************************
+  **
+  ** Wait for queued jobs to finish after a shutdown().  Returns false
+  ** on a timeout.
+  */
+
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    return (workers_.awaitTermination(timeout, unit));
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE INNER CLASSES
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** A queued job
+  */
+
+  private static class Job implements Callable<ImageGeneratorApplication> {
+
+    private ImageGeneratorApplication iga_;
+
+    Job(ImageGeneratorApplication iga) {
+      iga_ = iga;
+    }
+
+    public ImageGeneratorApplication call() throws ImageGeneratorApplication.GeneratorException {
+      iga_.processIsolated();
+      return (iga_);
+    }
+  }
+
+  /***************************************************************************
+  **
+  ** Builds named daemon workers
+  */
+
+  private static class WorkerFactory implements ThreadFactory {
+
+    private int count_ = 0;
+
+    public synchronized Thread newThread(Runnable runner) {
+      Thread retval = new Thread(runner, "ImageGeneratorWorker-" + count_++);
+      retval.setDaemon(true);
+      return (retval);
+    }
+  }
+}
@@ -0,0 +1,283 @@
+/*
+**    Copyright (C) 2003-2014 Institute for Systems Biology
+**                            Seattle, Washington, USA.
+**
+**    This library is free software; you can redistribute it and/or
+**    modify it under the terms of the GNU Lesser General Public
+**    License as published by the Free Software Foundation; either
+**    version 2.1 of the License, or (at your option) any later version.
+**
+**    This library is distributed in the hope that it will be useful,
+**    but WITHOUT ANY WARRANTY; without even the implied warranty of
+**    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+**    Lesser General Public License for more details.
+**
+**    You should have received a copy of the GNU Lesser General Public
+**    License along with this library; if not, write to the Free Software
+**    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+
+package org.systemsbiology.biotapestry.app;
+
+import java.awt.Rectangle;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.systemsbiology.biotapestry.event.EventManager;
+import org.systemsbiology.biotapestry.event.GeneralChangeEvent;
+import org.systemsbiology.biotapestry.event.GeneralChangeListener;
+import org.systemsbiology.biotapestry.event.LayoutChangeEvent;
+import org.systemsbiology.biotapestry.event.LayoutChangeListener;
+import org.systemsbiology.biotapestry.event.ModelChangeEvent;
+import org.systemsbiology.biotapestry.event.ModelChangeListener;
+import org.systemsbiology.biotapestry.event.OverlayDisplayChangeEvent;
+import org.systemsbiology.biotapestry.event.OverlayDisplayChangeListener;
+import org.systemsbiology.biotapestry.ui.ImageExporter;
+
+/****************************************************************************
+**
+** Deep-zoom tile pyramid for the web viewer.  Level 0 fits the whole model
+** into one tile; each level up doubles the zoom, until we reach MAX_ZOOM.
+** Tiles are drawn on demand and cached until the next model, layout, general,
+** or overlay display change, which bumps the revision.  Clients get the
+** revision with the pyramid layout and must send it with each tile request;
+** tile requests for an old revision are turned down.
+*/
+
+public class ImageTilePyramid implements ModelChangeListener, LayoutChangeListener,
+                                         GeneralChangeListener, OverlayDisplayChangeListener {
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC CONSTANTS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  public static final int TILE_SIZE = 256;
+  public static final double MAX_ZOOM = 2.0;
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE CONSTANTS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  private static final int MAX_CACHED_TILES_ = 512;
+  private static final int MAX_LEVELS_ = 16;
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE MEMBERS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  private int revision_;
+  private HashMap<String, Rectangle> bounds_;
+  private LinkedHashMap<String, byte[]> tiles_;
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC CONSTRUCTORS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Constructor
+  */
+
+  public ImageTilePyramid(EventManager em) {
+    revision_ = 0;
+    bounds_ = new HashMap<String, Rectangle>();
+    tiles_ = new LinkedHashMap<String, byte[]>(16, 0.75F, true) {
+      private static final long serialVersionUID = 1L;
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+        return (size() > MAX_CACHED_TILES_);
+      }
+    };
+    em.addModelChangeListener(this);
+    em.addLayoutChangeListener(this);
+    em.addGeneralChangeListener(this);
+    em.addOverlayDisplayChangeListener(this);
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC METHODS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Bumped every time cached tiles are tossed
+  */
+
+  public int getRevision() {
+    return (revision_);
+  }
+
+  /***************************************************************************
+  **
+  ** World bounds of the model.  The model must be the current one.
+  */
+
+  public Rectangle getModelBounds(BTState appState, String modelID) {
+    Rectangle retval = bounds_.get(modelID);
+    if (retval == null) {
+      retval = appState.getSUPanel().getExportBounds(appState);
+      bounds_.put(modelID, retval);
+    }
+    return (retval);
+  }
+
+  /***************************************************************************
+  **
+  ** Get a PNG tile.  The model must be the current one.
+  */
+
+  public byte[] getTile(BTState appState, String modelID, int level, int col, int row) throws IOException {
+    String key = modelID + ":" + level + ":" + col + ":" + row;
+    byte[] retval = tiles_.get(key);
+    if (retval != null) {
+      return (retval);
+    }
+    Rectangle bounds = getModelBounds(appState, modelID);
+    if ((level < 0) || (level >= levelCount(bounds)) ||
+        (col < 0) || (col >= tilesAcross(bounds, level)) ||
+        (row < 0) || (row >= tilesDown(bounds, level))) {
+      throw new IllegalArgumentException();
+    }
+    double zoom = zoomForLevel(bounds, level);
+    double worldPerTile = TILE_SIZE / zoom;
+    Point2D origin = new Point2D.Double(bounds.x + (col * worldPerTile), bounds.y + (row * worldPerTile));
+    BufferedImage bi = appState.getSUPanel().renderTile(origin, zoom, TILE_SIZE, appState);
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    ImageExporter iex = new ImageExporter();
+    iex.export(baos, bi, "PNG", null);
+    retval = baos.toByteArray();
+    tiles_.put(key, retval);
+    return (retval);
+  }
+
+  /***************************************************************************
+  **
+  ** Tell the client how the pyramid is laid out
+  */
+
+  public Map<String, Object> getPyramidInfo(BTState appState, String modelID) {
+    Rectangle bounds = getModelBounds(appState, modelID);
+    HashMap<String, Object> retval = new HashMap<String, Object>();
+    retval.put("tileSize", Integer.valueOf(TILE_SIZE));
+    retval.put("levels", Integer.valueOf(levelCount(bounds)));
+    retval.put("baseZoom", Double.valueOf(zoomForLevel(bounds, 0)));
+    retval.put("worldX", Integer.valueOf(bounds.x));
+    retval.put("worldY", Integer.valueOf(bounds.y));
+    retval.put("worldWidth", Integer.valueOf(bounds.width));
+    retval.put("worldHeight", Integer.valueOf(bounds.height));
+    retval.put("revision", Integer.valueOf(revision_));
+    return (retval);
+  }
+
+  /***************************************************************************
+  **
+  ** Change listeners
+  */
+
+  public void modelHasChanged(ModelChangeEvent mcev) {
+    invalidate();
+    return;
+  }
+
+  public void modelHasChanged(ModelChangeEvent mcev, int remaining) {
+    invalidate();
+    return;
+  }
+
+  public void layoutHasChanged(LayoutChangeEvent lcev) {
+    invalidate();
+    return;
+  }
+
+  public void generalChangeOccurred(GeneralChangeEvent gcev) {
+    invalidate();
+    return;
+  }
+
+  public void overlayDisplayChangeOccurred(OverlayDisplayChangeEvent odcev) {
+    invalidate();
+    return;
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC CLASS METHODS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Number of levels in the pyramid
+  */
+
+  public static int levelCount(Rectangle bounds) {
+    double baseZoom = zoomForLevel(bounds, 0);
+    int retval = 1;
+    while ((retval < MAX_LEVELS_) && ((baseZoom * (1 << (retval - 1))) < MAX_ZOOM)) {
+      retval++;
+    }
+    return (retval);
+  }
+
+  /***************************************************************************
+  **
+  ** Zoom for a level
+  */
+
+  public static double zoomForLevel(Rectangle bounds, int level) {
+    int maxDim = Math.max(1, Math.max(bounds.width, bounds.height));
+    return (((double)TILE_SIZE / (double)maxDim) * (1 << level));
+  }
+
+  /***************************************************************************
+  **
+  ** Tile columns for a level
+  */
+
+  public static int tilesAcross(Rectangle bounds, int level) {
+    return (Math.max(1, (int)Math.ceil(((bounds.width * zoomForLevel(bounds, level)) / TILE_SIZE) - 1.0E-9)));
+  }
+
+  /***************************************************************************
+  **
+  ** Tile rows for a level
+  */
+
+  public static int tilesDown(Rectangle bounds, int level) {
+    return (Math.max(1, (int)Math.ceil(((bounds.height * zoomForLevel(bounds, level)) / TILE_SIZE) - 1.0E-9)));
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE METHODS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Toss cached tiles
+  */
+
+  private void invalidate() {
+    revision_++;
+    tiles_.clear();
+    bounds_.clear();
+    return;
+  }
+}
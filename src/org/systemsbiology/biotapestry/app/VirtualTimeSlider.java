@@ -425,11 +425,18 @@ public class VirtualTimeSlider implements ChangeListener {
         return;
       }
       JSlider slider = (JSlider)e.getSource();
-      if (!slider.getValueIsAdjusting()) {
+      if (slider.getValueIsAdjusting()) {
+        //
+        // While dragging, get the instances under and ahead of the thumb built
+        // in the background so the switch on release is quick:
+        //
+        prefetchForSlider(slider.getValue(), lastSetting_);
+      } else {
         int value = slider.getValue();
         if (value == lastSetting_) {
           return;
         }
+        int lastSettingToUse = lastSetting_;
         DataAccessContext dacx = new DataAccessContext(appState_, appState_.getGenome());
         if (doNotFlow_) {
           //
@@ -437,7 +444,6 @@ public class VirtualTimeSlider implements ChangeListener {
           // flow.  So just use the guts of the switching operation from the SetCurrentModel.StepState flow state:
           //
           SetCurrentModel.StepState agis = new SetCurrentModel.StepState(appState_, SetCurrentModel.SettingAction.VIA_SLIDER, dacx);
-          int lastSettingToUse = lastSetting_;
           lastSetting_ = value;
           agis.setPreloadForSlider(value, lastSettingToUse, doingUndo_, currDip_);
           agis.stepToProcess();
@@ -445,12 +451,12 @@ public class VirtualTimeSlider implements ChangeListener {
           DesktopControlFlowHarness dcf = new DesktopControlFlowHarness(appState_, new DesktopDialogPlatform(appState_.getTopFrame()));
           ControlFlow cf = appState_.getFloM().getControlFlow(FlowMeister.OtherFlowKey.MODEL_SELECTION_FROM_SLIDER, null);           
           SetCurrentModel.StepState agis = (SetCurrentModel.StepState)cf.getEmptyStateForPreload(dacx);
-          int lastSettingToUse = lastSetting_;
           lastSetting_ = value;
           agis.setPreloadForSlider(value, lastSettingToUse, doingUndo_, currDip_);
           dcf.initFlow(cf, dacx);
           dcf.runFlow(agis);
         }
+        prefetchForSlider(value + ((value > lastSettingToUse) ? 1 : -1), value);
       }
     } catch (Exception ex) {
       appState_.getExceptionHandler().displayException(ex);
@@ -458,6 +464,23 @@ public class VirtualTimeSlider implements ChangeListener {
     return;
   }
 
+  /***************************************************************************
+  **
+  ** Ask the current proxy to prefetch instances starting at the given time,
+  ** heading in the direction the slider is moving.
+  */
+  
+  private void prefetchForSlider(int value, int lastValue) {
+    if ((currDip_ == null) || (value == lastValue)) {
+      return;
+    }
+    DynamicInstanceProxy dip = appState_.getDB().getDynamicProxy(currDip_);
+    if (dip != null) {
+      dip.prefetchAround(value, (value > lastValue) ? 1 : -1);
+    }
+    return;
+  }
+
   /***************************************************************************
   **
   ** Build a slider panel
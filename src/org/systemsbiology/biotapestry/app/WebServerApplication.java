@@ -41,6 +41,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 import javax.imageio.ImageIO;
 import javax.servlet.http.HttpServletRequest;
@@ -129,6 +130,7 @@ public class WebServerApplication {
   private final String configDir_ = "/WEB-INF/";
   private final String fullServletContextPath_;
   private final String pluginsDir_;
+  private final WeakHashMap<BTState, ImageTilePyramid> tilePyramids_ = new WeakHashMap<BTState, ImageTilePyramid>();
   
   private static final String DEFAULT_MODEL_FILE_DIR_ = "/WEB-INF/data/";
  
@@ -346,6 +348,55 @@ public class WebServerApplication {
     return;
   }
 
+  /***************************************************************************
+  ** 
+  ** Get one PNG tile of the deep-zoom pyramid for the specified network.  The
+  ** revision is the one the client got with the pyramid layout; if the model
+  ** has changed since, the request is turned down so the client starts over
+  ** instead of stitching old and new tiles together.
+  */
+
+  public void getImageTile(BTState appState, String modelID, int revision, int level, int col, int row, 
+                           OutputStream output) throws GeneratorException {  
+    synchronized (MainCommands.class) {    
+      ImageTilePyramid pyramid = getTilePyramid(appState);
+      if (pyramid.getRevision() != revision) {
+        throw new GeneratorException("staleTileRevision");
+      }
+      try {
+        modelID = prepareForTiles(appState, modelID);
+        byte[] tile = pyramid.getTile(appState, modelID, level, col, row);
+        output.write(tile);
+        output.flush();
+      } catch (GeneratorException gex) {
+        throw gex;
+      } catch (IllegalArgumentException iaex) {
+        throw new GeneratorException("noSuchTile");
+      } catch (Exception ex) {
+        throw new GeneratorException("imageExportFailure: " + ex.getMessage(),ex);
+      }
+    }
+    return;
+  }
+  
+  /***************************************************************************
+  ** 
+  ** Get the deep-zoom pyramid layout for the specified network
+  */
+
+  public Map<String, Object> getImageTileInfo(BTState appState, String modelID) throws GeneratorException {  
+    synchronized (MainCommands.class) {    
+      try {
+        modelID = prepareForTiles(appState, modelID);
+        return (getTilePyramid(appState).getPyramidInfo(appState, modelID));
+      } catch (GeneratorException gex) {
+        throw gex;
+      } catch (Exception ex) {
+        throw new GeneratorException("imageExportFailure: " + ex.getMessage(),ex);
+      }
+    }
+  }
+
   /***************************************************************************
   ** 
   ** Get JSON representation of specified network
@@ -526,7 +577,17 @@ public class WebServerApplication {
   ** Get cross-platform menu status
   */
 
-  public XPlatCurrentState getMenuStatus(BTState appState) throws GeneratorException {    
+  public XPlatCurrentState getMenuStatus(BTState appState) throws GeneratorException {
+    return (getMenuStatus(appState, null));
+  }
+  
+  /***************************************************************************
+  ** 
+  ** Get cross-platform menu status.  If the client tells us the enable version
+  ** it last saw, we only send the main command enables that changed since then.
+  */
+
+  public XPlatCurrentState getMenuStatus(BTState appState, Integer lastSeenVersion) throws GeneratorException {    
   
     synchronized (MainCommands.class) {
       try {
@@ -559,7 +620,14 @@ public class WebServerApplication {
         xpcs.setConditionalState("SHOW_PATH", (appState.getPathMgr().getPathCount() > 0));
         xpcs.setConditionalState("SHOW_OVERLAY", dacx.fgho.overlayExists());
     
-        xpcs.mainCommandEnables(appState.getMainCmds().getFlowEnabledState());
+        MainCommands mcmds = appState.getMainCmds();
+        if (lastSeenVersion == null) {
+          Map<FlowMeister.FlowKey, Boolean> fes = mcmds.getFlowEnabledState();
+          xpcs.mainCommandEnables(fes, mcmds.getFlowEnabledVersion(), false);
+        } else {
+          Map<FlowMeister.FlowKey, Boolean> fes = mcmds.getFlowEnabledChangesSince(lastSeenVersion.intValue());
+          xpcs.mainCommandEnables(fes, mcmds.getFlowEnabledVersion(), true);
+        }
          
         xpcs.setModelTreeState(appState.getTree().getTreeEnables(dacx));
         
@@ -682,6 +750,17 @@ public class WebServerApplication {
           throw new GeneratorException("no cmdKey");
         }
         
+        //
+        // Clients that track the main command enables can ask for just the changes:
+        //
+        String menuVer = req.getParameter("menuVersion");
+        Integer lastSeenMenu = null;
+        try {
+          lastSeenMenu = (menuVer == null) ? null : Integer.valueOf(menuVer);
+        } catch (NumberFormatException nfex) {
+          // Just use fact it's still null;
+        }
+        
         WebClientState thisState = null;
         if(req.getParameter("clientstate") != null) {
         	thisState = parseClientState(req);
@@ -799,7 +878,7 @@ public class WebServerApplication {
             cmdResult.addResult("dialog", ((SerializableDialogPlatform.Dialog)appState.getDialog()).getDialog(keyVal));
             cmdResult.addResult("currModel", appState.getGenome());
             cmdResult.addResult("selectedState", appState.getSUPanel().getSelections());
-            cmdResult.addResult("XPlatCurrentState", getMenuStatus(appState));
+            cmdResult.addResult("XPlatCurrentState", getMenuStatus(appState, lastSeenMenu));
             cmdResult.setNeedsClassAttr(true);
             return cmdResult;
           }
@@ -820,7 +899,7 @@ public class WebServerApplication {
               cmdResult.addResult("dialog", suf.getXPlatDialog());
               cmdResult.addResult("currModel", appState.getGenome());
               cmdResult.addResult("selectedState", appState.getSUPanel().getSelections());
-              cmdResult.addResult("XPlatCurrentState", getMenuStatus(appState));
+              cmdResult.addResult("XPlatCurrentState", getMenuStatus(appState, lastSeenMenu));
               return cmdResult;
             }
             DialogAndInProcessCmd postReceive = appState.getHarness().receiveUserInputs(ui);
@@ -836,7 +915,7 @@ public class WebServerApplication {
             cmdResult = new CommandResult(CommandResult.ResultType.PARAMETER_ERROR);
             cmdResult.addResult("currModel", appState.getGenome());
             cmdResult.addResult("selectedState", appState.getSUPanel().getSelections());
-            cmdResult.addResult("XPlatCurrentState", getMenuStatus(appState));
+            cmdResult.addResult("XPlatCurrentState", getMenuStatus(appState, lastSeenMenu));
             return (cmdResult);
           }            
           appState.getHarness().handleClick(click, appState.getPendingClick().getShiftOutput(pVals), 10.0);
@@ -860,7 +939,7 @@ public class WebServerApplication {
                 cmdResult = new CommandResult(CommandResult.ResultType.CANCEL);
                 cmdResult.addResult("currModel", appState.getGenome());
                 cmdResult.addResult("selectedState", appState.getSUPanel().getSelections());
-                cmdResult.addResult("XPlatCurrentState", getMenuStatus(appState));                
+                cmdResult.addResult("XPlatCurrentState", getMenuStatus(appState, lastSeenMenu));                
                 return (cmdResult);
               case ACCEPT:  
                 appState.setPendingClick(new WebServerControlFlowHarness.PendingMouseClick()); // More clicks needed for link drawing.... YES it falls through
@@ -872,7 +951,7 @@ public class WebServerApplication {
                 cmdResult = new CommandResult(CommandResult.ResultType.SUCCESS);
                 cmdResult.addResult("currModel", appState.getGenome());
                 cmdResult.addResult("selectedState", appState.getSUPanel().getSelections());
-                cmdResult.addResult("XPlatCurrentState", getMenuStatus(appState));
+                cmdResult.addResult("XPlatCurrentState", getMenuStatus(appState, lastSeenMenu));
                 return (cmdResult);
               case UNSELECTED:  // Bogus usage in Pulldown? Not Illegal then, but it never gets here (swallowed first in flow?)
               case ERROR:
@@ -881,7 +960,7 @@ public class WebServerApplication {
                 cmdResult = new CommandResult(CommandResult.ResultType.ILLEGAL_CLICK_PROCESSED);
                 cmdResult.addResult("currModel", appState.getGenome());
                 cmdResult.addResult("selectedState", appState.getSUPanel().getSelections());
-                cmdResult.addResult("XPlatCurrentState", getMenuStatus(appState));
+                cmdResult.addResult("XPlatCurrentState", getMenuStatus(appState, lastSeenMenu));
                 return (cmdResult);                
               default:
                 throw new GeneratorException("Unexpected Click Result: " + daipc.pccr);
@@ -893,7 +972,7 @@ public class WebServerApplication {
             cmdResult.addResult("dialog", appState.getSUF().getXPlatDialog());
             cmdResult.addResult("currModel", appState.getGenome());
             cmdResult.addResult("selectedState", appState.getSUPanel().getSelections());
-            cmdResult.addResult("XPlatCurrentState", getMenuStatus(appState));
+            cmdResult.addResult("XPlatCurrentState", getMenuStatus(appState, lastSeenMenu));
             return cmdResult;
             
           case USER_CANCEL:
@@ -901,7 +980,7 @@ public class WebServerApplication {
             cmdResult = new CommandResult(CommandResult.ResultType.CANCEL);
             cmdResult.addResult("currModel", appState.getGenome());
             cmdResult.addResult("selectedState", appState.getSUPanel().getSelections());
-            cmdResult.addResult("XPlatCurrentState", getMenuStatus(appState));
+            cmdResult.addResult("XPlatCurrentState", getMenuStatus(appState, lastSeenMenu));
             return (cmdResult);
             
           case HAVE_ERROR:
@@ -909,7 +988,7 @@ public class WebServerApplication {
         	  cmdResult = new CommandResult(CommandResult.ResultType.PROCESSING_ERROR);
         	  cmdResult.addResult("currModel", appState.getGenome());
         	  cmdResult.addResult("selectedState", appState.getSUPanel().getSelections());
-        	  cmdResult.addResult("XPlatCurrentState", getMenuStatus(appState));
+        	  cmdResult.addResult("XPlatCurrentState", getMenuStatus(appState, lastSeenMenu));
         	  return cmdResult;           
            
         	case HAVE_FRAME_TO_LAUNCH_AND_MOUSE_RESULT:
@@ -920,7 +999,7 @@ public class WebServerApplication {
             cmdResult.addResult("dialog", ((SerializableDialogPlatform.Dialog)daipc.dialog).getDialog(keyVal));
             cmdResult.addResult("currModel", appState.getGenome());
             cmdResult.addResult("selectedState", appState.getSUPanel().getSelections());
-            cmdResult.addResult("XPlatCurrentState", getMenuStatus(appState));
+            cmdResult.addResult("XPlatCurrentState", getMenuStatus(appState, lastSeenMenu));
             cmdResult.setNeedsClassAttr(true);
             return cmdResult;
             
@@ -930,7 +1009,7 @@ public class WebServerApplication {
         	  cmdResult.addResult("dialog", ((SerializableDialogPlatform.Dialog)appState.getDialog()).getDialog(keyVal));
         	  cmdResult.addResult("currModel", appState.getGenome());
         	  cmdResult.addResult("selectedState", appState.getSUPanel().getSelections());
-        	  cmdResult.addResult("XPlatCurrentState", getMenuStatus(appState)); 
+        	  cmdResult.addResult("XPlatCurrentState", getMenuStatus(appState, lastSeenMenu)); 
         	  cmdResult.setNeedsClassAttr(true);
         	  return cmdResult;
             
@@ -945,7 +1024,7 @@ public class WebServerApplication {
             
             cmdResult.addResult("currModel", appState.getGenome());
             cmdResult.addResult("selectedState", appState.getSUPanel().getSelections());
-            cmdResult.addResult("XPlatCurrentState", getMenuStatus(appState));
+            cmdResult.addResult("XPlatCurrentState", getMenuStatus(appState, lastSeenMenu));
           
             if (daipc.commandResults != null) {
             	for(Map.Entry<String, Object> result : daipc.commandResults.entrySet()) {
@@ -964,7 +1043,7 @@ public class WebServerApplication {
             cmdResult.addResult("XPlatMaskingStatus", ms);
             cmdResult.addResult("currModel", appState.getGenome());
             cmdResult.addResult("selectedState", appState.getSUPanel().getSelections());
-            cmdResult.addResult("XPlatCurrentState", getMenuStatus(appState));            
+            cmdResult.addResult("XPlatCurrentState", getMenuStatus(appState, lastSeenMenu));            
             return (cmdResult);
             
           case SIMPLE_USER_FEEDBACK_AND_MOUSE_RESULT:
@@ -1072,6 +1151,47 @@ public class WebServerApplication {
     return;
   }
 
+  /***************************************************************************
+  ** 
+  ** Get the tile pyramid for the session
+  */ 
+ 
+  private ImageTilePyramid getTilePyramid(BTState appState) {
+    ImageTilePyramid retval = tilePyramids_.get(appState);
+    if (retval == null) {
+      retval = new ImageTilePyramid(appState.getEventMgr());
+      tilePyramids_.put(appState, retval);
+    }
+    return (retval);
+  }
+  
+  /***************************************************************************
+  ** 
+  ** Tiles are drawn from the current model. As with image export, asking for
+  ** a different model makes it the current one.  Unknown models are turned down
+  ** before anything gets switched.
+  */ 
+ 
+  private String prepareForTiles(BTState appState, String modelID) throws GeneratorException {
+    String genomeID = appState.getGenome();
+    if (modelID == null) {
+      modelID = (genomeID == null) ? appState.getDB().getStartupView().getModel() : genomeID;
+    }
+    if (!modelID.equals(genomeID)) {
+      if (appState.getDB().getGenome(modelID) == null) {
+        throw new GeneratorException("noSuchModel: " + modelID);
+      }
+      String layoutID = appState.getLayoutMgr().getLayout(modelID);
+      if (layoutID == null) {
+        throw new GeneratorException("noSuchModel: " + modelID);
+      }
+      DataAccessContext dacx = new DataAccessContext(appState, genomeID);
+      appState.setGraphLayout(layoutID);
+      appState.setGenomeForUndo(modelID, dacx);
+    }
+    return (modelID);
+  }
+
   /***************************************************************************
   ** 
   ** Used to load up a ModelTreeCmdState with needed data
@@ -20,6 +20,8 @@
 
 package org.systemsbiology.biotapestry.cmd;
 
+import java.util.EnumSet;
+
 import org.systemsbiology.biotapestry.app.BTState;
 import org.systemsbiology.biotapestry.ui.SUPanel;
 import org.systemsbiology.biotapestry.db.Database;
@@ -36,7 +38,10 @@ import org.systemsbiology.biotapestry.perturb.PerturbationData;
 /****************************************************************************
 **
 ** Use this to centralize decision making on what main commands are active.
-** Caches potentially expensive results for reuse.
+** Caches potentially expensive results for reuse.  A cache can be kept around
+** across changes: each change type only invalidates the facts it can affect,
+** and while recording, the cache notes which facts a predicate read, so callers
+** can skip re-asking predicates that do not depend on what changed.
 */
 
 public class CheckGutsCache {
@@ -54,6 +59,32 @@ public class CheckGutsCache {
   public static final int GENERAL = 4;    
   public static final int OVERLAY = 5;       
   
+  /***************************************************************************
+  **
+  ** The facts that predicates are built from
+  */
+  
+  public enum Fact {
+    GENOME,
+    GENOME_COUNT,
+    GOOSE,
+    SHOWING_MODULE,
+    OVERLAY_EXISTS,
+    SELECTION,
+    NODE_SELECTION,
+    MULTI_SELECTION,
+    CURRENT_SELECTION_BOUNDS,
+    LINKS_HIDDEN,
+    HAS_GROUP,
+    HAS_NODE,
+    HAS_LINK,
+    HAS_MODULE,
+    BUILD_INSTRUCTIONS,
+    TIME_COURSE,
+    PERTURBATION,
+    ;
+  }
+  
   ////////////////////////////////////////////////////////////////////////////
   //
   // MEMBERS
@@ -75,6 +106,7 @@ public class CheckGutsCache {
   private Boolean hasALink_;   
   private Boolean hasAModule_;
   private Boolean linksHidden_;
+  private EnumSet<Fact> reads_;
 
   public CheckGutsCache(BTState appState, Genome genome, int type) {
     appState_ = appState;
@@ -90,21 +122,152 @@ public class CheckGutsCache {
     hasANode_ = null;
     hasALink_ = null;
     hasAModule_ = null;
+    reads_ = null;
   }
 
   int getType() {
     return (type_);
   } 
+  
+  /***************************************************************************
+  **
+  ** Facts we have no change events for, so they are always stale
+  */
+  
+  public static EnumSet<Fact> volatileFacts() {
+    return (EnumSet.of(Fact.GOOSE, Fact.CURRENT_SELECTION_BOUNDS));
+  }
+  
+  /***************************************************************************
+  **
+  ** Facts that can be affected by the given change type
+  */
+  
+  public static EnumSet<Fact> factsForChange(int changeType) {
+    EnumSet<Fact> retval;
+    switch (changeType) {
+      case SELECT:
+        retval = EnumSet.of(Fact.SELECTION, Fact.NODE_SELECTION, Fact.MULTI_SELECTION);
+        break;
+      case OVERLAY:
+        retval = EnumSet.of(Fact.SHOWING_MODULE, Fact.OVERLAY_EXISTS, Fact.LINKS_HIDDEN, Fact.HAS_MODULE);
+        break;
+      case GENERAL:
+        retval = EnumSet.of(Fact.BUILD_INSTRUCTIONS, Fact.TIME_COURSE, Fact.PERTURBATION);
+        break;
+      case LAYOUT:
+        retval = EnumSet.of(Fact.LINKS_HIDDEN);
+        break;
+      case MODEL:
+      case NONE:
+      default:
+        return (EnumSet.allOf(Fact.class));
+    }
+    retval.addAll(volatileFacts());
+    return (retval);
+  }
+  
+  /***************************************************************************
+  **
+  ** Answer if this cache is for the given genome
+  */
+  
+  public boolean isForGenome(Genome genome) {
+    return (genome_ == genome);
+  }
+  
+  /***************************************************************************
+  **
+  ** Drop cached facts affected by the given change type. Returns the facts.
+  */
+  
+  public EnumSet<Fact> invalidate(int changeType) {
+    type_ = changeType;
+    EnumSet<Fact> retval = factsForChange(changeType);
+    invalidate(retval);
+    return (retval);
+  }
+  
+  /***************************************************************************
+  **
+  ** Drop the given cached facts
+  */
+  
+  public void invalidate(EnumSet<Fact> facts) {
+    if (facts.contains(Fact.GENOME_COUNT)) {
+      genomeCount_ = null;
+    }
+    if (facts.contains(Fact.GOOSE)) {
+      gaggleIsActive_ = null;
+    }
+    if (facts.contains(Fact.SHOWING_MODULE)) {
+      showingModule_ = null;
+    }
+    if (facts.contains(Fact.OVERLAY_EXISTS)) {
+      overlayExists_ = null;
+    }
+    if (facts.contains(Fact.SELECTION)) {
+      hasSelection_ = null;
+    }
+    if (facts.contains(Fact.NODE_SELECTION)) {
+      hasNodeSelection_ = null;
+    }
+    if (facts.contains(Fact.MULTI_SELECTION)) {
+      hasMultiSelections_ = null;
+    }
+    if (facts.contains(Fact.LINKS_HIDDEN)) {
+      linksHidden_ = null;
+    }
+    if (facts.contains(Fact.HAS_GROUP)) {
+      hasAGroup_ = null;
+    }
+    if (facts.contains(Fact.HAS_NODE)) {
+      hasANode_ = null;
+    }
+    if (facts.contains(Fact.HAS_LINK)) {
+      hasALink_ = null;
+    }
+    if (facts.contains(Fact.HAS_MODULE)) {
+      hasAModule_ = null;
+    }
+    return;
+  }
+  
+  /***************************************************************************
+  **
+  ** Start noting which facts get read
+  */
+  
+  public void startRecording() {
+    reads_ = EnumSet.noneOf(Fact.class);
+    return;
+  }
+  
+  /***************************************************************************
+  **
+  ** Stop noting reads, and return the facts read since the start. An empty
+  ** result means the predicate relies on nothing we track, so it should
+  ** always be asked again.
+  */
+  
+  public EnumSet<Fact> stopRecording() {
+    EnumSet<Fact> retval = reads_;
+    reads_ = null;
+    return (retval);
+  }
 
   public boolean genomeNotNull() {
+    noteRead(Fact.GENOME);
     return (genome_ != null);
   }
 
   public boolean genomeNotEmpty() {
+    noteRead(Fact.GENOME);
     return ((genome_ != null) && !genome_.isEmpty());
   }
 
   public boolean genomeCanWriteSBML() {
+    noteRead(Fact.GENOME);
     //
     // Currently only allow SBML on root genome
     //
@@ -120,6 +283,7 @@ public class CheckGutsCache {
   }
 
   public boolean genomeHasImage() {
+    noteRead(Fact.GENOME);
     if (genome_ == null) {
       return (false);
     }
@@ -127,6 +291,7 @@ public class CheckGutsCache {
   }
 
   public boolean haveSubmodelsOrOverlay() {
+    noteRead(Fact.GENOME);
     if (genome_ == null) {
       return (false);
     }
@@ -140,6 +305,7 @@ public class CheckGutsCache {
   }
 
   public boolean haveASelection() {
+    noteRead(Fact.GENOME);
     if ((genome_ == null) || genome_.isEmpty()) {
       return (false);
     }
@@ -147,6 +313,7 @@ public class CheckGutsCache {
   }
   
   public boolean haveANodeSelection() {
+    noteRead(Fact.GENOME);
     if ((genome_ == null) || genome_.isEmpty()) {
       return (false);
     }
@@ -154,6 +321,7 @@ public class CheckGutsCache {
   }
 
   public boolean hasMultiSelections() {
+    noteRead(Fact.GENOME);
     if ((genome_ == null) || genome_.isEmpty()) {
       return (false);
     }
@@ -161,6 +329,7 @@ public class CheckGutsCache {
   }
   
   public boolean canAdd() {
+    noteRead(Fact.GENOME);
     if (genome_ == null) {
       return (false);
     }
@@ -174,6 +343,7 @@ public class CheckGutsCache {
   }
 
   public boolean canAddLink() {
+    noteRead(Fact.GENOME);
     if (genome_ == null) {
       return (false);
     }
@@ -188,6 +358,7 @@ public class CheckGutsCache {
   }
   
   public boolean canLayoutLinks() {
+    noteRead(Fact.GENOME);
     if (genome_ == null) {
       return (false);
     }
@@ -200,7 +371,8 @@ public class CheckGutsCache {
     return (loadHasALink());
   }
   
-  public boolean canPropagateDown() {     
+  public boolean canPropagateDown() {
+    noteRead(Fact.GENOME);     
     if (genome_ == null) {
       return (false);
     }
@@ -218,6 +390,7 @@ public class CheckGutsCache {
   }
 
   public boolean genomeIsRoot() {
+    noteRead(Fact.GENOME);
     if (genome_ == null) {
       return (false);
     }
@@ -228,6 +401,7 @@ public class CheckGutsCache {
   }
 
   public boolean isNonDynamicInstance() {
+    noteRead(Fact.GENOME);
     if (genome_ == null) {
       return (false);
     } 
@@ -235,6 +409,7 @@ public class CheckGutsCache {
   } 
 
   public boolean isDynamicInstance() {
+    noteRead(Fact.GENOME);
     if (genome_ == null) {
       return (false);
     } 
@@ -242,6 +417,7 @@ public class CheckGutsCache {
   }  
 
   public boolean isNotDynamicInstance() { // Note not the strict negation of above
+    noteRead(Fact.GENOME);
     if (genome_ == null) {
       return (false);
     } 
@@ -249,6 +425,7 @@ public class CheckGutsCache {
   }    
 
   public boolean genomeIsRootInstance() {
+    noteRead(Fact.GENOME);
     if (genome_ == null) {
       return (false);
     } 
@@ -264,6 +441,7 @@ public class CheckGutsCache {
   }
 
   public boolean isRootOrRootInstance() {
+    noteRead(Fact.GENOME);
     if (genome_ == null) {
       return (false);
     }
@@ -277,6 +455,7 @@ public class CheckGutsCache {
   }   
 
   public boolean haveBuildInstructions() {
+    noteRead(Fact.GENOME, Fact.BUILD_INSTRUCTIONS);
     if (genome_ == null) {
       return (false);
     } 
@@ -288,38 +467,45 @@ public class CheckGutsCache {
   }
 
   public boolean canShowBubbles() {
+    noteRead(Fact.GENOME);
     boolean gotModules = loadShowingModule();
     return ((genome_ != null) && (!genome_.isEmpty() || gotModules));    
   }
   
   public boolean canLayoutByOverlay() {
+    noteRead(Fact.GENOME);
     boolean gotModules = loadShowingModule();
     return ((genome_ != null) && !genome_.isEmpty() && gotModules);    
   }
   
   public boolean haveTimeCourseData() {
+    noteRead(Fact.TIME_COURSE);
     Database db = appState_.getDB();
     TimeCourseData tcd = db.getTimeCourseData();
     return ((tcd != null) && tcd.haveData());
   }
 
   public boolean timeCourseNotEmpty() { // not exactly the same test as above....
+    noteRead(Fact.TIME_COURSE);
     Database db = appState_.getDB();
     TimeCourseData tcd = db.getTimeCourseData(); 
     return (!tcd.isEmpty());
   }
   
   public boolean timeCourseHasTemplate() {
+    noteRead(Fact.TIME_COURSE);
     Database db = appState_.getDB();
     TimeCourseData tcd = db.getTimeCourseData(); 
     return (tcd.hasGeneTemplate());
   }
   
   public boolean genomeHasModule() {
+    noteRead(Fact.GENOME);
     return ((genome_ != null) && loadHasAModule()); 
   }
 
   public boolean canPullDown() {
+    noteRead(Fact.GENOME);
     if (genome_ == null) {
       return (false);
     }
@@ -337,6 +523,7 @@ public class CheckGutsCache {
   }
 
   public boolean noModel() {
+    noteRead(Fact.GENOME);
     if ((loadGenomeCount() == 0) || (genome_ == null)) {
       return (true);
     }
@@ -344,6 +531,7 @@ public class CheckGutsCache {
   }
 
   public boolean oneRoot() {
+    noteRead(Fact.GENOME);
     if ((loadGenomeCount() != 1) || (genome_ == null)) {
       return (false);
     }
@@ -351,6 +539,7 @@ public class CheckGutsCache {
   }      
 
   public boolean oneEmptyRoot() {
+    noteRead(Fact.GENOME);
     if ((loadGenomeCount() != 1) || (genome_ == null) || !genome_.isEmpty()) {
       return (false);
     }
@@ -358,18 +547,21 @@ public class CheckGutsCache {
   }
 
   public boolean hasPerturbationData() {
+    noteRead(Fact.PERTURBATION);
     Database db = appState_.getDB();
     PerturbationData pd = db.getPertData();
-    return (pd.haveData());      
+    return ((pd != null) && pd.haveData());      
   }
   
   public boolean hasPertSources() {
+    noteRead(Fact.PERTURBATION);
     Database db = appState_.getDB();
     PerturbationData pd = db.getPertData();
     return (pd.havePertSources());      
   }
 
   public boolean canSquash() {
+    noteRead(Fact.GENOME);
     if (genome_ == null) {
       return (false);
     }
@@ -395,8 +587,29 @@ public class CheckGutsCache {
   public boolean canStretch() {
     return (canSquash());
   }
+  
+  public boolean haveCurrentSelectionForBounds() {
+    noteRead(Fact.CURRENT_SELECTION_BOUNDS);
+    return (appState_.getZoomTarget().haveCurrentSelectionForBounds());
+  }
+  
+  private void noteRead(Fact fact) {
+    if (reads_ != null) {
+      reads_.add(fact);
+    }
+    return;
+  }
+  
+  private void noteRead(Fact fact1, Fact fact2) {
+    if (reads_ != null) {
+      reads_.add(fact1);
+      reads_.add(fact2);
+    }
+    return;
+  }
 
   private int loadGenomeCount() {
+    noteRead(Fact.GENOME_COUNT);
     if (genomeCount_ == null) {
       Database db = appState_.getDB();
       genomeCount_ = new Integer(db.getGenomeCount());
@@ -405,6 +618,7 @@ public class CheckGutsCache {
   } 
 
   private boolean loadGooseActive() {
+    noteRead(Fact.GOOSE);
     if (gaggleIsActive_ == null) {
       GooseAppInterface goose = appState_.getGooseMgr().getGoose();
       gaggleIsActive_ = new Boolean((goose != null) && goose.isActivated());
@@ -413,6 +627,7 @@ public class CheckGutsCache {
   }
 
   private boolean loadShowingModule() {
+    noteRead(Fact.SHOWING_MODULE);
     if (showingModule_ == null) {    
       showingModule_ = new Boolean((appState_.getCurrentOverlay() != null) && !appState_.getCurrentNetModules().set.isEmpty());
     }
@@ -420,6 +635,7 @@ public class CheckGutsCache {
   }   
 
   private boolean loadOverlayExists() {
+    noteRead(Fact.OVERLAY_EXISTS);
     if (overlayExists_ == null) {  
       overlayExists_ = new Boolean((new FullGenomeHierarchyOracle(appState_)).overlayExists());
     }
@@ -427,6 +643,7 @@ public class CheckGutsCache {
   }
 
   private boolean loadHasSelection() {
+    noteRead(Fact.SELECTION);
     if (hasSelection_ == null) { 
       SUPanel sup = appState_.getSUPanel();
       hasSelection_ = new Boolean(sup.hasASelection());
@@ -435,6 +652,7 @@ public class CheckGutsCache {
   } 
   
   private boolean loadHasNodeSelection() {
+    noteRead(Fact.NODE_SELECTION);
     if (hasNodeSelection_ == null) { 
       SUPanel sup = appState_.getSUPanel();
       hasNodeSelection_ = new Boolean(!sup.getSelectedNodes().isEmpty());
@@ -444,6 +662,7 @@ public class CheckGutsCache {
   
   
   private boolean loadHasMultiSelections() {
+    noteRead(Fact.MULTI_SELECTION);
     if (hasMultiSelections_ == null) { 
       hasMultiSelections_ = new Boolean(appState_.getZoomTarget().haveMultipleSelectionsForBounds());
     }
@@ -451,6 +670,7 @@ public class CheckGutsCache {
   }  
  
   private boolean loadLinksHidden() {
+    noteRead(Fact.LINKS_HIDDEN);
     if (linksHidden_ == null) { 
       SUPanel sup = appState_.getSUPanel();
       DataAccessContext rcx = new DataAccessContext(appState_, appState_.getGenome());
@@ -461,6 +681,7 @@ public class CheckGutsCache {
   
   // Careful!  Check first that it is a genome instance before calling!
   private boolean loadHasAGroup() {
+    noteRead(Fact.HAS_GROUP);
     GenomeInstance gi = (GenomeInstance)genome_;
     if (hasAGroup_ == null) {        
       hasAGroup_ = new Boolean(gi.getGroupIterator().hasNext());
@@ -469,6 +690,7 @@ public class CheckGutsCache {
   }    
 
   private boolean loadHasANode() {
+    noteRead(Fact.HAS_NODE);
     if (hasANode_ == null) { 
       hasANode_ = new Boolean(genome_.getGeneIterator().hasNext() || genome_.getNodeIterator().hasNext());
     }
@@ -476,6 +698,7 @@ public class CheckGutsCache {
   } 
   
   private boolean loadHasALink() {
+    noteRead(Fact.HAS_LINK);
     if (hasALink_ == null) { 
       hasALink_ = new Boolean(genome_.getLinkageIterator().hasNext());
     }
@@ -485,6 +708,7 @@ public class CheckGutsCache {
   
 
   private boolean loadHasAModule() {
+    noteRead(Fact.HAS_MODULE);
     if (hasAModule_ == null) { 
       hasAModule_ = new Boolean(genome_.getNetworkModuleCount() > 0);
     }
@@ -24,6 +24,8 @@ import java.awt.Color;
 import java.awt.Event;
 import java.awt.event.ActionEvent;
 import java.net.URL;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -105,6 +107,14 @@ public class MainCommands implements SelectionChangeListener,
   private HashMap<FlowMeister.MainFlow, ControlFlow> flowCache_;
   private HashMap<FlowMeister.MainFlow, ChecksForEnabled> withIcons_;
   private HashMap<FlowMeister.MainFlow, ChecksForEnabled> noIcons_;
+  
+  private CheckGutsCache enableCache_;
+  private EnableTracker<ChecksForEnabled> actionTracker_;
+  private EnableTracker<FlowMeister.MainFlow> flowTracker_;
+  private HashMap<FlowMeister.MainFlow, Boolean> flowEnables_;
+  private HashMap<FlowMeister.FlowKey, Boolean> lastEnables_;
+  private HashMap<FlowMeister.FlowKey, Integer> enableChangedAt_;
+  private int enableVersion_;
  
   ////////////////////////////////////////////////////////////////////////////
   //
@@ -122,6 +132,12 @@ public class MainCommands implements SelectionChangeListener,
     withIcons_ = new HashMap<FlowMeister.MainFlow, ChecksForEnabled>();
     noIcons_ = new HashMap<FlowMeister.MainFlow, ChecksForEnabled>();
     flowCache_ = new HashMap<FlowMeister.MainFlow, ControlFlow>();
+    actionTracker_ = new EnableTracker<ChecksForEnabled>();
+    flowTracker_ = new EnableTracker<FlowMeister.MainFlow>();
+    flowEnables_ = new HashMap<FlowMeister.MainFlow, Boolean>();
+    lastEnables_ = new HashMap<FlowMeister.FlowKey, Boolean>();
+    enableChangedAt_ = new HashMap<FlowMeister.FlowKey, Integer>();
+    enableVersion_ = 0;
     new VirtualZoomControls(appState_);
     new UserTreePathController(appState);
     DynamicDataAccessContext ddacx = new DynamicDataAccessContext(appState_);
@@ -391,22 +407,17 @@ public class MainCommands implements SelectionChangeListener,
   
   /***************************************************************************
   **
-  ** Trigger the enabled checks
+  ** Trigger the enabled checks.  Only actions that read a fact touched by the
+  ** change get asked again.
   */ 
   
   private void checkForChanges(String genomeID, int checkType, DataAccessContext dacx) {
     Genome genome = (genomeID == null) ? null : dacx.getGenomeSource().getGenome(genomeID);
-    CheckGutsCache cache = new CheckGutsCache(appState_, genome, checkType);
-    Iterator<ChecksForEnabled> wiit = withIcons_.values().iterator();
-    while (wiit.hasNext()) {
-      ChecksForEnabled cfe = wiit.next();
-      cfe.checkIfEnabled(cache);
-    }
-    Iterator<ChecksForEnabled> niit = noIcons_.values().iterator();
-    while (niit.hasNext()) {
-      ChecksForEnabled cfe = niit.next();
-      cfe.checkIfEnabled(cache);
-    }
+    CheckGutsCache cache = prepareEnableCache(genome, checkType, true);
+    actionTracker_.startPass(genome);
+    checkActions(withIcons_, cache);
+    checkActions(noIcons_, cache);
+    actionTracker_.endPass();
     appState_.getPathControls().handlePathButtons();
     appState_.getNetOverlayController().checkForChanges(dacx);
     return;
@@ -421,19 +432,27 @@ public class MainCommands implements SelectionChangeListener,
     Database db = appState_.getDB();   
     String genomeID = appState_.getGenome();
     Genome genome = (genomeID == null) ? null : db.getGenome(genomeID);
-    CheckGutsCache cache = new CheckGutsCache(appState_, genome, CheckGutsCache.NONE);
+    CheckGutsCache cache = prepareEnableCache(genome, CheckGutsCache.NONE, false);
     HashMap<FlowMeister.FlowKey, Boolean> retval = new HashMap<FlowMeister.FlowKey, Boolean>(); 
     
+    flowTracker_.startPass(genome);
     Iterator<FlowMeister.MainFlow> fckit = flowCache_.keySet().iterator();
     while (fckit.hasNext()) {
       FlowMeister.MainFlow mfk = fckit.next();
       ControlFlow flow = flowCache_.get(mfk); 
       if (flow.externallyEnabled()) {
         continue;
-      }    
-      boolean enabled = flow.isEnabled(cache);
-      retval.put(mfk, Boolean.valueOf(enabled));
+      }
+      Boolean enabled = flowEnables_.get(mfk);
+      if ((enabled == null) || flowTracker_.needsCheck(mfk)) {
+        cache.startRecording();
+        enabled = Boolean.valueOf(flow.isEnabled(cache));
+        flowTracker_.recorded(mfk, cache.stopRecording());
+        flowEnables_.put(mfk, enabled);
+      }
+      retval.put(mfk, enabled);
     }
+    flowTracker_.endPass();
     Map<FlowMeister.FlowKey, Boolean> pathEna = appState_.getPathControls().getButtonEnables();
     retval.putAll(pathEna);
     Map<FlowMeister.FlowKey, Boolean> ovrEna = appState_.getNetOverlayController().getButtonEnables();
@@ -444,9 +463,115 @@ public class MainCommands implements SelectionChangeListener,
     UndoManager undom = appState_.getUndoManager();
     retval.put(FlowMeister.MainFlow.UNDO, undom.canUndo());
     retval.put(FlowMeister.MainFlow.REDO, undom.canRedo());
+    stampEnableChanges(retval);
     return (retval);
   }
   
+  /***************************************************************************
+  **
+  ** Batch/server mode: the version of the enabled state.  Bumped each time
+  ** a call to getFlowEnabledState() sees an enable flip.
+  */ 
+  
+  public int getFlowEnabledVersion() {
+    return (enableVersion_);
+  }
+  
+  /***************************************************************************
+  **
+  ** Batch/server mode: collect up the enabled state entries that have changed
+  ** since the given version.  A version we did not hand out gets everything.
+  */ 
+  
+  public Map<FlowMeister.FlowKey, Boolean> getFlowEnabledChangesSince(int version) {
+    Map<FlowMeister.FlowKey, Boolean> full = getFlowEnabledState();
+    if ((version < 0) || (version > enableVersion_)) {
+      return (full);
+    }
+    HashMap<FlowMeister.FlowKey, Boolean> retval = new HashMap<FlowMeister.FlowKey, Boolean>();
+    Iterator<FlowMeister.FlowKey> fkit = full.keySet().iterator();
+    while (fkit.hasNext()) {
+      FlowMeister.FlowKey key = fkit.next();
+      Integer changedAt = enableChangedAt_.get(key);
+      if ((changedAt == null) || (changedAt.intValue() > version)) {
+        retval.put(key, full.get(key));
+      }
+    }
+    return (retval);
+  }
+  
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE METHODS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+  
+  /***************************************************************************
+  **
+  ** Get the enable cache ready for the given genome and change.  Hands the
+  ** stale facts to both trackers.  If we are not reacting to an event, the
+  ** events seen so far have already done the invalidating, and only the facts
+  ** we get no events for need to go.
+  */ 
+  
+  private CheckGutsCache prepareEnableCache(Genome genome, int checkType, boolean forEvent) {
+    EnumSet<CheckGutsCache.Fact> stale;
+    if ((enableCache_ == null) || !enableCache_.isForGenome(genome)) {
+      enableCache_ = new CheckGutsCache(appState_, genome, checkType);
+      stale = EnumSet.allOf(CheckGutsCache.Fact.class);
+    } else if (forEvent) {
+      stale = enableCache_.invalidate(checkType);
+    } else {
+      stale = CheckGutsCache.volatileFacts();
+      enableCache_.invalidate(stale);
+    }
+    actionTracker_.factsChanged(stale);
+    flowTracker_.factsChanged(stale);
+    return (enableCache_);
+  }
+  
+  /***************************************************************************
+  **
+  ** Run the enabled checks for the actions that need it
+  */ 
+  
+  private void checkActions(Map<FlowMeister.MainFlow, ChecksForEnabled> actions, CheckGutsCache cache) {
+    Iterator<ChecksForEnabled> ait = actions.values().iterator();
+    while (ait.hasNext()) {
+      ChecksForEnabled cfe = ait.next();
+      if (!actionTracker_.needsCheck(cfe)) {
+        continue;
+      }
+      cache.startRecording();
+      cfe.checkIfEnabled(cache);
+      actionTracker_.recorded(cfe, cache.stopRecording());
+    }
+    return;
+  }
+  
+  /***************************************************************************
+  **
+  ** Note the version where each enable last flipped
+  */ 
+  
+  private void stampEnableChanges(Map<FlowMeister.FlowKey, Boolean> enables) {
+    boolean bumped = false;
+    Iterator<FlowMeister.FlowKey> fkit = enables.keySet().iterator();
+    while (fkit.hasNext()) {
+      FlowMeister.FlowKey key = fkit.next();
+      Boolean enabled = enables.get(key);
+      if (!enabled.equals(lastEnables_.get(key))) {
+        if (!bumped) {
+          enableVersion_++;
+          bumped = true;
+        }
+        lastEnables_.put(key, enabled);
+        enableChangedAt_.put(key, Integer.valueOf(enableVersion_));
+      }
+    }
+    return;
+  }
+  
   ////////////////////////////////////////////////////////////////////////////
   //
   // INNER CLASSES
@@ -785,4 +910,61 @@ public class MainCommands implements SelectionChangeListener,
       return;
     }
   }
+  
+  /***************************************************************************
+  **
+  ** Remembers which facts each enable check read, and which facts have gone
+  ** stale since the last pass, so we only re-ask checks that could flip.
+  */ 
+  
+  private static class EnableTracker<K> {
+    
+    private HashMap<K, EnumSet<CheckGutsCache.Fact>> reads_;
+    private EnumSet<CheckGutsCache.Fact> stale_;
+    private Genome genome_;
+    private boolean started_;
+    
+    EnableTracker() {
+      reads_ = new HashMap<K, EnumSet<CheckGutsCache.Fact>>();
+      stale_ = EnumSet.allOf(CheckGutsCache.Fact.class);
+      started_ = false;
+    }
+    
+    void factsChanged(EnumSet<CheckGutsCache.Fact> facts) {
+      stale_.addAll(facts);
+      return;
+    }
+    
+    void startPass(Genome genome) {
+      if (!started_ || (genome != genome_)) {
+        stale_ = EnumSet.allOf(CheckGutsCache.Fact.class);
+        genome_ = genome;
+        started_ = true;
+      }
+      stale_.addAll(CheckGutsCache.volatileFacts());
+      return;
+    }
+    
+    //
+    // A check that read nothing we track is asked every time:
+    //
+    
+    boolean needsCheck(K key) {
+      EnumSet<CheckGutsCache.Fact> read = reads_.get(key);
+      if ((read == null) || read.isEmpty()) {
+        return (true);
+      }
+      return (!Collections.disjoint(read, stale_));
+    }
+    
+    void recorded(K key, EnumSet<CheckGutsCache.Fact> read) {
+      reads_.put(key, read);
+      return;
+    }
+    
+    void endPass() {
+      stale_.clear();
+      return;
+    }
+  }
 }
@@ -413,6 +413,7 @@ public class MenuSource {
     exportMenu.addItem(new XPlatAction(flom_, rMan, FlowMeister.MainFlow.EXPORT_PUBLISH));    
     exportMenu.addItem(new XPlatSeparator());        
     exportMenu.addItem(new XPlatAction(flom_, rMan, FlowMeister.MainFlow.QPCR_WRITER));
+    exportMenu.addItem(new XPlatAction(flom_, rMan, FlowMeister.MainFlow.EXPRESSION_TABLES_TO_HTML));
     exportMenu.addItem(new XPlatSeparator());        
     exportMenu.addItem(new XPlatAction(flom_, rMan, FlowMeister.MainFlow.EXPRESSION_TABLES_TO_CSV)); 
     exportMenu.addItem(new XPlatAction(flom_, rMan, FlowMeister.MainFlow.PERTURBATION_TO_CSV)); 
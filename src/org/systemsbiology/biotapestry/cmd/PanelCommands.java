@@ -309,22 +309,32 @@ public class PanelCommands  {
  
   /***************************************************************************
   **
-  ** Handle the visualization of a move (used to modify a drag layout)
+  ** Handle the visualization of a move (used to modify a drag layout).  Returns
+  ** the changes, so the drag layout can be put back with propChangesUndo().
   */
    
-  public void visualizeAMove(RunningMove rmov, Point pt0, Layout dragLayout) {  
+  public Layout.PropChange[] visualizeAMove(RunningMove rmov, Point pt0, Layout dragLayout) {  
     Layout.PadNeedsForLayout padFixups = null; 
     RunningMove.PadFixup needFixups = RunningMoveGenerator.needPadFixupsForMove(rmov);
     DataAccessContext rcx = new DataAccessContext(appState_, appState_.getGenome(), dragLayout);
     if (needFixups != RunningMove.PadFixup.NO_PAD_FIXUP) {
       padFixups = dragLayout.findAllNetModuleLinkPadRequirementsForOverlay(rcx);
     }
-    Mover.StepState.moveItem(rmov, pt0, rcx, padFixups);
+    Layout.PropChange[] retval = Mover.StepState.moveItem(rmov, pt0, rcx, padFixups);
+    if (retval == null) {
+      retval = new Layout.PropChange[0];
+    }
     if (padFixups != null) {
       Map<String, Boolean> orpho = dragLayout.orphansOnlyForAll(false);
-      dragLayout.repairAllNetModuleLinkPadRequirements(rcx, padFixups, orpho);
+      Layout.PropChange[] padLpc = dragLayout.repairAllNetModuleLinkPadRequirements(rcx, padFixups, orpho);
+      if ((padLpc != null) && (padLpc.length > 0)) {
+        Layout.PropChange[] both = new Layout.PropChange[retval.length + padLpc.length];
+        System.arraycopy(retval, 0, both, 0, retval.length);
+        System.arraycopy(padLpc, 0, both, retval.length, padLpc.length);
+        retval = both;
+      }
     }
-    return;
+    return (retval);
   }
     
   /***************************************************************************
@@ -71,6 +71,7 @@ import org.systemsbiology.biotapestry.cmd.flow.editData.TemporalInput;
 import org.systemsbiology.biotapestry.cmd.flow.editData.TimeCourse;
 import org.systemsbiology.biotapestry.cmd.flow.export.ExportBuildInstr;
 import org.systemsbiology.biotapestry.cmd.flow.export.ExportExpression;
+import org.systemsbiology.biotapestry.cmd.flow.export.ExportExpressionHTML;
 import org.systemsbiology.biotapestry.cmd.flow.export.ExportGenomeToSIF;
 import org.systemsbiology.biotapestry.cmd.flow.export.ExportPerturb;
 import org.systemsbiology.biotapestry.cmd.flow.export.ExportPerturbCSV;
@@ -208,6 +209,7 @@ public class FlowMeister {
     IMPORT_TIME_COURSE_XML,
     IMPORT_TEMPORAL_INPUT_XML,
     EXPRESSION_TABLES_TO_CSV,
+    EXPRESSION_TABLES_TO_HTML,
     PERTURBATION_TO_CSV,
     TIME_COURSE_TABLE_SETUP,
     ZOOM_TO_CURRENT_SELECTED,
@@ -753,6 +755,8 @@ public class FlowMeister {
         return (new ExportPublish(appState_)); 
       case EXPRESSION_TABLES_TO_CSV: 
         return (new ExportExpression(appState_));
+      case EXPRESSION_TABLES_TO_HTML: 
+        return (new ExportExpressionHTML(appState_));
       case PERTURBATION_TO_CSV: 
         return (new ExportPerturbCSV(appState_)); 
       case BUILD_INSTRUCTIONS_TO_CSV:
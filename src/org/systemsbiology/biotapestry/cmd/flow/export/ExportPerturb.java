@@ -23,7 +23,6 @@ package org.systemsbiology.biotapestry.cmd.flow.export;
 
 import org.systemsbiology.biotapestry.app.BTState;
 import org.systemsbiology.biotapestry.cmd.CheckGutsCache;
-import org.systemsbiology.biotapestry.perturb.PerturbationData;
 import org.systemsbiology.biotapestry.util.FileExtensionFilters;
 
 /****************************************************************************
@@ -76,8 +75,7 @@ public class ExportPerturb extends AbstractSimpleExport {
   */
   
   public boolean isEnabled(CheckGutsCache cache) {
-    PerturbationData pd = appState_.getDB().getPertData();
-    return ((pd != null) && pd.haveData());
+    return (cache.hasPerturbationData());
   }
   
   /***************************************************************************
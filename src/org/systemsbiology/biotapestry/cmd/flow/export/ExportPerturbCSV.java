@@ -22,7 +22,6 @@ package org.systemsbiology.biotapestry.cmd.flow.export;
 
 import org.systemsbiology.biotapestry.app.BTState;
 import org.systemsbiology.biotapestry.cmd.CheckGutsCache;
-import org.systemsbiology.biotapestry.perturb.PerturbationData;
 import org.systemsbiology.biotapestry.util.FileExtensionFilters;
 
 /****************************************************************************
@@ -75,8 +74,7 @@ public class ExportPerturbCSV extends AbstractSimpleExport {
   */
    
   public boolean isEnabled(CheckGutsCache cache) {
-    PerturbationData pd = appState_.getDB().getPertData();
-    return ((pd != null) && pd.haveData());
+    return (cache.hasPerturbationData());
   }
   
   /***************************************************************************
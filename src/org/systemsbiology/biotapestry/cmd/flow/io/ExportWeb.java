@@ -20,15 +20,24 @@
 package org.systemsbiology.biotapestry.cmd.flow.io;
 
 import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import javax.swing.JOptionPane;
 
@@ -39,6 +48,7 @@ import org.systemsbiology.biotapestry.cmd.flow.DialogAndInProcessCmd;
 import org.systemsbiology.biotapestry.cmd.flow.ServerControlFlowHarness;
 import org.systemsbiology.biotapestry.db.DataAccessContext;
 import org.systemsbiology.biotapestry.nav.NavTree;
+import org.systemsbiology.biotapestry.ui.ImageExporter;
 import org.systemsbiology.biotapestry.ui.SUPanel;
 import org.systemsbiology.biotapestry.ui.ViewExporter;
 import org.systemsbiology.biotapestry.util.AsynchExitRequestException;
@@ -334,6 +344,9 @@ public class ExportWeb extends AbstractControlFlow  {
     private boolean needHtmlSkeleton_;
     private List<WebPublisher.ModelScale> keyList_;
     private DataAccessContext myDacx_;
+    private ExecutorService encoders_;
+    private LinkedList<PendingImage> pending_;
+    private int maxPending_;
        
     public WebRunner(BTState appState, NamedOutputStreamSource streamSrc,
                      boolean skipRoot, String topID, 
@@ -362,6 +375,25 @@ public class ExportWeb extends AbstractControlFlow  {
       int total = keyList_.size();
       int done = 0;
       
+      //
+      // Drawing needs the current model, layout, and zoom state, so it stays on
+      // this thread, walking the keys in order.  PNG encoding of each drawn image
+      // is independent, so that is farmed out.  Encoded images are written to the
+      // named streams in key order, so the output matches the serial export.
+      //
+      
+      int numEncoders = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+      encoders_ = Executors.newFixedThreadPool(numEncoders, new ThreadFactory() {
+        private int count_ = 0;
+        public synchronized Thread newThread(Runnable runner) {
+          Thread retval = new Thread(runner, "WebExportEncoder-" + count_++);
+          retval.setDaemon(true);
+          return (retval);
+        }
+      });
+      pending_ = new LinkedList<PendingImage>();
+      maxPending_ = numEncoders * 2;
+      
       try {
         String lastKey = null;
         Iterator<WebPublisher.ModelScale> oit = keyList_.iterator();
@@ -375,6 +407,7 @@ public class ExportWeb extends AbstractControlFlow  {
           }
           done = runForScaleKey(sup, scaleKey, scaleMap, boundsMap, done, total);      
         }
+        writePending(0);
         
         if (needHtmlSkeleton_) {
           // HTML just cares about note bounds:
@@ -393,6 +426,10 @@ public class ExportWeb extends AbstractControlFlow  {
         }
       } catch (IOException ex) {
         stashException(ex);
+      } finally {
+        encoders_.shutdownNow();
+        encoders_ = null;
+        pending_ = null;
       }
       return (null);
     }
@@ -409,9 +446,10 @@ public class ExportWeb extends AbstractControlFlow  {
     private int runForScaleKey(SUPanel sup, WebPublisher.ModelScale scaleKey, Map<Integer, Double> scaleMap,
                                Map<WebPublisher.ModelScale, ViewExporter.BoundsMaps> boundsMap, int done, int total) throws AsynchExitRequestException, IOException {          
       Double zoomFacObj = scaleMap.get(new Integer(scaleKey.getSize()));
-      OutputStream namedStream = streamSrc_.getNamedStream(scaleKey.getFileName());
-      ViewExporter.BoundsMaps smallBounds = sup.exportToStream(namedStream, true, "PNG", null, zoomFacObj.doubleValue(), null, myAppState_);
-      boundsMap.put(scaleKey, smallBounds);
+      ViewExporter.RenderedExport rex = sup.renderForExport(true, zoomFacObj.doubleValue(), null, myAppState_);
+      boundsMap.put(scaleKey, rex.bounds);
+      pending_.add(new PendingImage(scaleKey, encoders_.submit(new PNGEncoder(rex.image))));
+      writePending(maxPending_);
       double currProg = ((double)++done / (double)total);
       boolean keepGoing = updateProgress((int)(currProg * 100.0));
       if (!keepGoing) {
@@ -420,6 +458,41 @@ public class ExportWeb extends AbstractControlFlow  {
       return (done);          
     }
     
+    /***************************************************************************
+    **
+    ** Write out encoded images in key order.  Blocks until no more than
+    ** maxLeft images are still outstanding; images already finished at the
+    ** head of the line are written regardless.
+    */
+    
+    private void writePending(int maxLeft) throws IOException {
+      while (!pending_.isEmpty()) {
+        PendingImage head = pending_.getFirst();
+        if ((pending_.size() <= maxLeft) && !head.encoded.isDone()) {
+          break;
+        }
+        byte[] bytes;
+        try {
+          bytes = head.encoded.get();
+        } catch (InterruptedException iex) {
+          throw new IOException(iex.getMessage());
+        } catch (ExecutionException eex) {
+          Throwable cause = eex.getCause();
+          if (cause instanceof IOException) {
+            throw (IOException)cause;
+          } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException)cause;
+          }
+          throw new IOException(eex.getMessage());
+        }
+        pending_.removeFirst();
+        OutputStream namedStream = streamSrc_.getNamedStream(head.scaleKey.getFileName());
+        namedStream.write(bytes);
+        namedStream.flush();
+      }
+      return;
+    }
+    
     private List<WebPublisher.ModelScale> buildFullKeyList() {              
       ArrayList<WebPublisher.ModelScale> retval = new ArrayList<WebPublisher.ModelScale>();     
       NavTree navTree = myDacx_.getGenomeSource().getModelHierarchy();
@@ -439,4 +512,42 @@ public class ExportWeb extends AbstractControlFlow  {
       return (null);
     }
   }
+  
+  /***************************************************************************
+  **
+  ** An image waiting on its encoder
+  */ 
+    
+  private static class PendingImage {
+    
+    WebPublisher.ModelScale scaleKey;
+    Future<byte[]> encoded;
+    
+    PendingImage(WebPublisher.ModelScale scaleKey, Future<byte[]> encoded) {
+      this.scaleKey = scaleKey;
+      this.encoded = encoded;
+    }
+  }
+  
+  /***************************************************************************
+  **
+  ** Encodes a drawn image to PNG bytes
+  */ 
+    
+  private static class PNGEncoder implements Callable<byte[]> {
+    
+    private BufferedImage image_;
+    
+    PNGEncoder(BufferedImage image) {
+      image_ = image;
+    }
+    
+    public byte[] call() throws IOException {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      ImageExporter iex = new ImageExporter();
+      iex.export(baos, image_, "PNG", null);
+      image_ = null;
+      return (baos.toByteArray());
+    }
+  }
 }
@@ -809,7 +809,8 @@ public class LoadSaveOps extends AbstractControlFlow {
     private DialogAndInProcessCmd stepToLoad() {
       File file = null;     
       if (headlessArgs_ == null) { // Note args may be non-null even though not headless (Embedded Viewer Panel)         
-        FileExtensionFilters.SimpleFilter filt = new FileExtensionFilters.SimpleFilter(appState_, ".btp", "filterName.btp");
+        FileExtensionFilters.DoubleExtensionFilter filt = 
+          new FileExtensionFilters.DoubleExtensionFilter(appState_, ".btp", ".btp" + LoadSaveSupport.GZIP_SUFFIX, "filterName.btp");
         FileChooserWrapperFactory.BuildArgs ba = 
            new FileChooserWrapperFactory.BuildArgs(FileChooserWrapperFactory.BuildArgs.DialogMode.EXISTING_IMPORT,
                                                    appState_, myLsSup_.getFprep(), filt, "LoadDirectory");
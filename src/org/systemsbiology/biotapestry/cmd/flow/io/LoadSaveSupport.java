@@ -20,8 +20,11 @@
 package org.systemsbiology.biotapestry.cmd.flow.io;
 
 import java.awt.Rectangle;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -38,6 +41,8 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import javax.swing.JOptionPane;
 import javax.swing.filechooser.FileFilter;
@@ -70,6 +75,7 @@ import org.systemsbiology.biotapestry.nav.NavTree;
 import org.systemsbiology.biotapestry.nav.RecentFilesManager;
 import org.systemsbiology.biotapestry.parser.ParserClient;
 import org.systemsbiology.biotapestry.parser.SUParser;
+import org.systemsbiology.biotapestry.parser.SaxSnapshot;
 import org.systemsbiology.biotapestry.ui.DisplayOptions;
 import org.systemsbiology.biotapestry.ui.LinkRouter;
 import org.systemsbiology.biotapestry.ui.SUPanel;
@@ -106,6 +112,16 @@ public class LoadSaveSupport {
   //
   //////////////////////////////////////////////////////////////////////////// 
 
+  public static final String GZIP_SUFFIX = ".gz";
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE CONSTANTS
+  //
+  //////////////////////////////////////////////////////////////////////////// 
+
+  private static final int IO_BUFFER_SIZE_ = 65536;
+
   ////////////////////////////////////////////////////////////////////////////
   //
   // MEMBERS
@@ -115,6 +131,39 @@ public class LoadSaveSupport {
   private BTState appState_;
   private FilePreparer fprep_;
   
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC STATIC METHODS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Answer if the file is gzipped.  We go by the magic number, not the name.
+  */
+
+  public static boolean isGzipFile(File file) throws IOException {
+    InputStream in = new FileInputStream(file);
+    try {
+      return ((in.read() == 0x1F) && (in.read() == 0x8B));
+    } finally {
+      in.close();
+    }
+  }
+
+  /***************************************************************************
+  **
+  ** Buffer a model input stream, and inflate it if it is gzipped
+  */
+
+  public static InputStream openModelStream(InputStream stream) throws IOException {
+    BufferedInputStream bis = new BufferedInputStream(stream, IO_BUFFER_SIZE_);
+    bis.mark(2);
+    boolean isGzip = (bis.read() == 0x1F) && (bis.read() == 0x8B);
+    bis.reset();
+    return ((isGzip) ? new GZIPInputStream(bis, IO_BUFFER_SIZE_) : bis);
+  }
+
   ////////////////////////////////////////////////////////////////////////////
   //
   // PUBLIC CONSTRUCTORS
@@ -251,9 +300,9 @@ public class LoadSaveSupport {
     //
     try {
        if (pEval != null) {
-         supr.parse(pEval.stream);
+         supr.parse(openModelStream(pEval.stream));
        } else {
-         supr.parse(url);
+         supr.parse(openModelStream(url.openStream()));
        }
        db.legacyIOFixup(appState_.getTopFrame());
        // If we have a file path, make it the current file
@@ -429,22 +478,40 @@ public class LoadSaveSupport {
     ModelChangeEvent mcev = new ModelChangeEvent(dacx.getDBGenomeID(),
                                                  ModelChangeEvent.MODEL_DROPPED);     
     appState_.getEventMgr().sendModelChangeEvent(mcev); 
-    dacx.drop();
-    Database db = appState_.getDB();
-    db.setWorkspaceNeedsCenter();
-    db.installLegacyTimeAxisDefinition();
-    ((GroupSettingManager)dacx.gsm).drop();
-    ArrayList<ParserClient> alist = new ArrayList<ParserClient>();
-    alist.add(new DatabaseFactory(appState_, false));
-    SUParser sup = new SUParser(appState_, alist);
+    SUParser sup = prepareForLoad(dacx);
     setCurrentFile(file);
+    InputStream toClose = null;
     try {
+      boolean loaded = false;
       if (file != null) {
-        sup.parse(file);
-      } else {
-        sup.parse(stream);
+        SaxSnapshot snap = SaxSnapshot.openCurrent(file);
+        if (snap != null) {
+          try {
+            sup.replay(snap);
+            loaded = true;
+          } catch (SaxSnapshot.DamagedSnapshotException dsex) {
+            //
+            // Part of the model went in before the damage turned up, so
+            // start over from the XML:
+            //
+            sup = prepareForLoad(dacx);
+          }
+        }
+      }
+      if (!loaded) {
+        if (stream != null) {
+          sup.parse(openModelStream(stream));
+        } else {
+          if (isGzipFile(file)) {
+            toClose = new GZIPInputStream(new BufferedInputStream(new FileInputStream(file), IO_BUFFER_SIZE_), IO_BUFFER_SIZE_);
+            sup.parse(toClose);
+          } else {
+            sup.parse(file);
+          }
+          SaxSnapshot.writeInBackground(file);
+        }
       }
-      db.legacyIOFixup((appState_.isHeadless()) ? null : appState_.getTopFrame());
+      appState_.getDB().legacyIOFixup((appState_.isHeadless()) ? null : appState_.getTopFrame());
     } catch (IOException ioe) {
       dacx.drop();
       chosenFileName = null;
@@ -454,6 +521,14 @@ public class LoadSaveSupport {
       }
       FilePreparer.FileInputResultClosure retval = fprep_.getFileInputError(ioe);
       return (retval);              
+    } finally {
+      if (toClose != null) {
+        try {
+          toClose.close();
+        } catch (IOException ioex) {
+          // Nothing to do
+        }
+      }
     }
  
     if (dacx.getGenomeSource() == null) {
@@ -470,6 +545,22 @@ public class LoadSaveSupport {
     postLoadOperations(false, dacx);
     return (new FilePreparer.FileInputResultClosure());
   }  
+  
+  /***************************************************************************
+  **
+  ** Clear out the current model and get a parser ready to load a new one
+  */ 
+    
+  private SUParser prepareForLoad(DataAccessContext dacx) {
+    dacx.drop();
+    Database db = appState_.getDB();
+    db.setWorkspaceNeedsCenter();
+    db.installLegacyTimeAxisDefinition();
+    ((GroupSettingManager)dacx.gsm).drop();
+    ArrayList<ParserClient> alist = new ArrayList<ParserClient>();
+    alist.add(new DatabaseFactory(appState_, false));
+    return (new SUParser(appState_, alist));
+  }  
    
   /***************************************************************************
   **
@@ -481,9 +572,10 @@ public class LoadSaveSupport {
     File file = null;
     if (fileName == null) { 
       ArrayList<FileFilter> filts = new ArrayList<FileFilter>();
-      filts.add(new FileExtensionFilters.SimpleFilter(appState_, ".btp", "filterName.btp"));
+      filts.add(new FileExtensionFilters.DoubleExtensionFilter(appState_, ".btp", ".btp" + GZIP_SUFFIX, "filterName.btp"));
       ArrayList<String> suffs = new ArrayList<String>();
       suffs.add("btp");
+      suffs.add("btp" + GZIP_SUFFIX);
       file = fprep_.getOrCreateWritableFileWithSuffix("LoadDirectory", filts, suffs, "btp");   
       if (file == null) {
         return (true);
@@ -497,7 +589,13 @@ public class LoadSaveSupport {
     }
 
     try {
-      saveToOutputStream(new FileOutputStream(file));
+      OutputStream stream = new FileOutputStream(file);
+      if (FileExtensionFilters.hasSuffix(file.getName(), GZIP_SUFFIX)) {
+        stream = new GZIPOutputStream(stream, IO_BUFFER_SIZE_);
+      } else {
+        stream = new BufferedOutputStream(stream, IO_BUFFER_SIZE_);
+      }
+      saveToOutputStream(stream);
       setCurrentFile(file);
       appState_.getCommonView().manageWindowTitle(file.getName());
     } catch (IOException ioe) {
@@ -514,7 +612,7 @@ public class LoadSaveSupport {
   
   void saveToOutputStream(OutputStream stream) throws IOException {
     Database db = appState_.getDB();
-    PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(stream, "UTF-8")));
+    PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(stream, "UTF-8"), IO_BUFFER_SIZE_));
     Indenter ind = new Indenter(out, Indenter.DEFAULT_INDENT);
     db.writeXML(out, ind);
     out.close();
@@ -36,7 +36,7 @@ import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
-import org.systemsbiology.biotapestry.analysis.CycleFinder;
+import org.systemsbiology.biotapestry.analysis.StrongComponents;
 import org.systemsbiology.biotapestry.analysis.GraphSearcher;
 import org.systemsbiology.biotapestry.analysis.GridElement;
 import org.systemsbiology.biotapestry.analysis.GridGrower;
@@ -4302,14 +4302,13 @@ public class LayoutRubberStamper {
   
     HashSet<String> regs = new HashSet<String>(allGroups);
     HashSet<Link> links = new HashSet<Link>();    
+    StrongComponents.CycleBreaker breaker = new StrongComponents.CycleBreaker(linkTuples.values());
     Iterator<String> xrit = linkTuples.keySet().iterator();
     while (xrit.hasNext()) {
       String linkID = xrit.next();
       Link cfl = linkTuples.get(linkID);
-      links.add(cfl);
-      CycleFinder cf = new CycleFinder(regs, links);
-      if (cf.hasACycle()) {
-        links.remove(cfl);
+      if (breaker.addIfAcyclic(cfl)) {
+        links.add(cfl);
       }
     }   
         
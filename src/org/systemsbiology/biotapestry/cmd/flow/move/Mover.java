@@ -26,6 +26,7 @@ import java.awt.Robot;
 import java.awt.geom.Point2D;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -298,6 +299,8 @@ public class Mover extends AbstractControlFlow {
     private int y;
     private RunningMove[] multiMov_;
     private Point multiMovStartPt_; 
+    private Layout multiMoveLayout_;
+    private ArrayList<Layout.PropChange> multiMoveUndo_;
     private Point2D popupPoint_;
     private Point absScreen_;
     private MoveNetModuleRegionArgs myRegArgs_;
@@ -682,16 +685,31 @@ public class Mover extends AbstractControlFlow {
         if (needFixups != RunningMove.PadFixup.NO_PAD_FIXUP) {
           padFixups = rcxO.getLayout().findAllNetModuleLinkPadRequirementsForOverlay(rcxO);
         }
-        Layout multiMoveLayout = new Layout(rcxO.getLayout());
+        //
+        // Copy the layout once, then back out the previous preview each time:
+        //
+        if (multiMoveLayout_ == null) {
+          multiMoveLayout_ = new Layout(rcxO.getLayout());
+          multiMoveUndo_ = new ArrayList<Layout.PropChange>();
+        } else {
+          multiMoveLayout_.propChangesUndo(multiMoveUndo_.toArray(new Layout.PropChange[multiMoveUndo_.size()]));
+          multiMoveUndo_.clear();
+        }
         DataAccessContext rcxM = new DataAccessContext(rcxO);
-        rcxM.setLayout(multiMoveLayout);
-        appState_.getSUPanel().setMultiMoveLayout(multiMoveLayout); 
+        rcxM.setLayout(multiMoveLayout_);
+        appState_.getSUPanel().setMultiMoveLayout(multiMoveLayout_); 
         for (int i = 0; i < multiMov_.length; i++) {
-          moveItem(multiMov_[i], pt, rcxM, padFixups);
+          Layout.PropChange[] lpc = moveItem(multiMov_[i], pt, rcxM, padFixups);
+          if (lpc != null) {
+            multiMoveUndo_.addAll(Arrays.asList(lpc));
+          }
         }
         if (padFixups != null) {
-          Map<String, Boolean> orpho = multiMoveLayout.orphansOnlyForAll(false);
-          multiMoveLayout.repairAllNetModuleLinkPadRequirements(rcxM, padFixups, orpho);
+          Map<String, Boolean> orpho = multiMoveLayout_.orphansOnlyForAll(false);
+          Layout.PropChange[] padLpc = multiMoveLayout_.repairAllNetModuleLinkPadRequirements(rcxM, padFixups, orpho);
+          if (padLpc != null) {
+            multiMoveUndo_.addAll(Arrays.asList(padLpc));
+          }
         }
       }
       appState_.getSUPanel().drawModel(false);
@@ -729,6 +747,8 @@ public class Mover extends AbstractControlFlow {
         }
         multiMov_ = null;
         multiMovStartPt_ = null;
+        multiMoveLayout_ = null;
+        multiMoveUndo_ = null;
       }
       boolean blank = true;
       if (numPC != 0) {
@@ -781,6 +801,8 @@ public class Mover extends AbstractControlFlow {
         multiMov_ =  new RunningMoveGenerator(gPre).getRunningMovesForGroup(pt, rcxT_, intersect_.getObjectID());
       }
       multiMovStartPt_ = (didWarp) ? (Point)pt.clone() : null; 
+      multiMoveLayout_ = null;
+      multiMoveUndo_ = null;
       
       DialogAndInProcessCmd retval = new DialogAndInProcessCmd(DialogAndInProcessCmd.Progress.INSTALL_MOUSE_MODE, this);
       retval.suPanelMode = (myAction_ == Action.MODULES) ? PanelCommands.Mode.MOVE_NET_MODULE : PanelCommands.Mode.MOVE_GROUP;
@@ -20,9 +20,11 @@
 
 package org.systemsbiology.biotapestry.cmd.flow.search;
 
+import java.text.MessageFormat;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -34,6 +36,8 @@ import org.systemsbiology.biotapestry.cmd.flow.RemoteRequest;
 import org.systemsbiology.biotapestry.cmd.flow.ServerControlFlowHarness;
 import org.systemsbiology.biotapestry.cmd.flow.VisualChangeResult;
 import org.systemsbiology.biotapestry.db.DataAccessContext;
+import org.systemsbiology.biotapestry.genome.DynamicInstanceProxy;
+import org.systemsbiology.biotapestry.genome.Genome;
 import org.systemsbiology.biotapestry.genome.NetOverlayOwner;
 import org.systemsbiology.biotapestry.genome.Node;
 import org.systemsbiology.biotapestry.ui.SUPanel;
@@ -41,6 +45,7 @@ import org.systemsbiology.biotapestry.ui.SourceAndTargetSelector;
 import org.systemsbiology.biotapestry.ui.dialogs.NetworkSearchDialogFactory;
 import org.systemsbiology.biotapestry.util.DataUtil;
 import org.systemsbiology.biotapestry.util.NameValuePair;
+import org.systemsbiology.biotapestry.util.ResourceManager;
 import org.systemsbiology.biotapestry.util.SimpleUserFeedback;
 import org.systemsbiology.biotapestry.util.TaggedSet;
 
@@ -57,7 +62,15 @@ public class NetworkSearch extends AbstractControlFlow {
   //
   ////////////////////////////////////////////////////////////////////////////  
   
-  public enum MatchTypes {FULL_MATCH_, PARTIAL_MATCH_};
+  public enum MatchTypes {FULL_MATCH_, PARTIAL_MATCH_, PREFIX_MATCH_, FUZZY_MATCH_};
+  
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE CONSTANTS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+  
+  private static final int MAX_RANKED_SHOWN_ = 10;
     
   ////////////////////////////////////////////////////////////////////////////
   //
@@ -109,6 +122,8 @@ public class NetworkSearch extends AbstractControlFlow {
       return (nss.queBombFindNodeMatches(qbom));
     } else if (qbom.getLabel().equals("queBombFindModuleMatches")) {
       return (nss.queBombFindModuleMatches(qbom));
+    } else if (qbom.getLabel().equals("queBombFindRankedMatches")) {
+      return (nss.queBombFindRankedMatches(qbom));
     } else {
       throw new IllegalArgumentException();
     }
@@ -188,6 +203,7 @@ public class NetworkSearch extends AbstractControlFlow {
     private String currOvr;
     private boolean linksHidden;
     private DataAccessContext rcxT_;
+    private BTState appState_;
     private String selectedID;
     private String nextStep_;
     //----------------- Result
@@ -200,6 +216,7 @@ public class NetworkSearch extends AbstractControlFlow {
     }
      
     NetworkSearchState(BTState appState, DataAccessContext dacx) {
+      appState_ = appState;
       rcxT_ = dacx;     
     }   
     
@@ -289,12 +306,19 @@ public class NetworkSearch extends AbstractControlFlow {
       search = DataUtil.normKey(search); // Moved here from the desktop dialog; but superfluous (see matches() below)
       NetworkSearch.MatchTypes matchType = (NetworkSearch.MatchTypes)qbom.getObjectArg("matchType");
    
-      HashSet<String> found = new HashSet<String>();
-      Iterator<Node> nit = rcxT_.getGenome().getAllNodeIterator();
-      while (nit.hasNext()) {
-        Node node = nit.next();
-        if (matches(search, node.getName(), matchType)) {
-          found.add(node.getID());
+      //
+      // The index covers all the static models.  Dynamic instances come and go,
+      // so they just get scanned:
+      //
+      Set<String> found = appState_.getSearchIndex().findNodes(rcxT_.getGenomeID(), search, matchType);
+      if (found == null) {
+        found = new HashSet<String>();
+        Iterator<Node> nit = rcxT_.getGenome().getAllNodeIterator();
+        while (nit.hasNext()) {
+          Node node = nit.next();
+          if (matches(search, node.getName(), matchType)) {
+            found.add(node.getID());
+          }
         }
       }
       result.setSetAnswer("found", found);
@@ -325,6 +349,55 @@ public class NetworkSearch extends AbstractControlFlow {
       return (result);
     }   
   
+    /***************************************************************************
+    **
+    ** Process a QueBomb: the best matches anywhere in the hierarchy or the data,
+    ** one per line, or an empty string if there are none.
+    */
+    
+    RemoteRequest.Result queBombFindRankedMatches(RemoteRequest qbom) {     
+      RemoteRequest.Result result = new RemoteRequest.Result(qbom);
+      String search = qbom.getStringArg("search");
+      NetworkSearch.MatchTypes matchType = (NetworkSearch.MatchTypes)qbom.getObjectArg("matchType");
+      List<NetworkSearchIndex.SearchHit> hits = appState_.getSearchIndex().search(search, matchType, rcxT_.getGenomeID());
+      
+      ResourceManager rMan = rcxT_.rMan;
+      String format = rMan.getString("nsearch.rankedHitFormat");
+      StringBuffer buf = new StringBuffer();
+      int numHits = hits.size();
+      int numShow = Math.min(numHits, MAX_RANKED_SHOWN_);
+      for (int i = 0; i < numShow; i++) {
+        NetworkSearchIndex.SearchHit hit = hits.get(i);
+        String type = rMan.getString("nsearch.hitType." + hit.type);
+        buf.append(MessageFormat.format(format, new Object[] {hit.name, type, ownerName(hit.ownerKey)}));
+        buf.append("\n");
+      }
+      if (numHits > numShow) {
+        String more = rMan.getString("nsearch.moreRankedHits");
+        buf.append(MessageFormat.format(more, new Object[] {new Integer(numHits - numShow)}));
+        buf.append("\n");
+      }
+      result.setStringAnswer("ranked", buf.toString());
+      return (result);
+    }
+    
+    /***************************************************************************
+    **
+    ** Name of the model that owns a search hit
+    */
+    
+    private String ownerName(String ownerKey) {
+      if (ownerKey == null) {
+        return (rcxT_.rMan.getString("nsearch.hitInData"));
+      }
+      Genome genome = rcxT_.getGenomeSource().getGenome(ownerKey);
+      if (genome != null) {
+        return (genome.getName());
+      }
+      DynamicInstanceProxy dip = rcxT_.getGenomeSource().getDynamicProxy(ownerKey);
+      return ((dip == null) ? ownerKey : dip.getName());
+    }
+    
     /***************************************************************************
     **
     ** Do the match
@@ -332,16 +405,7 @@ public class NetworkSearch extends AbstractControlFlow {
     */
     
     private boolean matches(String searchString, String nodeName, NetworkSearch.MatchTypes matchType) {
-    	String searchStringNorm = DataUtil.normKey(searchString);
-      String canonicalNodeName = DataUtil.normKey(nodeName);
-      switch (matchType) {
-        case FULL_MATCH_:
-          return (canonicalNodeName.equals(searchStringNorm));
-        case PARTIAL_MATCH_:
-          return (canonicalNodeName.indexOf(searchStringNorm) != -1);
-        default:
-          throw new IllegalArgumentException();
-      }
+      return (NetworkSearchIndex.matches(searchString, nodeName, matchType));
     }
     
     /***************************************************************************
@@ -0,0 +1,814 @@
+/*
+**    Copyright (C) 2003-2017 Institute for Systems Biology
+**                            Seattle, Washington, USA.
+**
+**    This library is free software; you can redistribute it and/or
+**    modify it under the terms of the GNU Lesser General Public
+**    License as published by the Free Software Foundation; either
+**    version 2.1 of the License, or (at your option) any later version.
+**
+**    This library is distributed in the hope that it will be useful,
+**    but WITHOUT ANY WARRANTY; without even the implied warranty of
+**    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+**    Lesser General Public License for more details.
+**
+**    You should have received a copy of the GNU Lesser General Public
+**    License along with this library; if not, write to the Free Software
+**    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+
+package org.systemsbiology.biotapestry.cmd.flow.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.systemsbiology.biotapestry.app.BTState;
+import org.systemsbiology.biotapestry.db.Database;
+import org.systemsbiology.biotapestry.event.EventManager;
+import org.systemsbiology.biotapestry.event.GeneralChangeEvent;
+import org.systemsbiology.biotapestry.event.GeneralChangeListener;
+import org.systemsbiology.biotapestry.event.ModelChangeEvent;
+import org.systemsbiology.biotapestry.event.ModelChangeListener;
+import org.systemsbiology.biotapestry.genome.DynamicInstanceProxy;
+import org.systemsbiology.biotapestry.genome.Genome;
+import org.systemsbiology.biotapestry.genome.GenomeInstance;
+import org.systemsbiology.biotapestry.genome.Group;
+import org.systemsbiology.biotapestry.genome.NetModule;
+import org.systemsbiology.biotapestry.genome.NetOverlayOwner;
+import org.systemsbiology.biotapestry.genome.NetworkOverlay;
+import org.systemsbiology.biotapestry.genome.Node;
+import org.systemsbiology.biotapestry.genome.Note;
+import org.systemsbiology.biotapestry.perturb.PerturbationData;
+import org.systemsbiology.biotapestry.timeCourse.TimeCourseData;
+import org.systemsbiology.biotapestry.timeCourse.TimeCourseGene;
+import org.systemsbiology.biotapestry.util.DataUtil;
+
+/****************************************************************************
+**
+** Inverted index of the names in the whole model hierarchy: nodes in every
+** genome, notes, groups and network modules, plus perturbation and time course
+** gene names.  Each genome, dynamic proxy, and the data get their own section,
+** holding whole normalized names and the individual words in them.  Within a
+** section, exact and prefix lookups are sorted map lookups, substring lookups
+** go through a table of short character runs, and fuzzy lookups go through a
+** table of single-character deletions, so no search has to look at every key.
+** Sections are marked stale from model change events and rebuilt the next
+** time somebody searches them.
+*/
+
+public class NetworkSearchIndex implements ModelChangeListener, GeneralChangeListener {
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC CONSTANTS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  public enum ItemType {NODE, NOTE, GROUP, MODULE, PERT_TARGET, PERT_SOURCE, TIME_COURSE_GENE};
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE CONSTANTS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  //
+  // Match quality, best first:
+  //
+
+  private static final int EXACT_     = 0;
+  private static final int PREFIX_    = 1;
+  private static final int SUBSTRING_ = 2;
+  private static final int FUZZY_     = 3;
+  private static final int NO_MATCH_  = 4;
+
+  //
+  // Longest character run kept for substring lookups:
+  //
+
+  private static final int GRAM_ = 3;
+
+  //
+  // Section key for the non-genome data:
+  //
+
+  private static final String DATA_SECTION_ = "{data}";
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE INSTANCE VARIABLES
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  private BTState appState_;
+  private Database indexedDB_;
+  private HashMap<String, Section> sections_;
+  private HashSet<String> staleSections_;
+  private boolean allStale_;
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC CONSTRUCTORS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Constructor
+  */
+
+  public NetworkSearchIndex(BTState appState) {
+    appState_ = appState;
+    sections_ = new HashMap<String, Section>();
+    staleSections_ = new HashSet<String>();
+    allStale_ = true;
+    EventManager em = appState.getEventMgr();
+    em.addModelChangeListener(this);
+    em.addGeneralChangeListener(this);
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC METHODS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Notify listener of model change
+  */
+
+  public synchronized void modelHasChanged(ModelChangeEvent mcev) {
+    if (allStale_) {
+      return;
+    }
+    int change = mcev.getChangeType();
+    if (change == ModelChangeEvent.UNSPECIFIED_CHANGE) {
+      allStale_ = true;
+      return;
+    }
+    String key = (mcev.isProxyKey()) ? mcev.getProxyKey() : mcev.getGenomeKey();
+    //
+    // Instance node names come from the root, so a root change touches everybody:
+    //
+    Genome root = appState_.getDB().getGenome();
+    if ((root != null) && root.getID().equals(key)) {
+      allStale_ = true;
+      return;
+    }
+    staleSections_.add(key);
+    String oldKey = mcev.getOldKey();
+    if (oldKey != null) {
+      staleSections_.add(oldKey);
+    }
+    return;
+  }
+
+  /***************************************************************************
+  **
+  ** Notify listener of model change
+  */
+
+  public void modelHasChanged(ModelChangeEvent mcev, int remaining) {
+    modelHasChanged(mcev);
+    return;
+  }
+
+  /***************************************************************************
+  **
+  ** Notify listener of general change
+  */
+
+  public synchronized void generalChangeOccurred(GeneralChangeEvent gcev) {
+    if (gcev.getChangeType() == GeneralChangeEvent.UNSPECIFIED_CHANGE) {
+      allStale_ = true;
+    } else {
+      staleSections_.add(DATA_SECTION_);
+    }
+    return;
+  }
+
+  /***************************************************************************
+  **
+  ** Find the nodes in the given genome that match the search string.  Only that
+  ** genome's section is brought up to date.  Returns null if the genome is not
+  ** indexed (e.g. a dynamic instance), in which case the caller should just scan
+  ** the nodes using matches().
+  */
+
+  public synchronized Set<String> findNodes(String genomeID, String search, NetworkSearch.MatchTypes matchType) {
+    if (DynamicInstanceProxy.isDynamicInstance(genomeID)) {
+      return (null);
+    }
+    refresh(genomeID);
+    Section section = sections_.get(genomeID);
+    if (section == null) {
+      return (null);
+    }
+    HashSet<String> retval = new HashSet<String>();
+    ArrayList<RankedHit> hits = new ArrayList<RankedHit>();
+    section.names.collect(DataUtil.normKey(search), matchType, false, hits);
+    int numHits = hits.size();
+    for (int i = 0; i < numHits; i++) {
+      SearchHit hit = hits.get(i).hit;
+      if (hit.type == ItemType.NODE) {
+        retval.add(hit.itemID);
+      }
+    }
+    return (retval);
+  }
+
+  /***************************************************************************
+  **
+  ** Search the whole hierarchy, returning a ranked list.  Exact matches beat
+  ** prefix matches, which beat substring and then fuzzy matches; whole name
+  ** matches beat single word matches; hits in the given genome come first
+  ** otherwise.
+  */
+
+  public synchronized List<SearchHit> search(String search, NetworkSearch.MatchTypes matchType, String currentKey) {
+    refresh(null);
+    String norm = DataUtil.normKey(search);
+    List<String> tokens = tokenize(search);
+    int numTok = tokens.size();
+    ArrayList<RankedHit> hits = new ArrayList<RankedHit>();
+    Iterator<Section> sit = sections_.values().iterator();
+    while (sit.hasNext()) {
+      Section section = sit.next();
+      section.names.collect(norm, matchType, false, hits);
+      for (int i = 0; i < numTok; i++) {
+        section.words.collect(tokens.get(i), matchType, true, hits);
+      }
+    }
+    //
+    // Keep the best ranking for each hit:
+    //
+    Collections.sort(hits, new RankComparator(currentKey));
+    ArrayList<SearchHit> retval = new ArrayList<SearchHit>();
+    HashSet<SearchHit> seen = new HashSet<SearchHit>();
+    int numHits = hits.size();
+    for (int i = 0; i < numHits; i++) {
+      SearchHit hit = hits.get(i).hit;
+      if (seen.add(hit)) {
+        retval.add(hit);
+      }
+    }
+    return (retval);
+  }
+
+  /***************************************************************************
+  **
+  ** Answer if the name matches the search string with the given match type.
+  */
+
+  public static boolean matches(String searchString, String name, NetworkSearch.MatchTypes matchType) {
+    return (matchQuality(DataUtil.normKey(searchString), DataUtil.normKey(name), matchType) != NO_MATCH_);
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC INNER CLASSES
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** A single indexed item.  Owner key is the genome or proxy ID, and is null for
+  ** data items.  Parent ID is the overlay ID for modules.
+  */
+
+  public static class SearchHit {
+    public ItemType type;
+    public String ownerKey;
+    public String parentID;
+    public String itemID;
+    public String name;
+
+    SearchHit(ItemType type, String ownerKey, String parentID, String itemID, String name) {
+      this.type = type;
+      this.ownerKey = ownerKey;
+      this.parentID = parentID;
+      this.itemID = itemID;
+      this.name = (name == null) ? "" : name;
+    }
+
+    @Override
+    public String toString() {
+      return (type + " " + ownerKey + " " + itemID + " " + name);
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE INSTANCE METHODS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Bring the index up to date.  With a key, only that section is built;
+  ** otherwise every section is.
+  */
+
+  private void refresh(String onlyKey) {
+    Database db = appState_.getDB();
+    if ((db != indexedDB_) || allStale_) {
+      indexedDB_ = db;
+      sections_.clear();
+      staleSections_.clear();
+      allStale_ = false;
+    } else if (!staleSections_.isEmpty()) {
+      Iterator<String> sit = staleSections_.iterator();
+      while (sit.hasNext()) {
+        sections_.remove(sit.next());
+      }
+      staleSections_.clear();
+    }
+
+    if (onlyKey != null) {
+      if (!sections_.containsKey(onlyKey)) {
+        Section section = buildSection(db, onlyKey);
+        if (section != null) {
+          sections_.put(onlyKey, section);
+        }
+      }
+      return;
+    }
+
+    //
+    // Sections come and go as models are added and dropped:
+    //
+    HashSet<String> currKeys = new HashSet<String>();
+    Genome root = db.getGenome();
+    if (root != null) {
+      currKeys.add(root.getID());
+    }
+    Iterator<GenomeInstance> iit = db.getInstanceIterator();
+    while (iit.hasNext()) {
+      currKeys.add(iit.next().getID());
+    }
+    Iterator<DynamicInstanceProxy> dit = db.getDynamicProxyIterator();
+    while (dit.hasNext()) {
+      currKeys.add(dit.next().getID());
+    }
+    currKeys.add(DATA_SECTION_);
+
+    sections_.keySet().retainAll(currKeys);
+    Iterator<String> ckit = currKeys.iterator();
+    while (ckit.hasNext()) {
+      String key = ckit.next();
+      if (!sections_.containsKey(key)) {
+        Section section = buildSection(db, key);
+        if (section != null) {
+          sections_.put(key, section);
+        }
+      }
+    }
+    return;
+  }
+
+  /***************************************************************************
+  **
+  ** Build a section of the index.  Null if there is nothing with that key.
+  */
+
+  private Section buildSection(Database db, String key) {
+    Section retval = new Section();
+    if (key.equals(DATA_SECTION_)) {
+      buildDataSection(db, retval);
+      return (retval);
+    }
+    Genome genome = db.getGenome(key);
+    if (genome != null) {
+      Iterator<Node> nit = genome.getAllNodeIterator();
+      while (nit.hasNext()) {
+        Node node = nit.next();
+        retval.addHit(new SearchHit(ItemType.NODE, key, null, node.getID(), node.getName()));
+      }
+      Iterator<Note> noit = genome.getNoteIterator();
+      while (noit.hasNext()) {
+        Note note = noit.next();
+        retval.addHit(new SearchHit(ItemType.NOTE, key, null, note.getID(), note.getName()));
+      }
+      if (genome instanceof GenomeInstance) {
+        Iterator<Group> git = ((GenomeInstance)genome).getGroupIterator();
+        while (git.hasNext()) {
+          Group group = git.next();
+          retval.addHit(new SearchHit(ItemType.GROUP, key, null, group.getID(), group.getName()));
+        }
+      }
+    } else {
+      DynamicInstanceProxy dip = db.getDynamicProxy(key);
+      if (dip == null) {
+        return (null);
+      }
+      Iterator<Note> noit = dip.getNoteIterator();
+      while (noit.hasNext()) {
+        Note note = noit.next();
+        retval.addHit(new SearchHit(ItemType.NOTE, key, null, note.getID(), note.getName()));
+      }
+      Iterator<Group> git = dip.getGroupIterator();
+      while (git.hasNext()) {
+        Group group = git.next();
+        retval.addHit(new SearchHit(ItemType.GROUP, key, null, group.getID(), group.getName()));
+      }
+    }
+    NetOverlayOwner owner = (genome != null) ? db.getOverlayOwnerFromGenomeKey(key) : db.getDynamicProxy(key);
+    if (owner != null) {
+      Iterator<NetworkOverlay> oit = owner.getNetworkOverlayIterator();
+      while (oit.hasNext()) {
+        NetworkOverlay ovr = oit.next();
+        Iterator<NetModule> mit = ovr.getModuleIterator();
+        while (mit.hasNext()) {
+          NetModule mod = mit.next();
+          retval.addHit(new SearchHit(ItemType.MODULE, key, ovr.getID(), mod.getID(), mod.getName()));
+        }
+      }
+    }
+    return (retval);
+  }
+
+  /***************************************************************************
+  **
+  ** Index the perturbation and time course names
+  */
+
+  private void buildDataSection(Database db, Section section) {
+    PerturbationData pd = db.getPertData();
+    if (pd != null) {
+      Iterator<String> tkit = pd.getTargetKeys();
+      while (tkit.hasNext()) {
+        String targKey = tkit.next();
+        section.addHit(new SearchHit(ItemType.PERT_TARGET, null, null, targKey, pd.getTarget(targKey)));
+      }
+      Iterator<String> skit = pd.getSourceNameKeys();
+      while (skit.hasNext()) {
+        String srcKey = skit.next();
+        section.addHit(new SearchHit(ItemType.PERT_SOURCE, null, null, srcKey, pd.getSourceName(srcKey)));
+      }
+    }
+    TimeCourseData tcd = db.getTimeCourseData();
+    if (tcd != null) {
+      Iterator<TimeCourseGene> git = tcd.getGenes();
+      while (git.hasNext()) {
+        TimeCourseGene gene = git.next();
+        section.addHit(new SearchHit(ItemType.TIME_COURSE_GENE, null, null, gene.getName(), gene.getName()));
+      }
+    }
+    return;
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE CLASS METHODS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Break text into normalized words
+  */
+
+  private static List<String> tokenize(String text) {
+    ArrayList<String> retval = new ArrayList<String>();
+    if (text == null) {
+      return (retval);
+    }
+    String[] toks = text.toUpperCase().split("[\\s\\p{Punct}]+");
+    for (int i = 0; i < toks.length; i++) {
+      if (!toks[i].equals("")) {
+        retval.add(toks[i]);
+      }
+    }
+    return (retval);
+  }
+
+  /***************************************************************************
+  **
+  ** How well does the normalized key match the normalized search string?
+  */
+
+  private static int matchQuality(String norm, String key, NetworkSearch.MatchTypes matchType) {
+    if (key.equals(norm)) {
+      return (EXACT_);
+    }
+    switch (matchType) {
+      case FULL_MATCH_:
+        return (NO_MATCH_);
+      case PREFIX_MATCH_:
+        return ((key.startsWith(norm)) ? PREFIX_ : NO_MATCH_);
+      case PARTIAL_MATCH_:
+        if (key.startsWith(norm)) {
+          return (PREFIX_);
+        }
+        return ((key.indexOf(norm) != -1) ? SUBSTRING_ : NO_MATCH_);
+      case FUZZY_MATCH_:
+        return ((withinOneEdit(norm, key)) ? FUZZY_ : NO_MATCH_);
+      default:
+        throw new IllegalArgumentException();
+    }
+  }
+
+  /***************************************************************************
+  **
+  ** Answer if the strings are at most one insertion, deletion, or
+  ** substitution apart.
+  */
+
+  private static boolean withinOneEdit(String str1, String str2) {
+    int len1 = str1.length();
+    int len2 = str2.length();
+    if (Math.abs(len1 - len2) > 1) {
+      return (false);
+    }
+    String shorter = (len1 <= len2) ? str1 : str2;
+    String longer = (len1 <= len2) ? str2 : str1;
+    int shortLen = shorter.length();
+    int i = 0;
+    while ((i < shortLen) && (shorter.charAt(i) == longer.charAt(i))) {
+      i++;
+    }
+    if (i == shortLen) {
+      return (true);
+    }
+    //
+    // Past the first difference, the rest has to match, either after a
+    // substitution or after skipping the extra character:
+    //
+    if (len1 == len2) {
+      return (shorter.substring(i + 1).equals(longer.substring(i + 1)));
+    } else {
+      return (shorter.substring(i).equals(longer.substring(i + 1)));
+    }
+  }
+
+  /***************************************************************************
+  **
+  ** The strings you get by dropping one character
+  */
+
+  private static Set<String> deletions(String key) {
+    HashSet<String> retval = new HashSet<String>();
+    int len = key.length();
+    for (int i = 0; i < len; i++) {
+      retval.add(key.substring(0, i) + key.substring(i + 1));
+    }
+    return (retval);
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE INNER CLASSES
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** The index for one genome, dynamic proxy, or the data
+  */
+
+  private static class Section {
+    KeyIndex names;
+    KeyIndex words;
+
+    Section() {
+      names = new KeyIndex();
+      words = new KeyIndex();
+    }
+
+    void addHit(SearchHit hit) {
+      names.add(DataUtil.normKey(hit.name), hit);
+      List<String> tokens = tokenize(hit.name);
+      int numTok = tokens.size();
+      for (int i = 0; i < numTok; i++) {
+        words.add(tokens.get(i), hit);
+      }
+      return;
+    }
+  }
+
+  /***************************************************************************
+  **
+  ** Maps normalized keys to hits.  Besides the sorted postings, every key is
+  ** filed under each run of up to GRAM_ characters it contains, and under
+  ** itself and each string it becomes with one character dropped.  A key
+  ** contains a short search string iff it is filed under it, and a longer one
+  ** only if it is filed under all of its runs.  Two strings are at most one
+  ** edit apart only if they share an entry in the drop table.
+  */
+
+  private static class KeyIndex {
+    private TreeMap<String, List<SearchHit>> postings_;
+    private HashMap<String, List<String>> grams_;
+    private HashMap<String, List<String>> drops_;
+
+    KeyIndex() {
+      postings_ = new TreeMap<String, List<SearchHit>>();
+      grams_ = new HashMap<String, List<String>>();
+      drops_ = new HashMap<String, List<String>>();
+    }
+
+    void add(String key, SearchHit hit) {
+      List<SearchHit> postings = postings_.get(key);
+      if (postings == null) {
+        postings = new ArrayList<SearchHit>();
+        postings_.put(key, postings);
+        fileKey(key);
+      }
+      postings.add(hit);
+      return;
+    }
+
+    void collect(String norm, NetworkSearch.MatchTypes matchType, boolean isWord, List<RankedHit> hits) {
+      switch (matchType) {
+        case FULL_MATCH_:
+          addRanked(postings_.get(norm), EXACT_, isWord, hits);
+          return;
+        case PREFIX_MATCH_:
+          SortedMap<String, List<SearchHit>> tail = postings_.tailMap(norm);
+          Iterator<Map.Entry<String, List<SearchHit>>> tit = tail.entrySet().iterator();
+          while (tit.hasNext()) {
+            Map.Entry<String, List<SearchHit>> entry = tit.next();
+            String key = entry.getKey();
+            if (!key.startsWith(norm)) {
+              break;
+            }
+            addRanked(entry.getValue(), (key.length() == norm.length()) ? EXACT_ : PREFIX_, isWord, hits);
+          }
+          return;
+        case PARTIAL_MATCH_:
+          collectCandidates(substringCandidates(norm), norm, matchType, isWord, hits);
+          return;
+        case FUZZY_MATCH_:
+          HashSet<String> cands = new HashSet<String>();
+          addKeys(drops_.get(norm), cands);
+          Iterator<String> dit = deletions(norm).iterator();
+          while (dit.hasNext()) {
+            addKeys(drops_.get(dit.next()), cands);
+          }
+          collectCandidates(cands, norm, matchType, isWord, hits);
+          return;
+        default:
+          throw new IllegalArgumentException();
+      }
+    }
+
+    private void fileKey(String key) {
+      HashSet<String> grams = new HashSet<String>();
+      int len = key.length();
+      for (int i = 0; i < len; i++) {
+        int maxEnd = Math.min(len, i + GRAM_);
+        for (int j = i + 1; j <= maxEnd; j++) {
+          grams.add(key.substring(i, j));
+        }
+      }
+      Iterator<String> git = grams.iterator();
+      while (git.hasNext()) {
+        fileUnder(grams_, git.next(), key);
+      }
+      fileUnder(drops_, key, key);
+      Iterator<String> dit = deletions(key).iterator();
+      while (dit.hasNext()) {
+        fileUnder(drops_, dit.next(), key);
+      }
+      return;
+    }
+
+    private void fileUnder(HashMap<String, List<String>> table, String entry, String key) {
+      List<String> keys = table.get(entry);
+      if (keys == null) {
+        keys = new ArrayList<String>();
+        table.put(entry, keys);
+      }
+      keys.add(key);
+      return;
+    }
+
+    private Collection<String> substringCandidates(String norm) {
+      int len = norm.length();
+      if (len == 0) {
+        return (postings_.keySet());
+      }
+      if (len <= GRAM_) {
+        List<String> keys = grams_.get(norm);
+        return ((keys == null) ? new ArrayList<String>() : keys);
+      }
+      //
+      // Every run has to be there; the rarest one is the shortest list to check:
+      //
+      List<String> retval = null;
+      for (int i = 0; i <= (len - GRAM_); i++) {
+        List<String> keys = grams_.get(norm.substring(i, i + GRAM_));
+        if (keys == null) {
+          return (new ArrayList<String>());
+        }
+        if ((retval == null) || (keys.size() < retval.size())) {
+          retval = keys;
+        }
+      }
+      return (retval);
+    }
+
+    private void collectCandidates(Collection<String> cands, String norm, NetworkSearch.MatchTypes matchType,
+                                   boolean isWord, List<RankedHit> hits) {
+      Iterator<String> cit = cands.iterator();
+      while (cit.hasNext()) {
+        String key = cit.next();
+        int quality = matchQuality(norm, key, matchType);
+        if (quality != NO_MATCH_) {
+          addRanked(postings_.get(key), quality, isWord, hits);
+        }
+      }
+      return;
+    }
+
+    private void addKeys(List<String> keys, Set<String> cands) {
+      if (keys != null) {
+        cands.addAll(keys);
+      }
+      return;
+    }
+
+    private void addRanked(List<SearchHit> postings, int quality, boolean isWord, List<RankedHit> hits) {
+      if (postings == null) {
+        return;
+      }
+      int numPost = postings.size();
+      for (int i = 0; i < numPost; i++) {
+        hits.add(new RankedHit(postings.get(i), quality, isWord));
+      }
+      return;
+    }
+  }
+
+  /***************************************************************************
+  **
+  ** A hit with its match quality
+  */
+
+  private static class RankedHit {
+    SearchHit hit;
+    int quality;
+    boolean isWord;
+
+    RankedHit(SearchHit hit, int quality, boolean isWord) {
+      this.hit = hit;
+      this.quality = quality;
+      this.isWord = isWord;
+    }
+  }
+
+  /***************************************************************************
+  **
+  ** Orders ranked hits
+  */
+
+  private static class RankComparator implements Comparator<RankedHit> {
+
+    private String currentKey_;
+
+    RankComparator(String currentKey) {
+      currentKey_ = currentKey;
+    }
+
+    public int compare(RankedHit rh1, RankedHit rh2) {
+      if (rh1.quality != rh2.quality) {
+        return (rh1.quality - rh2.quality);
+      }
+      if (rh1.isWord != rh2.isWord) {
+        return ((rh1.isWord) ? 1 : -1);
+      }
+      boolean here1 = (currentKey_ != null) && currentKey_.equals(rh1.hit.ownerKey);
+      boolean here2 = (currentKey_ != null) && currentKey_.equals(rh2.hit.ownerKey);
+      if (here1 != here2) {
+        return ((here1) ? -1 : 1);
+      }
+      int diff = rh1.hit.type.compareTo(rh2.hit.type);
+      if (diff != 0) {
+        return (diff);
+      }
+      diff = rh1.hit.name.compareToIgnoreCase(rh2.hit.name);
+      if (diff != 0) {
+        return (diff);
+      }
+      String own1 = (rh1.hit.ownerKey == null) ? "" : rh1.hit.ownerKey;
+      String own2 = (rh2.hit.ownerKey == null) ? "" : rh2.hit.ownerKey;
+      diff = own1.compareTo(own2);
+      if (diff != 0) {
+        return (diff);
+      }
+      return (rh1.hit.itemID.compareTo(rh2.hit.itemID));
+    }
+  }
+}
@@ -28,6 +28,7 @@ import org.systemsbiology.biotapestry.cmd.CheckGutsCache;
 import org.systemsbiology.biotapestry.cmd.flow.AbstractControlFlow;
 import org.systemsbiology.biotapestry.cmd.flow.DialogAndInProcessCmd;
 import org.systemsbiology.biotapestry.cmd.flow.ServerControlFlowHarness;
+import org.systemsbiology.biotapestry.event.EventManager;
 import org.systemsbiology.biotapestry.util.ResourceManager;
 
 /****************************************************************************
@@ -219,21 +220,32 @@ public class UndoRedoOps extends AbstractControlFlow {
         appState_.getCommonView().dropAllPendingPerturbationEdits();
       }     
       UndoManager undo = appState_.getUndoManager();
-             
-      switch (myAction_) {
-        case UNDO:      
-          if (undo.canUndo()) {
-            undo.undo();
-          }         
-          break;   
-        case REDO:         
-          if (undo.canRedo()) {
-            undo.redo();  
-          }         
-          break;           
-        default:
-          throw new IllegalStateException();
-      }     
+      
+      //
+      // Undoing a big compound edit can have each of its pieces firing off events.
+      // Hold them all and send them merged at the end:
+      //
+      
+      EventManager mgr = appState_.getEventMgr();
+      mgr.beginBatch();
+      try {
+        switch (myAction_) {
+          case UNDO:      
+            if (undo.canUndo()) {
+              undo.undo();
+            }         
+            break;   
+          case REDO:         
+            if (undo.canRedo()) {
+              undo.redo();  
+            }         
+            break;           
+          default:
+            throw new IllegalStateException();
+        }
+      } finally {
+        mgr.endBatch();
+      }
       appState_.getSUPanel().drawModel(false);
       return (new DialogAndInProcessCmd(DialogAndInProcessCmd.Progress.DONE, this));
     }
@@ -163,7 +163,7 @@ public class Zoom extends AbstractControlFlow {
        case SELECTED:
          return (cache.haveASelection());
        case CURRENT_SELECTED:
-         return (appState_.getZoomTarget().haveCurrentSelectionForBounds());  
+         return (cache.haveCurrentSelectionForBounds());  
        case CENTER_PREV_SELECTED:
        case CENTER_NEXT_SELECTED:
          return (cache.haveASelection() && cache.hasMultiSelections());
@@ -107,35 +107,35 @@ public class CompoundPreEventCmd extends BTUndoCmd {
     super.undo();
     EventManager mgr = appState_.getEventMgr();
     int num = ev_.size();
-    int numMCE = 0;
-    for (int i = 0; i < num; i++) {
-      ChangeEvent ce = ev_.get(i);
-      if (ce instanceof ModelChangeEvent) {
-        numMCE++;
-      }
-    } 
-    
+
     //
-    // For better performance, some listeners who pay no attention to
-    // the contents of a model change only care about last event:
+    // Send as a batch.  For better performance, some listeners who pay no
+    // attention to the contents of a model change only care about last event,
+    // and the batch delivery tells them how many model events remain.  If
+    // this is part of a larger batch, the events are merged into it:
     //
- 
-    for (int i = num - 1; i >= 0; i--) {
-      ChangeEvent ce = ev_.get(i);
-      if (ce instanceof GeneralChangeEvent) {
-        mgr.sendGeneralChangeEvent((GeneralChangeEvent)ce);
-      } else if (ce instanceof LayoutChangeEvent) {
-        mgr.sendLayoutChangeEvent((LayoutChangeEvent)ce);
-      } else if (ce instanceof ModelChangeEvent) {
-        mgr.sendModelChangeEvent((ModelChangeEvent)ce, --numMCE);
-      } else if (ce instanceof SelectionChangeEvent) {
-        mgr.sendSelectionChangeEvent((SelectionChangeEvent)ce);
-      } else if (ce instanceof OverlayDisplayChangeEvent) {
-        mgr.sendOverlayDisplayChangeEvent((OverlayDisplayChangeEvent)ce);
-      } else {
-        throw new IllegalArgumentException();
-      }
-    } 
+    
+    mgr.beginBatch();
+    try {
+      for (int i = num - 1; i >= 0; i--) {
+        ChangeEvent ce = ev_.get(i);
+        if (ce instanceof GeneralChangeEvent) {
+          mgr.sendGeneralChangeEvent((GeneralChangeEvent)ce);
+        } else if (ce instanceof LayoutChangeEvent) {
+          mgr.sendLayoutChangeEvent((LayoutChangeEvent)ce);
+        } else if (ce instanceof ModelChangeEvent) {
+          mgr.sendModelChangeEvent((ModelChangeEvent)ce);
+        } else if (ce instanceof SelectionChangeEvent) {
+          mgr.sendSelectionChangeEvent((SelectionChangeEvent)ce);
+        } else if (ce instanceof OverlayDisplayChangeEvent) {
+          mgr.sendOverlayDisplayChangeEvent((OverlayDisplayChangeEvent)ce);
+        } else {
+          throw new IllegalArgumentException();
+        }
+      } 
+    } finally {
+      mgr.endBatch();
+    }
     return;
   }
   
@@ -119,25 +119,7 @@ public class PropChangeCmd extends BTUndoCmd {
         continue;
       }
       Layout layout = dacx_.lSrc.getLayout(pc.layoutKey);
-      if ((pc.orig != null) || (pc.newProps != null)) {
-        layout.linkChangeUndo(pc);
-      } else if ((pc.nOrig != null) || (pc.nNewProps != null)) {
-        layout.nodeChangeUndo(pc);
-      } else if ((pc.ntOrig != null) || (pc.ntNewProps != null)) {
-        layout.noteChangeUndo(pc); 
-      } else if ((pc.grOrig != null) || (pc.grNewProps != null)) {
-        layout.groupChangeUndo(pc); 
-      } else if (pc.dLocKey != null) {
-        layout.dataPosChangeUndo(pc);
-      } else if (pc.metaOrig != null) {
-        layout.metaChangeUndo(pc);
-      } else if ((pc.nopOrig != null) || (pc.nopNew != null)) {
-        layout.overlayChangeUndo(pc);
-      } else if ((pc.nmpOrig != null) || (pc.nmpNew != null)) {
-        layout.netModChangeUndo(pc);
-      } else if ((pc.nmlpOrig != null) || (pc.nmlpNew != null) || (pc.nmlpTieLinkIDOrig != null)) {
-        layout.netModLinkChangeUndo(pc);
-      }
+      layout.propChangeUndo(pc);
     }
     return;
   }  
@@ -49,6 +49,7 @@ public class ColorGenerator {
 
   private UniqueLabeller colorLabels_;
   private Map<String, NamedColor> colors_;
+  private long revision_;
 
   private String[] geneCol_ = new String[] {  
     "EX-blue",
@@ -158,6 +159,7 @@ public class ColorGenerator {
 
   public void newColorModel() {
     buildDefaultColors();
+    revision_++;
     return;
   }  
 
@@ -173,6 +175,7 @@ public class ColorGenerator {
     //colorLabels_.setFixedPrefix("zz_newColor_0");    
     colors_.clear();
     buildDefaultColors();    
+    revision_++;
     return;
   }
 
@@ -204,8 +207,19 @@ public class ColorGenerator {
     retval.origColors = deepCopyColorMap(colors_);
     colors_ = deepCopyColorMap(namedColors);
     retval.newColors = deepCopyColorMap(namedColors);   
+    revision_++;
     return (retval);
   }
+  
+  /***************************************************************************
+  **
+  ** Get the color revision.  This goes up on every change to the colors,
+  ** undo and redo included, so it never repeats.
+  */
+  
+  public long getRevision() {
+    return (revision_);
+  }
     
   /***************************************************************************
   **
@@ -234,6 +248,7 @@ public class ColorGenerator {
   public void setColor(String itemId, NamedColor color) {
     colorLabels_.addExistingLabel(itemId);    
     colors_.put(itemId, color);
+    revision_++;
     return;
   }
   
@@ -548,6 +563,7 @@ public class ColorGenerator {
   private void colorChangeUndo(GlobalChange undo) {
     if ((undo.origColors != null) && (undo.newColors != null)) {
       colors_ = undo.origColors;
+      revision_++;
     } else {
       throw new IllegalArgumentException();
     }
@@ -562,6 +578,7 @@ public class ColorGenerator {
   private void colorChangeRedo(GlobalChange undo) {
     if ((undo.origColors != null) && (undo.newColors != null)) {
       colors_ = undo.newColors;
+      revision_++;
     } else {
       throw new IllegalArgumentException();
     }   
@@ -20,6 +20,7 @@
 package org.systemsbiology.biotapestry.db;
 
 import java.awt.font.FontRenderContext;
+import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
 
 import org.systemsbiology.biotapestry.app.BTState;
@@ -56,6 +57,7 @@ public class DataAccessContext {
   public GroupSettingSource gsm;
   
   public double pixDiam;    
+  public Rectangle2D clipRect;
   public FontManager fmgr;
   private MinimalDispOptMgr lbs_;
   public ColorResolver cRes;
@@ -152,6 +154,7 @@ public class DataAccessContext {
     this.baseGenome_ = other.baseGenome_;
     this.layout_ = other.layout_;
     this.pixDiam = other.pixDiam;
+    this.clipRect = other.clipRect;
     this.fmgr = other.fmgr;
     this.lbs_ = other.lbs_;
     this.baseFrc_ = other.baseFrc_;
@@ -176,6 +179,7 @@ public class DataAccessContext {
     this.baseGenome_ = (genomeID == null) ? null : other.getGenomeSource().getGenome(genomeID);
     this.layout_ = (layoutID == null) ? null : other.lSrc.getLayout(layoutID);
     this.pixDiam = other.pixDiam;
+    this.clipRect = other.clipRect;
     this.fmgr = other.fmgr;
     this.lbs_ = other.lbs_;
     this.baseFrc_ = other.baseFrc_;
@@ -213,6 +217,7 @@ public class DataAccessContext {
       this.layout_ = ((LocalLayoutSource)other.lSrc).getLayoutIterator().next();
     }
     this.pixDiam = other.pixDiam;
+    this.clipRect = other.clipRect;
     this.fmgr = other.fmgr;
     this.lbs_ = other.lbs_;
     this.baseFrc_ = other.baseFrc_;
@@ -237,6 +242,7 @@ public class DataAccessContext {
     this.baseGenome_ = genome;
     this.layout_ = layout;
     this.pixDiam = other.pixDiam;
+    this.clipRect = other.clipRect;
     this.fmgr = other.fmgr;
     this.lbs_ = other.lbs_;
     this.baseFrc_ = other.baseFrc_;
@@ -265,6 +271,7 @@ public class DataAccessContext {
     this.baseGenome_ = genome;
     this.layout_ = other.layout_;
     this.pixDiam = other.pixDiam;
+    this.clipRect = other.clipRect;
     this.fmgr = other.fmgr;
     this.lbs_ = other.lbs_;
     this.baseFrc_ = other.baseFrc_;
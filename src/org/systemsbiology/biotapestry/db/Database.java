@@ -1745,6 +1745,15 @@ public class Database implements GenomeSource, LayoutSource,
     return (colGen_.updateColors(namedColors));
   }
   
+  /***************************************************************************
+  **
+  ** Get the color revision
+  */
+  
+  public long getColorRevision() {
+    return (colGen_.getRevision());
+  }
+  
   /***************************************************************************
   ** 
   ** Get a unique model name
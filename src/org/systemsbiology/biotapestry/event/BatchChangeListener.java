@@ -0,0 +1,50 @@
+/*
+**    Copyright (C) 2003-2014 Institute for Systems Biology 
+**                            Seattle, Washington, USA. 
+**
+**    This library is free software; you can redistribute it and/or
+**    modify it under the terms of the GNU Lesser General Public
+**    License as published by the Free Software Foundation; either
+**    version 2.1 of the License, or (at your option) any later version.
+**
+**    This library is distributed in the hope that it will be useful,
+**    but WITHOUT ANY WARRANTY; without even the implied warranty of
+**    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+**    Lesser General Public License for more details.
+**
+**    You should have received a copy of the GNU Lesser General Public
+**    License along with this library; if not, write to the Free Software
+**    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+
+package org.systemsbiology.biotapestry.event;
+
+import java.util.List;
+
+/****************************************************************************
+**
+** Optional extra interface for model, layout, and general change listeners.
+** When a listener implements this, events raised inside an EventManager
+** batch are handed over once, as the merged change set, instead of one
+** at a time.
+*/
+
+public interface BatchChangeListener {
+  
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC INSTANCE METHODS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+  
+  /***************************************************************************
+  **
+  ** Notify listener of the merged changes from a batch, in the order they
+  ** were first raised.  Only events of the kinds the listener is registered
+  ** for are included.
+  */ 
+  
+  public void batchOfChangesOccurred(List<ChangeEvent> events);
+
+}
@@ -19,12 +19,21 @@
 
 package org.systemsbiology.biotapestry.event;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 
 /****************************************************************************
 **
 ** Event Manager.  Not currently thread-safe.
+**
+** Events sent between beginBatch() and the matching endBatch() are held
+** and delivered in order when the outermost batch ends.  Model, layout,
+** and general change events are merged by key and change type first;
+** selection and overlay display events are just held.
 */
 
 public class EventManager {
@@ -40,6 +49,9 @@ public class EventManager {
   private HashSet<SelectionChangeListener> selectListeners_;
   private HashSet<GeneralChangeListener> generalListeners_;
   private HashSet<OverlayDisplayChangeListener> overlayListeners_;
+  private int batchDepth_;
+  private ArrayList<ChangeEvent> batchEvents_;
+  private HashSet<List<Object>> batchKeys_;
   
   ////////////////////////////////////////////////////////////////////////////
   //
@@ -58,6 +70,9 @@ public class EventManager {
      selectListeners_ = new HashSet<SelectionChangeListener>();
      generalListeners_ = new HashSet<GeneralChangeListener>();    
      overlayListeners_ = new HashSet<OverlayDisplayChangeListener>(); 
+     batchDepth_ = 0;
+     batchEvents_ = new ArrayList<ChangeEvent>();
+     batchKeys_ = new HashSet<List<Object>>();
   }
  
   ////////////////////////////////////////////////////////////////////////////
@@ -66,6 +81,50 @@ public class EventManager {
   //
   ////////////////////////////////////////////////////////////////////////////
 
+  /***************************************************************************
+  ** 
+  ** Start holding events.  Batches nest; always
+  ** pair with endBatch() in a finally block.
+  */
+
+  public void beginBatch() {
+    batchDepth_++;
+    return;
+  }
+  
+  /***************************************************************************
+  ** 
+  ** End a batch.  Ending the outermost batch delivers the merged events.
+  */
+
+  public void endBatch() {
+    if (batchDepth_ == 0) {
+      throw new IllegalStateException();
+    }
+    if (--batchDepth_ > 0) {
+      return;
+    }
+    if (batchEvents_.isEmpty()) {
+      return;
+    }
+    //
+    // Listeners may send more events while we deliver; those go out directly:
+    //
+    ArrayList<ChangeEvent> merged = batchEvents_;
+    batchEvents_ = new ArrayList<ChangeEvent>();
+    batchKeys_.clear();
+    deliverBatch(merged);
+    return;
+  }
+  
+  /***************************************************************************
+  ** 
+  ** Answer if we are holding events
+  */
+
+  public boolean inBatch() {
+    return (batchDepth_ > 0);
+  }
  
   /***************************************************************************
   ** 
@@ -93,6 +152,10 @@ public class EventManager {
   */
 
   public void sendLayoutChangeEvent(LayoutChangeEvent lcev) {
+    if (batchDepth_ > 0) {
+      holdForBatch(lcev);
+      return;
+    }
     Iterator<LayoutChangeListener> lclit = layoutListeners_.iterator();
     while (lclit.hasNext()) {
       LayoutChangeListener lcl = lclit.next();
@@ -127,6 +190,10 @@ public class EventManager {
   */
 
   public void sendGeneralChangeEvent(GeneralChangeEvent gcev) {
+    if (batchDepth_ > 0) {
+      holdForBatch(gcev);
+      return;
+    }
     Iterator<GeneralChangeListener> gclit = generalListeners_.iterator();
     while (gclit.hasNext()) {
       GeneralChangeListener gcl = gclit.next();
@@ -161,6 +228,10 @@ public class EventManager {
   */
 
   public void sendModelChangeEvent(ModelChangeEvent mcev) {
+    if (batchDepth_ > 0) {
+      holdForBatch(mcev);
+      return;
+    }
     Iterator<ModelChangeListener> mclit = modelListeners_.iterator();
     while (mclit.hasNext()) {
       ModelChangeListener mcl = mclit.next();
@@ -175,6 +246,10 @@ public class EventManager {
   */
 
   public void sendModelChangeEvent(ModelChangeEvent mcev, int remaining) {
+    if (batchDepth_ > 0) {
+      holdForBatch(mcev);
+      return;
+    }
     Iterator<ModelChangeListener> mclit = modelListeners_.iterator();
     while (mclit.hasNext()) {
       ModelChangeListener mcl = mclit.next();
@@ -209,6 +284,10 @@ public class EventManager {
   */
 
   public void sendSelectionChangeEvent(SelectionChangeEvent scev) {
+    if (batchDepth_ > 0) {
+      holdForBatch(scev);
+      return;
+    }
     Iterator<SelectionChangeListener> sclit = selectListeners_.iterator();
     while (sclit.hasNext()) {
       SelectionChangeListener scl = sclit.next();
@@ -243,13 +322,176 @@ public class EventManager {
   */
 
   public void sendOverlayDisplayChangeEvent(OverlayDisplayChangeEvent odcev) {
+    if (batchDepth_ > 0) {
+      holdForBatch(odcev);
+      return;
+    }
     Iterator<OverlayDisplayChangeListener> odclit = overlayListeners_.iterator();
     while (odclit.hasNext()) {
       OverlayDisplayChangeListener odcl = odclit.next();
       odcl.overlayDisplayChangeOccurred(odcev);
     }
     return;
-  }  
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE METHODS
+  //
+  ////////////////////////////////////////////////////////////////////////////
   
+  /***************************************************************************
+  ** 
+  ** Hold an event for the batch.  Repeats of a model, layout, or general
+  ** change already being held are dropped, unless the model has since
+  ** been added or dropped.  Note that property changes are
+  ** NOT folded into unspecified changes, since CommonView treats them
+  ** differently.
+  */
+
+  private void holdForBatch(ChangeEvent cev) {
+    List<Object> mergeKey;
+    if (cev instanceof ModelChangeEvent) {
+      ModelChangeEvent mcev = (ModelChangeEvent)cev;
+      String key = (mcev.isProxyKey()) ? mcev.getProxyKey() : mcev.getGenomeKey();
+      Integer typeKey = Integer.valueOf(mcev.getChangeType());
+      String oldKey = mcev.getOldKey();
+      Boolean oldIsProxy = (oldKey == null) ? null : Boolean.valueOf(mcev.oldKeyIsProxy());
+      mergeKey = Arrays.asList(new Object[] {"M", key, Boolean.valueOf(mcev.isProxyKey()), oldKey, oldIsProxy, typeKey});
+    } else if (cev instanceof LayoutChangeEvent) {
+      LayoutChangeEvent lcev = (LayoutChangeEvent)cev;
+      mergeKey = Arrays.asList(new Object[] {"L", lcev.getLayoutKey(), Integer.valueOf(lcev.getChangeType())});
+    } else if (cev instanceof GeneralChangeEvent) {
+      GeneralChangeEvent gcev = (GeneralChangeEvent)cev;
+      mergeKey = Arrays.asList(new Object[] {"G", Integer.valueOf(gcev.getChangeType())});
+    } else if ((cev instanceof SelectionChangeEvent) || (cev instanceof OverlayDisplayChangeEvent)) {
+      batchEvents_.add(cev);
+      return;
+    } else {
+      throw new IllegalArgumentException();
+    }
+    
+    if (!batchKeys_.add(mergeKey)) {
+      return;
+    }
+    batchEvents_.add(cev);
+    
+    //
+    // Once a model is added or dropped, earlier edits to it must not swallow later
+    // ones, or listeners would see the edits in the wrong order:
+    //
+    
+    if (cev instanceof ModelChangeEvent) {
+      int type = ((ModelChangeEvent)cev).getChangeType();
+      if ((type == ModelChangeEvent.MODEL_ADDED) || (type == ModelChangeEvent.MODEL_DROPPED) ||
+          (type == ModelChangeEvent.DYNAMIC_MODEL_ADDED)) {
+        Object modelKey = mergeKey.get(1);
+        Iterator<List<Object>> bkit = batchKeys_.iterator();
+        while (bkit.hasNext()) {
+          List<Object> heldKey = bkit.next();
+          if (!heldKey.get(0).equals("M") || heldKey.equals(mergeKey)) {
+            continue;
+          }
+          Object heldModel = heldKey.get(1);
+          if ((heldModel == null) ? (modelKey == null) : heldModel.equals(modelKey)) {
+            bkit.remove();
+          }
+        }
+      }
+    }
+    return;
+  }
   
+  /***************************************************************************
+  ** 
+  ** Deliver merged batch events.  Model change listeners get the usual count
+  ** of remaining model events, so the ones that only care about the last one
+  ** run once for the whole batch.  Listeners that implement BatchChangeListener
+  ** get the whole set in one call instead.
+  */
+
+  private void deliverBatch(List<ChangeEvent> merged) {
+    
+    LinkedHashSet<Object> allListeners = new LinkedHashSet<Object>();
+    allListeners.addAll(modelListeners_);
+    allListeners.addAll(layoutListeners_);
+    allListeners.addAll(generalListeners_);
+    ArrayList<BatchChangeListener> batchListeners = new ArrayList<BatchChangeListener>();
+    Iterator<Object> alit = allListeners.iterator();
+    while (alit.hasNext()) {
+      Object listener = alit.next();
+      if (listener instanceof BatchChangeListener) {
+        batchListeners.add((BatchChangeListener)listener);
+      }
+    }
+    
+    int num = merged.size();
+    int numMCE = 0;
+    for (int i = 0; i < num; i++) {
+      if (merged.get(i) instanceof ModelChangeEvent) {
+        numMCE++;
+      }
+    }
+    
+    for (int i = 0; i < num; i++) {
+      ChangeEvent ce = merged.get(i);
+      if (ce instanceof ModelChangeEvent) {
+        ModelChangeEvent mcev = (ModelChangeEvent)ce;
+        numMCE--;
+        Iterator<ModelChangeListener> mclit = new ArrayList<ModelChangeListener>(modelListeners_).iterator();
+        while (mclit.hasNext()) {
+          ModelChangeListener mcl = mclit.next();
+          if (!(mcl instanceof BatchChangeListener)) {
+            mcl.modelHasChanged(mcev, numMCE);
+          }
+        }
+      } else if (ce instanceof LayoutChangeEvent) {
+        LayoutChangeEvent lcev = (LayoutChangeEvent)ce;
+        Iterator<LayoutChangeListener> lclit = new ArrayList<LayoutChangeListener>(layoutListeners_).iterator();
+        while (lclit.hasNext()) {
+          LayoutChangeListener lcl = lclit.next();
+          if (!(lcl instanceof BatchChangeListener)) {
+            lcl.layoutHasChanged(lcev);
+          }
+        }
+      } else if (ce instanceof GeneralChangeEvent) {
+        GeneralChangeEvent gcev = (GeneralChangeEvent)ce;
+        Iterator<GeneralChangeListener> gclit = new ArrayList<GeneralChangeListener>(generalListeners_).iterator();
+        while (gclit.hasNext()) {
+          GeneralChangeListener gcl = gclit.next();
+          if (!(gcl instanceof BatchChangeListener)) {
+            gcl.generalChangeOccurred(gcev);
+          }
+        }
+      } else if (ce instanceof SelectionChangeEvent) {
+        Iterator<SelectionChangeListener> sclit = new ArrayList<SelectionChangeListener>(selectListeners_).iterator();
+        while (sclit.hasNext()) {
+          sclit.next().selectionHasChanged((SelectionChangeEvent)ce);
+        }
+      } else {
+        Iterator<OverlayDisplayChangeListener> odclit = new ArrayList<OverlayDisplayChangeListener>(overlayListeners_).iterator();
+        while (odclit.hasNext()) {
+          odclit.next().overlayDisplayChangeOccurred((OverlayDisplayChangeEvent)ce);
+        }
+      }
+    }
+    
+    int numBatch = batchListeners.size();
+    for (int i = 0; i < numBatch; i++) {
+      BatchChangeListener bcl = batchListeners.get(i);
+      ArrayList<ChangeEvent> forListener = new ArrayList<ChangeEvent>();
+      for (int j = 0; j < num; j++) {
+        ChangeEvent ce = merged.get(j);
+        if (((ce instanceof ModelChangeEvent) && modelListeners_.contains(bcl)) ||
+            ((ce instanceof LayoutChangeEvent) && layoutListeners_.contains(bcl)) ||
+            ((ce instanceof GeneralChangeEvent) && generalListeners_.contains(bcl))) {
+          forListener.add(ce);
+        }
+      }
+      if (!forListener.isEmpty()) {
+        bcl.batchOfChangesOccurred(forListener);
+      }
+    }
+    return;
+  }
 }
@@ -24,6 +24,9 @@ import java.util.Set;
 import java.util.Map;
 import java.util.List;
 import java.util.HashSet;
+import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.Iterator;
 import java.io.PrintWriter;
 
@@ -56,6 +59,7 @@ public class DynamicGenomeInstance extends GenomeInstance {
   ////////////////////////////////////////////////////////////////////////////
 
   private boolean initialized_;
+  private boolean building_;
   private HashSet<Integer> times_;
   private String proxyID_;
   
@@ -972,6 +976,110 @@ public class DynamicGenomeInstance extends GenomeInstance {
     return;  
   }      
 
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PACKAGE-VISIBLE METHODS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Capture everything the lazy initialization reads from the proxy and the
+  ** model hierarchy.  Must be called on the EDT.  The result only depends on
+  ** the proxy, so all its instances can share it until the model changes.
+  */
+
+  BuildSnapshot snapshotForBuild() {
+    Database db = appState_.getDB();    
+    DynamicInstanceProxy dip = db.getDynamicProxy(proxyID_);
+    BuildSnapshot retval = new BuildSnapshot();
+    retval.tcd = db.getTimeCourseData();
+    retval.trd = db.getTemporalInputRangeData();
+    retval.weakLevel = appState_.getDisplayOptMgr().getDisplayOptions().getWeakExpressionLevel();
+    
+    //
+    // Group lookups need an instance holding our groups, so use a scratch one
+    // that never gets built:
+    //
+    
+    GenomeInstance parent = getVfgParent();
+    DynamicGenomeInstance scratch = new DynamicGenomeInstance(appState_, name_, id_, parent, proxyID_, imgKey_);
+    scratch.initialized_ = true;
+    Iterator<Group> grit = dip.getGroupIterator();
+    while (grit.hasNext()) {
+      Group myGroup = grit.next().copyForProxy();
+      retval.groups.add(myGroup);
+      scratch.groups_.put(myGroup.getID(), myGroup);
+    }
+    
+    Iterator<Note> nit = dip.getNoteIterator();
+    while (nit.hasNext()) {
+      retval.notes.add(new Note(nit.next()));
+    }
+    
+    Iterator<Node> it = parent.getAllNodeIterator();
+    while (it.hasNext()) {
+      NodeInstance node = (NodeInstance)it.next();
+      String nodeID = node.getID();
+      retval.nodes.put(nodeID, node.clone());
+      String baseID = GenomeItemInstance.getBaseID(nodeID);
+      if (!retval.rootNames.containsKey(baseID)) {
+        retval.rootNames.put(baseID, node.getRootName());
+      }
+      Group group = scratch.getGroupForNode(nodeID, LEGACY_MODE);
+      if (group != null) {
+        String gid = group.getID();
+        retval.groupForNode.put(nodeID, gid);
+        if (!retval.groupTrueName.containsKey(gid)) {
+          retval.groupTrueName.put(gid, group.getInheritedTrueName(scratch));
+        }
+      }
+    }
+    
+    //
+    // First designation of an extra node wins:
+    //
+    
+    GenomeInstance root = scratch.getVfgParentRoot();
+    Iterator<DynamicInstanceProxy.AddedNode> anit = dip.getAddedNodeIterator();
+    while (anit.hasNext()) {
+      DynamicInstanceProxy.AddedNode added = anit.next();
+      if (retval.addedGroup.containsKey(added.nodeName)) {
+        continue;
+      }
+      retval.addedGroup.put(added.nodeName, added.groupToUse);
+      Group rootGroup = root.getGroup(Group.getBaseID(added.groupToUse));
+      retval.addedTrueName.put(added.nodeName, (rootGroup == null) ? null : rootGroup.getName());
+    }
+    
+    ArrayList<Integer> signs = new ArrayList<Integer>();
+    Iterator<Linkage> lit = parent.getLinkageIterator();
+    while (lit.hasNext()) {
+      LinkageInstance link = (LinkageInstance)lit.next();
+      retval.links.add(new LinkageInstance(link));
+      signs.add(new Integer(link.getSign()));
+    }
+    int numLinks = signs.size();
+    retval.linkSigns = new int[numLinks];
+    for (int i = 0; i < numLinks; i++) {
+      retval.linkSigns[i] = signs.get(i).intValue();
+    }
+    return (retval);
+  }
+  
+  /***************************************************************************
+  **
+  ** Do the expensive lazy initialization now from a snapshot, e.g. on a
+  ** background thread.  Throws if the build fails, leaving us uninitialized.
+  */
+  
+  synchronized void prepareInstance(BuildSnapshot snap) {
+    if (!initialized_) {
+      buildFromSnapshot(snap);
+    }
+    return;
+  }
+
   ////////////////////////////////////////////////////////////////////////////
   //
   // PRIVATE INSTANCE METHODS
@@ -980,35 +1088,69 @@ public class DynamicGenomeInstance extends GenomeInstance {
 
   /***************************************************************************
   **
-  ** Lazy initialization
+  ** Lazy initialization.  Synchronized since the proxy may be building us on
+  ** a prefetch thread; callers on the EDT then wait for it to finish.  If that
+  ** build failed, we are still uninitialized and get built here instead.  We
+  ** build from the snapshot the proxy shares with all its instances, so only
+  ** the first instance built after a change pays for taking it.
   */
 
-  private void initialize() {
-    if (initialized_) {
+  private synchronized void initialize() {
+    if (initialized_ || building_) {
       return;
     }
-    initialized_ = true;
+    DynamicInstanceProxy dip = appState_.getDB().getDynamicProxy(proxyID_);
+    buildFromSnapshot(dip.getBuildSnapshot(this));
+    return;
+  }
+  
+  /***************************************************************************
+  **
+  ** Build from the snapshot.  We are only marked as initialized once the build
+  ** completes; a failed build is rolled back so it can be tried again.
+  */
+
+  private void buildFromSnapshot(BuildSnapshot snap) {
+    building_ = true;
+    try {
+      buildGuts(snap);
+      initialized_ = true;
+    } finally {
+      building_ = false;
+      if (!initialized_) {
+        groups_.clear();
+        notes_.clear();
+        genes_.clear();
+        nodes_.clear();
+        links_.clear();
+      }
+    }
+    return;
+  }
+  
+  /***************************************************************************
+  **
+  ** Build guts.  Only uses the snapshot and the data stores.
+  */
+
+  private void buildGuts(BuildSnapshot snap) {
     
     //
     // Do groups first, so they are available during calls below
     //
 
-    Database db = appState_.getDB();    
-    DynamicInstanceProxy dip = db.getDynamicProxy(proxyID_);
-    Iterator<Group> grit = dip.getGroupIterator();
-    while (grit.hasNext()) {
-      Group grp = grit.next();
-      Group myGroup = grp.copyForProxy();      
+    int numGrp = snap.groups.size();
+    for (int i = 0; i < numGrp; i++) {
+      Group myGroup = snap.groups.get(i).clone();      
       groups_.put(myGroup.getID(), myGroup);
     } 
     //
     // Do notes
     //
     
-    Iterator<Note> nit = dip.getNoteIterator();
-    while (nit.hasNext()) {
-      Note note = nit.next();
-      Note myNote = new Note(note);
+    int numNotes = snap.notes.size();
+    for (int i = 0; i < numNotes; i++) {
+      Note myNote = new Note(snap.notes.get(i));
       notes_.put(myNote.getID(), myNote);
     }    
   
@@ -1017,20 +1159,19 @@ public class DynamicGenomeInstance extends GenomeInstance {
     // time, and add if it is.  Do the same for each link.
     //
  
-    TimeCourseData tcd = db.getTimeCourseData();
+    TimeCourseData tcd = snap.tcd;
     if (tcd == null) {
       return;
     }
-    GenomeInstance parent = getVfgParent();
 
     HashSet<String> caught = new HashSet<String>();
-    initCore(tcd, parent, caught);
+    initCore(tcd, snap, caught);
 
-    TemporalInputRangeData trd = db.getTemporalInputRangeData();
+    TemporalInputRangeData trd = snap.trd;
     if (trd == null) {
       return;
     }
-    lazyLinkInit(parent, trd);
+    lazyLinkInit(snap, trd);
 
     //
     // FIX ME!  This misses the lack of Lim in v2 endoderm at 30 hours, because
@@ -1079,40 +1220,29 @@ public class DynamicGenomeInstance extends GenomeInstance {
   ** Lazy initialization
   */
 
-  private void initCore(TimeCourseData tcd, GenomeInstance parent, Set<String> caught) {
+  private void initCore(TimeCourseData tcd, BuildSnapshot snap, Set<String> caught) {
         
-    Database db = appState_.getDB();    
-    DynamicInstanceProxy dip = db.getDynamicProxy(proxyID_);
     TimeCourseGene.VariableLevel varLev = new TimeCourseGene.VariableLevel();
-    double weakLevel = appState_.getDisplayOptMgr().getDisplayOptions().getWeakExpressionLevel();
+    double weakLevel = snap.weakLevel;
     
-    Iterator<Node> it = parent.getAllNodeIterator();
+    Iterator<NodeInstance> it = snap.nodes.values().iterator();
     while (it.hasNext()) {
-      NodeInstance node = (NodeInstance)it.next();
-      Group group = getGroupForNode(node.getID(), LEGACY_MODE);
+      NodeInstance node = it.next();
+      String gid = snap.groupForNode.get(node.getID());
       String trueName = null;
       //
       // If the node is not in one of our groups, we may still show it if it is 
       // designated as an extra node to our proxy:
       //
-      String gid = null;      
-      if (group == null) {
-        Iterator<DynamicInstanceProxy.AddedNode> anit = dip.getAddedNodeIterator();
-        while (anit.hasNext()) {
-          DynamicInstanceProxy.AddedNode added = anit.next();
-          if (added.nodeName.equals(node.getID())) {
-            gid = added.groupToUse;
-            trueName = getVfgParentRoot().getGroup(Group.getBaseID(gid)).getName();
-            break;
-          }
-        }
+      if (gid == null) {
+        gid = snap.addedGroup.get(node.getID());
         if (gid == null) {
           continue;
           
         }
+        trueName = snap.addedTrueName.get(node.getID());
       } else {
-        gid = group.getID();
-        trueName = group.getInheritedTrueName(this);
+        trueName = snap.groupTrueName.get(gid);
       }
       List<GroupUsage> groupKeys = 
         tcd.getTimeCourseGroupKeysWithDefault(Group.getBaseID(gid), trueName); 
@@ -1128,7 +1258,7 @@ public class DynamicGenomeInstance extends GenomeInstance {
           continue;
         }
         String baseID = GenomeItemInstance.getBaseID(node.getID());        
-        List<TimeCourseData.TCMapping> dataKeys = tcd.getTimeCourseTCMDataKeysWithDefault(baseID);
+        List<TimeCourseData.TCMapping> dataKeys = tcd.getTimeCourseTCMDataKeysWithDefaultGivenName(baseID, snap.rootNames.get(baseID));
         // If no data is available, the keys list is null (6/17/04 not anymore!)
         // if (dataKeys == null) continue;
         Iterator<TimeCourseData.TCMapping> dkit = dataKeys.iterator();
@@ -1194,7 +1324,7 @@ public class DynamicGenomeInstance extends GenomeInstance {
   ** Lazy initialization
   */
 
-  private void lazyLinkInit(GenomeInstance parent, TemporalInputRangeData trd) {
+  private void lazyLinkInit(BuildSnapshot snap, TemporalInputRangeData trd) {
     //
     // Crank through all the links in the root.  Go to the target
     // of each link.  Get the mappings for that target.  For each
@@ -1205,79 +1335,59 @@ public class DynamicGenomeInstance extends GenomeInstance {
     // find a source, we need to start looking at non-cyclic
     // ancestors through slashes, bubbles, and intercells.
 
-    Database db = appState_.getDB();
-    DynamicInstanceProxy dip = db.getDynamicProxy(proxyID_);    
-    Iterator<Linkage> lit = parent.getLinkageIterator();
-    while (lit.hasNext()) {
-      LinkageInstance link = (LinkageInstance)lit.next();
+    int numLinks = snap.links.size();
+    for (int i = 0; i < numLinks; i++) {
+      LinkageInstance link = snap.links.get(i);
       String target = link.getTarget();
       String baseID = GenomeItemInstance.getBaseID(target);
-      List<String> rangeKeys = trd.getTemporalInputRangeEntryKeysWithDefault(baseID);
+      List<String> rangeKeys = trd.getTemporalInputRangeEntryKeysWithDefaultGivenName(baseID, snap.rootNames.get(baseID));
       if (rangeKeys == null) continue;
       String source = link.getSource();
       String srcBaseID = GenomeItemInstance.getBaseID(source);
-      List<String> srcKeys = trd.getTemporalInputRangeSourceKeysWithDefault(srcBaseID);
+      List<String> srcKeys = trd.getTemporalInputRangeSourceKeysWithDefaultGivenName(srcBaseID, snap.rootNames.get(srcBaseID));
       if (srcKeys == null) continue;
       // Find out the groups we are in
       // Build this into an acceptable list of target groups
-      Group group = getGroupForNode(target, LEGACY_MODE);
+      String gid = snap.groupForNode.get(target);
       //
       // If the node is not in one of our groups, we may still show it if it is 
       // designated as an extra node to our proxy:
       //
       boolean force = false;
-      String gid = null; 
       String trueName = null;      
-      if (group == null) {
-        Iterator<DynamicInstanceProxy.AddedNode> anit = dip.getAddedNodeIterator();
-        while (anit.hasNext()) {
-          DynamicInstanceProxy.AddedNode added = anit.next();
-          if (added.nodeName.equals(target)) {
-            gid = added.groupToUse;
-            trueName = getVfgParentRoot().getGroup(Group.getBaseID(gid)).getName();
-            force = true;
-            break;
-          }
-        }
+      if (gid == null) {
+        gid = snap.addedGroup.get(target);
         if (gid == null) {
           continue;
         }
+        trueName = snap.addedTrueName.get(target);
+        force = true;
       } else {
-        gid = group.getID();
-        trueName = group.getInheritedTrueName(this);        
+        trueName = snap.groupTrueName.get(gid);        
       }
       
       //
       // Do the same for extra sources:
       //
       
-      Group srcGroup = getGroupForNode(source, LEGACY_MODE);
+      String srcGid = snap.groupForNode.get(source);
       boolean forceSrc = false;
-      String srcGid = null; 
       String srcTrueName = null;      
-      if (srcGroup == null) {
-        Iterator<DynamicInstanceProxy.AddedNode> anit = dip.getAddedNodeIterator();
-        while (anit.hasNext()) {
-          DynamicInstanceProxy.AddedNode added = anit.next();
-          if (added.nodeName.equals(source)) {
-            srcGid = added.groupToUse;
-            srcTrueName = getVfgParentRoot().getGroup(Group.getBaseID(srcGid)).getName();
-            forceSrc = true;
-            break;
-          }
-        }
+      if (srcGid == null) {
+        srcGid = snap.addedGroup.get(source);
         if (srcGid == null) {
           continue;
         }
+        srcTrueName = snap.addedTrueName.get(source);
+        forceSrc = true;
       } else {
-        srcGid = srcGroup.getID();
-        srcTrueName = srcGroup.getInheritedTrueName(this);                 
+        srcTrueName = snap.groupTrueName.get(srcGid);                 
       }
 
       //
       // 10/26/06: Start checking signs
       //
-      int linkSign = link.getSign();
+      int linkSign = snap.linkSigns[i];
       
       Set<String> groupTargs = resolveGroupTargets(trd, gid, trueName);
       Set<String> srcGroupTargs = resolveGroupTargets(trd, srcGid, srcTrueName);
@@ -1325,11 +1435,11 @@ public class DynamicGenomeInstance extends GenomeInstance {
                     }
                   }
                   if (addIt) {
-                    if (!installNeededNode(parent, source, forceSrc)) {
+                    if (!installNeededNode(snap, source, forceSrc)) {
                       //System.err.println("REPORT: could not install node for " + source + " : " + source + "->" + target);
                       break;
                     }
-                    if (!installNeededNode(parent, target, force)) {
+                    if (!installNeededNode(snap, target, force)) {
                       //System.err.println("REPORT: could not install node for " + target + " : " + source + "->" + target);
                       break;
                     }                    
@@ -1402,10 +1512,10 @@ public class DynamicGenomeInstance extends GenomeInstance {
   ** Lazy initialization
   */
 
-  private boolean installNeededNode(GenomeInstance parent, String nodeID, boolean force) {  
+  private boolean installNeededNode(BuildSnapshot snap, String nodeID, boolean force) {  
     Node srcNode = this.getNode(nodeID);
     if (srcNode == null) {
-      Node parentNode = parent.getNode(nodeID);
+      Node parentNode = snap.nodes.get(nodeID);
       if (parentNode == null) {
         return (false);
       }
@@ -1416,8 +1526,8 @@ public class DynamicGenomeInstance extends GenomeInstance {
         nodes_.put(parentNode.getID(), newNode);
         return (true);
       } */
-      Group group = getGroupForNode(nodeID, LEGACY_MODE);
-      if ((group == null) && !force) {
+      String gid = snap.groupForNode.get(nodeID);
+      if ((gid == null) && !force) {
         return (false);
       }
       if (nodeType == Node.GENE) {
@@ -1432,4 +1542,35 @@ public class DynamicGenomeInstance extends GenomeInstance {
     }  
     return (true);
   }
+  
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PACKAGE INNER CLASSES
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** What the lazy initialization needs from the proxy and the model hierarchy,
+  ** captured on the EDT so the build can run on another thread.  Read-only once
+  ** captured.  The time course and temporal input data are shared, not copied;
+  ** edits to them clear the proxy cache, which discards any instance built from
+  ** a stale snapshot.
+  */
+  
+  static class BuildSnapshot {
+    ArrayList<Group> groups = new ArrayList<Group>();
+    ArrayList<Note> notes = new ArrayList<Note>();
+    LinkedHashMap<String, NodeInstance> nodes = new LinkedHashMap<String, NodeInstance>();
+    ArrayList<LinkageInstance> links = new ArrayList<LinkageInstance>();
+    int[] linkSigns;
+    HashMap<String, String> rootNames = new HashMap<String, String>();
+    HashMap<String, String> groupForNode = new HashMap<String, String>();
+    HashMap<String, String> groupTrueName = new HashMap<String, String>();
+    HashMap<String, String> addedGroup = new HashMap<String, String>();
+    HashMap<String, String> addedTrueName = new HashMap<String, String>();
+    double weakLevel;
+    TimeCourseData tcd;
+    TemporalInputRangeData trd;
+  }
 }
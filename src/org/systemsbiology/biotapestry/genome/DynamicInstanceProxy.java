@@ -21,6 +21,7 @@ package org.systemsbiology.biotapestry.genome;
 
 import java.util.Set;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.HashSet;
 import java.util.TreeSet;
@@ -33,6 +34,9 @@ import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 import java.text.MessageFormat;
 import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import org.xml.sax.Attributes;
 
@@ -69,7 +73,10 @@ public class DynamicInstanceProxy implements Cloneable, NetOverlayOwner {
   private String vfgParent_;  
   private String name_;
   private String id_;
-  private HashMap<String, DynamicGenomeInstance> cache_;
+  private InstanceCache cache_;
+  private HashMap<String, DynamicGenomeInstance> pending_;
+  private int cacheGeneration_;
+  private DynamicGenomeInstance.BuildSnapshot snapshot_;
   private HashMap<Integer, String> imageKeys_;
   private OverlayOpsSupport ovrops_;
   private int min_;
@@ -82,6 +89,18 @@ public class DynamicInstanceProxy implements Cloneable, NetOverlayOwner {
   private UniqueLabeller labels_;  
  
   private static final String KEY_PREF_ = ":";
+  
+  //
+  // Time-sliced instances are expensive to initialize and hold full copies of
+  // the expressed nodes and links, so only keep a window of them around.  The
+  // prefetch depth is how many hours ahead of the slider get built in the
+  // background:
+  //
+  
+  private static final int MAX_CACHED_INSTANCES_ = 16;
+  private static final int PREFETCH_DEPTH_ = 3;
+  
+  private static ExecutorService prefetcher_;
 
   ////////////////////////////////////////////////////////////////////////////
   //
@@ -101,7 +120,8 @@ public class DynamicInstanceProxy implements Cloneable, NetOverlayOwner {
     name_ = name;
     id_ = id;
     vfgParent_ = vfgParent.getID();
-    cache_ = new HashMap<String, DynamicGenomeInstance>();
+    cache_ = new InstanceCache();
+    pending_ = new HashMap<String, DynamicGenomeInstance>();
     groups_ = new ArrayList<Group>();
     addedNodes_ = new ArrayList<AddedNode>();
     notes_ = new ArrayList<Note>();
@@ -126,7 +146,8 @@ public class DynamicInstanceProxy implements Cloneable, NetOverlayOwner {
     name_ = name;
     id_ = id;
     vfgParent_ = vfgParent.getID();
-    cache_ = new HashMap<String, DynamicGenomeInstance>();
+    cache_ = new InstanceCache();
+    pending_ = new HashMap<String, DynamicGenomeInstance>();
     groups_ = new ArrayList<Group>();
     addedNodes_ = new ArrayList<AddedNode>();
     notes_ = new ArrayList<Note>();
@@ -163,7 +184,8 @@ public class DynamicInstanceProxy implements Cloneable, NetOverlayOwner {
     this.name_ = other.name_;
     this.id_ = other.id_;
     this.vfgParent_ = other.vfgParent_;
-    this.cache_ = new HashMap<String, DynamicGenomeInstance>();  // keep empty
+    this.cache_ = new InstanceCache();  // keep empty
+    this.pending_ = new HashMap<String, DynamicGenomeInstance>();
     
     this.groups_ = new ArrayList<Group>();
     int numGrp = other.groups_.size();
@@ -324,7 +346,10 @@ public class DynamicInstanceProxy implements Cloneable, NetOverlayOwner {
   public DynamicInstanceProxy clone() { 
     try {
       DynamicInstanceProxy retval = (DynamicInstanceProxy)super.clone();
-      retval.cache_ = new HashMap<String, DynamicGenomeInstance>();  // keep empty
+      retval.cache_ = new InstanceCache();  // keep empty
+      retval.pending_ = new HashMap<String, DynamicGenomeInstance>();
+      retval.cacheGeneration_ = 0;
+      retval.snapshot_ = null;
 
       retval.groups_ = new ArrayList<Group>();
       int numGrp = this.groups_.size();
@@ -1848,11 +1873,15 @@ public class DynamicInstanceProxy implements Cloneable, NetOverlayOwner {
   
   /***************************************************************************
   **
-  ** Clear all DynamicGenomeInstances from the cache
+  ** Clear all DynamicGenomeInstances from the cache.  Prefetches still running
+  ** in the background are orphaned and will not be published.
   */
   
-  public void clearCache() {
+  public synchronized void clearCache() {
     cache_.clear();
+    pending_.clear();
+    snapshot_ = null;
+    cacheGeneration_++;
     return;
   }
 
@@ -1873,50 +1902,72 @@ public class DynamicInstanceProxy implements Cloneable, NetOverlayOwner {
   ** Return a DynamicGenomeInstance for the given key.
   */
   
-  public DynamicGenomeInstance getProxiedInstance(String key) {
+  public synchronized DynamicGenomeInstance getProxiedInstance(String key) {
     //
-    // See if it is in our cache:
+    // See if it is in our cache.  If it is still being prefetched, hand that
+    // one out; its lazy initialization will wait for the background build to
+    // finish instead of starting another one:
     //
     DynamicGenomeInstance retval = cache_.get(key);
     if (retval != null) {
       return (retval);
     }
-    GenomeInstance parent = getVfgParent();  
-    //
-    // Figure out from the key what time this is for, and build it
-    // accordingly.
-    //
-    String ti = key.substring(key.lastIndexOf(":") + 1);
-    if (ti.equals("ALL")) {
-      Iterator<Integer> imgKit = imageKeys_.keySet().iterator();
-      String imgKey = (imgKit.hasNext()) ? imageKeys_.get(imgKit.next()) : null;
-      retval = new DynamicGenomeInstance(appState_, name_, key, parent, id_, imgKey);
-      retval.setTime(getSortedTimes());
-    } else {
-      int time;
-      try {
-        time = Integer.parseInt(ti);
-      } catch (NumberFormatException nfex) {
-        System.err.println(key + " " + ti);      
-        throw new IllegalArgumentException();
-      }
-      TimeAxisDefinition tad = appState_.getDB().getTimeAxisDefinition();
-      boolean namedStages = tad.haveNamedStages();
-      String displayUnits = tad.unitDisplayString(); 
-      String stageName = (namedStages) ? tad.getNamedStageForIndex(time).name : Integer.toString(time);
-      String format = (tad.unitsAreASuffix()) ? "dgi.titleFormat" : "dgi.titleFormatPrefix";
-      String dgiTitle = MessageFormat.format(appState_.getRMan().getString(format), 
-                                             new Object[] {name_, stageName, displayUnits});
-      String imgKey = imageKeys_.get(new Integer(time));                        
-      retval = new DynamicGenomeInstance(appState_, dgiTitle, key, parent, id_, imgKey);
-      HashSet<Integer> singleton = new HashSet<Integer>();
-      singleton.add(new Integer(time));
-      retval.setTime(singleton);
+    retval = pending_.remove(key);
+    if (retval == null) {
+      retval = buildProxiedInstance(key);
     }
     cache_.put(key, retval);
     return (retval);
   } 
-
+  
+  /***************************************************************************
+  **
+  ** Start building the instances for the next few times in the given direction
+  ** (+1 or -1) from the given time on a background thread.  Finished instances
+  ** get published to the cache; anything else is left alone.
+  */
+  
+  public synchronized void prefetchAround(int time, int direction) {
+    if (isSingle_ || (direction == 0)) {
+      return;
+    }
+    int step = (direction > 0) ? 1 : -1;
+    for (int i = 0; i <= PREFETCH_DEPTH_; i++) {
+      int nextTime = time + (i * step);
+      if ((nextTime < min_) || (nextTime > max_)) {
+        break;
+      }
+      String key = getKeyForTime(nextTime, true);
+      if (cache_.containsKey(key) || pending_.containsKey(key)) {
+        continue;
+      }
+      //
+      // Construction is cheap and pulls from the resource manager and time axis,
+      // so do it here.  So is getting the shared snapshot of the model that the
+      // build reads.  Only the expensive lazy initialization goes to the worker:
+      //
+      DynamicGenomeInstance dgi = buildProxiedInstance(key);
+      DynamicGenomeInstance.BuildSnapshot snap = getBuildSnapshot(dgi);
+      pending_.put(key, dgi);
+      getPrefetcher().execute(new Prefetch(key, dgi, snap, cacheGeneration_));
+    }
+    return;
+  }
+  
+  /***************************************************************************
+  **
+  ** Get the snapshot of the model that our instances build from, taking it
+  ** now if we do not have one.  All our instances share it until the next
+  ** clear.  Must be called on the EDT.
+  */
+  
+  synchronized DynamicGenomeInstance.BuildSnapshot getBuildSnapshot(DynamicGenomeInstance forInstance) {
+    if (snapshot_ == null) {
+      snapshot_ = forInstance.snapshotForBuild();
+    }
+    return (snapshot_);
+  }
+  
   /***************************************************************************
   **
   ** Get the name of a proxied instance
@@ -2321,6 +2372,77 @@ public class DynamicInstanceProxy implements Cloneable, NetOverlayOwner {
     public UserTreePathChange[] pathChanges; 
     public DatabaseChange dc;
   }    
+  
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE INNER CLASSES
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Access-ordered cache that drops the least recently used instance once
+  ** it gets full
+  **
+  */
+  
+  private static class InstanceCache extends LinkedHashMap<String, DynamicGenomeInstance> {
+    
+    private static final long serialVersionUID = 1L;
+    
+    InstanceCache() {
+      super(MAX_CACHED_INSTANCES_ + 1, 0.75F, true);
+    }
+    
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, DynamicGenomeInstance> eldest) {
+      return (size() > MAX_CACHED_INSTANCES_);
+    }
+  }
+  
+  /***************************************************************************
+  **
+  ** Background initialization of a single prefetched instance
+  **
+  */
+  
+  private class Prefetch implements Runnable {
+    
+    private String key_;
+    private DynamicGenomeInstance dgi_;
+    private DynamicGenomeInstance.BuildSnapshot snap_;
+    private int generation_;
+    
+    Prefetch(String key, DynamicGenomeInstance dgi, DynamicGenomeInstance.BuildSnapshot snap, int generation) {
+      key_ = key;
+      dgi_ = dgi;
+      snap_ = snap;
+      generation_ = generation;
+    }
+    
+    public void run() {
+      //
+      // Don't bother if the cache has been cleared since we were queued:
+      //
+      synchronized (DynamicInstanceProxy.this) {
+        if (generation_ != cacheGeneration_) {
+          return;
+        }
+      }
+      boolean ok = true;
+      try {
+        dgi_.prepareInstance(snap_);
+      } catch (RuntimeException rex) {
+        //
+        // The instance is left uninitialized, so if the EDT has already claimed
+        // it, it gets rebuilt there on first use.  Otherwise just drop it.
+        //
+        ok = false;
+      }
+      publishPrefetch(key_, dgi_, generation_, ok);
+      return;
+    }
+  }
  
   ////////////////////////////////////////////////////////////////////////////
   //
@@ -2510,6 +2632,84 @@ public class DynamicInstanceProxy implements Cloneable, NetOverlayOwner {
   //
   //////////////////////////////////////////////////////////////////////////// 
   
+  /***************************************************************************
+  **
+  ** Build a new (uninitialized) DynamicGenomeInstance for the given key.
+  */
+  
+  private DynamicGenomeInstance buildProxiedInstance(String key) {
+    DynamicGenomeInstance retval;
+    GenomeInstance parent = getVfgParent();  
+    //
+    // Figure out from the key what time this is for, and build it
+    // accordingly.
+    //
+    String ti = key.substring(key.lastIndexOf(":") + 1);
+    if (ti.equals("ALL")) {
+      Iterator<Integer> imgKit = imageKeys_.keySet().iterator();
+      String imgKey = (imgKit.hasNext()) ? imageKeys_.get(imgKit.next()) : null;
+      retval = new DynamicGenomeInstance(appState_, name_, key, parent, id_, imgKey);
+      retval.setTime(getSortedTimes());
+    } else {
+      int time;
+      try {
+        time = Integer.parseInt(ti);
+      } catch (NumberFormatException nfex) {
+        System.err.println(key + " " + ti);      
+        throw new IllegalArgumentException();
+      }
+      TimeAxisDefinition tad = appState_.getDB().getTimeAxisDefinition();
+      boolean namedStages = tad.haveNamedStages();
+      String displayUnits = tad.unitDisplayString(); 
+      String stageName = (namedStages) ? tad.getNamedStageForIndex(time).name : Integer.toString(time);
+      String format = (tad.unitsAreASuffix()) ? "dgi.titleFormat" : "dgi.titleFormatPrefix";
+      String dgiTitle = MessageFormat.format(appState_.getRMan().getString(format), 
+                                             new Object[] {name_, stageName, displayUnits});
+      String imgKey = imageKeys_.get(new Integer(time));                        
+      retval = new DynamicGenomeInstance(appState_, dgiTitle, key, parent, id_, imgKey);
+      HashSet<Integer> singleton = new HashSet<Integer>();
+      singleton.add(new Integer(time));
+      retval.setTime(singleton);
+    }
+    return (retval);
+  }
+  
+  /***************************************************************************
+  **
+  ** Get the single daemon thread shared by all proxies for prefetching
+  */
+  
+  private static synchronized ExecutorService getPrefetcher() {
+    if (prefetcher_ == null) {
+      prefetcher_ = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable runner) {
+          Thread retval = new Thread(runner, "DynamicInstancePrefetch");
+          retval.setDaemon(true);
+          retval.setPriority(Thread.MIN_PRIORITY);
+          return (retval);
+        }
+      });
+    }
+    return (prefetcher_);
+  }
+  
+  /***************************************************************************
+  **
+  ** Publish a prefetched instance, unless the cache has been cleared or the
+  ** instance has been claimed in the meantime.
+  */
+  
+  private synchronized void publishPrefetch(String key, DynamicGenomeInstance dgi, int generation, boolean ok) {
+    if ((generation != cacheGeneration_) || (pending_.get(key) != dgi)) {
+      return;
+    }
+    pending_.remove(key);
+    if (ok) {
+      cache_.put(key, dgi);
+    }
+    return;
+  }
+  
   /***************************************************************************
   **
   ** Write the groups to XML
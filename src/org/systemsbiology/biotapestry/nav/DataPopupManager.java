@@ -23,6 +23,7 @@ package org.systemsbiology.biotapestry.nav;
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.swing.JFrame;
@@ -45,6 +46,8 @@ import org.systemsbiology.biotapestry.cmd.flow.FlowMeister.OtherFlowKey;
 import org.systemsbiology.biotapestry.db.Database;
 import org.systemsbiology.biotapestry.genome.Genome;
 import org.systemsbiology.biotapestry.genome.Node;
+import org.systemsbiology.biotapestry.event.BatchChangeListener;
+import org.systemsbiology.biotapestry.event.ChangeEvent;
 import org.systemsbiology.biotapestry.event.EventManager;
 import org.systemsbiology.biotapestry.embedded.ExternalInventoryItem;
 import org.systemsbiology.biotapestry.event.GeneralChangeListener;
@@ -65,7 +68,8 @@ import org.systemsbiology.biotapestry.ui.dialogs.UsageFrameFactory;
 ** same functions for selection windows.
 */
 
-public class DataPopupManager implements GeneralChangeListener, ModelChangeListener, SelectionChangeListener {
+public class DataPopupManager implements GeneralChangeListener, ModelChangeListener, 
+                                         SelectionChangeListener, BatchChangeListener {
 
   ////////////////////////////////////////////////////////////////////////////
   //
@@ -133,19 +137,43 @@ public class DataPopupManager implements GeneralChangeListener, ModelChangeListe
   */ 
   
   public void modelHasChanged(ModelChangeEvent mcev) { 
-    int change = mcev.getChangeType();
-    if (change == ModelChangeEvent.UNSPECIFIED_CHANGE) {
+    if (dropsEverything(mcev)) {
+      fullClear();
+    } else if (needsRefresh(mcev)) {
       fullRefresh();
-    } else if (change == ModelChangeEvent.MODEL_DROPPED) {
-      // This means the whole thing is gone:
-      if (mcev.getGenomeKey().equals(appState_.getDB().getGenome().getID())) {
-        fullClear();
-      } else {
-        fullRefresh();
+    }
+    return;
+  }
+  
+  /***************************************************************************
+  **
+  ** Notify listener of the merged changes from a batch.  Every open window
+  ** gets rebuilt by a refresh, so we only need to do it once, after the last
+  ** clear if there was one.
+  */ 
+  
+  public void batchOfChangesOccurred(List<ChangeEvent> events) {
+    boolean clear = false;
+    boolean refresh = false;
+    int num = events.size();
+    for (int i = 0; i < num; i++) {
+      ChangeEvent ce = events.get(i);
+      if (ce instanceof GeneralChangeEvent) {
+        refresh = true;
+      } else if (ce instanceof ModelChangeEvent) {
+        ModelChangeEvent mcev = (ModelChangeEvent)ce;
+        if (dropsEverything(mcev)) {
+          clear = true;
+          refresh = false;
+        } else if (needsRefresh(mcev)) {
+          refresh = true;
+        }
       }
-    } else if (change == ModelChangeEvent.PROPERTY_CHANGE) {
-      fullRefresh();
-    } else if (change == ModelChangeEvent.MODEL_ADDED) {
+    }
+    if (clear) {
+      fullClear();
+    }
+    if (refresh) {
       fullRefresh();
     }
     return;
@@ -531,6 +559,29 @@ public class DataPopupManager implements GeneralChangeListener, ModelChangeListe
   //
   ////////////////////////////////////////////////////////////////////////////
 
+  /***************************************************************************
+  **
+  ** Answer if the model change means the whole thing is gone
+  */ 
+  
+  private boolean dropsEverything(ModelChangeEvent mcev) {
+    return ((mcev.getChangeType() == ModelChangeEvent.MODEL_DROPPED) &&
+            mcev.getGenomeKey().equals(appState_.getDB().getGenome().getID()));
+  }
+  
+  /***************************************************************************
+  **
+  ** Answer if the model change means the open windows need a refresh
+  */ 
+  
+  private boolean needsRefresh(ModelChangeEvent mcev) {
+    int change = mcev.getChangeType();
+    return ((change == ModelChangeEvent.UNSPECIFIED_CHANGE) ||
+            (change == ModelChangeEvent.MODEL_DROPPED) ||
+            (change == ModelChangeEvent.PROPERTY_CHANGE) ||
+            (change == ModelChangeEvent.MODEL_ADDED));
+  }
+
   /***************************************************************************
   **
   ** Build the data window
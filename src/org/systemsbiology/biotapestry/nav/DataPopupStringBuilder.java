@@ -23,7 +23,10 @@ package org.systemsbiology.biotapestry.nav;
 import java.io.PrintWriter;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Future;
 
 import javax.swing.JEditorPane;
 import javax.swing.SwingUtilities;
@@ -41,6 +44,7 @@ import org.systemsbiology.biotapestry.plugin.InternalDataDisplayPlugIn;
 import org.systemsbiology.biotapestry.plugin.InternalLinkDataDisplayPlugIn;
 import org.systemsbiology.biotapestry.plugin.InternalNodeDataDisplayPlugIn;
 import org.systemsbiology.biotapestry.plugin.PlugInManager;
+import org.systemsbiology.biotapestry.plugin.PluginCallbackRunner;
 import org.systemsbiology.biotapestry.plugin.PluginCallbackWorker;
 import org.systemsbiology.biotapestry.plugin.PluginCallbackWorkerClient;
 
@@ -61,7 +65,8 @@ public class DataPopupStringBuilder implements PluginCallbackWorkerClient {
   private TextTarget textTarg_;
   private ExternalInventoryItem.BuilderArgs args_;
   private ArrayList<DrawBlockData> drawBlocks_;
-  private ArrayList<Thread> threadList_;
+  private ArrayList<PendingWorker> pendingList_;
+  private ArrayList<Future<?>> running_;
   private String desc_;
   private boolean bigScreen_;
   private boolean discarded_;
@@ -85,7 +90,8 @@ public class DataPopupStringBuilder implements PluginCallbackWorkerClient {
     textTarg_ = textTarg;
     args_ = args;
     drawBlocks_ = new ArrayList<DrawBlockData>();
-    threadList_ = new ArrayList<Thread>();
+    pendingList_ = new ArrayList<PendingWorker>();
+    running_ = new ArrayList<Future<?>>();
     bigScreen_ = appState_.getDisplayOptMgr().isForBigScreen();  // legacy use only!
     discarded_ = false;
   }
@@ -98,12 +104,18 @@ public class DataPopupStringBuilder implements PluginCallbackWorkerClient {
 
   /***************************************************************************
   **
-  ** Discard the builder; disconnect it even if threads are pending
+  ** Discard the builder; disconnect it and cancel any pending workers
   */ 
     
-  public void discardBuilder() {
+  public synchronized void discardBuilder() {
     discarded_ = true;
     textTarg_ = null;
+    int numRun = running_.size();
+    for (int i = 0; i < numRun; i++) {
+      running_.get(i).cancel(true);
+    }
+    running_.clear();
+    pendingList_.clear();
     return;
   }
  
@@ -159,16 +171,21 @@ public class DataPopupStringBuilder implements PluginCallbackWorkerClient {
  
   /***************************************************************************
   **
-  ** Kickoff background retrieval. Once threads are used, we toss them.
+  ** Kickoff background retrieval on the shared plugin worker threads. Once
+  ** workers are queued, we toss them.
   */ 
   
-  public void kickOff() {
-    int numBlocks = threadList_.size();
+  public synchronized void kickOff() {
+    if (discarded_) {
+      return;
+    }
+    PluginCallbackRunner runner = PluginCallbackRunner.getRunner();
+    int numBlocks = pendingList_.size();
     for (int i = 0; i < numBlocks; i++) {
-      Thread nextThread = threadList_.get(i);
-      nextThread.start();
+      PendingWorker pw = pendingList_.get(i);
+      running_.add(runner.submit(pw.worker, pw.idKey, this, pw.cacheKey));
     }
-    threadList_.clear();
+    pendingList_.clear();
     return;
   } 
 
@@ -271,9 +288,7 @@ public class DataPopupStringBuilder implements PluginCallbackWorkerClient {
         drawBlocks_.add(new DrawBlockData(ilddpi.getDataAsHTML(args_.genomeKey, args_.itemID), !isPending));
         if (isPending) {
           PluginCallbackWorker pcw = ilddpi.getCallbackWorker(args_.genomeKey, args_.itemID);
-          pcw.setIDAndClient(Integer.toString(count), this);
-          Thread pcwThread = new Thread(pcw);
-          threadList_.add(pcwThread);
+          pendingList_.add(new PendingWorker(pcw, Integer.toString(count), null));
         }
       } else {
         if (afel == null) {
@@ -281,14 +296,23 @@ public class DataPopupStringBuilder implements PluginCallbackWorkerClient {
         }
         ExternalLinkDataDisplayPlugIn elddpi = (ExternalLinkDataDisplayPlugIn)ddpi;
         boolean isPending = elddpi.haveCallbackWorker();
+        List<Object> cacheKey = null;
+        if (isPending) {
+          cacheKey = Arrays.asList(new Object[] {elddpi, Arrays.asList(afel.modelNameChain), afel.srcNodeName, afel.srcRegionName, 
+                                                 afel.trgNodeName, afel.trgRegionName});
+          String cached = PluginCallbackRunner.getRunner().getCachedResult(cacheKey);
+          if (cached != null) {
+            drawBlocks_.add(new DrawBlockData(cached, true));
+            count++;
+            continue;
+          }
+        }
         drawBlocks_.add(new DrawBlockData(elddpi.getDataAsHTML(afel.modelNameChain, afel.srcNodeName, afel.srcRegionName, 
                                                                afel.trgNodeName, afel.trgRegionName), !isPending));
         if (isPending) {
           PluginCallbackWorker pcw = elddpi.getCallbackWorker(afel.modelNameChain, afel.srcNodeName, afel.srcRegionName, 
                                                                                    afel.trgNodeName, afel.trgRegionName);
-          pcw.setIDAndClient(Integer.toString(count), this);
-          Thread pcwThread = new Thread(pcw);
-          threadList_.add(pcwThread);  
+          pendingList_.add(new PendingWorker(pcw, Integer.toString(count), cacheKey));
         }
       }
       count++;
@@ -326,9 +350,7 @@ public class DataPopupStringBuilder implements PluginCallbackWorkerClient {
           drawBlocks_.add(new DrawBlockData(inddpi.getDataAsHTML(args_.genomeKey, args_.itemID), !isPending));
           if (isPending) {
             PluginCallbackWorker pcw = inddpi.getCallbackWorker(args_.genomeKey, args_.itemID);
-            pcw.setIDAndClient(Integer.toString(count), this);
-            Thread pcwThread = new Thread(pcw);
-            threadList_.add(pcwThread);  
+            pendingList_.add(new PendingWorker(pcw, Integer.toString(count), null));
           }
         }
       } else {
@@ -340,12 +362,20 @@ public class DataPopupStringBuilder implements PluginCallbackWorkerClient {
         } else {
           ExternalNodeDataDisplayPlugIn enddpi = (ExternalNodeDataDisplayPlugIn)ddpi;
           boolean isPending = enddpi.haveCallbackWorker();
+          List<Object> cacheKey = null;
+          if (isPending) {
+            cacheKey = Arrays.asList(new Object[] {enddpi, Arrays.asList(afen.modelNameChain), afen.nodeDisplay, afen.regionName});
+            String cached = PluginCallbackRunner.getRunner().getCachedResult(cacheKey);
+            if (cached != null) {
+              drawBlocks_.add(new DrawBlockData(cached, true));
+              count++;
+              continue;
+            }
+          }
           drawBlocks_.add(new DrawBlockData(enddpi.getDataAsHTML(afen.modelNameChain, afen.nodeDisplay, afen.regionName), !isPending));
           if (isPending) {
             PluginCallbackWorker pcw = enddpi.getCallbackWorker(afen.modelNameChain, afen.nodeDisplay, afen.regionName);
-            pcw.setIDAndClient(Integer.toString(count), this);
-            Thread pcwThread = new Thread(pcw);
-            threadList_.add(pcwThread);  
+            pendingList_.add(new PendingWorker(pcw, Integer.toString(count), cacheKey));
           }
         }
       }
@@ -560,6 +590,25 @@ public class DataPopupStringBuilder implements PluginCallbackWorkerClient {
     
   } 
   
+  /***************************************************************************
+  ** 
+  ** A worker waiting for kickoff. External plugin results get cached; internal
+  ** ones depend on the model, so they do not.
+  */ 
+   
+  private static class PendingWorker {
+      
+    PluginCallbackWorker worker;
+    String idKey;
+    List<Object> cacheKey;
+      
+    PendingWorker(PluginCallbackWorker worker, String idKey, List<Object> cacheKey) {
+      this.worker = worker;
+      this.idKey = idKey;
+      this.cacheKey = cacheKey;
+    }
+  } 
+  
   /***************************************************************************
   ** 
   ** Draw Blocks need more than just strings now
@@ -179,6 +179,23 @@ public class SUParser extends DefaultHandler {
     }
   }  
 
+  /***************************************************************************
+  ** 
+  ** Feed a snapshot through the clients instead of parsing XML.  A damaged
+  ** snapshot throws a SaxSnapshot.DamagedSnapshotException.
+  */
+
+  public void replay(SaxSnapshot snapshot) throws IOException {
+    try {
+      snapshot.replay(this);
+    } catch (SAXException e) {
+      String msg = formatSAXExceptionMessage(e);
+      System.err.println("Got a SAX exception: " + msg);
+      throw new IOException(msg);
+    }
+    return;
+  }  
+
   /***************************************************************************
   ** 
   ** Called at start of the document
@@ -300,6 +317,32 @@ public class SUParser extends DefaultHandler {
     printError("Fatal Error", ex);
   }
 
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PACKAGE-VISIBLE CLASS METHODS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Get the XML reader we parse with
+  */
+
+  static XMLReader createXMLReader() throws SAXException {
+    //
+    // Starting with 1.5, we need to use a different parser (BT-05-18-05:1):
+    //
+    
+    String jVer = System.getProperty("java.version");
+    String pName;
+    if (jVer.startsWith("1.4")) {
+      pName = "org.apache.crimson.parser.XMLReaderImpl";
+    } else {
+      pName = "com.sun.org.apache.xerces.internal.parsers.SAXParser";       
+    }
+    return (XMLReaderFactory.createXMLReader(pName));
+  }
+
   ////////////////////////////////////////////////////////////////////////////
   //
   // PRIVATE CONSTRUCTORS
@@ -321,19 +364,7 @@ public class SUParser extends DefaultHandler {
       //parser_ = saxParser.getXMLReader();           
       //String pName = "org.apache.xerces.parsers.SAXParser";
       
-      //
-      // Starting with 1.5, we need to use a different parser (BT-05-18-05:1):
-      //
-      
-      String jVer = System.getProperty("java.version");
-      String pName;
-      if (jVer.startsWith("1.4")) {
-        pName = "org.apache.crimson.parser.XMLReaderImpl";
-      } else {
-        pName = "com.sun.org.apache.xerces.internal.parsers.SAXParser";       
-      }
-      
-      parser_ = XMLReaderFactory.createXMLReader(pName);
+      parser_ = createXMLReader();
       //parser_ = XMLReaderFactory.createXMLReader();
 
       parser_.setContentHandler(this);
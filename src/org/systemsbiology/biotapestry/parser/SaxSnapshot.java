@@ -0,0 +1,707 @@
+/*
+**    Copyright (C) 2003-2014 Institute for Systems Biology
+**                            Seattle, Washington, USA.
+**
+**    This library is free software; you can redistribute it and/or
+**    modify it under the terms of the GNU Lesser General Public
+**    License as published by the Free Software Foundation; either
+**    version 2.1 of the License, or (at your option) any later version.
+**
+**    This library is distributed in the hope that it will be useful,
+**    but WITHOUT ANY WARRANTY; without even the implied warranty of
+**    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+**    Lesser General Public License for more details.
+**
+**    You should have received a copy of the GNU Lesser General Public
+**    License along with this library; if not, write to the Free Software
+**    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+
+package org.systemsbiology.biotapestry.parser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPInputStream;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+/****************************************************************************
+**
+** A binary snapshot of the SAX event stream for a model file, kept next to
+** the file.  Loading a file with a current snapshot replays the events
+** straight into the SUParser client dispatch with no XML parsing.  Since it
+** holds the raw events and not the model, the snapshot never needs to track
+** changes to the model classes.
+**
+** Layout: a header (magic, format version, source length and modification
+** time, event count), a section table of offsets and lengths, the event
+** stream, then a string table of every element name, attribute name, and
+** non-numeric value (each stored once).  Integral attribute values are stored
+** as zig-zag varints; everything else is a varint string table index.
+**
+** Snapshots are written on a background thread after an XML load, by a
+** separate parse of the file, so the load itself pays nothing.  A snapshot
+** that no longer matches its file is ignored, and one that turns out to be
+** damaged during a replay is deleted so the caller can fall back to the XML.
+*/
+
+public class SaxSnapshot {
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC CONSTANTS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  public static final String FILE_SUFFIX = ".snap";
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE CONSTANTS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  private static final int MAGIC_ = 0x42545353;  // "BTSS"
+  private static final int FORMAT_VERSION_ = 2;
+  private static final int NUM_SECTIONS_ = 2;
+  private static final int EVENT_SECTION_ = 0;
+  private static final int STRING_SECTION_ = 1;
+
+  private static final int START_ = 1;
+  private static final int END_ = 2;
+  private static final int CHARS_ = 3;
+
+  private static final int VAL_STRING_ = 0;
+  private static final int VAL_INT_ = 1;
+  private static final int VAL_INT_POINT_ZERO_ = 2;
+
+  private static final int IO_BUFFER_SIZE_ = 65536;
+  private static final String TEMP_SUFFIX_ = ".tmp";
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE CLASS MEMBERS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  private static ExecutorService writer_;
+  private static HashSet<String> pending_ = new HashSet<String>();
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE MEMBERS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  private File snapFile_;
+  private String[] strings_;
+  private char[][] chars_;
+  private long eventOffset_;
+  private long numEvents_;
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE CONSTRUCTORS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Constructor
+  */
+
+  private SaxSnapshot(File snapFile, String[] strings, long eventOffset, long numEvents) {
+    snapFile_ = snapFile;
+    strings_ = strings;
+    chars_ = new char[strings.length][];
+    eventOffset_ = eventOffset;
+    numEvents_ = numEvents;
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC CLASS METHODS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Where the snapshot for a model file lives
+  */
+
+  public static File snapshotFileFor(File source) {
+    return (new File(source.getPath() + FILE_SUFFIX));
+  }
+
+  /***************************************************************************
+  **
+  ** Open the snapshot for the given model file.  Returns null if it is
+  ** missing, from a different format version, does not match the current
+  ** source file stats, or its sections do not add up.  Only the string table
+  ** is read here; the events are streamed in by replay().
+  */
+
+  public static SaxSnapshot openCurrent(File source) {
+    File snapFile = snapshotFileFor(source);
+    if (!snapFile.isFile() || !snapFile.canRead()) {
+      return (null);
+    }
+    RandomAccessFile in = null;
+    try {
+      in = new RandomAccessFile(snapFile, "r");
+      if ((in.length() < headerLength()) || (in.readInt() != MAGIC_) || (in.readInt() != FORMAT_VERSION_)) {
+        return (null);
+      }
+      long srcLength = in.readLong();
+      long srcModified = in.readLong();
+      if ((srcLength != source.length()) || (srcModified != source.lastModified())) {
+        return (null);
+      }
+      if (in.readInt() != NUM_SECTIONS_) {
+        return (null);
+      }
+      long numEvents = in.readLong();
+      long[] offsets = new long[NUM_SECTIONS_];
+      long[] lengths = new long[NUM_SECTIONS_];
+      for (int i = 0; i < NUM_SECTIONS_; i++) {
+        offsets[i] = in.readLong();
+        lengths[i] = in.readLong();
+      }
+      if ((numEvents < 0L) || (lengths[EVENT_SECTION_] < numEvents) ||
+          (offsets[EVENT_SECTION_] != headerLength()) ||
+          (offsets[STRING_SECTION_] != offsets[EVENT_SECTION_] + lengths[EVENT_SECTION_]) ||
+          (lengths[STRING_SECTION_] < 1L) || (lengths[STRING_SECTION_] > Integer.MAX_VALUE) ||
+          (offsets[STRING_SECTION_] + lengths[STRING_SECTION_] != in.length())) {
+        return (null);
+      }
+      byte[] stringBytes = new byte[(int)lengths[STRING_SECTION_]];
+      in.seek(offsets[STRING_SECTION_]);
+      in.readFully(stringBytes);
+      return (new SaxSnapshot(snapFile, decodeStrings(stringBytes), offsets[EVENT_SECTION_], numEvents));
+    } catch (IOException ioex) {
+      return (null);
+    } catch (RuntimeException rex) {
+      return (null);  // string table does not add up
+    } finally {
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException ioex) {
+          // Nothing to do
+        }
+      }
+    }
+  }
+
+  /***************************************************************************
+  **
+  ** Build a snapshot for the given model file on a background thread.  The
+  ** snapshot is a speedup for the next load, so any failure just means we do
+  ** not get one.
+  */
+
+  public static void writeInBackground(final File source) {
+    final String path = source.getAbsolutePath();
+    synchronized (SaxSnapshot.class) {
+      if (!pending_.add(path)) {
+        return;
+      }
+      if (writer_ == null) {
+        writer_ = Executors.newSingleThreadExecutor(new ThreadFactory() {
+          private int count_ = 0;
+          public synchronized Thread newThread(Runnable runner) {
+            Thread retval = new Thread(runner, "SaxSnapshotWriter-" + count_++);
+            retval.setDaemon(true);
+            return (retval);
+          }
+        });
+      }
+    }
+    writer_.execute(new Runnable() {
+      public void run() {
+        try {
+          write(source);
+        } catch (IOException ioex) {
+          // Unwritable directory and the like are not errors
+        } catch (SAXException saxex) {
+          // The load would have reported this
+        } finally {
+          synchronized (SaxSnapshot.class) {
+            pending_.remove(path);
+          }
+        }
+        return;
+      }
+    });
+    return;
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC METHODS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Feed the recorded events to the handler.  If the event stream turns out
+  ** to be damaged, the snapshot file is deleted and we throw a
+  ** DamagedSnapshotException; the handler will have seen part of the model,
+  ** so the caller needs to start over from the XML.
+  */
+
+  public void replay(DefaultHandler handler) throws SAXException, IOException {
+    InputStream in;
+    try {
+      in = new BufferedInputStream(new FileInputStream(snapFile_), IO_BUFFER_SIZE_);
+    } catch (IOException ioex) {
+      throw new DamagedSnapshotException();
+    }
+    try {
+      skipFully(in, eventOffset_);
+      AttributesImpl attrs = new AttributesImpl();
+      for (long i = 0L; i < numEvents_; i++) {
+        int op = in.read();
+        switch (op) {
+          case START_:
+            String name = readString(in);
+            attrs.clear();
+            int numAttr = readVarInt(in);
+            for (int j = 0; j < numAttr; j++) {
+              String attName = readString(in);
+              String value;
+              switch (in.read()) {
+                case VAL_STRING_:
+                  value = readString(in);
+                  break;
+                case VAL_INT_:
+                  value = Long.toString(unZigZag(readVarLong(in)));
+                  break;
+                case VAL_INT_POINT_ZERO_:
+                  value = Long.toString(unZigZag(readVarLong(in))) + ".0";
+                  break;
+                default:
+                  throw new DamagedSnapshotException();
+              }
+              attrs.addAttribute("", attName, attName, "CDATA", value);
+            }
+            handler.startElement("", name, name, attrs);
+            break;
+          case END_:
+            String endName = readString(in);
+            handler.endElement("", endName, endName);
+            break;
+          case CHARS_:
+            int id = readStringID(in);
+            if (chars_[id] == null) {
+              chars_[id] = strings_[id].toCharArray();
+            }
+            handler.characters(chars_[id], 0, chars_[id].length);
+            break;
+          default:
+            throw new DamagedSnapshotException();
+        }
+      }
+    } catch (DamagedSnapshotException dsex) {
+      in.close();
+      in = null;
+      snapFile_.delete();
+      throw dsex;
+    } finally {
+      if (in != null) {
+        in.close();
+      }
+    }
+    return;
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE METHODS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  private int readStringID(InputStream in) throws IOException {
+    int id = readVarInt(in);
+    if (id >= strings_.length) {
+      throw new DamagedSnapshotException();
+    }
+    return (id);
+  }
+
+  private String readString(InputStream in) throws IOException {
+    return (strings_[readStringID(in)]);
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC INNER CLASSES
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Thrown when a snapshot event stream does not decode
+  */
+
+  public static class DamagedSnapshotException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public DamagedSnapshotException() {
+      super("Damaged snapshot");
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE INNER CLASSES
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Streams SAX events from a parse out to the event section of a new
+  ** snapshot file
+  */
+
+  private static class SnapshotWriter extends DefaultHandler {
+
+    private File file_;
+    private DataOutputStream out_;
+    private HashMap<String, Integer> ids_;
+    private ArrayList<String> strings_;
+    private StringBuffer pendingChars_;
+    private long numEvents_;
+
+    SnapshotWriter(File file) throws IOException {
+      file_ = file;
+      out_ = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), IO_BUFFER_SIZE_));
+      out_.write(new byte[headerLength()]);
+      ids_ = new HashMap<String, Integer>();
+      strings_ = new ArrayList<String>();
+      pendingChars_ = new StringBuffer();
+      numEvents_ = 0L;
+    }
+
+    @Override
+    public void startElement(String uri, String local, String raw, Attributes attrs) throws SAXException {
+      try {
+        flushChars();
+        out_.write(START_);
+        writeVarLong(out_, intern(local));
+        int numAttr = attrs.getLength();
+        writeVarLong(out_, numAttr);
+        for (int i = 0; i < numAttr; i++) {
+          writeVarLong(out_, intern(attrs.getQName(i)));
+          writeValue(attrs.getValue(i));
+        }
+        numEvents_++;
+      } catch (IOException ioex) {
+        throw new SAXException(ioex);
+      }
+      return;
+    }
+
+    @Override
+    public void endElement(String uri, String local, String raw) throws SAXException {
+      try {
+        flushChars();
+        out_.write(END_);
+        writeVarLong(out_, intern(local));
+        numEvents_++;
+      } catch (IOException ioex) {
+        throw new SAXException(ioex);
+      }
+      return;
+    }
+
+    //
+    // Adjacent character chunks are merged into one:
+    //
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+      pendingChars_.append(ch, start, length);
+      return;
+    }
+
+    //
+    // Append the string table, then go back and fill in the header:
+    //
+
+    void finish(long srcLength, long srcModified) throws IOException {
+      flushChars();
+      long eventLength = out_.size() - headerLength();
+      String[] strings = strings_.toArray(new String[strings_.size()]);
+      byte[] stringBytes = encodeStrings(strings);
+      out_.write(stringBytes);
+      out_.close();
+      out_ = null;
+      RandomAccessFile raf = new RandomAccessFile(file_, "rw");
+      try {
+        raf.writeInt(MAGIC_);
+        raf.writeInt(FORMAT_VERSION_);
+        raf.writeLong(srcLength);
+        raf.writeLong(srcModified);
+        raf.writeInt(NUM_SECTIONS_);
+        raf.writeLong(numEvents_);
+        raf.writeLong(headerLength());
+        raf.writeLong(eventLength);
+        raf.writeLong(headerLength() + eventLength);
+        raf.writeLong(stringBytes.length);
+      } finally {
+        raf.close();
+      }
+      return;
+    }
+
+    void close() {
+      if (out_ != null) {
+        try {
+          out_.close();
+        } catch (IOException ioex) {
+          // Nothing to do
+        }
+        out_ = null;
+      }
+      return;
+    }
+
+    private void flushChars() throws IOException {
+      if (pendingChars_.length() > 0) {
+        out_.write(CHARS_);
+        writeVarLong(out_, intern(pendingChars_.toString()));
+        pendingChars_.setLength(0);
+        numEvents_++;
+      }
+      return;
+    }
+
+    //
+    // Only values that print back exactly the same are stored as numbers:
+    //
+
+    private void writeValue(String value) throws IOException {
+      int kind;
+      String digits = value;
+      if (value.endsWith(".0")) {
+        digits = value.substring(0, value.length() - 2);
+        kind = VAL_INT_POINT_ZERO_;
+      } else {
+        kind = VAL_INT_;
+      }
+      if (isCanonicalLong(digits)) {
+        out_.write(kind);
+        writeVarLong(out_, zigZag(Long.parseLong(digits)));
+      } else {
+        out_.write(VAL_STRING_);
+        writeVarLong(out_, intern(value));
+      }
+      return;
+    }
+
+    private int intern(String str) {
+      Integer id = ids_.get(str);
+      if (id == null) {
+        id = Integer.valueOf(strings_.size());
+        strings_.add(str);
+        ids_.put(str, id);
+      }
+      return (id.intValue());
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE CLASS METHODS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Parse the model file on our own and write its snapshot to a temp file,
+  ** which is renamed into place only if the file did not change under us.
+  */
+
+  private static void write(File source) throws IOException, SAXException {
+    long srcLength = source.length();
+    long srcModified = source.lastModified();
+    File snapFile = snapshotFileFor(source);
+    File tempFile = new File(snapFile.getPath() + TEMP_SUFFIX_);
+    SnapshotWriter handler = new SnapshotWriter(tempFile);
+    boolean done = false;
+    try {
+      XMLReader reader = SUParser.createXMLReader();
+      reader.setContentHandler(handler);
+      InputStream in = new BufferedInputStream(new FileInputStream(source), IO_BUFFER_SIZE_);
+      try {
+        in.mark(2);
+        int magic = in.read() | (in.read() << 8);
+        in.reset();
+        if (magic == GZIPInputStream.GZIP_MAGIC) {
+          in = new GZIPInputStream(in, IO_BUFFER_SIZE_);
+        }
+        reader.parse(new InputSource(in));
+      } finally {
+        in.close();
+      }
+      if ((source.length() != srcLength) || (source.lastModified() != srcModified)) {
+        return;
+      }
+      handler.finish(srcLength, srcModified);
+      snapFile.delete();
+      done = tempFile.renameTo(snapFile);
+    } finally {
+      handler.close();
+      if (!done) {
+        tempFile.delete();
+      }
+    }
+    return;
+  }
+
+  private static int headerLength() {
+    return ((4 * 2) + (8 * 2) + 4 + 8 + (NUM_SECTIONS_ * 8 * 2));
+  }
+
+  private static void skipFully(InputStream in, long count) throws IOException {
+    while (count > 0L) {
+      long skipped = in.skip(count);
+      if (skipped <= 0L) {
+        throw new DamagedSnapshotException();
+      }
+      count -= skipped;
+    }
+    return;
+  }
+
+  private static boolean isCanonicalLong(String digits) {
+    int len = digits.length();
+    if ((len == 0) || (len > 18)) {
+      return (false);
+    }
+    int start = (digits.charAt(0) == '-') ? 1 : 0;
+    if (start == len) {
+      return (false);
+    }
+    if ((digits.charAt(start) == '0') && ((len > start + 1) || (start == 1))) {
+      return (false);  // leading zeros or "-0" would not print back the same
+    }
+    for (int i = start; i < len; i++) {
+      char ch = digits.charAt(i);
+      if ((ch < '0') || (ch > '9')) {
+        return (false);
+      }
+    }
+    return (true);
+  }
+
+  private static long zigZag(long val) {
+    return ((val << 1) ^ (val >> 63));
+  }
+
+  private static long unZigZag(long val) {
+    return ((val >>> 1) ^ -(val & 1));
+  }
+
+  private static void writeVarLong(OutputStream out, long val) throws IOException {
+    while ((val & ~0x7FL) != 0L) {
+      out.write((int)((val & 0x7F) | 0x80));
+      val >>>= 7;
+    }
+    out.write((int)val);
+    return;
+  }
+
+  private static long readVarLong(InputStream in) throws IOException {
+    long retval = 0L;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int next = in.read();
+      if (next == -1) {
+        throw new DamagedSnapshotException();
+      }
+      retval |= ((long)(next & 0x7F)) << shift;
+      if ((next & 0x80) == 0) {
+        return (retval);
+      }
+    }
+    throw new DamagedSnapshotException();
+  }
+
+  private static int readVarInt(InputStream in) throws IOException {
+    long retval = readVarLong(in);
+    if ((retval < 0L) || (retval > Integer.MAX_VALUE)) {
+      throw new DamagedSnapshotException();
+    }
+    return ((int)retval);
+  }
+
+  private static byte[] encodeStrings(String[] strings) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writeVarLong(out, strings.length);
+    for (int i = 0; i < strings.length; i++) {
+      byte[] utf = strings[i].getBytes("UTF-8");
+      writeVarLong(out, utf.length);
+      out.write(utf);
+    }
+    return (out.toByteArray());
+  }
+
+  //
+  // Throws a runtime exception if the table runs off the end:
+  //
+
+  private static String[] decodeStrings(byte[] bytes) throws IOException {
+    int[] pos = new int[] {0};
+    int count = readVarInt(bytes, pos);
+    if ((count < 0) || (count > bytes.length)) {
+      throw new IllegalStateException();
+    }
+    String[] retval = new String[count];
+    for (int i = 0; i < count; i++) {
+      int len = readVarInt(bytes, pos);
+      if ((len < 0) || (pos[0] + len > bytes.length)) {
+        throw new IllegalStateException();
+      }
+      retval[i] = new String(bytes, pos[0], len, "UTF-8");
+      pos[0] += len;
+    }
+    if (pos[0] != bytes.length) {
+      throw new IllegalStateException();
+    }
+    return (retval);
+  }
+
+  private static int readVarInt(byte[] bytes, int[] pos) {
+    long retval = 0L;
+    for (int shift = 0; shift < 35; shift += 7) {
+      byte next = bytes[pos[0]++];
+      retval |= ((long)(next & 0x7F)) << shift;
+      if ((next & 0x80) == 0) {
+        return ((int)retval);
+      }
+    }
+    throw new IllegalStateException();
+  }
+}
@@ -98,6 +98,13 @@ public class PerturbationData implements Cloneable, SourceSrc {
 
   final static String SN_SET_XML_TAG_  = "serNumSet";  
   
+  //
+  // Data point edits tracked so a QPCR display rebuild can keep the cached
+  // tables they did not touch. Past this, just drop everything:
+  //
+  
+  private final static int MAX_QPCR_CELL_EDITS_ = 64;
+  
   
   //
   // Collapse modes. Hauled over from old QPCRData.  Still needed at this
@@ -159,6 +166,7 @@ public class PerturbationData implements Cloneable, SourceSrc {
   private long qpcrForDisplayVersionSN_;
   private long qpcrForDisplaySourceVersionSN_;
   private long qpcrForDisplayEntryVersionSN_;
+  private ArrayList<QpcrCellEdit> qpcrCellEdits_;
   
   private PertDictionary pertDict_;
   private MeasureDictionary measureDict_;
@@ -209,6 +217,7 @@ public class PerturbationData implements Cloneable, SourceSrc {
     sourceNames_ = new HashMap<String, String>();
     serialNumber_ = 0L; 
     qpcrForDisplayVersionSN_ = 0L;
+    qpcrCellEdits_ = new ArrayList<QpcrCellEdit>();
     legacyQPCR_ = null;
     sigPertCacheVersionSN_ = 0L; 
     sigPertCache_ = null;
@@ -756,7 +765,8 @@ public class PerturbationData implements Cloneable, SourceSrc {
     legacyQPCR_.dropCurrentStateForDisplay();
     qpcrForDisplayVersionSN_ = 0L;
     qpcrForDisplaySourceVersionSN_ = 0L;
-    qpcrForDisplayEntryVersionSN_ = 0L;   
+    qpcrForDisplayEntryVersionSN_ = 0L;
+    qpcrCellEdits_ = new ArrayList<QpcrCellEdit>();
     return;
   }
       
@@ -772,14 +782,25 @@ public class PerturbationData implements Cloneable, SourceSrc {
     long srcSN = sourceMap_.getSerialNumber();
     long trgSN = entryMap_.getSerialNumber();
     if (!legacyQPCR_.readyForDisplay() || 
-        (qpcrForDisplayVersionSN_ != serialNumber_) ||
         (qpcrForDisplaySourceVersionSN_ != srcSN) ||
         (qpcrForDisplayEntryVersionSN_ != trgSN)) {
-      legacyQPCR_.createQPCRFromPerts(this);      
-      qpcrForDisplayVersionSN_ = serialNumber_;
-      qpcrForDisplaySourceVersionSN_ = srcSN;
-      qpcrForDisplayEntryVersionSN_ = trgSN;
+      legacyQPCR_.createQPCRFromPerts(this);
+    } else if (qpcrForDisplayVersionSN_ != serialNumber_) {
+      //
+      // If we got here from the last build only via data point edits, just
+      // the rows for the edited cells need to be rebuilt:
+      //
+      HashMap<PertSources, Set<String>> dirtyCells = new HashMap<PertSources, Set<String>>();
+      if (qpcrCellEditsReachCurrent(dirtyCells)) {
+        legacyQPCR_.updateQPCRFromPerts(this, dirtyCells);
+      } else {
+        legacyQPCR_.createQPCRFromPerts(this);
+      }
     }
+    qpcrForDisplayVersionSN_ = serialNumber_;
+    qpcrForDisplaySourceVersionSN_ = srcSN;
+    qpcrForDisplayEntryVersionSN_ = trgSN;
+    qpcrCellEdits_ = new ArrayList<QpcrCellEdit>();
     return;
   }
   
@@ -5053,6 +5074,7 @@ public class PerturbationData implements Cloneable, SourceSrc {
     dataPoints_.put(pdp.getID(), pdp);
     retval.pdpNew = pdp.clone();
     retval.serialNumberNew = ++serialNumber_;
+    recordQpcrCellEdit(retval.serialNumberOrig, retval.serialNumberNew, currPdp, pdp);
     return (retval);
   }
   
@@ -5088,6 +5110,7 @@ public class PerturbationData implements Cloneable, SourceSrc {
       String repairID = pdpu.getID();
       dataPoints_.put(repairID, pdpu);
     }
+    recordQpcrCellEdit(serialNumber_, undo.serialNumberOrig, undo.pdpOrig, undo.pdpNew);
     serialNumber_ = undo.serialNumberOrig;
     return;
   }
@@ -5121,6 +5144,7 @@ public class PerturbationData implements Cloneable, SourceSrc {
       String repairID = pdpn.getID();
       dataPoints_.put(repairID, pdpn);
     }
+    recordQpcrCellEdit(serialNumber_, redo.serialNumberNew, redo.pdpOrig, redo.pdpNew);
     serialNumber_ = redo.serialNumberNew;
     return;
   }
@@ -5168,6 +5192,7 @@ public class PerturbationData implements Cloneable, SourceSrc {
 
     retval.pdpNew = null;
     retval.serialNumberNew = ++serialNumber_;
+    recordQpcrCellEdit(retval.serialNumberOrig, retval.serialNumberNew, retval.pdpOrig, null);
     return (retval);
   }
   
@@ -6162,6 +6187,86 @@ public class PerturbationData implements Cloneable, SourceSrc {
   //
   ////////////////////////////////////////////////////////////////////////////
 
+  /***************************************************************************
+  **
+  ** Remember the cells (source set and target) touched by a data point edit
+  ** that took us between the given serial numbers.
+  */
+  
+  private void recordQpcrCellEdit(long snBefore, long snAfter, PertDataPoint pdp1, PertDataPoint pdp2) {
+    if (qpcrCellEdits_ == null) {
+      return;
+    }
+    if (qpcrCellEdits_.size() >= MAX_QPCR_CELL_EDITS_) {
+      qpcrCellEdits_ = null;
+      return;
+    }
+    QpcrCellEdit edit = new QpcrCellEdit(snBefore, snAfter);
+    if (!addQpcrCell(edit, pdp1) || !addQpcrCell(edit, pdp2)) {
+      qpcrCellEdits_ = null;
+      return;
+    }
+    qpcrCellEdits_.add(edit);
+    return;
+  }
+  
+  /***************************************************************************
+  **
+  ** Add the cell for the data point.  All times for a source set and target
+  ** share a cell.  False if we cannot tell.
+  */
+  
+  private boolean addQpcrCell(QpcrCellEdit edit, PertDataPoint pdp) {
+    if (pdp == null) {
+      return (true);
+    }
+    Experiment exp = pdp.getExperiment(this);
+    if (exp == null) {
+      return (false);
+    }
+    PertSources pss = exp.getSources().clone();
+    HashSet<String> targs = edit.cells.get(pss);
+    if (targs == null) {
+      targs = new HashSet<String>();
+      edit.cells.put(pss, targs);
+    }
+    targs.add(pdp.getTargetKey());
+    return (true);
+  }
+  
+  /***************************************************************************
+  **
+  ** Answer if the recorded data point edits chain from the serial number of
+  ** the current QPCR display to the current serial number.  If so, fill in
+  ** the cells they touched.
+  */
+  
+  private boolean qpcrCellEditsReachCurrent(Map<PertSources, Set<String>> dirtyCells) {
+    if (qpcrCellEdits_ == null) {
+      return (false);
+    }
+    long currSN = qpcrForDisplayVersionSN_;
+    int numEdits = qpcrCellEdits_.size();
+    for (int i = 0; i < numEdits; i++) {
+      QpcrCellEdit edit = qpcrCellEdits_.get(i);
+      if (edit.snBefore != currSN) {
+        return (false);
+      }
+      currSN = edit.snAfter;
+      Iterator<PertSources> cit = edit.cells.keySet().iterator();
+      while (cit.hasNext()) {
+        PertSources pss = cit.next();
+        Set<String> targs = dirtyCells.get(pss);
+        if (targs == null) {
+          targs = new HashSet<String>();
+          dirtyCells.put(pss, targs);
+        }
+        targs.addAll(edit.cells.get(pss));
+      }
+    }
+    return (currSN == serialNumber_);
+  }
+
   /***************************************************************************
   **
   ** Build up a full network of all interactions.  The links candidates returned
@@ -6315,6 +6420,24 @@ public class PerturbationData implements Cloneable, SourceSrc {
   //
   //////////////////////////////////////////////////////////////////////////// 
   
+  /***************************************************************************
+  **
+  ** Data point edit between two serial numbers, with the cells (source set to
+  ** target keys) it touched
+  */
+  
+  private static class QpcrCellEdit {
+    long snBefore;
+    long snAfter;
+    HashMap<PertSources, HashSet<String>> cells;
+    
+    QpcrCellEdit(long snBefore, long snAfter) {
+      this.snBefore = snBefore;
+      this.snAfter = snAfter;
+      this.cells = new HashMap<PertSources, HashSet<String>>();
+    }
+  }
+  
   private class SrcTarg {
     String srcID;
     String targID;
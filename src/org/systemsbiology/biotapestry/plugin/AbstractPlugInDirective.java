@@ -55,6 +55,14 @@ public abstract class AbstractPlugInDirective implements Comparable {
   protected String className_;
   protected int order_;
   protected File jar_;  
+  
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE VARIABLES
+  //
+  ////////////////////////////////////////////////////////////////////////////
+  
+  private Class jarClass_;
 
   ////////////////////////////////////////////////////////////////////////////
   //
@@ -233,14 +241,18 @@ public abstract class AbstractPlugInDirective implements Comparable {
   **
   */
       
-  private DataDisplayPlugIn load() {
+  private synchronized DataDisplayPlugIn load() {
     try {
-      URL purl = jar_.toURI().toURL(); // As recommended in docs, to create escape chars
-      URLClassLoader loader = new URLClassLoader(new URL[] {purl},DataDisplayPlugIn.class.getClassLoader());  
-      
-      Class pluggedIn = Class.forName(className_, true, loader);
+      //
+      // Directives are shared process-wide, so only build one class loader per jar class:
+      //
+      if (jarClass_ == null) {
+        URL purl = jar_.toURI().toURL(); // As recommended in docs, to create escape chars
+        URLClassLoader loader = new URLClassLoader(new URL[] {purl},DataDisplayPlugIn.class.getClassLoader());  
+        jarClass_ = Class.forName(className_, true, loader);
+      }
 
-      DataDisplayPlugIn instance = (DataDisplayPlugIn)pluggedIn.newInstance();
+      DataDisplayPlugIn instance = (DataDisplayPlugIn)jarClass_.newInstance();
       return (instance);
     } catch (MalformedURLException muex) {
       System.err.println("PlugIn " + className_ + " not loaded: " + muex);      
@@ -20,6 +20,8 @@
 package org.systemsbiology.biotapestry.plugin;
 
 import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.TreeSet;
@@ -41,11 +43,23 @@ import org.systemsbiology.biotapestry.app.BTState;
 
 /****************************************************************************
 **
-** Plugin Manager.
+** Plugin Manager.  The plugin listing and the plugin jars are only scanned
+** once per process (per plugin directory); every later app state (e.g. each
+** web session) uses that shared registry.  Plugins that need an app state get
+** a fresh instance per state; the rest are built once and shared, so they
+** may be called from more than one session at a time.
 */
 
 public class PlugInManager {
   
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE CLASS MEMBERS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  private static HashMap<String, SharedPlugIns> registry_ = new HashMap<String, SharedPlugIns>();
+  
   ////////////////////////////////////////////////////////////////////////////
   //
   // PRIVATE MEMBERS
@@ -140,6 +154,39 @@ public class PlugInManager {
 
   public boolean loadDataDisplayPlugIns(Map<String, Object> args) {
     
+    String plugDirStr = (String)args.get(ArgParser.PLUG_IN_DIR);
+    String regKey = (plugDirStr == null) ? "" : plugDirStr;
+    
+    SharedPlugIns shared;
+    synchronized (PlugInManager.class) {
+      shared = registry_.get(regKey);
+      if (shared == null) {
+        if (!scanForDirectives(plugDirStr)) {
+          return (false);
+        }
+        shared = new SharedPlugIns(directives_, linkDirectives_);
+        registry_.put(regKey, shared);
+      }
+    }
+    
+    dataDisplay_.addAll(stockPlugIns(shared.nodePlugIns));
+    linkDataDisplay_.addAll(stockPlugIns(shared.linkPlugIns));
+    return (true);
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE METHODS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Scan the resource listing and the plugin jars for directives
+  */
+
+  private boolean scanForDirectives(String plugDirStr) {
+    
     //
     // Load in the plugins specified in the resource file first:
     //
@@ -152,7 +199,6 @@ public class PlugInManager {
     // Now load from jar file, if specified in command line argument:
     //
         
-    String plugDirStr = (String)args.get(ArgParser.PLUG_IN_DIR);
     if (plugDirStr != null) {
       File plugDirectory = new File(plugDirStr);
       if (!plugDirectory.exists() || !plugDirectory.isDirectory() || !plugDirectory.canRead()) {
@@ -162,40 +208,31 @@ public class PlugInManager {
          return (false);
       }
     }
-    
-    Iterator<AbstractPlugInDirective> drit = directives_.iterator();
-    while (drit.hasNext()) {
-      // May be either legacy type or modern type:
-      AbstractPlugInDirective pid = drit.next();
-      DataDisplayPlugIn pi = pid.buildPlugIn();
-      if (pi != null) {
-        if (pi instanceof InternalDataDisplayPlugInV2) {
-          ((InternalDataDisplayPlugInV2)pi).setAppState(appState_);
-        }     
-        dataDisplay_.add(pi);
-      }
-    }
-    
-    Iterator<LinkPlugInDirective> ldrit = linkDirectives_.iterator();
-    while (ldrit.hasNext()) {
-      LinkPlugInDirective pid = ldrit.next();
-      DataDisplayPlugIn pi = pid.buildPlugIn();
-      if (pi != null) {
-        if (pi instanceof InternalDataDisplayPlugInV2) {
-          ((InternalDataDisplayPlugInV2)pi).setAppState(appState_);
-        }     
-        linkDataDisplay_.add(pi);
-      }
-    }
-   
     return (true);
   }
+  
+  /***************************************************************************
+  **
+  ** Get the plugins for this state: shared ones as is, the rest built fresh
+  */
 
-  ////////////////////////////////////////////////////////////////////////////
-  //
-  // PRIVATE METHODS
-  //
-  ////////////////////////////////////////////////////////////////////////////
+  private List<DataDisplayPlugIn> stockPlugIns(List<RegisteredPlugIn> registered) {
+    ArrayList<DataDisplayPlugIn> retval = new ArrayList<DataDisplayPlugIn>();
+    int numReg = registered.size();
+    for (int i = 0; i < numReg; i++) {
+      RegisteredPlugIn rpi = registered.get(i);
+      DataDisplayPlugIn pi = rpi.shared;
+      if (pi == null) {
+        pi = rpi.directive.buildPlugIn();
+        if (pi == null) {
+          continue;
+        }
+        ((InternalDataDisplayPlugInV2)pi).setAppState(appState_);
+      }
+      retval.add(pi);
+    }
+    return (retval);
+  }
 
   /***************************************************************************
   **
@@ -352,6 +389,56 @@ public class PlugInManager {
   //
   ////////////////////////////////////////////////////////////////////////////
   
+  /***************************************************************************
+  **
+  ** A plugin in the registry.  If it needs an app state, there is no shared
+  ** instance, and we build one per state from the directive.
+  */ 
+    
+  private static class RegisteredPlugIn {
+    
+    AbstractPlugInDirective directive;
+    DataDisplayPlugIn shared;
+    
+    RegisteredPlugIn(AbstractPlugInDirective directive, DataDisplayPlugIn shared) {
+      this.directive = directive;
+      this.shared = shared;
+    }
+  }
+  
+  /***************************************************************************
+  **
+  ** The registry for a plugin directory, in directive order. Plugins that
+  ** could not be built are left out.
+  */ 
+    
+  private static class SharedPlugIns {
+    
+    List<RegisteredPlugIn> nodePlugIns;
+    List<RegisteredPlugIn> linkPlugIns;
+    
+    SharedPlugIns(TreeSet<AbstractPlugInDirective> directives, TreeSet<LinkPlugInDirective> linkDirectives) {
+      nodePlugIns = Collections.unmodifiableList(register(directives));
+      linkPlugIns = Collections.unmodifiableList(register(linkDirectives));
+    }
+    
+    private List<RegisteredPlugIn> register(TreeSet<? extends AbstractPlugInDirective> directives) {
+      ArrayList<RegisteredPlugIn> retval = new ArrayList<RegisteredPlugIn>();
+      Iterator<? extends AbstractPlugInDirective> drit = directives.iterator();
+      while (drit.hasNext()) {
+        // May be either legacy type or modern type:
+        AbstractPlugInDirective pid = drit.next();
+        DataDisplayPlugIn pi = pid.buildPlugIn();
+        if (pi == null) {
+          continue;
+        }
+        boolean perState = (pi instanceof InternalDataDisplayPlugInV2);
+        retval.add(new RegisteredPlugIn(pid, (perState) ? null : pi));
+      }
+      return (retval);
+    }
+  }
+  
   /***************************************************************************
   **
   ** File filter
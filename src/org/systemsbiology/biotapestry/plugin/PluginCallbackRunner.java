@@ -0,0 +1,402 @@
+/*
+**    Copyright (C) 2003-2014 Institute for Systems Biology
+**                            Seattle, Washington, USA.
+**
+**    This library is free software; you can redistribute it and/or
+**    modify it under the terms of the GNU Lesser General Public
+**    License as published by the Free Software Foundation; either
+**    version 2.1 of the License, or (at your option) any later version.
+**
+**    This library is distributed in the hope that it will be useful,
+**    but WITHOUT ANY WARRANTY; without even the implied warranty of
+**    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+**    Lesser General Public License for more details.
+**
+**    You should have received a copy of the GNU Lesser General Public
+**    License along with this library; if not, write to the Free Software
+**    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+
+package org.systemsbiology.biotapestry.plugin;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/****************************************************************************
+**
+** Process-wide runner for plugin callback workers.  Workers run on a small,
+** fixed set of named daemon threads instead of a new thread apiece; a worker
+** that runs past the timeout, counted from when it starts running, is
+** cancelled.
+** Results can be cached for a while, keyed by the plugin and its arguments, so
+** reopening a popup does not repeat a slow remote lookup.
+*/
+
+public class PluginCallbackRunner {
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC CONSTANTS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  public static final int MAX_WORKER_THREADS = 4;
+  public static final long WORKER_TIMEOUT_MSEC = 60000L;
+  public static final long RESULT_TTL_MSEC = 300000L;
+  public static final int MAX_CACHED_RESULTS = 1000;
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE CLASS MEMBERS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  private static PluginCallbackRunner runner_;
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE MEMBERS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  private ThreadPoolExecutor workers_;
+  private ScheduledThreadPoolExecutor timer_;
+  private HashMap<List<Object>, CachedResult> results_;
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE CONSTRUCTORS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Constructor
+  */
+
+  private PluginCallbackRunner() {
+    workers_ = new ThreadPoolExecutor(MAX_WORKER_THREADS, MAX_WORKER_THREADS, 30L, TimeUnit.SECONDS,
+                                      new LinkedBlockingQueue<Runnable>(), new NamedFactory("PluginCallbackWorker-"));
+    workers_.allowCoreThreadTimeOut(true);
+    timer_ = new ScheduledThreadPoolExecutor(1, new NamedFactory("PluginCallbackTimer-"));
+    results_ = new HashMap<List<Object>, CachedResult>();
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC CLASS METHODS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Get the shared runner
+  */
+
+  public static synchronized PluginCallbackRunner getRunner() {
+    if (runner_ == null) {
+      runner_ = new PluginCallbackRunner();
+    }
+    return (runner_);
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC METHODS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Get a cached result that has not expired, or null
+  */
+
+  public synchronized String getCachedResult(List<Object> cacheKey) {
+    CachedResult cr = results_.get(cacheKey);
+    if (cr == null) {
+      return (null);
+    }
+    if (cr.expires < System.currentTimeMillis()) {
+      results_.remove(cacheKey);
+      return (null);
+    }
+    return (cr.result);
+  }
+
+  /***************************************************************************
+  **
+  ** Queue up a worker.  Every result the worker reports is passed on to the
+  ** client, on a worker thread, until the worker finishes, times out, or the
+  ** returned Future is cancelled.  A worker that finishes or times out without
+  ** reporting anything gets a null result sent for it.  If the cache key is
+  ** not null, the last result of a worker that finishes is cached under it.
+  */
+
+  public Future<?> submit(PluginCallbackWorker worker, String idKey,
+                          PluginCallbackWorkerClient client, List<Object> cacheKey) {
+    Relay relay = new Relay(client, idKey, cacheKey);
+    worker.setIDAndClient(idKey, relay);
+    relay.future = workers_.submit(new TimedRun(worker, relay));
+    return (relay);
+  }
+
+  /***************************************************************************
+  **
+  ** Number of threads running workers right now
+  */
+
+  public int getWorkerThreadCount() {
+    return (workers_.getPoolSize());
+  }
+
+  /***************************************************************************
+  **
+  ** Number of workers waiting for a thread
+  */
+
+  public int getQueuedCount() {
+    return (workers_.getQueue().size());
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE METHODS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Stash a result, tossing expired ones if we are getting full
+  */
+
+  private synchronized void cacheResult(List<Object> cacheKey, String result) {
+    long now = System.currentTimeMillis();
+    if (results_.size() >= MAX_CACHED_RESULTS) {
+      Iterator<CachedResult> rit = results_.values().iterator();
+      while (rit.hasNext()) {
+        CachedResult cr = rit.next();
+        if (cr.expires < now) {
+          rit.remove();
+        }
+      }
+      if (results_.size() >= MAX_CACHED_RESULTS) {
+        results_.clear();
+      }
+    }
+    results_.put(cacheKey, new CachedResult(result, now + RESULT_TTL_MSEC));
+    return;
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE INNER CLASSES
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** A cached result
+  */
+
+  private static class CachedResult {
+    String result;
+    long expires;
+
+    CachedResult(String result, long expires) {
+      this.result = result;
+      this.expires = expires;
+    }
+  }
+
+  /***************************************************************************
+  **
+  ** Sits between the worker and the real client.  Passes results along until
+  ** the worker is finished, and none at all after a cancel.  Doubles as the
+  ** Future we hand back, so a cancel also stops the worker.
+  */
+
+  private class Relay implements PluginCallbackWorkerClient, Future<Object> {
+
+    private PluginCallbackWorkerClient client_;
+    private String idKey_;
+    private List<Object> cacheKey_;
+    private String lastResult_;
+    private boolean heardBack_;
+    private boolean done_;
+    private boolean cancelled_;
+    Future<?> future;
+
+    Relay(PluginCallbackWorkerClient client, String idKey, List<Object> cacheKey) {
+      client_ = client;
+      idKey_ = idKey;
+      cacheKey_ = cacheKey;
+      lastResult_ = null;
+      heardBack_ = false;
+      done_ = false;
+      cancelled_ = false;
+    }
+
+    //
+    // Not forwarded while holding the lock, since the client may be trying
+    // to cancel us from another thread:
+    //
+
+    public void retrievedResult(String srcKey, String result) {
+      synchronized (this) {
+        if (done_) {
+          return;
+        }
+        lastResult_ = result;
+        heardBack_ = true;
+      }
+      client_.retrievedResult(srcKey, result);
+      return;
+    }
+
+    void completed() {
+      String result;
+      boolean tellClient;
+      synchronized (this) {
+        if (done_) {
+          return;
+        }
+        done_ = true;
+        result = lastResult_;
+        tellClient = !heardBack_;
+      }
+      if ((cacheKey_ != null) && (result != null)) {
+        cacheResult(cacheKey_, result);
+      }
+      if (tellClient) {
+        client_.retrievedResult(idKey_, null);
+      }
+      return;
+    }
+
+    void timedOut() {
+      boolean tellClient;
+      synchronized (this) {
+        if (done_) {
+          return;
+        }
+        done_ = true;
+        tellClient = !heardBack_;
+      }
+      future.cancel(true);
+      if (tellClient) {
+        client_.retrievedResult(idKey_, null);
+      }
+      return;
+    }
+
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      synchronized (this) {
+        if (done_) {
+          return (false);
+        }
+        done_ = true;
+        cancelled_ = true;
+      }
+      future.cancel(mayInterruptIfRunning);
+      return (true);
+    }
+
+    public synchronized boolean isCancelled() {
+      return (cancelled_);
+    }
+
+    public synchronized boolean isDone() {
+      return (done_);
+    }
+
+    public Object get() throws InterruptedException, ExecutionException {
+      return (future.get());
+    }
+
+    public Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+      return (future.get(timeout, unit));
+    }
+  }
+
+  /***************************************************************************
+  **
+  ** Runs the worker on a pool thread.  The timeout clock starts here, so time
+  ** spent waiting in the queue does not count against the worker.
+  */
+
+  private class TimedRun implements Runnable {
+
+    private PluginCallbackWorker worker_;
+    private Relay relay_;
+
+    TimedRun(PluginCallbackWorker worker, Relay relay) {
+      worker_ = worker;
+      relay_ = relay;
+    }
+
+    public void run() {
+      if (relay_.isDone()) {
+        return;
+      }
+      Future<?> timeout = timer_.schedule(new Timeout(relay_), WORKER_TIMEOUT_MSEC, TimeUnit.MILLISECONDS);
+      try {
+        worker_.run();
+      } finally {
+        timeout.cancel(false);
+        relay_.completed();
+      }
+      return;
+    }
+  }
+
+  /***************************************************************************
+  **
+  ** Fires when a worker has had long enough
+  */
+
+  private static class Timeout implements Runnable {
+
+    private Relay relay_;
+
+    Timeout(Relay relay) {
+      relay_ = relay;
+    }
+
+    public void run() {
+      relay_.timedOut();
+      return;
+    }
+  }
+
+  /***************************************************************************
+  **
+  ** Builds named daemon threads
+  */
+
+  private static class NamedFactory implements ThreadFactory {
+
+    private String prefix_;
+    private int count_;
+
+    NamedFactory(String prefix) {
+      prefix_ = prefix;
+      count_ = 0;
+    }
+
+    public synchronized Thread newThread(Runnable runner) {
+      Thread retval = new Thread(runner, prefix_ + count_++);
+      retval.setDaemon(true);
+      return (retval);
+    }
+  }
+}
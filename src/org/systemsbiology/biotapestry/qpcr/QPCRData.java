@@ -852,6 +852,16 @@ class QPCRData {
     genes_.add(gene);
   }
   
+  /***************************************************************************
+  **
+  ** Remove a gene
+  */
+  
+  void removeGene(TargetGene gene) {
+    genes_.remove(gene);
+    return;
+  }
+  
   /***************************************************************************
   **
   ** Get an iterator over the genes
@@ -889,6 +899,16 @@ class QPCRData {
     return;
   }
   
+  /***************************************************************************
+  **
+  ** Remove a null perturbation
+  */
+  
+  void removeNullPerturbation(NullPerturb np) {
+    nullPerturbations_.remove(np);
+    return;
+  }
+  
   /***************************************************************************
   **
   ** Get an iterator over the null perturbations
@@ -1302,7 +1322,54 @@ class QPCRData {
         return (null);
       }
     }
-      
+    return (getHTMLForKeys(keys, srcKeys, qtp));
+  }
+  
+  /***************************************************************************
+  **
+  ** Get the target keys used to build the HTML table for the given gene.
+  */
+  
+  List getHTMLEntryKeys(String geneId) {
+    return (getQPCRDataEntryKeysWithDefault(geneId));
+  }
+  
+  /***************************************************************************
+  **
+  ** Get the source keys used to build the HTML table for the given source.
+  */
+  
+  List getHTMLSourceKeys(String sourceID) {
+    return (getQPCRDataSourceKeysWithDefault(sourceID));
+  }
+  
+  /***************************************************************************
+  **
+  ** Collect up the normalized names of the sources of each null perturbation
+  ** that shows up in the HTML table for the given keys.
+  */
+  
+  void getHTMLNullSourceDependencies(List keys, List srcKeys, Set normSrcNames) {
+    Iterator pers = getNullPerturbations();
+    while (pers.hasNext()) {
+      NullPerturb per = (NullPerturb)pers.next();
+      if (per.sourcesContainOneOrMore(srcKeys) && per.appliesToTargets(keys)) {
+        Iterator sit = per.getSources();
+        while (sit.hasNext()) {
+          Source src = (Source)sit.next();
+          normSrcNames.add(DataUtil.normKey(src.getBaseType()));
+        }
+      }
+    }
+    return;
+  }
+  
+  /***************************************************************************
+  **
+  ** Get the HTML table for the given target and source keys.
+  */
+  
+  String getHTMLForKeys(List keys, List srcKeys, QpcrTablePublisher qtp) {
     StringWriter sw = new StringWriter();
     PrintWriter out = new PrintWriter(sw);
     qtp.setOutput(out);
@@ -26,6 +26,7 @@ import java.util.Iterator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.TreeSet;
@@ -45,6 +46,7 @@ import org.systemsbiology.biotapestry.perturb.Experiment;
 import org.systemsbiology.biotapestry.perturb.PerturbationData;
 import org.systemsbiology.biotapestry.ui.DisplayOptions;
 import org.systemsbiology.biotapestry.ui.dialogs.utils.ReadOnlyTable;
+import org.systemsbiology.biotapestry.util.DataUtil;
 import org.systemsbiology.biotapestry.util.MinMax;
 import org.systemsbiology.biotapestry.util.ResourceManager;
 
@@ -62,6 +64,8 @@ class QpcrDisplayGenerator {
   ////////////////////////////////////////////////////////////////////////////
   
   private HashMap tempFoots_;
+  private HashMap sourceLists_;
+  private HashMap genesByKey_;
   private BTState appState_;
   
   ////////////////////////////////////////////////////////////////////////////
@@ -78,6 +82,8 @@ class QpcrDisplayGenerator {
   QpcrDisplayGenerator(BTState appState) {
     appState_ = appState;
     tempFoots_ = new HashMap();
+    sourceLists_ = new HashMap();
+    genesByKey_ = new HashMap();
   }
 
   ////////////////////////////////////////////////////////////////////////////
@@ -94,9 +100,6 @@ class QpcrDisplayGenerator {
   QPCRData createQPCRFromPerts(PerturbationData pd) {
  
     QPCRData qpcr = new QPCRData(appState_);
-    PertDictionary pDict = pd.getPertDictionary();
-    ResourceManager rMan = appState_.getRMan();
-    String etAl = rMan.getString("qpcrData.andOthers");
       
     DisplayOptions dOpt = appState_.getDisplayOptMgr().getDisplayOptions();
     if (dOpt.hasColumns()) {
@@ -108,11 +111,315 @@ class QpcrDisplayGenerator {
     } else {
       qpcr.addColumn(new MinMax(Integer.MIN_VALUE, Integer.MAX_VALUE));
     }
-    String scaleKey = dOpt.getPerturbDataDisplayScaleKey();
-    Map techColors = dOpt.getMeasurementDisplayColors();
  
     PertFilterExpression pfe = new PertFilterExpression(PertFilterExpression.ALWAYS_OP);
     List pertData = pd.getPerturbations(pfe); 
+    fillFromPoints(qpcr, pertData, pd, null);
+    
+    //
+    // Get the maps filled in:
+    //
+    
+    Genome genome = appState_.getDB().getGenome();
+    Iterator anit = genome.getAllNodeIterator();
+    while (anit.hasNext()) {
+      Node node = (Node)anit.next();
+      String nodeID = node.getID();
+      List entries = pd.getCustomDataEntryKeys(nodeID);
+      ArrayList mapped = null;
+      if ((entries != null) && !entries.isEmpty()) {
+        mapped = new ArrayList();
+        int numE = entries.size();
+        for (int i = 0; i < numE; i++) {
+          String targKey = (String)entries.get(i);
+          String targName = pd.getTarget(targKey);
+          mapped.add(targName);
+        }
+      }
+          
+      List sources = pd.getCustomDataSourceKeys(nodeID);
+      ArrayList mappedS = null;
+      if ((sources != null) && !sources.isEmpty()) {
+        mappedS = new ArrayList();
+        int numE = sources.size();
+        for (int i = 0; i < numE; i++) {
+          String srcKey = (String)sources.get(i);
+          String srcName = pd.getSourceName(srcKey);
+          mappedS.add(srcName);
+        }
+      }     
+      
+      qpcr.addDataMaps(nodeID, mapped, mappedS);    
+    }
+    
+    //
+    // Fill out the footnotes:
+    //
+    
+    SortedMap annots = pd.getPertAnnotationsMap();
+    Iterator akit = annots.keySet().iterator();
+    while (akit.hasNext()) {
+      String tag = (String)akit.next();
+      String message = (String)annots.get(tag);
+      Footnote nextNote = new Footnote(tag);
+      nextNote.setNote(message);
+      qpcr.addFootnote(nextNote);
+    }
+    Iterator lit = tempFoots_.keySet().iterator();
+    TreeMap sorted = new TreeMap(new ReadOnlyTable.NumStrComparator());
+    while (lit.hasNext()) {
+      String message = (String)lit.next();
+      String tag = (String)tempFoots_.get(message);
+      sorted.put(tag, message);
+    }
+    Iterator sit = sorted.keySet().iterator();
+    while (sit.hasNext()) {
+      String tag = (String)sit.next();
+      String message = (String)sorted.get(tag);
+      Footnote nextNote = new Footnote(tag);
+      nextNote.setNote(message);
+      qpcr.addFootnote(nextNote);
+    }     
+    return (qpcr);
+  }
+   
+  /***************************************************************************
+  ** 
+  ** Patch an existing display model after data point edits, rebuilding only
+  ** the rows for the edited cells (PertSources to target keys).  A row covers
+  ** every time for a source set and target, since that is where footnotes get
+  ** hoisted.  The null perturbation for an edited source set is rebuilt whole,
+  ** since its footnotes are hoisted across all its targets.  Returns false if
+  ** the edits change which temporary footnotes the model needs; the caller must
+  ** then build it from scratch.
+  */
+
+  boolean updateQPCRFromPerts(QPCRData qpcr, PerturbationData pd, Map dirtyCells) {
+    PertDictionary pDict = pd.getPertDictionary();
+    
+    //
+    // Pick up the generated footnotes and the genes from the existing model:
+    //
+    
+    SortedMap annots = pd.getPertAnnotationsMap();
+    HashSet tempTags = new HashSet();
+    Iterator fit = qpcr.getFootnotes();
+    while (fit.hasNext()) {
+      Footnote fn = (Footnote)fit.next();
+      String tag = fn.getNumber();
+      if (!annots.containsKey(tag)) {
+        tempFoots_.put(fn.getNote(), tag);
+        tempTags.add(tag);
+      }
+    }
+    int numTemp = tempFoots_.size();
+    Iterator git = qpcr.getGenes();
+    while (git.hasNext()) {
+      TargetGene gene = (TargetGene)git.next();
+      String normTarg = DataUtil.normKey(gene.getName());
+      if (!genesByKey_.containsKey(normTarg)) {
+        genesByKey_.put(normTarg, gene);
+      }
+    }
+    
+    //
+    // Rows are merged on the displayed sources, so other source sets that
+    // display the same way have to be rebuilt along with the edited ones:
+    //
+    
+    HashMap fillTargs = new HashMap();
+    Iterator dcit = dirtyCells.keySet().iterator();
+    while (dcit.hasNext()) {
+      PertSources ps = (PertSources)dcit.next();
+      fillTargs.put(ps, new HashSet((Set)dirtyCells.get(ps)));
+    }
+    Iterator ekit = pd.getExperimentKeys();
+    while (ekit.hasNext()) {
+      PertSources ps = pd.getExperiment((String)ekit.next()).getSources();
+      if (fillTargs.containsKey(ps)) {
+        continue;
+      }
+      List sources = getQPCRSourceList(ps, pd, pDict);
+      dcit = dirtyCells.keySet().iterator();
+      while (dcit.hasNext()) {
+        PertSources dps = (PertSources)dcit.next();
+        if (sourceListsMatch(getQPCRSourceList(dps, pd, pDict), sources)) {
+          HashSet targs = (HashSet)fillTargs.get(ps);
+          if (targs == null) {
+            targs = new HashSet();
+            fillTargs.put(ps, targs);
+          }
+          targs.addAll((Set)dirtyCells.get(dps));
+        }
+      }
+    }
+    
+    //
+    // Toss the old rows, and rebuild them from the data points of those source
+    // sets, in the same order a full build uses.  Rebuilt rows go back where
+    // the old ones were, and genes left empty get dropped:
+    //
+    
+    HashSet removedTags = new HashSet();
+    ArrayList slots = new ArrayList();
+    visitRows(qpcr, pd, fillTargs, slots, removedTags);
+    
+    TreeMap sortedPoints = new TreeMap();
+    Iterator pdpit = pd.getDataPoints();
+    while (pdpit.hasNext()) {
+      PertDataPoint pdp = (PertDataPoint)pdpit.next();
+      if (fillTargs.containsKey(pdp.getSources(pd))) {
+        sortedPoints.put(pdp.getID(), pdp);
+      }
+    }
+    fillFromPoints(qpcr, new ArrayList(sortedPoints.values()), pd, fillTargs);
+    for (int i = slots.size() - 1; i >= 0; i--) {
+      restoreRow(qpcr, (RowSlot)slots.get(i));
+    }
+    
+    //
+    // New generated footnotes would need new numbers, and dropped ones may
+    // now be unused:
+    //
+    
+    if (tempFoots_.size() != numTemp) {
+      return (false);
+    }
+    HashSet addedTags = new HashSet();
+    visitRows(qpcr, pd, fillTargs, null, addedTags);
+    removedTags.retainAll(tempTags);
+    return (addedTags.containsAll(removedTags));
+  }
+  
+  /***************************************************************************
+  ** 
+  ** Collect the footnote tags of the null perturbations and perturbation rows
+  ** for the given cells.  If slots is not null, the rows are also removed from
+  ** the model, and where they sat gets recorded.
+  */
+
+  private void visitRows(QPCRData qpcr, PerturbationData pd, Map fillTargs, List slots, Set tags) {
+    PertDictionary pDict = pd.getPertDictionary();
+    Iterator ftit = fillTargs.keySet().iterator();
+    while (ftit.hasNext()) {
+      PertSources ps = (PertSources)ftit.next();
+      List sources = getQPCRSourceList(ps, pd, pDict);
+      NullPerturb npert = nullPerturbationMatchesSource(qpcr, sources);
+      if (npert != null) {
+        tags.addAll(npert.getFootnoteNumbers());
+        if (slots != null) {
+          qpcr.removeNullPerturbation(npert);
+        }
+      }
+      Iterator tit = ((Set)fillTargs.get(ps)).iterator();
+      while (tit.hasNext()) {
+        String targName = pd.getTarget((String)tit.next());
+        TargetGene gene = (targName == null) ? null : findGene(qpcr, targName);
+        if (gene == null) {
+          continue;
+        }
+        int index = 0;
+        Iterator pit = gene.getPerturbations();
+        while (pit.hasNext()) {
+          Perturbation pert = (Perturbation)pit.next();
+          if (pert.sourcesMatch(sources)) {
+            tags.addAll(pert.getFootnoteNumbers());
+            if (slots != null) {
+              gene.deletePerturbation(index);
+              slots.add(new RowSlot(gene, sources, index));
+            }
+            break;
+          }
+          index++;
+        }
+      }
+    }
+    return;
+  }
+  
+  /***************************************************************************
+  ** 
+  ** Move a rebuilt row back to where the old one sat.  Drop the gene if the
+  ** row did not come back and nothing else is left.
+  */
+
+  private void restoreRow(QPCRData qpcr, RowSlot slot) {
+    int index = 0;
+    Iterator pit = slot.gene.getPerturbations();
+    while (pit.hasNext()) {
+      Perturbation pert = (Perturbation)pit.next();
+      if (pert.sourcesMatch(slot.sources)) {
+        slot.gene.deletePerturbation(index);
+        slot.gene.insertPerturbation(slot.index, pert);
+        return;
+      }
+      index++;
+    }
+    if (!slot.gene.getPerturbations().hasNext()) {
+      qpcr.removeGene(slot.gene);
+      String normTarg = DataUtil.normKey(slot.gene.getName());
+      if (genesByKey_.get(normTarg) == slot.gene) {
+        genesByKey_.remove(normTarg);
+      }
+    }
+    return;
+  }
+  
+  /***************************************************************************
+  ** 
+  ** Answer if two source lists display the same
+  */
+
+  private boolean sourceListsMatch(List sources, List otherSources) {
+    if (otherSources.size() != sources.size()) {
+      return (false);
+    }
+    QPCRData.SourceComparator srcCmp = new QPCRData.SourceComparator();
+    TreeSet mySorted = new TreeSet(srcCmp);
+    mySorted.addAll(sources);
+    TreeSet otherSorted = new TreeSet(srcCmp);
+    otherSorted.addAll(otherSources);
+    Iterator msit = mySorted.iterator();
+    Iterator osit = otherSorted.iterator();    
+    while (msit.hasNext()) {
+      Source ms = (Source)msit.next();
+      Source os = (Source)osit.next();
+      if (srcCmp.compare(ms, os) != 0) {
+        return (false);
+      }
+    }
+    return (true);
+  }
+  
+  /***************************************************************************
+  ** 
+  ** Find the gene for the target name.  Genes are looked up by normalized name
+  ** instead of scanning the whole gene list for every data point.
+  */
+
+  private TargetGene findGene(QPCRData qpcr, String targName) {
+    TargetGene gene = (TargetGene)genesByKey_.get(DataUtil.normKey(targName));
+    if ((gene != null) && !DataUtil.keysEqual(gene.getName(), targName)) {
+      gene = qpcr.getQPCRDataRelaxedMatch(targName);
+    }
+    return (gene);
+  }
+   
+  /***************************************************************************
+  ** 
+  ** Build the rows for the given data points into the display model.  If
+  ** fillTargs (PertSources to target keys) is not null, only those rows with
+  ** measurements get built; null perturbations are always built for every
+  ** source set present in the points.
+  */
+
+  private void fillFromPoints(QPCRData qpcr, List pertData, PerturbationData pd, Map fillTargs) {
+    PertDictionary pDict = pd.getPertDictionary();
+    ResourceManager rMan = appState_.getRMan();
+    String etAl = rMan.getString("qpcrData.andOthers");
+    DisplayOptions dOpt = appState_.getDisplayOptMgr().getDisplayOptions();
+    String scaleKey = dOpt.getPerturbDataDisplayScaleKey();
+    Map techColors = dOpt.getMeasurementDisplayColors();
     
     HashMap results = new HashMap();
     HashMap timeBounds = new HashMap();  
@@ -270,7 +577,7 @@ class QpcrDisplayGenerator {
         HashSet i4n = (HashSet)investForNull.get(sst);
         npert.addInvestigators(i4n);
         
-      } else {
+      } else if ((fillTargs == null) || ((Set)fillTargs.get(sst.srcs)).contains(sst.targKey)) {
         HashSet atfs = (HashSet)allTargsForSources.get(sst.srcs);
         if (atfs == null) {
           atfs = new HashSet();
@@ -281,73 +588,7 @@ class QpcrDisplayGenerator {
     }
     
     fillInPerturbations(qpcr, allTargsForSources, pertData, pd, pDict, scaleKey, techColors);
-    
-    
-    //
-    // Get the maps filled in:
-    //
-    
-    Genome genome = appState_.getDB().getGenome();
-    Iterator anit = genome.getAllNodeIterator();
-    while (anit.hasNext()) {
-      Node node = (Node)anit.next();
-      String nodeID = node.getID();
-      List entries = pd.getCustomDataEntryKeys(nodeID);
-      ArrayList mapped = null;
-      if ((entries != null) && !entries.isEmpty()) {
-        mapped = new ArrayList();
-        int numE = entries.size();
-        for (int i = 0; i < numE; i++) {
-          String targKey = (String)entries.get(i);
-          String targName = pd.getTarget(targKey);
-          mapped.add(targName);
-        }
-      }
-          
-      List sources = pd.getCustomDataSourceKeys(nodeID);
-      ArrayList mappedS = null;
-      if ((sources != null) && !sources.isEmpty()) {
-        mappedS = new ArrayList();
-        int numE = sources.size();
-        for (int i = 0; i < numE; i++) {
-          String srcKey = (String)sources.get(i);
-          String srcName = pd.getSourceName(srcKey);
-          mappedS.add(srcName);
-        }
-      }     
-      
-      qpcr.addDataMaps(nodeID, mapped, mappedS);    
-    }
-    
-    //
-    // Fill out the footnotes:
-    //
-    
-    SortedMap annots = pd.getPertAnnotationsMap();
-    Iterator akit = annots.keySet().iterator();
-    while (akit.hasNext()) {
-      String tag = (String)akit.next();
-      String message = (String)annots.get(tag);
-      Footnote nextNote = new Footnote(tag);
-      nextNote.setNote(message);
-      qpcr.addFootnote(nextNote);
-    }
-    Iterator lit = tempFoots_.keySet().iterator();
-    TreeMap sorted = new TreeMap(new ReadOnlyTable.NumStrComparator());
-    while (lit.hasNext()) {
-      String message = (String)lit.next();
-      String tag = (String)tempFoots_.get(message);
-      sorted.put(tag, message);
-    }
-    Iterator sit = sorted.keySet().iterator();
-    while (sit.hasNext()) {
-      String tag = (String)sit.next();
-      String message = (String)sorted.get(tag);
-      Footnote nextNote = new Footnote(tag);
-      nextNote.setNote(message);
-      qpcr.addFootnote(nextNote);
-    }     
-    return (qpcr);
+    return;
   }
    
   /***************************************************************************
@@ -548,6 +789,14 @@ class QpcrDisplayGenerator {
   */
    
   private List getQPCRSourceList(PertSources pss, PerturbationData pd, PertDictionary pDict) {
+    //
+    // This gets asked for every data point, so remember the answer per source
+    // set.  Callers clone the Sources before changing them:
+    //
+    List cached = (List)sourceLists_.get(pss);
+    if (cached != null) {
+      return (cached);
+    }
     ArrayList retval = new ArrayList();
     Iterator sit = pss.getSources();
     while (sit.hasNext()) {
@@ -560,6 +809,7 @@ class QpcrDisplayGenerator {
       newSrc.setNotes(noteStr); 
       retval.add(newSrc);
     }
+    sourceLists_.put(pss, retval);
     return (retval);
   }
   
@@ -712,12 +962,14 @@ class QpcrDisplayGenerator {
    
     List sources = getQPCRSourceList(ps, pd, pDict);
 
-    TargetGene gene = qpcr.getQPCRDataRelaxedMatch(pd.getTarget(targKey));
+    String targName = pd.getTarget(targKey);
+    TargetGene gene = findGene(qpcr, targName);
     if (gene == null) {
       List notes = pd.getFootnotesForTarget(targKey);
       String noteStr = (notes == null) ? null : pd.getFootnoteListAsString(notes);
-      gene = new TargetGene(pd.getTarget(targKey), noteStr);
+      gene = new TargetGene(targName, noteStr);
       qpcr.addGene(gene, false);
+      genesByKey_.put(DataUtil.normKey(targName), gene);
     }
     
     Perturbation pert = null;
@@ -1130,6 +1382,23 @@ class QpcrDisplayGenerator {
     }
   }
   
+  /***************************************************************************
+  ** 
+  ** Where a row sat in a gene before it got rebuilt
+  */  
+  
+  private static class RowSlot {    
+    TargetGene gene;
+    List sources;
+    int index;
+
+    RowSlot(TargetGene gene, List sources, int index) {
+      this.gene = gene;
+      this.sources = sources;
+      this.index = index;
+    }
+  }
+  
   /***************************************************************************
   ** 
   ** For gathering up Null pert region restrictions
@@ -20,12 +20,22 @@
 package org.systemsbiology.biotapestry.qpcr;
 
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.systemsbiology.biotapestry.app.BTState;
 import org.systemsbiology.biotapestry.parser.ParserClient;
+import org.systemsbiology.biotapestry.perturb.PertSource;
+import org.systemsbiology.biotapestry.perturb.PertSources;
 import org.systemsbiology.biotapestry.perturb.PerturbationData;
 import org.systemsbiology.biotapestry.ui.DisplayOptions;
+import org.systemsbiology.biotapestry.util.DataUtil;
 
 /****************************************************************************
 **
@@ -47,6 +57,7 @@ public class QpcrLegacyPublicExposed {
   private QPCRData legacyQPCR_;
   private QPCRData qpcrForDisplay_;
   private BTState appState_;
+  private HashMap<List<Object>, HTMLFragment> fragments_;
   
   ////////////////////////////////////////////////////////////////////////////
   //
@@ -63,11 +74,13 @@ public class QpcrLegacyPublicExposed {
   ////////////////////////////////////////////////////////////////////////////
 
   public QpcrLegacyPublicExposed(BTState appState) {
-    appState_ = appState;  
+    appState_ = appState;
+    fragments_ = new HashMap<List<Object>, HTMLFragment>();
   }
   
   QpcrLegacyPublicExposed(QPCRData data) {
     legacyQPCR_ = data;
+    fragments_ = new HashMap<List<Object>, HTMLFragment>();
   }
     
   public ParserClient getParserClient(boolean mapsAreIllegal, boolean serialNumberIsIllegal) {
@@ -86,6 +99,55 @@ public class QpcrLegacyPublicExposed {
   public void createQPCRFromPerts(PerturbationData pd) {
     QpcrDisplayGenerator qdg = new QpcrDisplayGenerator(appState_);
     qpcrForDisplay_ = qdg.createQPCRFromPerts(pd);
+    fragments_.clear();
+    return;
+  }
+  
+  /***************************************************************************
+  **
+  ** Patch the display model in place after data point edits that only touched
+  ** the given cells (source sets to target keys).  Only the rows for those cells
+  ** get rebuilt, and only the cached HTML tables that show them get dropped.
+  ** Falls back to a full build if the generated footnotes have to change.
+  */
+  
+  public void updateQPCRFromPerts(PerturbationData pd, Map<PertSources, Set<String>> dirtyCells) {
+    if (qpcrForDisplay_ == null) {
+      createQPCRFromPerts(pd);
+      return;
+    }
+    QpcrDisplayGenerator qdg = new QpcrDisplayGenerator(appState_);
+    if (!qdg.updateQPCRFromPerts(qpcrForDisplay_, pd, dirtyCells)) {
+      createQPCRFromPerts(pd);
+      return;
+    }
+    HashSet<String> dirtyTargs = new HashSet<String>();
+    HashSet<String> dirtySrcs = new HashSet<String>();
+    Iterator<PertSources> dcit = dirtyCells.keySet().iterator();
+    while (dcit.hasNext()) {
+      PertSources pss = dcit.next();
+      Iterator<String> sit = pss.getSources();
+      while (sit.hasNext()) {
+        PertSource ps = pd.getSourceDef(sit.next());
+        if (ps != null) {
+          dirtySrcs.add(DataUtil.normKey(ps.getSourceName(pd)));
+        }
+      }
+      Iterator<String> tit = dirtyCells.get(pss).iterator();
+      while (tit.hasNext()) {
+        String targName = pd.getTarget(tit.next());
+        if (targName != null) {
+          dirtyTargs.add(DataUtil.normKey(targName));
+        }
+      }
+    }
+    Iterator<HTMLFragment> fit = fragments_.values().iterator();
+    while (fit.hasNext()) {
+      HTMLFragment frag = fit.next();
+      if (!Collections.disjoint(frag.targs, dirtyTargs) || !Collections.disjoint(frag.srcs, dirtySrcs)) {
+        fit.remove();
+      }
+    }
     return;
   }
   
@@ -95,14 +157,49 @@ public class QpcrLegacyPublicExposed {
   
   public void dropCurrentStateForDisplay() {
     qpcrForDisplay_ = null;
+    fragments_.clear();
     return;
   }
   
   public String getHTML(String geneId, String sourceID, boolean noCss, boolean bigScreen) {
     DisplayOptions dOpt = appState_.getDisplayOptMgr().getDisplayOptions();
     Map<String, String> colors = dOpt.getMeasurementDisplayColors();
+    List keys = qpcrForDisplay_.getHTMLEntryKeys(geneId);
+    if (keys == null) {
+      return (null);
+    }
+    List srcKeys = null;
+    if (sourceID != null) {
+      srcKeys = qpcrForDisplay_.getHTMLSourceKeys(sourceID);
+      if (srcKeys == null) {
+        return (null);
+      }
+    }
+    //
+    // Tables get asked for over and over again (tooltips, popups), so they are
+    // cached against everything that goes into them besides the display model:
+    //
+    ArrayList<Object> fragKey = new ArrayList<Object>();
+    fragKey.add(new ArrayList<Object>(keys));
+    fragKey.add((srcKeys == null) ? null : new ArrayList<Object>(srcKeys));
+    fragKey.add(Boolean.valueOf(bigScreen));
+    fragKey.add(new HashMap<String, String>(colors));
+    fragKey.add(Boolean.valueOf(dOpt.breakOutInvestigators()));
+    fragKey.add(dOpt.getNullPertDefaultSpan());
+    HTMLFragment frag = fragments_.get(fragKey);
+    if (frag != null) {
+      return (frag.html);
+    }
     QpcrTablePublisher qtp = new QpcrTablePublisher(appState_, bigScreen, colors);
-    return (qpcrForDisplay_.getHTML(geneId, sourceID, qtp));
+    String html = qpcrForDisplay_.getHTMLForKeys(keys, srcKeys, qtp);
+    frag = new HTMLFragment(html);
+    Iterator kit = keys.iterator();
+    while (kit.hasNext()) {
+      frag.targs.add(DataUtil.normKey((String)kit.next()));
+    }
+    qpcrForDisplay_.getHTMLNullSourceDependencies(keys, srcKeys, frag.srcs);
+    fragments_.put(fragKey, frag);
+    return (html);
   }
   
   public boolean publish(PrintWriter out) {
@@ -111,6 +208,28 @@ public class QpcrLegacyPublicExposed {
     QpcrTablePublisher qtp = new QpcrTablePublisher(appState_, colors);
     return (qtp.publish(out, qpcrForDisplay_));
   }    
-}
   
- 
\ No newline at end of file
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE INNER CLASSES
+  //
+  ////////////////////////////////////////////////////////////////////////////
+  
+  /***************************************************************************
+  **
+  ** A cached HTML table, with the normalized target and null perturbation
+  ** source names it was built from
+  */
+  
+  private static class HTMLFragment {
+    String html;
+    HashSet<String> targs;
+    HashSet<String> srcs;
+    
+    HTMLFragment(String html) {
+      this.html = html;
+      this.targs = new HashSet<String>();
+      this.srcs = new HashSet<String>();
+    }
+  }
+}
@@ -130,6 +130,17 @@ class TargetGene {
     return;
   }
   
+  /***************************************************************************
+  **
+  ** Insert a perturbation at the given position, or at the end if the list
+  ** has gotten shorter than that
+  */
+  
+   void insertPerturbation(int index, Perturbation perturbation) {
+    perturbations_.add(Math.min(index, perturbations_.size()), perturbation);
+    return;
+  }
+  
   /***************************************************************************
   **
   ** Delete the source
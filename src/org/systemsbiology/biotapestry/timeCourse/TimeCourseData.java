@@ -22,6 +22,7 @@ package org.systemsbiology.biotapestry.timeCourse;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.TreeSet;
 import java.util.SortedSet;
 import java.util.SortedMap;
@@ -55,6 +56,7 @@ import org.systemsbiology.biotapestry.genome.FactoryWhiteboard;
 import org.systemsbiology.biotapestry.genome.GenomeItemInstance;
 import org.systemsbiology.biotapestry.parser.AbstractFactoryClient;
 import org.systemsbiology.biotapestry.perturb.PertSources;
+import org.systemsbiology.biotapestry.ui.DisplayOptions;
 import org.systemsbiology.biotapestry.util.AttributeExtractor;
 import org.systemsbiology.biotapestry.util.DataUtil;
 import org.systemsbiology.biotapestry.util.ResourceManager;
@@ -98,6 +100,7 @@ public class TimeCourseData implements Cloneable {
   private long serialNumber_;
   private long topoSerialNumber_;
   private long linSerialNumber_;
+  private TimeCourseTableDrawer.TableCache tableCache_;
   private BTState appState_;
   
   ////////////////////////////////////////////////////////////////////////////
@@ -139,6 +142,7 @@ public class TimeCourseData implements Cloneable {
   public TimeCourseData clone() {
     try {
       TimeCourseData retval = (TimeCourseData)super.clone();
+      retval.tableCache_ = null;
   
       int size = this.genes_.size();
       retval.genes_ = new ArrayList<TimeCourseGene>();
@@ -207,6 +211,18 @@ public class TimeCourseData implements Cloneable {
     return (serialNumber_);
   }
   
+  /***************************************************************************
+  **
+  ** Return the cache of rendered expression tables for this data
+  */
+  
+  synchronized TimeCourseTableDrawer.TableCache getTableCache() {
+    if (tableCache_ == null) {
+      tableCache_ = new TimeCourseTableDrawer.TableCache();
+    }
+    return (tableCache_);
+  }
+  
   /***************************************************************************
   **
   ** Return the topology serialNumber
@@ -586,6 +602,33 @@ public class TimeCourseData implements Cloneable {
     
     return;
   }
+  
+  /***************************************************************************
+  **
+  ** Write the expression tables for all the genes as an HTML file:
+  **
+  */
+  
+  public boolean publishExpressionTables(PrintWriter out) {
+    DisplayOptions dOpt = appState_.getDisplayOptMgr().getDisplayOptions();
+    boolean showTree = (hierarchyIsSet()) ? dOpt.showExpressionTableTree() : false;
+    LinkedHashMap<String, String> tables = new LinkedHashMap<String, String>();
+    int needKey = TimeCourseTableDrawer.getAllExpressionTables(appState_, this, showTree, tables);
+    
+    out.print("<html>\n<body>\n<center><h1>");
+    out.print(appState_.getRMan().getString("dataWindow.expressionProfile"));
+    out.print("</h1>\n");
+    Iterator<String> tit = tables.values().iterator();
+    while (tit.hasNext()) {
+      out.print("<p>");
+      out.print(tit.next());
+      out.print("</p>\n");
+    }
+    out.print(TimeCourseTableDrawer.buildKey(appState_, needKey, showTree, false));
+    out.print("</center>\n</body>\n</html>\n");
+    out.flush();
+    return (true);
+  }
  
   /***************************************************************************
   **
@@ -34,6 +34,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeMap;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreeModel;
@@ -80,6 +87,13 @@ public class TimeCourseTableDrawer {
   private TimeCourseGene client_;
   private PerturbedTimeCourseGene pertClient_;
   private BTState appState_;
+  private TreeSet<Integer> times_;
+  private ExpressionGrid wtGrid_;
+  private ExpressionGrid pertGrid_;
+  private ExpressionGrid ctrlGrid_;
+  private static ExecutorService exportPool_;
+  
+  private static final int MAX_EXPORT_THREADS_ = 4;
   
   private static final String BIG_VERT_COLOR_  = "#F8F8F8";  
   private static final String NO_REGION_COLOR_ = "#DDDDDD";
@@ -158,16 +172,190 @@ public class TimeCourseTableDrawer {
     if (pertClient_.isInternalOnly() || client_.isInternalOnly()) {
       return (NO_TABLE_KEY);
     }
+    RenderedTable table = getCachedTable(new TableKey(client_, pertClient_, false), tcd);
+    out.print(table.html);
+    return (table.needKey);
+  }
+
+  /***************************************************************************
+  **
+  ** Get an HTML expression table suitable for display.
+  */
+  
+  public int getExpressionTable(PrintWriter out, TimeCourseData tcd, boolean showTree) {
+     
+    if (client_.isInternalOnly()) {
+      return (NO_TABLE_KEY);
+    }
+    RenderedTable table = getCachedTable(new TableKey(client_, null, showTree), tcd);
+    out.print(table.html);
+    return (table.needKey);
+  }
+  
+  /***************************************************************************
+  **
+  ** Get the HTML expression tables for every gene, e.g. for export.  Tables
+  ** are rendered in parallel and are returned in gene order, keyed by gene
+  ** name.  Genes without a table are skipped.  Returns the key flags needed
+  ** to cover all the tables.
+  */
+  
+  public static int getAllExpressionTables(BTState appState, TimeCourseData tcd, 
+                                           boolean showTree, Map<String, String> tables) {
+    ArrayList<TimeCourseGene> genes = new ArrayList<TimeCourseGene>();
+    ArrayList<Future<RenderedTable>> pending = new ArrayList<Future<RenderedTable>>();
+    ExecutorService pool = getExportPool();
+    Iterator<TimeCourseGene> git = tcd.getGenes();
+    while (git.hasNext()) {
+      TimeCourseGene gene = git.next();
+      genes.add(gene);
+      pending.add(pool.submit(new TableRenderer(appState, gene, tcd, showTree)));
+    }
+    
+    int retval = NO_TABLE_KEY;
+    int numGenes = genes.size();
+    for (int i = 0; i < numGenes; i++) {
+      RenderedTable table = waitForTable(pending.get(i));
+      retval |= table.needKey;
+      if (!table.html.trim().equals("")) {
+        tables.put(genes.get(i).getName(), table.html);
+      }
+    }
+    return (retval);
+  }
+  
+  /***************************************************************************
+  **
+  ** Get the rendered table from the cache, building it if it is missing
+  ** or the data has changed since it was built.
+  */
+  
+  private RenderedTable getCachedTable(TableKey key, TimeCourseData tcd) {
+    TableCache cache = tcd.getTableCache();
+    Database db = appState_.getDB();
+    TimeAxisDefinition timeAxis = db.getTimeAxisDefinition();
+    long colorRev = db.getColorRevision();
+    RenderedTable retval = cache.getTable(key, tcd, timeAxis, colorRev);
+    if (retval == null) {
+      StringWriter sw = new StringWriter();
+      PrintWriter out = new PrintWriter(sw);
+      int needKey;
+      if (key.pertGene != null) {
+        needKey = renderPertExpressionTable(out, tcd);
+      } else {
+        needKey = renderExpressionTable(out, tcd, key.showTree);
+      }
+      out.flush();
+      retval = new RenderedTable(sw.getBuffer().toString(), needKey);
+      cache.putTable(key, retval, tcd, timeAxis, colorRev);
+    }
+    return (retval);
+  }
+  
+  /***************************************************************************
+  **
+  ** Wait for an export table to be rendered, passing along whatever it threw
+  */
+  
+  private static RenderedTable waitForTable(Future<RenderedTable> pending) {
+    try {
+      return (pending.get());
+    } catch (InterruptedException iex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(iex);
+    } catch (ExecutionException eex) {
+      Throwable cause = eex.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException)cause;
+      } else if (cause instanceof Error) {
+        throw (Error)cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+  
+  /***************************************************************************
+  **
+  ** Get the daemon thread pool used for rendering export tables
+  */
+  
+  private static synchronized ExecutorService getExportPool() {
+    if (exportPool_ == null) {
+      int threads = Math.min(MAX_EXPORT_THREADS_, Runtime.getRuntime().availableProcessors());
+      exportPool_ = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+        private int count_ = 0;
+        public synchronized Thread newThread(Runnable runner) {
+          Thread retval = new Thread(runner, "ExpressionTableExport-" + count_++);
+          retval.setDaemon(true);
+          return (retval);
+        }
+      });
+    }
+    return (exportPool_);
+  }
+  
+  /***************************************************************************
+  **
+  ** Times shown in the table columns
+  */
+  
+  private TreeSet<Integer> getTableTimes() {
+    if (times_ == null) {
+      HashSet<Integer> rawtimes = new HashSet<Integer>();
+      client_.getInterestingTimes(rawtimes);
+      times_ = new TreeSet<Integer>(rawtimes);
+    }
+    return (times_);
+  }
+  
+  /***************************************************************************
+  **
+  ** Grid for the wild type expression
+  */
+  
+  private ExpressionGrid wtGrid() {
+    if (wtGrid_ == null) {
+      wtGrid_ = new ExpressionGrid(client_, false, getTableTimes());
+    }
+    return (wtGrid_);
+  }
+  
+  /***************************************************************************
+  **
+  ** Grid for the perturbed expression
+  */
+  
+  private ExpressionGrid pertGrid() {
+    if (pertGrid_ == null) {
+      pertGrid_ = new ExpressionGrid(pertClient_, false, getTableTimes());
+    }
+    return (pertGrid_);
+  }
+  
+  /***************************************************************************
+  **
+  ** Grid for the control expression that goes with the perturbed expression
+  */
+  
+  private ExpressionGrid ctrlGrid() {
+    if (ctrlGrid_ == null) {
+      ctrlGrid_ = new ExpressionGrid(pertClient_, true, getTableTimes());
+    }
+    return (ctrlGrid_);
+  }
+  
+  /***************************************************************************
+  **
+  ** Build the HTML perturbed expression table
+  */
+  
+  private int renderPertExpressionTable(PrintWriter out, TimeCourseData tcd) {
     
     HashSet<String> rawregions = new HashSet<String>();
     client_.getRegions(rawregions);  
     List<String> ordered = tcd.getRegionsKeepOrder();    
     List<RegionData> regions = sortRegions(rawregions, ordered);
-        
-    TreeSet<Integer> times = new TreeSet<Integer>();
-    HashSet<Integer> rawtimes = new HashSet<Integer>();
-    client_.getInterestingTimes(rawtimes);
-    times.addAll(rawtimes);
+    TreeSet<Integer> times = getTableTimes();
     
     ResourceManager rMan = appState_.getRMan();
     String format = rMan.getString("timeCourseDrawer.perTablePertTitleFormat");
@@ -186,14 +374,14 @@ public class TimeCourseTableDrawer {
     List<RegionData> reducedReg = new ArrayList<RegionData>();
     HashSet<String> usedRegions = new HashSet<String>();
     int numRegions1 = regions.size();
+    ExpressionGrid pertGrid = pertGrid();
+    TimeCourseGene.VariableLevel varLev = new TimeCourseGene.VariableLevel();
     for (int i = 0; i < numRegions1; i++) {
       RegionData reg = regions.get(i);
       Iterator<Integer> tmit = times.iterator();
       while (tmit.hasNext()) {
         Integer timeObj = tmit.next();
-        TimeCourseGene.VariableLevel varLev = new TimeCourseGene.VariableLevel();
-        int level = pertClient_.getExpressionLevelForSource(reg.region, timeObj.intValue(), 
-                                                            ExpressionEntry.NO_SOURCE_SPECIFIED, varLev);
+        int level = pertGrid.getLevel(reg.region, timeObj.intValue(), varLev);
         if ((level == ExpressionEntry.NO_DATA) || (level == ExpressionEntry.NO_REGION)) {
           continue;
         }
@@ -310,22 +498,18 @@ public class TimeCourseTableDrawer {
       out.println("</p>");    
     }
        
-    int clientKey = needKey(reducedReg, times, client_);
-    int pertKey = needKey(reducedReg, times, pertClient_);
+    int clientKey = needKey(reducedReg, wtGrid());
+    int pertKey = needKey(reducedReg, pertGrid);
     int retval = Math.max(clientKey, pertKey);
     return (retval);
   }
 
   /***************************************************************************
   **
-  ** Get an HTML expression table suitable for display.
+  ** Build the HTML expression table
   */
   
-  public int getExpressionTable(PrintWriter out, TimeCourseData tcd, boolean showTree) {
-     
-    if (client_.isInternalOnly()) {
-      return (NO_TABLE_KEY);
-    }
+  private int renderExpressionTable(PrintWriter out, TimeCourseData tcd, boolean showTree) {
    
     List<RegionData> regions;
     TreeSet<Integer> times;
@@ -346,11 +530,7 @@ public class TimeCourseTableDrawer {
       client_.getRegions(rawregions);  
       List<String> ordered = (tcd.hierarchyIsSet()) ? tcd.getRegionHierarchyList() : tcd.getRegionsKeepOrder();    
       regions = sortRegions(rawregions, ordered);
-
-      HashSet<Integer> rawtimes = new HashSet<Integer>();
-      client_.getInterestingTimes(rawtimes);
-      times = new TreeSet<Integer>();
-      times.addAll(rawtimes);
+      times = getTableTimes();
       
       int num = 130 + (times.size() * 70); 
       
@@ -385,7 +565,7 @@ public class TimeCourseTableDrawer {
         tmit = times.iterator();
         while (tmit.hasNext()) {
           Integer hour = tmit.next();
-          buildCell(out, reg.region, hour.intValue(), client_);
+          buildCell(out, reg.region, hour.intValue(), wtGrid());
         }
         out.println("</tr>");
       }
@@ -407,7 +587,7 @@ public class TimeCourseTableDrawer {
     }
     
     out.println("<p></p>");     
-    return (needKey(regions, times, client_));
+    return (needKey(regions, wtGrid()));
   }
   
   /***************************************************************************
@@ -448,25 +628,24 @@ public class TimeCourseTableDrawer {
   ** Answer if we need to show the confidence key
   */
   
-  private int needKey(List<RegionData> regions, SortedSet<Integer> times, Client client) {
+  private int needKey(List<RegionData> regions, ExpressionGrid grid) {
     int retval = BASIC_TABLE_KEY;
     int numRegions = regions.size();
+    int[] times = grid.getTimes();
     TimeCourseGene.VariableLevel varLev = new TimeCourseGene.VariableLevel();
     for (int i = 0; i < numRegions; i++) {
       RegionData reg = regions.get(i);
-      Iterator<Integer> tmit = times.iterator();
-      while (tmit.hasNext()) {
-        Integer hourObj = tmit.next();
-        int hour = hourObj.intValue();
-        int level = client.getExpressionLevelForSource(reg.region, hour, ExpressionEntry.NO_SOURCE_SPECIFIED, varLev);
+      for (int j = 0; j < times.length; j++) {
+        int hour = times[j];
+        int level = grid.getLevel(reg.region, hour, varLev);
         if ((level == ExpressionEntry.NO_REGION) || (level == ExpressionEntry.NO_DATA)) {
           continue;
         }
-        int source = client.getExprSource(reg.region, hour);
+        int source = grid.getExprSource(reg.region, hour);
         if (source != ExpressionEntry.NO_SOURCE_SPECIFIED) {
           retval |= ADD_SOURCE;
         }       
-        int confidence = client.getConfidence(reg.region, hour);
+        int confidence = grid.getConfidence(reg.region, hour);
         if (confidence != TimeCourseGene.NORMAL_CONFIDENCE) {
           retval |= ADD_CONFIDENCE;
         }
@@ -486,10 +665,7 @@ public class TimeCourseTableDrawer {
     DefaultMutableTreeNode rootNode = new DefaultMutableTreeNode();
     DefaultTreeModel hierTree = new DefaultTreeModel(rootNode); 
     stockRegionTree(rawHierTree, rawRootNode, hierTree, rootNode, regions);
-     
-    HashSet<Integer> rawtimes = new HashSet<Integer>();
-    client_.getInterestingTimes(rawtimes);
-    times.addAll(rawtimes);
+    times.addAll(getTableTimes());
      
     // On Java 5 & 6, 3-pix columns not rendering unless we force the table to
     // be big enough to render:
@@ -538,7 +714,7 @@ public class TimeCourseTableDrawer {
       tmit = times.iterator();
       while (tmit.hasNext()) {
         Integer hour = tmit.next();
-        buildCell(out, reg.region, hour.intValue(), client_);
+        buildCell(out, reg.region, hour.intValue(), wtGrid());
         col = colCols.get(new Integer(currTime++));  // may be null
         vert(out, col);
       }
@@ -718,15 +894,15 @@ public class TimeCourseTableDrawer {
   **
   */
   
-  private void buildCell(PrintWriter out, String reg, int hour, Client confClient) {
+  private void buildCell(PrintWriter out, String reg, int hour, ExpressionGrid grid) {
     TimeCourseGene.VariableLevel varLev = new TimeCourseGene.VariableLevel();
-    int level = client_.getExpressionLevelForSource(reg, hour, ExpressionEntry.NO_SOURCE_SPECIFIED, varLev);
+    int level = grid.getLevel(reg, hour, varLev);
     if ((level == ExpressionEntry.NO_DATA) || (level == ExpressionEntry.VARIABLE)) {
       out.print("<td width=\"70\" align=\"center\" valign=\"center\" ");
     } else {
       out.print("<td width=\"70\" align=\"right\" valign=\"bottom\" ");
     }
-    buildCellGuts(out, reg, hour, level, varLev, confClient);
+    buildCellGuts(out, reg, hour, level, varLev, grid);
     out.println("</td>");        
     return;
   }
@@ -738,7 +914,7 @@ public class TimeCourseTableDrawer {
   */
   
   private void buildCellGuts(PrintWriter out, String reg, int hour, int level, 
-                             TimeCourseGene.VariableLevel varLev, Client confClient) {
+                             TimeCourseGene.VariableLevel varLev, ExpressionGrid confGrid) {
     switch (level) {
       case ExpressionEntry.NO_REGION:
         out.println("bgcolor=\"#DDDDDD\">");        
@@ -750,22 +926,22 @@ public class TimeCourseTableDrawer {
         break;        
       case ExpressionEntry.NOT_EXPRESSED:
         out.println("bgcolor=\"#FFFFFF\">");
-        buildConfidenceAndSource(out, reg, hour, null, confClient);
+        buildConfidenceAndSource(out, reg, hour, null, confGrid);
         break;
       case ExpressionEntry.WEAK_EXPRESSION:
         out.println("bgcolor=\"#CCFFCC\">");
-        buildConfidenceAndSource(out, reg, hour, null, confClient);
+        buildConfidenceAndSource(out, reg, hour, null, confGrid);
         break;
       case ExpressionEntry.EXPRESSED:
         out.println("bgcolor=\"#66EE66\">");
-        buildConfidenceAndSource(out, reg, hour, null, confClient);
+        buildConfidenceAndSource(out, reg, hour, null, confGrid);
         break;
       case ExpressionEntry.VARIABLE:
         String col = variableBlockColor(varLev.level, false);
         out.print("bgcolor=\"#");
         out.print(col.substring(2));
         out.println("\">");
-        buildConfidenceAndSource(out, reg, hour, varLev, confClient);
+        buildConfidenceAndSource(out, reg, hour, varLev, confGrid);
         break;   
       default:
         throw new IllegalArgumentException();
@@ -783,30 +959,26 @@ public class TimeCourseTableDrawer {
     pertVert(out, BLACK_COLOR_);
     TimeCourseGene.VariableLevel varLev = new TimeCourseGene.VariableLevel();
     
-    int level;
-    boolean controlFromPert = pertClient_.usingDistinctControlExpr();
-    if (controlFromPert) {
-      level = pertClient_.getControlExpressionLevelForSource(reg, hour, ExpressionEntry.NO_SOURCE_SPECIFIED, varLev);
-    } else {
-      level = client_.getExpressionLevelForSource(reg, hour, ExpressionEntry.NO_SOURCE_SPECIFIED, varLev);
-    }
+    ExpressionGrid ctrlGrid = (pertClient_.usingDistinctControlExpr()) ? ctrlGrid() : wtGrid();
+    int level = ctrlGrid.getLevel(reg, hour, varLev);
     if ((level == ExpressionEntry.NO_DATA) || (level == ExpressionEntry.VARIABLE)) {
       out.print("<td width=\"35\" height=\"40\" align=\"center\" valign=\"center\" ");
     } else {
       out.print("<td width=\"35\" height=\"40\" align=\"right\" valign=\"bottom\" ");
     }
-    buildCellGuts(out, reg, hour, level, varLev, (controlFromPert) ? (Client)pertClient_ : (Client)client_);
+    buildCellGuts(out, reg, hour, level, varLev, ctrlGrid);
     out.println("</td>");
     
     pertVert(out, (level == ExpressionEntry.NO_REGION) ? NO_REGION_COLOR_ : BLACK_COLOR_);
     TimeCourseGene.VariableLevel pertVarLev = new TimeCourseGene.VariableLevel();
-    int pertLevel = pertClient_.getExpressionLevelForSource(reg, hour, ExpressionEntry.NO_SOURCE_SPECIFIED, pertVarLev);
+    ExpressionGrid pertGrid = pertGrid();
+    int pertLevel = pertGrid.getLevel(reg, hour, pertVarLev);
     if ((pertLevel == ExpressionEntry.NO_DATA) || (pertLevel == ExpressionEntry.VARIABLE)) {
       out.print("<td width=\"35\" height=\"40\" align=\"center\" valign=\"center\" ");
     } else {
       out.print("<td width=\"35\" height=\"40\" align=\"right\" valign=\"bottom\" ");
     }
-    buildCellGuts(out, reg, hour, pertLevel, pertVarLev, pertClient_);
+    buildCellGuts(out, reg, hour, pertLevel, pertVarLev, pertGrid);
     out.println("</td>");
     pertVert(out, BLACK_COLOR_);
     return;
@@ -882,14 +1054,14 @@ public class TimeCourseTableDrawer {
   */
 
   private void buildConfidenceAndSource(PrintWriter out, String reg, int hour, 
-                                        TimeCourseGene.VariableLevel varLev, Client csClient) {
+                                        TimeCourseGene.VariableLevel varLev, ExpressionGrid csGrid) {
     if (varLev == null) {
-      buildFixedConfidenceAndSource(out, reg, hour, csClient);
+      buildFixedConfidenceAndSource(out, reg, hour, csGrid);
       return;
     }
     out.println(varLev.level);
-    int confidence = csClient.getConfidence(reg, hour);
-    int source = csClient.getExprSource(reg, hour);
+    int confidence = csGrid.getConfidence(reg, hour);
+    int source = csGrid.getExprSource(reg, hour);
     String cStr = confTag(confidence);
     String sStr = sourceTag(source);
     if (sStr == null) {
@@ -924,9 +1096,9 @@ public class TimeCourseTableDrawer {
   **
   */
 
-  private void buildFixedConfidenceAndSource(PrintWriter out, String reg, int hour, Client csClient) {
-    int confidence = csClient.getConfidence(reg, hour);
-    int source = csClient.getExprSource(reg, hour);
+  private void buildFixedConfidenceAndSource(PrintWriter out, String reg, int hour, ExpressionGrid csGrid) {
+    int confidence = csGrid.getConfidence(reg, hour);
+    int source = csGrid.getExprSource(reg, hour);
     String cStr = confTag(confidence);
     String sStr = sourceTag(source);
     if (sStr == null) {
@@ -1175,28 +1347,11 @@ public class TimeCourseTableDrawer {
   */
   
   private RegionData buildRegionData(String region) { 
-    TimeCourseGene.VariableLevel varLev = new TimeCourseGene.VariableLevel();
-    // Crank through regions.
+    GridRow row = wtGrid().getRow(region);
     RegionData retval = new RegionData();
-    retval.minHour = 10000;
-    retval.maxHour = -1;
+    retval.minHour = row.minHour;
+    retval.maxHour = row.maxHour;
     retval.region = region;
-    HashSet<Integer> times = new HashSet<Integer>();
-    client_.getInterestingTimes(times);
-    Iterator<Integer> tmit = times.iterator();
-    while (tmit.hasNext()) {
-      Integer hour = tmit.next();
-      int hr = hour.intValue();
-      int level = client_.getExpressionLevelForSource(region, hr, ExpressionEntry.NO_SOURCE_SPECIFIED, varLev);
-      if (level != ExpressionEntry.NO_REGION) {
-        if (hr < retval.minHour) {
-          retval.minHour = hr;
-        }
-        if (hr > retval.maxHour) {
-          retval.maxHour = hr;
-        }
-      }
-    }
     return (retval);
   }
 
@@ -1318,10 +1473,14 @@ public class TimeCourseTableDrawer {
   
   private class PreservingRegionComparator implements Comparator<RegionData> {
     
-    private List<String> origOrder_;
+    private HashMap<String, Integer> origOrder_;
     
     PreservingRegionComparator(List<String> origOrder) {
-      origOrder_ = origOrder;  
+      origOrder_ = new HashMap<String, Integer>();
+      int numOrig = origOrder.size();
+      for (int i = 0; i < numOrig; i++) {
+        origOrder_.put(origOrder.get(i), new Integer(i));
+      }
     }
     
     public int compare(RegionData rd1, RegionData rd2) {
@@ -1331,8 +1490,8 @@ public class TimeCourseTableDrawer {
       if (rd2.minHour > rd1.minHour) {
         return (1);
       }
-      int reg1Index = origOrder_.indexOf(rd1.region);
-      int reg2Index = origOrder_.indexOf(rd2.region);
+      int reg1Index = origOrder_.get(rd1.region).intValue();
+      int reg2Index = origOrder_.get(rd2.region).intValue();
       
       return (reg1Index - reg2Index);
     }
@@ -1350,6 +1509,271 @@ public class TimeCourseTableDrawer {
     int maxHour;
   }
   
+  /***************************************************************************
+  **
+  ** Region by time grid of expression levels for one client.  A region row
+  ** is filled the first time it is needed, so region sorting, cell drawing,
+  ** and key checks all share a single set of client lookups.
+  **
+  */
+  
+  private static class ExpressionGrid {
+    
+    private static final int UNFILLED_ = Integer.MIN_VALUE;
+    
+    private Client client_;
+    private boolean control_;
+    private int[] times_;
+    private HashMap<String, GridRow> rows_;
+    
+    ExpressionGrid(Client client, boolean control, SortedSet<Integer> times) {
+      client_ = client;
+      control_ = control;
+      times_ = new int[times.size()];
+      int count = 0;
+      Iterator<Integer> tit = times.iterator();
+      while (tit.hasNext()) {
+        times_[count++] = tit.next().intValue();
+      }
+      rows_ = new HashMap<String, GridRow>();
+    }
+    
+    int[] getTimes() {
+      return (times_);
+    }
+    
+    GridRow getRow(String region) {
+      GridRow retval = rows_.get(region);
+      if (retval != null) {
+        return (retval);
+      }
+      retval = new GridRow(times_.length);
+      Arrays.fill(retval.confidence, UNFILLED_);
+      Arrays.fill(retval.source, UNFILLED_);
+      TimeCourseGene.VariableLevel varLev = new TimeCourseGene.VariableLevel();
+      for (int i = 0; i < times_.length; i++) {
+        int hour = times_[i];
+        int level = clientLevel(region, hour, varLev);
+        retval.level[i] = level;
+        if (level == ExpressionEntry.VARIABLE) {
+          retval.varLevel[i] = varLev.level;
+        }
+        if (level != ExpressionEntry.NO_REGION) {
+          if (hour < retval.minHour) {
+            retval.minHour = hour;
+          }
+          if (hour > retval.maxHour) {
+            retval.maxHour = hour;
+          }
+        }
+      }
+      rows_.put(region, retval);
+      return (retval);
+    }
+    
+    int getLevel(String region, int hour, TimeCourseGene.VariableLevel varLev) {
+      int index = Arrays.binarySearch(times_, hour);
+      if (index < 0) {
+        return (clientLevel(region, hour, varLev));
+      }
+      GridRow row = getRow(region);
+      int level = row.level[index];
+      if (level == ExpressionEntry.VARIABLE) {
+        varLev.level = row.varLevel[index];
+      }
+      return (level);
+    }
+    
+    // Confidence and source are only defined where there is data, so they
+    // are only asked of the client when a cell actually needs them:
+    
+    int getConfidence(String region, int hour) {
+      int index = Arrays.binarySearch(times_, hour);
+      if (index < 0) {
+        return (client_.getConfidence(region, hour));
+      }
+      GridRow row = getRow(region);
+      if (row.confidence[index] == UNFILLED_) {
+        row.confidence[index] = client_.getConfidence(region, hour);
+      }
+      return (row.confidence[index]);
+    }
+    
+    int getExprSource(String region, int hour) {
+      int index = Arrays.binarySearch(times_, hour);
+      if (index < 0) {
+        return (client_.getExprSource(region, hour));
+      }
+      GridRow row = getRow(region);
+      if (row.source[index] == UNFILLED_) {
+        row.source[index] = client_.getExprSource(region, hour);
+      }
+      return (row.source[index]);
+    }
+    
+    private int clientLevel(String region, int hour, TimeCourseGene.VariableLevel varLev) {
+      if (control_) {
+        PerturbedTimeCourseGene pertGene = (PerturbedTimeCourseGene)client_;
+        return (pertGene.getControlExpressionLevelForSource(region, hour, ExpressionEntry.NO_SOURCE_SPECIFIED, varLev));
+      }
+      return (client_.getExpressionLevelForSource(region, hour, ExpressionEntry.NO_SOURCE_SPECIFIED, varLev));
+    }
+  }
+  
+  /***************************************************************************
+  **
+  ** One region row of an expression grid
+  **
+  */
+  
+  private static class GridRow {
+    int[] level;
+    double[] varLevel;
+    int[] confidence;
+    int[] source;
+    int minHour;
+    int maxHour;
+    
+    GridRow(int numTimes) {
+      level = new int[numTimes];
+      varLevel = new double[numTimes];
+      confidence = new int[numTimes];
+      source = new int[numTimes];
+      minHour = 10000;
+      maxHour = -1;
+    }
+  }
+  
+  /***************************************************************************
+  **
+  ** Rendered tables for one TimeCourseData.  Everything is tossed as soon
+  ** as any of the data serial numbers, the time axis, or the color revision
+  ** change.  The lineage tables bake in the gene palette colors.
+  **
+  */
+  
+  static class TableCache {
+    
+    private HashMap<TableKey, RenderedTable> tables_;
+    private long serial_;
+    private long topoSerial_;
+    private long linSerial_;
+    private TimeAxisDefinition timeAxis_;
+    private long colorRev_;
+    
+    TableCache() {
+      tables_ = new HashMap<TableKey, RenderedTable>();
+      serial_ = -1L;
+      topoSerial_ = -1L;
+      linSerial_ = -1L;
+      timeAxis_ = null;
+      colorRev_ = -1L;
+    }
+    
+    synchronized RenderedTable getTable(TableKey key, TimeCourseData tcd, TimeAxisDefinition timeAxis, long colorRev) {
+      syncToData(tcd, timeAxis, colorRev);
+      return (tables_.get(key));
+    }
+    
+    synchronized void putTable(TableKey key, RenderedTable table, TimeCourseData tcd, 
+                               TimeAxisDefinition timeAxis, long colorRev) {
+      syncToData(tcd, timeAxis, colorRev);
+      tables_.put(key, table);
+      return;
+    }
+    
+    private void syncToData(TimeCourseData tcd, TimeAxisDefinition timeAxis, long colorRev) {
+      if ((tcd.getSerialNumber() != serial_) || (tcd.getTopoSerialNumber() != topoSerial_) ||
+          (tcd.getLineageSerialNumber() != linSerial_) || (timeAxis != timeAxis_) || (colorRev != colorRev_)) {
+        tables_.clear();
+        serial_ = tcd.getSerialNumber();
+        topoSerial_ = tcd.getTopoSerialNumber();
+        linSerial_ = tcd.getLineageSerialNumber();
+        timeAxis_ = timeAxis;
+        colorRev_ = colorRev;
+      }
+      return;
+    }
+  }
+  
+  /***************************************************************************
+  **
+  ** Identifies a rendered table.  Genes are matched by identity, since undo
+  ** swaps in copies and can wind the serial number back.
+  **
+  */
+  
+  private static class TableKey {
+    TimeCourseGene gene;
+    PerturbedTimeCourseGene pertGene;
+    boolean showTree;
+    
+    TableKey(TimeCourseGene gene, PerturbedTimeCourseGene pertGene, boolean showTree) {
+      this.gene = gene;
+      this.pertGene = pertGene;
+      this.showTree = showTree;
+    }
+    
+    public int hashCode() {
+      return (System.identityHashCode(gene) + System.identityHashCode(pertGene) + ((showTree) ? 1 : 0));
+    }
+    
+    public boolean equals(Object other) {
+      if (other == this) {
+        return (true);
+      }
+      if (!(other instanceof TableKey)) {
+        return (false);
+      }
+      TableKey otherKey = (TableKey)other;
+      return ((this.gene == otherKey.gene) && (this.pertGene == otherKey.pertGene) && (this.showTree == otherKey.showTree));
+    }
+  }
+  
+  /***************************************************************************
+  **
+  ** A rendered table and the key flags it needs
+  **
+  */
+  
+  private static class RenderedTable {
+    String html;
+    int needKey;
+    
+    RenderedTable(String html, int needKey) {
+      this.html = html;
+      this.needKey = needKey;
+    }
+  }
+  
+  /***************************************************************************
+  **
+  ** Renders one gene table for export
+  **
+  */
+  
+  private static class TableRenderer implements Callable<RenderedTable> {
+    private BTState appState_;
+    private TimeCourseGene gene_;
+    private TimeCourseData tcd_;
+    private boolean showTree_;
+    
+    TableRenderer(BTState appState, TimeCourseGene gene, TimeCourseData tcd, boolean showTree) {
+      appState_ = appState;
+      gene_ = gene;
+      tcd_ = tcd;
+      showTree_ = showTree;
+    }
+    
+    public RenderedTable call() {
+      StringWriter sw = new StringWriter();
+      PrintWriter out = new PrintWriter(sw);
+      int needKey = (new TimeCourseTableDrawer(appState_, gene_)).getExpressionTable(out, tcd_, showTree_);
+      out.flush();
+      return (new RenderedTable(sw.getBuffer().toString(), needKey));
+    }
+  }
+  
   /***************************************************************************
   **
   ** Used to show hierarchy in an html table.
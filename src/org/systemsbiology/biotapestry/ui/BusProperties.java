@@ -292,6 +292,7 @@ public class BusProperties extends LinkProperties implements Cloneable {
     
     bd = new BusDrop(keepDrop.getTargetRef(), null, BusDrop.END_DROP, BusDrop.NO_SEGMENT_CONNECTION);
     retval.drops_.add(bd);
+    retval.treeChanged();
     return (retval);
   }     
 
@@ -201,7 +201,7 @@ public class FontManager {
   ** Get a font, or an override if not null:
   */
 
-  public AnnotatedFont getOverrideFont(int fontType, FontOverride over) {
+  public synchronized AnnotatedFont getOverrideFont(int fontType, FontOverride over) {
     if (over == null) {
       //return (fonts_[fontType]);
       return new AnnotatedFont(fonts_[fontType], false);
@@ -223,7 +223,7 @@ public class FontManager {
   }
 
   // TODO remove old implementation
-  public Font getOverrideFontOld(int fontType, FontOverride over) {
+  public synchronized Font getOverrideFontOld(int fontType, FontOverride over) {
     if (over == null) {
       return (fonts_[fontType]);
     }
@@ -243,10 +243,11 @@ public class FontManager {
    
   /***************************************************************************
   ** 
-  ** Get the max bounds for the given font
+  ** Get the max bounds for the given font. The caches are locked, since specialty
+  ** layout measures nodes from several threads at once.
   */
 
-  public Rectangle2D getCharSize(int fontType, FontOverride fo, FontRenderContext frc) {
+  public synchronized Rectangle2D getCharSize(int fontType, FontOverride fo, FontRenderContext frc) {
     if ((cacheBasis_ == null) || !cacheBasis_.equals(frc)) {
       flushSizeCache();
       cacheBasis_ = frc;
@@ -721,7 +722,7 @@ public class FontManager {
   **
   */
   
-  private void flushSizeCache() {
+  private synchronized void flushSizeCache() {
     for (int i = 0; i < NUM_FONTS_; i++) {
       charBounds_[i] = null;
     }
@@ -2188,8 +2188,11 @@ public class GenomePresentation implements ZoomPresentation {
 			if (node.getID().equals(nullRender_)) {
 				continue;
 			}
-			Intersection selected = isSelected(selectionKeys_, node);
 			IRenderer render = layout.getNodeProperties(node.getID()).getRenderer();
+			if ((rcx.clipRect != null) && !inClip(render.getBounds(node, rcx, misc), rcx)) {
+				continue;
+			}
+			Intersection selected = isSelected(selectionKeys_, node);
 			boolean localGhost = rcx.isGhosted();
 			if (!rcx.isGhosted() && !currentTargets_.isEmpty()) {
 				localGhost = !currentTargets_.contains(node.getID());
@@ -2265,6 +2268,9 @@ public class GenomePresentation implements ZoomPresentation {
 			while (noit.hasNext()) {
 				Note note = noit.next();
 				IRenderer render = layout.getNoteProperties(note.getID()).getRenderer();
+				if ((rcx.clipRect != null) && !inClip(render.getBounds(note, rcx, misc), rcx)) {
+					continue;
+				}
 				Intersection selected = isSelected(selectionKeys_, note);
 				render.render(moc, note, selected, rcx, misc);
 			}
@@ -2294,6 +2300,9 @@ public class GenomePresentation implements ZoomPresentation {
 		  } else {
 		    renderedBuses.add(lp);
 		  }
+		  if ((rcx.clipRect != null) && !inClip(getLinkTreeBounds(lp, rcx, rootParent), rcx)) {
+		    continue;
+		  }
 		  Intersection selected = linkIsSelected(justKeys, selectionKeys_, rcx.getLayout(), link);
 		  LinkageFree render = (LinkageFree)lp.getRenderer();
 		  //
@@ -2360,6 +2369,78 @@ public class GenomePresentation implements ZoomPresentation {
 		  }
 		}
 	}
+
+  /***************************************************************************
+  **
+  ** Answer if the given world bounds reach the clip rectangle of the context.
+  ** Always true with no bounds to go on.
+  */
+
+  private boolean inClip(Rectangle2D bounds, DataAccessContext rcx) {
+    if (bounds == null) {
+      return (true);
+    }
+    return (rcx.clipRect.intersects(bounds));
+  }
+
+  /***************************************************************************
+  **
+  ** Get world bounds for a whole link tree.  The compiled tree bounds miss the
+  ** drops, so the source and target nodes and the label position are added in.
+  ** Null if we cannot tell where some end of the tree is.
+  */
+
+  private Rectangle2D getLinkTreeBounds(LinkProperties lp, DataAccessContext rcx, Genome rootParent) {
+    Rectangle2D srcBounds = getNodeBounds(lp.getSourceTag(), rcx);
+    if (srcBounds == null) {
+      return (null);
+    }
+    Rectangle2D retval = new Rectangle2D.Double();
+    retval.setRect(srcBounds);
+    Rectangle2D treeBounds = lp.getTreeGeometry().getTreeBounds();
+    if (treeBounds != null) {
+      retval.add(treeBounds);
+    }
+    Genome genome = rcx.getGenome();
+    Iterator<LinkBusDrop> dit = lp.getDrops();
+    while (dit.hasNext()) {
+      String ref = dit.next().getTargetRef();
+      if (ref == null) {
+        continue;
+      }
+      Linkage link = genome.getLinkage(ref);
+      if ((link == null) && (rootParent != null)) {
+        link = rootParent.getLinkage(ref);
+      }
+      if (link == null) {
+        continue;
+      }
+      Rectangle2D trgBounds = getNodeBounds(link.getTarget(), rcx);
+      if (trgBounds == null) {
+        return (null);
+      }
+      retval.add(trgBounds);
+    }
+    Point2D txtLoc = lp.getTextPosition();
+    if (txtLoc != null) {
+      retval.add(txtLoc);
+    }
+    return (retval);
+  }
+
+  /***************************************************************************
+  **
+  ** Get the world bounds of the given node.  Null if we cannot tell.
+  */
+
+  private Rectangle2D getNodeBounds(String nodeID, DataAccessContext rcx) {
+    Node node = rcx.getGenome().getNode(nodeID);
+    NodeProperties np = rcx.getLayout().getNodeProperties(nodeID);
+    if ((node == null) || (np == null)) {
+      return (null);
+    }
+    return (np.getRenderer().getBounds(node, rcx, null));
+  }
 	
   /***************************************************************************
   **
@@ -79,7 +79,7 @@ import org.systemsbiology.biotapestry.util.MinMax;
 import org.systemsbiology.biotapestry.util.Pattern;
 import org.systemsbiology.biotapestry.util.PatternGrid;
 import org.systemsbiology.biotapestry.util.PatternPlacerSpiral;
-import org.systemsbiology.biotapestry.util.QuadTree;
+import org.systemsbiology.biotapestry.util.SegmentIndex;
 import org.systemsbiology.biotapestry.util.TaggedSet;
 import org.systemsbiology.biotapestry.util.UiUtil;
 import org.systemsbiology.biotapestry.util.Vector2D;
@@ -3658,8 +3658,8 @@ public class Layout {
   
   public TopoRepairInfo repairAllTopologyForAuto(DataAccessContext icx,  String overID,
                                                  BTProgressMonitor monitor, double minFrac, double maxFrac) throws AsynchExitRequestException { 
-    QuadTree useQuad = new QuadTree(100, 10);
-    return (repairAllTopologyGuts(icx, overID, monitor,  minFrac, maxFrac, useQuad));
+    SegmentIndex segIndex = new SegmentIndex();
+    return (repairAllTopologyGuts(icx, overID, monitor,  minFrac, maxFrac, segIndex));
   }
   
   
@@ -3670,7 +3670,7 @@ public class Layout {
   */
   
   private TopoRepairInfo repairAllTopologyGuts(DataAccessContext icx, String overID,
-                                               BTProgressMonitor monitor, double minFrac, double maxFrac, QuadTree useQuad) throws AsynchExitRequestException {
+                                               BTProgressMonitor monitor, double minFrac, double maxFrac, SegmentIndex segIndex) throws AsynchExitRequestException {
     Genome genome = icx.getGenomeSource().getGenome(getTarget());
     List<LinkProperties> lop = listOfProps(genome, overID, null);
     int numLop = lop.size();
@@ -3689,7 +3689,7 @@ public class Layout {
       undoPreProcess(retval, lp, overID, icx);
       
       double nextProg = currProg + perTree; 
-      TopoRepairInfo nextTri = repairTreeTopologyGuts(lp, icx, overID, monitor, currProg, nextProg, useQuad);
+      TopoRepairInfo nextTri = repairTreeTopologyGuts(lp, icx, overID, monitor, currProg, nextProg, segIndex);
    
       currProg = nextProg; 
       if (nextTri.haveAChange()) {        
@@ -3732,7 +3732,7 @@ public class Layout {
   
   private TopoRepairInfo repairTreeTopologyGuts(LinkProperties lp, DataAccessContext icx, 
                                                 String overID,
-                                                BTProgressMonitor monitor, double minFrac, double maxFrac, QuadTree useQuad) throws AsynchExitRequestException {
+                                                BTProgressMonitor monitor, double minFrac, double maxFrac, SegmentIndex segIndex) throws AsynchExitRequestException {
   
     double delFrac = maxFrac - minFrac;
     double delFrac3 = delFrac / 3.0;
@@ -3742,7 +3742,7 @@ public class Layout {
     double frac1 = minFrac + delFrac3;
     elim = opt.eliminateUselessCornersGridless(lp, icx, overID, minFrac, frac1, monitor);
     double frac2 = minFrac + (2.0 * delFrac3);
-    int repairState = lp.repairLinkTree(icx, monitor, frac1, frac2, useQuad);
+    int repairState = lp.repairLinkTree(icx, monitor, frac1, frac2, segIndex);
     boolean someRepaired = (repairState == BusProperties.ALL_REPAIRED) || (repairState == BusProperties.SOME_REPAIRED);
     if (someRepaired) {
       lp.dropAllZeroSegments();
@@ -3938,6 +3938,49 @@ public class Layout {
     return (retval);
   }
   
+  /***************************************************************************
+  **
+  ** Undo a set of property changes, in reverse order
+  */
+  
+  public void propChangesUndo(PropChange[] changes) {
+    for (int i = changes.length - 1; i >= 0; i--) {
+      // Failed moves may return nulls among the successes:
+      if (changes[i] != null) {
+        propChangeUndo(changes[i]);
+      }
+    }
+    return;
+  }
+  
+  /***************************************************************************
+  **
+  ** Undo a property change of any kind
+  */
+  
+  public void propChangeUndo(PropChange pc) {
+    if ((pc.orig != null) || (pc.newProps != null)) {
+      linkChangeUndo(pc);
+    } else if ((pc.nOrig != null) || (pc.nNewProps != null)) {
+      nodeChangeUndo(pc);
+    } else if ((pc.ntOrig != null) || (pc.ntNewProps != null)) {
+      noteChangeUndo(pc); 
+    } else if ((pc.grOrig != null) || (pc.grNewProps != null)) {
+      groupChangeUndo(pc); 
+    } else if (pc.dLocKey != null) {
+      dataPosChangeUndo(pc);
+    } else if (pc.metaOrig != null) {
+      metaChangeUndo(pc);
+    } else if ((pc.nopOrig != null) || (pc.nopNew != null)) {
+      overlayChangeUndo(pc);
+    } else if ((pc.nmpOrig != null) || (pc.nmpNew != null)) {
+      netModChangeUndo(pc);
+    } else if ((pc.nmlpOrig != null) || (pc.nmlpNew != null) || (pc.nmlpTieLinkIDOrig != null)) {
+      netModLinkChangeUndo(pc);
+    }
+    return;
+  }
+  
   /***************************************************************************
   **
   ** Undo a node move
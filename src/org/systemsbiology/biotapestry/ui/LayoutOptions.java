@@ -48,7 +48,8 @@ public class LayoutOptions {
   public static final int COFFMAN_GRAHAM      = 0;
   public static final int MOD_COFFMAN_GRAHAM  = 1;
   public static final int AD_HOC              = 2; 
-  private static final int NUM_LAYER_OPTIONS_ = 3; 
+  public static final int SUGIYAMA            = 3; 
+  private static final int NUM_LAYER_OPTIONS_ = 4; 
   
   public static final boolean NO_REDUCE_CROSSINGS = false;
   public static final boolean DO_REDUCE_CROSSINGS = true;
@@ -72,7 +73,7 @@ public class LayoutOptions {
   
   public boolean firstPass;  // SEQUENTIAL or RECURSIVE
   public boolean topoCompress;
-  public int layeringMethod;  //COFFMAN_GRAHAM, MOD_COFFMAN_GRAHAM, or ADD_HOC
+  public int layeringMethod;  //COFFMAN_GRAHAM, MOD_COFFMAN_GRAHAM, ADD_HOC, or SUGIYAMA
   public int maxPerLayer;
   public boolean doCrossingReduction;
   public boolean normalizeRows;
@@ -162,6 +163,8 @@ public class LayoutOptions {
         return (new ChoiceContent(rMan.getString("layoutOption.MOD_COFFMAN_GRAHAM"), MOD_COFFMAN_GRAHAM));
       case AD_HOC:
         return (new ChoiceContent(rMan.getString("layoutOption.ADD_HOC"), AD_HOC));
+      case SUGIYAMA:
+        return (new ChoiceContent(rMan.getString("layoutOption.SUGIYAMA"), SUGIYAMA));
     }
     throw new IllegalArgumentException();
   }    
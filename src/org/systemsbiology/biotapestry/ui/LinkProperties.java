@@ -20,7 +20,6 @@
 package org.systemsbiology.biotapestry.ui;
 
 import java.awt.Color;
-import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.Shape;
 import java.awt.geom.Point2D;
@@ -54,8 +53,7 @@ import org.systemsbiology.biotapestry.util.AttributeExtractor;
 import org.systemsbiology.biotapestry.util.BTProgressMonitor;
 import org.systemsbiology.biotapestry.util.Indenter;
 import org.systemsbiology.biotapestry.util.LinkPlacementGrid;
-import org.systemsbiology.biotapestry.util.MinMax;
-import org.systemsbiology.biotapestry.util.QuadTree;
+import org.systemsbiology.biotapestry.util.SegmentIndex;
 import org.systemsbiology.biotapestry.util.UiUtil;
 import org.systemsbiology.biotapestry.util.UniqueLabeller;
 import org.systemsbiology.biotapestry.util.Vector2D;
@@ -152,6 +150,14 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
   protected List<LinkBusDrop> drops_;
   protected UniqueLabeller labels_;
 
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE INSTANCE VARIABLES
+  //
+  ////////////////////////////////////////////////////////////////////////////
+  
+  private LinkTreeGeometry treeGeom_;
+
   ////////////////////////////////////////////////////////////////////////////
   //
   // PROTECTED CONSTRUCTORS (this is absract...)
@@ -268,6 +274,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
       LinkSegment seg = getSegment(segID);
       seg.shiftStart(dx, dy);
     }
+    treeChanged();
     return;
   }
 
@@ -341,6 +348,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
     }    
 
     dropAllZeroSegments();
+    treeChanged();
     return;
   }  
   
@@ -386,6 +394,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
       LinkSegment seg = getSegment(segID);
       seg.shiftStart(dx, dy);
     }
+    treeChanged();
     return;
   }  
 
@@ -488,6 +497,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
           LinkBusDrop.CONNECT_TO_START : LinkBusDrop.CONNECT_TO_END);
       }
     } 
+    treeChanged();
     return;
   } 
   
@@ -529,6 +539,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
       segmentShiftSupport(seg, emptyRows, emptyCols, bounds, -1.0, 1);
     }
     shiftDropEndsForExpandCompressOps(emptyRows, emptyCols, bounds, -1.0, 1);
+    treeChanged();
     return;    
   }
   
@@ -547,6 +558,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
       segmentShiftSupport(seg, newRows, newCols, null, 1.0, mult);
     }
     shiftDropEndsForExpandCompressOps(newRows, newCols, null, 1.0, mult);
+    treeChanged();
     return;    
   }  
 
@@ -565,6 +577,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
       seg.shiftBoth(dx, dy);
     }
     shiftDropEnds(dx, dy, null);
+    treeChanged();
     return;    
   }
   
@@ -597,6 +610,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
       }
     }
     moveDropEndsPerMap(mappedPositions, forceToGrid);
+    treeChanged();
     return;    
   }  
  
@@ -627,6 +641,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
       }
     }
     shiftSelectedDropEnds(dx, dy, fragShifts);
+    treeChanged();
     return;    
   } 
   
@@ -733,10 +748,13 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
     // set of active segments to check:
     //
     
-    HashSet<LinkSegment> set = new HashSet<LinkSegment>();    
+    LinkTreeGeometry geom = getTreeGeometry();
+    boolean[] active = new boolean[geom.getSegmentCount()];
     Iterator<LinkBusDrop> dit = getDrops();
+    int dropIndex = -1;
     while (dit.hasNext()) {
       LinkBusDrop drop = dit.next();
+      dropIndex++;
       String dropRef = drop.getTargetRef();
       if (omittedDrops != null) {
         if ((dropRef != null) && omittedDrops.contains(dropRef)) {
@@ -760,9 +778,18 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
       if (retval != null) {
         bestFits.put(new Double(retval.distance), retval);
       }
-      set.addAll(getSegmentsToRoot(drop));      
+      markActiveSegments(geom, dropIndex, drop, active);
     }
     
+    //
+    // Nothing on the tree proper can be hit if we are outside its bounds:
+    //
+    
+    double pad = Math.max(intersectTol, upperTol) + Vector2D.TOLERANCE;
+    if (!geom.treeNearPoint(pt, pad)) {
+      return ((bestFits.isEmpty()) ? null : bestFits.get(bestFits.firstKey()));
+    }    
+    
     //
     // Check for intersections of active segments.  This is done in two passes.
     // The first pass catches true intersections of segments, with tagging of
@@ -771,16 +798,15 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
     // intersections:
     //
     
-    Iterator<LinkSegment> sit = set.iterator();
-    while (sit.hasNext()) {
-      LinkSegment seg = sit.next();
-      if (!seg.isDegenerate()) {
-        String segID = seg.getID();
-        DistancedLinkSegID retval = twoPassCheckSegmentIntersect(icx, seg, pt, LinkSegmentID.SEGMENT, segID,
-                                                                 intersectTol, upperTol, twoPass, false);
-        if (retval != null) {
-          bestFits.put(new Double(retval.distance), retval);
-        }
+    int numSegs = active.length;
+    for (int i = 0; i < numSegs; i++) {
+      if (!active[i] || geom.isDegenerate(i) || !geom.segmentNearPoint(i, pt, pad)) {
+        continue;
+      }
+      DistancedLinkSegID retval = twoPassCheckSegmentIntersect(icx, geom.getSegment(i), pt, LinkSegmentID.SEGMENT, 
+                                                               geom.getSegmentID(i), intersectTol, upperTol, twoPass, false);
+      if (retval != null) {
+        bestFits.put(new Double(retval.distance), retval);
       }
     }
 
@@ -792,16 +818,14 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
     // Last chance to catch corner intersections on the outside of sharp corners:
     //
     
-    sit = set.iterator();
-    while (sit.hasNext()) {
-      LinkSegment seg = sit.next();
-      if (!seg.isDegenerate()) {
-        String segID = seg.getID();
-        DistancedLinkSegID retval = twoPassCheckSegmentIntersect(icx, seg, pt, LinkSegmentID.SEGMENT, segID,
-                                                                 intersectTol, upperTol, twoPass, true);
-        if (retval != null) {
-          bestFits.put(new Double(retval.distance), retval);
-        }
+    for (int i = 0; i < numSegs; i++) {
+      if (!active[i] || geom.isDegenerate(i) || !geom.segmentNearPoint(i, pt, pad)) {
+        continue;
+      }
+      DistancedLinkSegID retval = twoPassCheckSegmentIntersect(icx, geom.getSegment(i), pt, LinkSegmentID.SEGMENT, 
+                                                               geom.getSegmentID(i), intersectTol, upperTol, twoPass, true);
+      if (retval != null) {
+        bestFits.put(new Double(retval.distance), retval);
       }
     }
     if (!bestFits.isEmpty()) {
@@ -982,10 +1006,13 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
     // set of active segments to check:
     //
     
-    HashSet<LinkSegment> set = new HashSet<LinkSegment>();    
+    LinkTreeGeometry geom = getTreeGeometry();
+    boolean[] active = new boolean[geom.getSegmentCount()];
     Iterator<LinkBusDrop> dit = getDrops();
+    int dropIndex = -1;
     while (dit.hasNext()) {
       LinkBusDrop drop = dit.next();
+      dropIndex++;
       String dropRef = drop.getTargetRef();
       if ((dropRef != null) && !linkIsInModel(icx.getGenomeSource(), icx.getGenome(), oso, dropRef)) {
         continue;
@@ -1003,22 +1030,23 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
       if (result != null) {
         retval.add(result);
       }
-      set.addAll(getSegmentsToRoot(drop));      
+      markActiveSegments(geom, dropIndex, drop, active);
     }
     
     //
-    // Check for intersections of active segments.
+    // Check for intersections of active segments.  Segments that do not lie
+    // inside the shape bounds cannot lie inside the shape:
     //
     
-    Iterator<LinkSegment> sit = set.iterator();
-    while (sit.hasNext()) {
-      LinkSegment seg = sit.next();
-      if (!seg.isDegenerate()) {
-        String segID = seg.getID();
-        LinkSegmentID result = checkForSegmentInShape(seg, testShape, LinkSegmentID.SEGMENT, segID);
-        if (result != null) {
-          retval.add(result);
-        }
+    Rectangle2D shapeBounds = testShape.getBounds2D();
+    int numSegs = active.length;
+    for (int i = 0; i < numSegs; i++) {
+      if (!active[i] || geom.isDegenerate(i) || !geom.segmentWithinRect(i, shapeBounds)) {
+        continue;
+      }
+      LinkSegmentID result = checkForSegmentInShape(geom.getSegment(i), testShape, LinkSegmentID.SEGMENT, geom.getSegmentID(i));
+      if (result != null) {
+        retval.add(result);
       }
     }
     
@@ -1041,6 +1069,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
     for (int i = 0; i < num; i++) {
       moveBusLinkCore(segIDs[i], strt, dx, dy, seenCookies);
     }
+    treeChanged();
     return;
   }
 
@@ -1093,6 +1122,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
         }
       }
       
+      treeChanged();
       return;
     }      
           
@@ -1117,6 +1147,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
       drop.setConnectionTag(addSeg.getID());
     }    
  
+    treeChanged();
     return;
   }
   
@@ -1135,6 +1166,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
       }
     }    
     segments_.put(newSeg.getID(), newSeg);
+    treeChanged();
     return;
   }
  
@@ -1180,7 +1212,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
     
     retval.add(LinkSegmentID.buildIDForEndDrop(drop.getTargetRef()));  
     
-    List<LinkSegment> segsToRoot = getSegmentsToRoot(drop);
+    List<LinkSegment> segsToRoot = getCompiledSegmentsToRoot(drop);
     int segSize = segsToRoot.size();
     for (int j = 0; j < segSize; j++) {
       LinkSegment seg = segsToRoot.get(j);
@@ -1526,6 +1558,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
     //
     
     removeDanglingSegments();
+    treeChanged();
     return;
     
   }
@@ -1584,6 +1617,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
       segments_.remove(dead);
     }
  
+    treeChanged();
     return;
   }   
 
@@ -1700,6 +1734,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
         LinkSegment seg = sit.next();
         seg.shiftBoth(delX, delY);
       }
+      spTree.treeChanged();
     }    
     
     //
@@ -2934,6 +2969,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
         // NOTE per-link style is still being retained...
     }
     
+    treeChanged();
     return;
   }  
 
@@ -2949,6 +2985,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
       labels_.removeLabel(deadID);
     }
     segments_.clear();
+    treeChanged();
     return;
   }
   
@@ -3001,6 +3038,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
         currDrop.setDrawStyleForDrop(null);
         // NOTE per-link style is still being retained...
       }
+      treeChanged();
       //
       // Geometry can stay the same!
       return;
@@ -3053,6 +3091,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
       segments_.remove(segFLID);
       ilp.removeSegment(segFLID);
       ilp.registerRemoval(segFLID, parentID);
+      treeChanged();
       return;
     }
     
@@ -3077,6 +3116,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
     LinkSegment parentSeg = segments_.get(parentID);
     reparentChildrenAndDelete(seg, parentSeg.isDegenerate(), ilp);
     ilp.registerRemoval(seg.getID(), parentID);
+    treeChanged();
     return;
   }  
 
@@ -3128,6 +3168,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
         currDrop.setDrawStyleForDrop(null);
         // NOTE per-link style is still being retained...
       }
+      treeChanged();
       return;
     }
 
@@ -3145,6 +3186,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
       }
       LinkSegment parentSeg = segments_.get(parentID);
       handleLeafCase(seg, parentSeg.isDegenerate());
+      treeChanged();
       return;
     }
     
@@ -3163,6 +3205,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
     }
     LinkSegment parentSeg = segments_.get(parentID);
     reparentChildrenAndDelete(seg, parentSeg.isDegenerate(), null);
+    treeChanged();
     return;
   }
   
@@ -3247,6 +3290,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
       }
       LinkSegment parentSeg = segments_.get(parentID);
       handleLeafCase(seg, parentSeg.isDegenerate());
+      treeChanged();
       return (true);
     }
     
@@ -3266,6 +3310,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
     }
     LinkSegment parentSeg = segments_.get(parentID);
     reparentChildrenAndDelete(seg, parentSeg.isDegenerate(), null);
+    treeChanged();
     return (true);
   }
  
@@ -3294,6 +3339,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
   
   public void addDrop(LinkBusDrop newDrop) {
     drops_.add(newDrop);
+    treeChanged();
     return;
   }
   
@@ -3351,6 +3397,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
     String[] retval = new String[2];
     retval[0] = newId1;
     retval[1] = newId2;
+    treeChanged();
     return (retval);
   }
     
@@ -3749,31 +3796,32 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
     // set of active segments to check:
     //
     
-    HashSet<LinkSegment> set = new HashSet<LinkSegment>();    
+    LinkTreeGeometry geom = getTreeGeometry();
+    boolean[] active = new boolean[geom.getSegmentCount()];
     Iterator<LinkBusDrop> dit = getDrops();
+    int dropIndex = -1;
     while (dit.hasNext()) {
       LinkBusDrop drop = dit.next();
+      dropIndex++;
       String dropRef = drop.getTargetRef();
       if ((dropRef != null) && !linkIsInModel(gSrc, genome, icx.oso, dropRef)) {
         continue;
       }
       int dropType = (dropRef == null) ? LinkSegmentID.START_DROP : LinkSegmentID.END_DROP;
       retval.add(LinkSegmentID.buildIDForType(dropRef, dropType));
-      set.addAll(getSegmentsToRoot(drop));      
+      markActiveSegments(geom, dropIndex, drop, active);
     }
     
     //
     // Active segments
     //
     
-    Iterator<LinkSegment> sit = set.iterator();
-    while (sit.hasNext()) {
-      LinkSegment seg = sit.next();  
-      if (seg.isDegenerate() && !includeRoot) {
+    int numSegs = active.length;
+    for (int i = 0; i < numSegs; i++) {
+      if (!active[i] || (geom.isDegenerate(i) && !includeRoot)) {
         continue;
       }
-      String segID = seg.getID();
-      retval.add(LinkSegmentID.buildIDForType(segID, LinkSegmentID.SEGMENT));
+      retval.add(LinkSegmentID.buildIDForType(geom.getSegmentID(i), LinkSegmentID.SEGMENT));
     }      
  
     return (retval);
@@ -3807,10 +3855,13 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
     // set of active segments to check:
     //
     
-    HashSet<LinkSegment> set = new HashSet<LinkSegment>();    
+    LinkTreeGeometry geom = getTreeGeometry();
+    boolean[] active = new boolean[geom.getSegmentCount()];
     Iterator<LinkBusDrop> dit = getDrops();
+    int dropIndex = -1;
     while (dit.hasNext()) {
       LinkBusDrop drop = dit.next();
+      dropIndex++;
       String dropRef = drop.getTargetRef();
       if ((dropRef != null) && (!dropRef.equals(linkID))) {
         continue;
@@ -3820,18 +3871,18 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
       }
       int dropType = (dropRef == null) ? LinkSegmentID.START_DROP : LinkSegmentID.END_DROP;
       retval.add(LinkSegmentID.buildIDForType(dropRef, dropType));
-      set.addAll(getSegmentsToRoot(drop));      
+      markActiveSegments(geom, dropIndex, drop, active);
     }
     
     //
     // Active segments
     //
     
-    Iterator<LinkSegment> sit = set.iterator();
-    while (sit.hasNext()) {
-      LinkSegment seg = sit.next();  
-      String segID = seg.getID();
-      retval.add(LinkSegmentID.buildIDForType(segID, LinkSegmentID.SEGMENT));
+    int numSegs = active.length;
+    for (int i = 0; i < numSegs; i++) {
+      if (active[i]) {
+        retval.add(LinkSegmentID.buildIDForType(geom.getSegmentID(i), LinkSegmentID.SEGMENT));
+      }
     }      
  
     return (retval);
@@ -3908,6 +3959,44 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
     throw new IllegalStateException();
   }    
    
+  /***************************************************************************
+  **
+  ** Get the compiled geometry of the segment tree.  This is rebuilt only
+  ** when the tree has been edited since the last call.
+  */
+  
+  public LinkTreeGeometry getTreeGeometry() {
+    if (treeGeom_ == null) {
+      treeGeom_ = new LinkTreeGeometry(segments_, drops_);
+    }
+    return (treeGeom_);
+  }
+  
+  /***************************************************************************
+  **
+  ** Every edit of the segments or drops (structure, IDs, tags, or positions)
+  ** must call this to retire the compiled tree geometry.
+  */
+  
+  protected void treeChanged() {
+    treeGeom_ = null;
+    return;
+  }
+  
+  /***************************************************************************
+  **
+  ** Get the segments back to the root from the drop, using the compiled
+  ** geometry.  Intended for read-only passes (hit testing, rendering, export)
+  ** that may ask for many drops on an unchanging tree.
+  */
+  
+  public List<LinkSegment> getCompiledSegmentsToRoot(LinkBusDrop drop) {
+    LinkTreeGeometry geom = getTreeGeometry();
+    int dropIndex = geom.getDropIndex(drop);
+    List<LinkSegment> retval = (dropIndex == -1) ? null : geom.getSegmentsToRoot(dropIndex);
+    return ((retval == null) ? getSegmentsToRoot(drop) : retval);
+  }  
+  
   /***************************************************************************
   **
   ** Get an Iterator over the segments
@@ -4151,6 +4240,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
         throw new IllegalStateException();
       }
     }
+    treeChanged();
     return;
   }
 
@@ -4193,6 +4283,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
     drop.setConnectionTag(newId);
     drop.setConnectionSense(LinkBusDrop.CONNECT_TO_END);
 
+    treeChanged();
     return;
   }
   
@@ -4236,6 +4327,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
         }
       }
     }
+    treeChanged();
     return;
   }    
  
@@ -4587,7 +4679,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
   */  
  
   public int repairLinkTree(DataAccessContext icx,
-                            BTProgressMonitor monitor, double minFrac, double maxFrac, QuadTree quad) throws AsynchExitRequestException {   
+                            BTProgressMonitor monitor, double minFrac, double maxFrac, SegmentIndex segIndex) throws AsynchExitRequestException {   
     boolean found = false;
     // Just in case the repair operation is not going to converge, put a cap on
     // the loop:
@@ -4596,7 +4688,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
     for (int j = 0; j < REPAIR_CAP_; j++) {
       // FYI 8/20/13: Each tree taking 4-5000 ms to process on 6.7K node 28.4K link network; mostly in overlap intersection testing.
       // Seeing largest times on first few trees
-      List<RepairRequest> repReq = findOverlapErrors(icx, quad);  
+      List<RepairRequest> repReq = findOverlapErrors(icx, segIndex);  
       int numRR = repReq.size();
       if (numRR == 0) {
         return ((j == 0) ? NOTHING_TO_REPAIR : ALL_REPAIRED);
@@ -4638,10 +4730,11 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
   
   /***************************************************************************
   **
-  ** Find overlap errors
+  ** Find overlap errors.  If given a segment index, it is used to only test the
+  ** segments that might touch; the requests come back in the same order either way.
   */
   
-  private List<RepairRequest> findOverlapErrors(DataAccessContext icx, QuadTree quad) {
+  private List<RepairRequest> findOverlapErrors(DataAccessContext icx, SegmentIndex segIndex) {
 
     ArrayList<RepairRequest> retval = new ArrayList<RepairRequest>();
     if (isDirect()) {
@@ -4729,37 +4822,19 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
     }
    
     Set<LinkSegmentID> allSegs = geom.keySet();
-    HashMap<LinkSegmentID, List<QuadTree.TaggedPoint>> findTags = null;
-    HashSet<LinkSegmentID> crookedSegs = null;
-    
-    if (quad != null) {
-      MinMax rangeX = new MinMax();
-      rangeX.init();
-      MinMax rangeY = new MinMax();
-      rangeY.init();
-           
-      Iterator<LinkSegmentID> asito = allSegs.iterator();
-      while (asito.hasNext()) {
-        LinkSegmentID lsido = asito.next();
-        LinkSegment segGeom = geom.get(lsido);    
-        rangeX.update((int)UiUtil.forceToGridValue(segGeom.getStart().getX(), UiUtil.GRID_SIZE));
-        rangeX.update((int)UiUtil.forceToGridValue(segGeom.getEnd().getX(), UiUtil.GRID_SIZE));
-        rangeY.update((int)UiUtil.forceToGridValue(segGeom.getStart().getY(), UiUtil.GRID_SIZE));
-        rangeY.update((int)UiUtil.forceToGridValue(segGeom.getEnd().getY(), UiUtil.GRID_SIZE));
-      } 
-   
-      int height = rangeY.max - rangeY.min;
-      int width = rangeX.max - rangeX.min;
-      Rectangle rect = new Rectangle(rangeX.min - 1000, rangeY.min - 1000, width + 2000, height + 2000);
-      quad.initialize(rect);
-      findTags = new HashMap<LinkSegmentID, List<QuadTree.TaggedPoint>>();
-      crookedSegs = new HashSet<LinkSegmentID>();
-  
-      Point holder = new Point();
-      asito = allSegs.iterator();
-      while (asito.hasNext()) {
-        LinkSegmentID lsido = asito.next();
-        LinkSegment outerGeom = geom.get(lsido);
+    ArrayList<LinkSegmentID> segOrder = new ArrayList<LinkSegmentID>(allSegs);
+    int numSegs = segOrder.size();
+    int[] indexFor = null;
+    int[] segForIndex = null;
+    ArrayList<Integer> crookedSegs = null;
+    
+    if (segIndex != null) {
+      segIndex.clear();
+      indexFor = new int[numSegs];
+      segForIndex = new int[numSegs];
+      crookedSegs = new ArrayList<Integer>();
+      for (int i = 0; i < numSegs; i++) {
+        LinkSegment outerGeom = geom.get(segOrder.get(i));
         Point2D start = outerGeom.getStart();
         Point2D end = outerGeom.getEnd();
         double osx = start.getX();
@@ -4767,19 +4842,11 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
         double oex = end.getX();
         double oey = end.getY();
         if (!((osx == oex) || (osy == oey))) {
-          crookedSegs.add(lsido);
+          crookedSegs.add(new Integer(i));
+          indexFor[i] = -1;
         } else {
-          holder.setLocation(osx, osy);
-          quad.binThePoint(holder);
-          int sx = (int)holder.getX();
-          int sy = (int)holder.getY();
-          
-          holder.setLocation(oex, oey);
-          quad.binThePoint(holder);
-          int ex = (int)holder.getX();
-          int ey = (int)holder.getY();
-          List<QuadTree.TaggedPoint> tagged = quad.addPoints(sx, ex, sy, ey, lsido);
-          findTags.put(lsido, tagged);
+          indexFor[i] = segIndex.addSegment(osx, osy, oex, oey);
+          segForIndex[indexFor[i]] = i;
         }
       }
     } 
@@ -4790,29 +4857,34 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
     // Siblings can overlap at their start points:
     // 
         
-    Iterator<LinkSegmentID> asito = allSegs.iterator();
-    while (asito.hasNext()) {
-      LinkSegmentID lsido = asito.next();
+    for (int i = 0; i < numSegs; i++) {
+      LinkSegmentID lsido = segOrder.get(i);
       LinkSegment outerGeom = geom.get(lsido);
       LinkSegmentID outerParent = parents.get(lsido);      
       Set<LinkSegmentID> outerKids = kids.get(lsido);
       
+      //
+      // With an index, just check the segments that might touch, plus all the
+      // crooked ones.  Keep them in segment order to match the unindexed case:
+      //
+      
       Iterator<LinkSegmentID> asiti;
-      if (findTags != null) {
-        HashSet<LinkSegmentID> reducedSegs = new HashSet<LinkSegmentID>();
-        List<QuadTree.TaggedPoint> checkSegs = findTags.get(lsido);
-        if (checkSegs != null) {
-          List<QuadTree.TaggedPoint> collideTags = quad.getCollisions(checkSegs);
-          Iterator<QuadTree.TaggedPoint> ctit = collideTags.iterator();
-          while (ctit.hasNext()) {
-            QuadTree.TaggedPoint tp = ctit.next();
-            reducedSegs.add((LinkSegmentID)tp.data);
+      if (segIndex != null) {
+        TreeSet<Integer> reducedSegs = new TreeSet<Integer>(crookedSegs);
+        if (indexFor[i] != -1) {
+          int[] contacts = segIndex.getContacts(indexFor[i]);
+          for (int j = 0; j < contacts.length; j++) {
+            reducedSegs.add(new Integer(segForIndex[contacts[j]]));
           }
         }
-        reducedSegs.addAll(crookedSegs);
-        asiti = reducedSegs.iterator();
+        ArrayList<LinkSegmentID> checkSegs = new ArrayList<LinkSegmentID>();
+        Iterator<Integer> rsit = reducedSegs.iterator();
+        while (rsit.hasNext()) {
+          checkSegs.add(segOrder.get(rsit.next().intValue()));
+        }
+        asiti = checkSegs.iterator();
       } else {
-        asiti = allSegs.iterator();
+        asiti = segOrder.iterator();
       }
   
       while (asiti.hasNext()) {
@@ -5424,6 +5496,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
       }
       segments_.put(newID, seg);
     }    
+    obp.treeChanged();
     
     Iterator<LinkBusDrop> dit = obp.getDrops();
     while (dit.hasNext()) {
@@ -5438,6 +5511,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
       }
       addDrop(drop); 
     }
+    treeChanged();
     return;
   }   
   
@@ -5507,6 +5581,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
         }
         segments_.put(newID, seg);
       }
+      obp.treeChanged();
  
     
       //
@@ -5603,6 +5678,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
       } while (nextID != null);    
     }
   
+    treeChanged();
     return;
   } 
  
@@ -5731,6 +5807,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
     }
     
     if (isDirect()) {
+      treeChanged();
       return;
     }    
         
@@ -5761,6 +5838,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
       nextID = curr.getParent();
     } while (nextID != null);
     
+    treeChanged();
     return;
   }
   
@@ -5787,6 +5865,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
     }
     
     if (isDirect()) {
+      treeChanged();
       return;
     }    
         
@@ -5806,6 +5885,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
       segments_.remove(segID);
     }
      
+    treeChanged();
     return;
   }
   
@@ -6174,6 +6254,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
       LinkBusDrop nextDrop = dit.next();
       drops_.add(nextDrop.clone());
     } 
+    treeChanged();
     return;
   }
 
@@ -6427,6 +6508,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
     labels_ = new UniqueLabeller();
     
     srcTag_ = ourSource;
+    treeChanged();
   }
   
   /***************************************************************************
@@ -6655,6 +6737,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
       labels_.removeLabel(lsid);
       segments_.remove(lsid);
     }
+    treeChanged();
     return (true);
   }
   
@@ -6754,6 +6837,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
       drop.setConnectionTag(targSeg.getID());
       drop.setConnectionSense(sense);
     } 
+    treeChanged();
     return (true);
   }
   
@@ -7261,6 +7345,32 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
   }   
      
   
+  /***************************************************************************
+  **
+  ** Mark the segments on the path from the drop to the root as active 
+  */
+  
+  private void markActiveSegments(LinkTreeGeometry geom, int dropIndex, LinkBusDrop drop, boolean[] active) {
+    int[] path = geom.getDropPath(dropIndex);
+    if (path != null) {
+      for (int i = 0; i < path.length; i++) {
+        active[path[i]] = true;
+      }
+      return;
+    }
+    //
+    // Broken tree path; crank up the tree the old way:
+    //
+    Iterator<LinkSegment> sit = getSegmentsToRoot(drop).iterator();
+    while (sit.hasNext()) {
+      int index = geom.getIndex(sit.next().getID());
+      if (index != -1) {
+        active[index] = true;
+      }
+    }
+    return;
+  }
+  
   /***************************************************************************
   **
   ** Check for segment and endpoint intersection, using two-pass approach.
@@ -7461,6 +7571,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
       this.drops_.add(nextDrop.clone());
     }
     this.labels_ = new UniqueLabeller(other.labels_);    
+    this.treeGeom_ = null;
  
     return;
   }
@@ -7649,7 +7760,7 @@ public abstract class LinkProperties implements Cloneable, CornerOracle {
     }
     
     retval.moveSource(extraInfo);
-    
+    retval.treeChanged();
          
     return (retval);
   }  
@@ -0,0 +1,366 @@
+/*
+**    Copyright (C) 2003-2017 Institute for Systems Biology
+**                            Seattle, Washington, USA.
+**
+**    This library is free software; you can redistribute it and/or
+**    modify it under the terms of the GNU Lesser General Public
+**    License as published by the Free Software Foundation; either
+**    version 2.1 of the License, or (at your option) any later version.
+**
+**    This library is distributed in the hope that it will be useful,
+**    but WITHOUT ANY WARRANTY; without even the implied warranty of
+**    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+**    Lesser General Public License for more details.
+**
+**    You should have received a copy of the GNU Lesser General Public
+**    License along with this library; if not, write to the Free Software
+**    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+package org.systemsbiology.biotapestry.ui;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/***************************************************************************
+**
+** Immutable, compiled snapshot of the segment tree of a LinkProperties.  Holds
+** flattened segment coordinates, per-segment and whole-tree bounds, and the
+** precomputed segment paths from each drop back to the root.  Hit-testing,
+** rendering and export use this instead of cranking up the tree on every call.
+** Drop segments depend on node positions, so they are NOT part of this.
+** The owning LinkProperties discards its snapshot whenever it edits the tree
+** (including in-place segment moves).
+*/
+
+public class LinkTreeGeometry {
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE CONSTANTS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  private static final int MIN_X_ = 0;
+  private static final int MIN_Y_ = 1;
+  private static final int MAX_X_ = 2;
+  private static final int MAX_Y_ = 3;
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE VARIABLES
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  private final LinkSegment[] segs_;
+  private final String[] segIDs_;
+  private final String[] parentIDs_;
+  private final boolean[] degenerate_;
+  private final double[] coords_;
+  private final double[] bounds_;
+  private final double[] treeBounds_;
+  private final HashMap<String, Integer> indexForID_;
+
+  private final String[] dropTags_;
+  private final int[] dropSense_;
+  private final int[] dropType_;
+  private final int[][] dropPaths_;
+  private final IdentityHashMap<LinkBusDrop, Integer> indexForDrop_;
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC CONSTRUCTORS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Constructor.  Compiles the given tree.
+  */
+
+  public LinkTreeGeometry(Map<String, LinkSegment> segments, List<LinkBusDrop> drops) {
+
+    int numSegs = segments.size();
+    segs_ = new LinkSegment[numSegs];
+    segIDs_ = new String[numSegs];
+    parentIDs_ = new String[numSegs];
+    degenerate_ = new boolean[numSegs];
+    coords_ = new double[numSegs * 4];
+    bounds_ = new double[numSegs * 4];
+    indexForID_ = new HashMap<String, Integer>();
+
+    double tMinX = Double.POSITIVE_INFINITY;
+    double tMinY = Double.POSITIVE_INFINITY;
+    double tMaxX = Double.NEGATIVE_INFINITY;
+    double tMaxY = Double.NEGATIVE_INFINITY;
+
+    int count = 0;
+    Iterator<LinkSegment> sit = segments.values().iterator();
+    while (sit.hasNext()) {
+      LinkSegment seg = sit.next();
+      segs_[count] = seg;
+      segIDs_[count] = seg.getID();
+      parentIDs_[count] = seg.getParent();
+      degenerate_[count] = seg.isDegenerate();
+      Point2D strt = seg.getStart();
+      Point2D end = (degenerate_[count]) ? strt : seg.getEnd();
+      int base = count * 4;
+      coords_[base] = strt.getX();
+      coords_[base + 1] = strt.getY();
+      coords_[base + 2] = end.getX();
+      coords_[base + 3] = end.getY();
+      bounds_[base + MIN_X_] = Math.min(coords_[base], coords_[base + 2]);
+      bounds_[base + MIN_Y_] = Math.min(coords_[base + 1], coords_[base + 3]);
+      bounds_[base + MAX_X_] = Math.max(coords_[base], coords_[base + 2]);
+      bounds_[base + MAX_Y_] = Math.max(coords_[base + 1], coords_[base + 3]);
+      if (bounds_[base + MIN_X_] < tMinX) tMinX = bounds_[base + MIN_X_];
+      if (bounds_[base + MIN_Y_] < tMinY) tMinY = bounds_[base + MIN_Y_];
+      if (bounds_[base + MAX_X_] > tMaxX) tMaxX = bounds_[base + MAX_X_];
+      if (bounds_[base + MAX_Y_] > tMaxY) tMaxY = bounds_[base + MAX_Y_];
+      indexForID_.put(segIDs_[count], new Integer(count));
+      count++;
+    }
+
+    treeBounds_ = (numSegs == 0) ? null : new double[] {tMinX, tMinY, tMaxX, tMaxY};
+
+    int numDrops = drops.size();
+    dropTags_ = new String[numDrops];
+    dropSense_ = new int[numDrops];
+    dropType_ = new int[numDrops];
+    dropPaths_ = new int[numDrops][];
+    indexForDrop_ = new IdentityHashMap<LinkBusDrop, Integer>();
+    for (int i = 0; i < numDrops; i++) {
+      LinkBusDrop drop = drops.get(i);
+      dropTags_[i] = drop.getConnectionTag();
+      dropSense_[i] = drop.getConnectionSense();
+      dropType_[i] = drop.getDropType();
+      dropPaths_[i] = buildPathToRoot(i);
+      indexForDrop_.put(drop, new Integer(i));
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC METHODS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Number of segments in the tree
+  */
+
+  public int getSegmentCount() {
+    return (segs_.length);
+  }
+
+  /***************************************************************************
+  **
+  ** Get the segment at the given index
+  */
+
+  public LinkSegment getSegment(int index) {
+    return (segs_[index]);
+  }
+
+  /***************************************************************************
+  **
+  ** Get the ID of the segment at the given index
+  */
+
+  public String getSegmentID(int index) {
+    return (segIDs_[index]);
+  }
+
+  /***************************************************************************
+  **
+  ** Get the index of the segment with the given ID (-1 if not present)
+  */
+
+  public int getIndex(String segID) {
+    Integer index = indexForID_.get(segID);
+    return ((index == null) ? -1 : index.intValue());
+  }
+
+  /***************************************************************************
+  **
+  ** Answer if the segment at the given index is degenerate
+  */
+
+  public boolean isDegenerate(int index) {
+    return (degenerate_[index]);
+  }
+
+  /***************************************************************************
+  **
+  ** Get the flattened coordinates (x0, y0, x1, y1 per segment; degenerate
+  ** segments repeat the start).  DO NOT MODIFY!
+  */
+
+  public double[] getCoordinates() {
+    return (coords_);
+  }
+
+  /***************************************************************************
+  **
+  ** Get the bounds of the whole tree.  Null for a tree with no segments.
+  */
+
+  public Rectangle2D getTreeBounds() {
+    if (treeBounds_ == null) {
+      return (null);
+    }
+    return (new Rectangle2D.Double(treeBounds_[MIN_X_], treeBounds_[MIN_Y_],
+                                   treeBounds_[MAX_X_] - treeBounds_[MIN_X_],
+                                   treeBounds_[MAX_Y_] - treeBounds_[MIN_Y_]));
+  }
+
+  /***************************************************************************
+  **
+  ** Answer if the point is within the given padding of the tree bounds.
+  */
+
+  public boolean treeNearPoint(Point2D pt, double pad) {
+    if (treeBounds_ == null) {
+      return (false);
+    }
+    return (boxNearPoint(treeBounds_, 0, pt, pad));
+  }
+
+  /***************************************************************************
+  **
+  ** Answer if the point is within the given padding of the segment bounds.
+  ** Cheap prefilter; if false, no intersection test at that tolerance can hit.
+  */
+
+  public boolean segmentNearPoint(int index, Point2D pt, double pad) {
+    return (boxNearPoint(bounds_, index * 4, pt, pad));
+  }
+
+  /***************************************************************************
+  **
+  ** Answer if the segment bounds lie within the given rectangle.  If not, the
+  ** segment endpoints cannot both be contained in any shape with those bounds.
+  */
+
+  public boolean segmentWithinRect(int index, Rectangle2D rect) {
+    int base = index * 4;
+    return ((bounds_[base + MIN_X_] >= rect.getMinX()) && (bounds_[base + MAX_X_] <= rect.getMaxX()) &&
+            (bounds_[base + MIN_Y_] >= rect.getMinY()) && (bounds_[base + MAX_Y_] <= rect.getMaxY()));
+  }
+
+  /***************************************************************************
+  **
+  ** Get the index of the given drop (-1 if not present)
+  */
+
+  public int getDropIndex(LinkBusDrop drop) {
+    Integer index = indexForDrop_.get(drop);
+    return ((index == null) ? -1 : index.intValue());
+  }
+
+  /***************************************************************************
+  **
+  ** Get the segment indices from the drop back to the root, leaf first.  Matches
+  ** LinkProperties.getSegmentsToRoot(LinkBusDrop).  Null if the tree path is
+  ** broken (callers should fall back to a tree walk). DO NOT MODIFY!
+  */
+
+  public int[] getDropPath(int dropIndex) {
+    return (dropPaths_[dropIndex]);
+  }
+
+  /***************************************************************************
+  **
+  ** Get the segments from the drop back to the root, leaf first.  Null if
+  ** the tree path is broken.
+  */
+
+  public List<LinkSegment> getSegmentsToRoot(int dropIndex) {
+    int[] path = dropPaths_[dropIndex];
+    if (path == null) {
+      return (null);
+    }
+    ArrayList<LinkSegment> retval = new ArrayList<LinkSegment>(path.length);
+    for (int i = 0; i < path.length; i++) {
+      retval.add(segs_[path[i]]);
+    }
+    return (retval);
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE INSTANCE METHODS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Build a path to root for the drop.  Null if it is broken.
+  */
+
+  private int[] buildPathToRoot(int dropIndex) {
+    String segID = dropTags_[dropIndex];
+    //
+    // With no-segment buses, the segID will be null
+    //
+    if (segID == null) {
+      return (new int[0]);
+    }
+    int need = getIndex(segID);
+    if (need == -1) {
+      return (null);
+    }
+    if ((dropSense_[dropIndex] == LinkBusDrop.CONNECT_TO_START) &&
+        (dropType_[dropIndex] == LinkBusDrop.END_DROP)) {
+      int parent = (parentIDs_[need] == null) ? -1 : getIndex(parentIDs_[need]);
+      if (parent != -1) {  // may only be 1 point in degenerate bus
+        need = parent;
+      }
+    }
+
+    int[] buf = new int[8];
+    int len = 0;
+    int curr = need;
+    while (true) {
+      if (len == segs_.length) { // Cycle in a broken tree
+        return (null);
+      }
+      if (len == buf.length) {
+        int[] bigger = new int[buf.length * 2];
+        System.arraycopy(buf, 0, bigger, 0, len);
+        buf = bigger;
+      }
+      buf[len++] = curr;
+      String parent = parentIDs_[curr];
+      if (parent == null) {
+        break;
+      }
+      curr = getIndex(parent);
+      if (curr == -1) {
+        return (null);
+      }
+    }
+    int[] retval = new int[len];
+    System.arraycopy(buf, 0, retval, 0, len);
+    return (retval);
+  }
+
+  /***************************************************************************
+  **
+  ** Box test with padding
+  */
+
+  private static boolean boxNearPoint(double[] bounds, int base, Point2D pt, double pad) {
+    double x = pt.getX();
+    double y = pt.getY();
+    return ((x >= (bounds[base + MIN_X_] - pad)) && (x <= (bounds[base + MAX_X_] + pad)) &&
+            (y >= (bounds[base + MIN_Y_] - pad)) && (y <= (bounds[base + MAX_Y_] + pad)));
+  }
+}
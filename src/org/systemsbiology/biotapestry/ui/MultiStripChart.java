@@ -25,10 +25,14 @@ import java.awt.Paint;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.geom.Rectangle2D;
 import java.awt.BasicStroke;
 import java.awt.geom.AffineTransform;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
 import javax.swing.JPanel;
@@ -92,6 +96,8 @@ public abstract class MultiStripChart extends JPanel {
 
   protected List<Strip> allStrips_;
   protected List<MultiStripChart.Strip> prunedStrips_;
+  protected StripStore allStore_;
+  protected StripStore prunedStore_;
   protected Color vlg_;
   protected FontRenderContext frc_;
   protected Dimension dimForCache_;
@@ -114,6 +120,8 @@ public abstract class MultiStripChart extends JPanel {
     appState_ = appState;
     allStrips_ = new ArrayList<MultiStripChart.Strip>();
     prunedStrips_ = new ArrayList<MultiStripChart.Strip>();
+    allStore_ = new StripStore(allStrips_);
+    prunedStore_ = new StripStore(prunedStrips_);
     coverage_ = COVERAGE_ALL;
     setBackground(Color.white);
     vlg_ = new Color(242, 221, 170);
@@ -136,8 +144,7 @@ public abstract class MultiStripChart extends JPanel {
   
   public String getToolTipText(MouseEvent event) {
     Point tipPoint = event.getPoint();
-    int size = useStrips().size();
-    int minY = VERTICAL_MARGIN_;
+    StripStore store = useStore();
     int ptY = tipPoint.y;
     int ptX = tipPoint.x;
         
@@ -150,23 +157,22 @@ public abstract class MultiStripChart extends JPanel {
       return (null);
     }
     
-    for (int i = 0; i < size; i++) {
-      int maxY = minY + STRIP_SIZE_;
-      if ((ptY >= minY) && (ptY <= maxY)) {
-        Strip intersect = useStrips().get(i);
-        List<StripElement> elem = intersect.elements;
-        int elemSize = elem.size();
-        for (int j = 0; j < elemSize; j++) {   
-          StripElement se = elem.get(j);
-          if ((worldX >= se.min) && (worldX <= se.max)) {
-            return (se.tipText);
-          }
-        }
-        return (null);
-      }
-      minY = maxY + BUFFER_SIZE_;
-    }    
-    return (null);    
+    //
+    // Rows are on a fixed pitch, so go straight to the one under the point:
+    //
+    
+    if (ptY < VERTICAL_MARGIN_) {
+      return (null);
+    }
+    int row = (ptY - VERTICAL_MARGIN_) / ROW_DELTA_;
+    if (row >= store.getRowCount()) {
+      return (null);
+    }
+    int minY = VERTICAL_MARGIN_ + (row * ROW_DELTA_);
+    if (ptY > minY + STRIP_SIZE_) {
+      return (null);
+    }
+    return (store.getTipText(row, worldX));    
   }    
   
   /***************************************************************************
@@ -205,6 +211,8 @@ public abstract class MultiStripChart extends JPanel {
     allStrips_.addAll(strips);
     prunedStrips_.clear();
     prunedStrips_.addAll(prunedStrips);
+    allStore_ = new StripStore(allStrips_);
+    prunedStore_ = new StripStore(prunedStrips_);
     invalidate();
     return;
   }
@@ -320,6 +328,15 @@ public abstract class MultiStripChart extends JPanel {
     return ((coverage_ == COVERAGE_ALL) ? allStrips_ : prunedStrips_);
   }
   
+  /***************************************************************************
+  **
+  ** get the packed store for the current strip list
+  */
+  
+  protected StripStore useStore() {
+    return ((coverage_ == COVERAGE_ALL) ? allStore_ : prunedStore_);
+  }
+  
   /***************************************************************************
   **
   ** Kids can reject non-strip related intersections:
@@ -363,62 +380,53 @@ public abstract class MultiStripChart extends JPanel {
   
   /***************************************************************************
   **
-  ** Drawing core for just the strips
+  ** Drawing core for just the strips.  Only rows that fall inside the clip
+  ** get drawn.
   */
   
   protected void drawAllStrips(Graphics2D g2, Dimension dim, DoubMinMax range) {
     BasicStroke ghostStroke = new BasicStroke(1, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER);
-    int numRows = useStrips().size();
-    int yDisp = numRows - 1;
-    for (int i = 0; i < numRows; i++) {
-      Strip strip = useStrips().get(yDisp);
-      drawStrip(g2, yDisp--, dim.height, strip, range, transform_, ghostStroke);
+    StripStore store = useStore();
+    int numRows = store.getRowCount();
+    int firstRow = 0;
+    int lastRow = numRows - 1;
+    int clipMinX = Integer.MIN_VALUE;
+    int clipMaxX = Integer.MAX_VALUE;
+    Rectangle clip = g2.getClipBounds();
+    if (clip != null) {
+      // Pad by a row to cover labels that poke out of their strip:
+      firstRow = Math.max(firstRow, ((clip.y - VERTICAL_MARGIN_) / ROW_DELTA_) - 1);
+      lastRow = Math.min(lastRow, ((clip.y + clip.height - VERTICAL_MARGIN_) / ROW_DELTA_) + 1);
+      clipMinX = clip.x - 1;
+      clipMaxX = clip.x + clip.width + 1;
+    }
+    for (int row = lastRow; row >= firstRow; row--) {
+      drawStrip(g2, row, store, range, transform_, ghostStroke, clipMinX, clipMaxX);
     }
     return;
   }
   
   /***************************************************************************
   **
-  ** Draw a strip
+  ** Draw a strip.  Every element still counts toward the label position,
+  ** but only the ones overlapping the clip span get drawn.
   */
   
-  protected void drawStrip(Graphics2D g2, int row, int height, Strip strip, DoubMinMax displayRange,
-                         ChartTransform transform, BasicStroke ghostStroke) {
-    int numElem = strip.elements.size();
+  protected void drawStrip(Graphics2D g2, int row, StripStore store, DoubMinMax displayRange,
+                           ChartTransform transform, BasicStroke ghostStroke, int clipMinX, int clipMaxX) {
+    int firstElem = store.rowStart_[row];
+    int lastElem = store.rowStart_[row + 1];
     int y = VERTICAL_MARGIN_ + (row * ROW_DELTA_);
     int stripMinX = Integer.MAX_VALUE;
     int stripMaxX = Integer.MIN_VALUE;
     int stripMinY = y;
     int stripMaxY = y + STRIP_SIZE_;
     int drawnElem = 0;
-    for (int i = 0; i < numElem; i++) {
-      StripElement se = (StripElement)strip.elements.get(i);
-      Color drawColor = se.color;
-      boolean doFill;
-      Paint usePaint = null;
-      switch (se.pattern) {
-        case SOLID_PATTERN:
-          usePaint = drawColor;
-          doFill = true;
-          break;
-        case HATCHED_PATTERN:
-          usePaint = new PatternPaint(PatternPaint.BACKWARD_DENSE_DIAGONAL_LINES, drawColor);
-          doFill = true;
-          break;
-        case DOT_PATTERN:
-          usePaint = new PatternPaint(PatternPaint.DOTS, drawColor);
-          doFill = true;
-          break;           
-        case OUTLINE_PATTERN:
-          usePaint = drawColor;
-          doFill = false;
-          break;
-        default:
-          throw new IllegalArgumentException();
-      } 
-      g2.setPaint(usePaint);
-      double showMin = (se.min < displayRange.min) ? displayRange.min : se.min;
-      double showMax = (se.max > displayRange.max) ? displayRange.max : se.max;
+    for (int i = firstElem; i < lastElem; i++) {
+      double elemMin = store.min_[i];
+      double elemMax = store.max_[i];
+      double showMin = (elemMin < displayRange.min) ? displayRange.min : elemMin;
+      double showMax = (elemMax > displayRange.max) ? displayRange.max : elemMax;
       int minX = convertToScreenX(showMin, transform);
       int maxX = convertToScreenX(showMax, transform);
 
@@ -430,22 +438,28 @@ public abstract class MultiStripChart extends JPanel {
         }
         if (maxX > stripMaxX) {
           stripMaxX = maxX;
-        }      
-        if (doFill) {
+        }
+        if ((maxX < clipMinX) || (minX > clipMaxX)) {
+          continue;
+        }
+        g2.setPaint(store.paint_[i]);
+        if (store.doFill_[i]) {
           g2.fillRect(minX, y, width, STRIP_SIZE_);
         } else {
           g2.setStroke(ghostStroke);
           g2.drawRect(minX, y, width, STRIP_SIZE_);        
         }
-        if (se.stripeColor != null) {
-          g2.setPaint(se.stripeColor);
+        Color stripeColor = store.stripeColor_[i];
+        if (stripeColor != null) {
+          g2.setPaint(stripeColor);
           g2.fillRect(minX, y + STRIPE_OFFSET_, width, STRIPE_SIZE_);
         }
-        if (se.decoration == DISQUALIFIED) {
+        int decoration = store.decoration_[i];
+        if (decoration == DISQUALIFIED) {
           g2.setPaint(Color.black);
           g2.drawLine(minX, y, maxX, y + STRIP_SIZE_);
           g2.drawLine(minX, y + STRIP_SIZE_, maxX, y);          
-        } else if (se.decoration == CALLED_OUT) {
+        } else if (decoration == CALLED_OUT) {
           g2.setPaint(Color.black);
           g2.drawRect(minX, y, width - 1, STRIP_SIZE_);
         }
@@ -459,13 +473,13 @@ public abstract class MultiStripChart extends JPanel {
     if (drawnElem > 0) {
       g2.setPaint(Color.black);
       Font mFont = appState_.getFontMgr().getFixedFont(FontManager.STRIP_CHART);
-      Rectangle2D bounds = mFont.getStringBounds(strip.name, frc_);
+      Rectangle2D bounds = store.getLabelBounds(row, mFont, frc_);
       double tWidth = bounds.getWidth();
       double tHeight = bounds.getHeight() * HEIGHT_HACK_;
       double x = ((stripMaxX + stripMinX) / 2.0) - (tWidth / 2.0);
       double by = ((stripMaxY + stripMinY) / 2.0) + (tHeight / 2.0);
       g2.setFont(mFont);
-      g2.drawString(strip.name, (float)x, (float)by);
+      g2.drawString(store.names_[row], (float)x, (float)by);
     }
     return;
   }
@@ -513,4 +527,167 @@ public abstract class MultiStripChart extends JPanel {
       this.slope = slope;
     }
   }
+
+  /***************************************************************************
+  **
+  ** Strips packed into flat arrays, with the elements of row i held in
+  ** slots rowStart_[i] up to rowStart_[i + 1].  Pattern paints are shared
+  ** across elements with the same pattern and color.  Each row also keeps
+  ** its elements sorted by min, with a running max of the max values, so
+  ** tool tip lookups are a binary search.
+  */  
+      
+  protected static class StripStore {
+    
+    private String[] names_;
+    private int[] rowStart_;
+    private double[] min_;
+    private double[] max_;
+    private Paint[] paint_;
+    private boolean[] doFill_;
+    private Color[] stripeColor_;
+    private int[] decoration_;
+    private String[] tipText_;
+    private int[] byMin_;
+    private double[] sortedMin_;
+    private double[] runMax_;
+    private Font labelFont_;
+    private Rectangle2D[] labelBounds_;
+  
+    protected StripStore(List<Strip> strips) {
+      int numRows = strips.size();
+      int numElem = 0;
+      for (int i = 0; i < numRows; i++) {
+        numElem += strips.get(i).elements.size();
+      }
+      names_ = new String[numRows];
+      rowStart_ = new int[numRows + 1];
+      min_ = new double[numElem];
+      max_ = new double[numElem];
+      paint_ = new Paint[numElem];
+      doFill_ = new boolean[numElem];
+      stripeColor_ = new Color[numElem];
+      decoration_ = new int[numElem];
+      tipText_ = new String[numElem];
+      byMin_ = new int[numElem];
+      sortedMin_ = new double[numElem];
+      runMax_ = new double[numElem];
+      labelBounds_ = new Rectangle2D[numRows];
+      
+      HashMap<String, Paint> patternPaints = new HashMap<String, Paint>();
+      int slot = 0;
+      for (int i = 0; i < numRows; i++) {
+        Strip strip = strips.get(i);
+        names_[i] = strip.name;
+        rowStart_[i] = slot;
+        int rowElem = strip.elements.size();
+        for (int j = 0; j < rowElem; j++) {
+          StripElement se = strip.elements.get(j);
+          min_[slot] = se.min;
+          max_[slot] = se.max;
+          paint_[slot] = paintFor(se, patternPaints);
+          doFill_[slot] = (se.pattern != OUTLINE_PATTERN);
+          stripeColor_[slot] = se.stripeColor;
+          decoration_[slot] = se.decoration;
+          tipText_[slot] = se.tipText;
+          slot++;
+        }
+        sortRow(rowStart_[i], slot);
+      }
+      rowStart_[numRows] = slot;
+    }
+    
+    protected int getRowCount() {
+      return (names_.length);
+    }
+    
+    /***************************************************************************
+    **
+    ** Get the tip for the first element in the row that covers the given
+    ** world X, or null.
+    */ 
+    
+    protected String getTipText(int row, double worldX) {
+      int rowMin = rowStart_[row];
+      int lo = rowMin;
+      int hi = rowStart_[row + 1];
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (sortedMin_[mid] <= worldX) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      int best = -1;
+      for (int k = lo - 1; (k >= rowMin) && (runMax_[k] >= worldX); k--) {
+        int elem = byMin_[k];
+        if ((max_[elem] >= worldX) && ((best == -1) || (elem < best))) {
+          best = elem;
+        }
+      }
+      return ((best == -1) ? null : tipText_[best]);
+    }
+    
+    /***************************************************************************
+    **
+    ** Label bounds, cached until the font changes
+    */ 
+    
+    protected Rectangle2D getLabelBounds(int row, Font font, FontRenderContext frc) {
+      if (font != labelFont_) {
+        Arrays.fill(labelBounds_, null);
+        labelFont_ = font;
+      }
+      if (labelBounds_[row] == null) {
+        labelBounds_[row] = font.getStringBounds(names_[row], frc);
+      }
+      return (labelBounds_[row]);
+    }
+    
+    private Paint paintFor(StripElement se, HashMap<String, Paint> patternPaints) {
+      int paintType;
+      switch (se.pattern) {
+        case SOLID_PATTERN:
+        case OUTLINE_PATTERN:
+          return (se.color);
+        case HATCHED_PATTERN:
+          paintType = PatternPaint.BACKWARD_DENSE_DIAGONAL_LINES;
+          break;
+        case DOT_PATTERN:
+          paintType = PatternPaint.DOTS;
+          break;
+        default:
+          throw new IllegalArgumentException();
+      }
+      String key = paintType + ":" + se.color.getRGB();
+      Paint retval = patternPaints.get(key);
+      if (retval == null) {
+        retval = new PatternPaint(paintType, se.color);
+        patternPaints.put(key, retval);
+      }
+      return (retval);
+    }
+    
+    private void sortRow(int start, int end) {
+      Integer[] order = new Integer[end - start];
+      for (int i = start; i < end; i++) {
+        order[i - start] = new Integer(i);
+      }
+      Arrays.sort(order, new Comparator<Integer>() {
+        public int compare(Integer elem1, Integer elem2) {
+          return (Double.compare(min_[elem1.intValue()], min_[elem2.intValue()]));
+        }
+      });
+      double maxSoFar = Double.NEGATIVE_INFINITY;
+      for (int i = start; i < end; i++) {
+        int elem = order[i - start].intValue();
+        byMin_[i] = elem;
+        sortedMin_[i] = min_[elem];
+        maxSoFar = Math.max(maxSoFar, max_[elem]);
+        runMax_[i] = maxSoFar;
+      }
+      return;
+    }
+  }
 }
@@ -178,6 +178,7 @@ public class NetModuleLinkageProperties extends LinkProperties implements Clonea
     
     bd = new NetModuleBusDrop(knmbd.getEnd(0.0), knmbd.getOffset(), keepDrop.getTargetRef(), null, NetModuleBusDrop.END_DROP, NetModuleBusDrop.NO_SEGMENT_CONNECTION);
     retval.drops_.add(bd);
+    retval.treeChanged();
     return (retval);
   }  
   
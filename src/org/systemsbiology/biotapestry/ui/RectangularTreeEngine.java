@@ -34,10 +34,11 @@ import java.awt.Dimension;
 import java.util.Collections;
 
 import org.systemsbiology.biotapestry.analysis.GraphSearcher;
-import org.systemsbiology.biotapestry.analysis.CycleFinder;
+import org.systemsbiology.biotapestry.analysis.StrongComponents;
 import org.systemsbiology.biotapestry.analysis.Link;
 import org.systemsbiology.biotapestry.analysis.CrossingReducer;
 import org.systemsbiology.biotapestry.analysis.LayerAssignment;
+import org.systemsbiology.biotapestry.analysis.LayeredDrawing;
 import org.systemsbiology.biotapestry.analysis.TransReducer;
 import org.systemsbiology.biotapestry.genome.Genome;
 import org.systemsbiology.biotapestry.genome.Linkage;
@@ -251,7 +252,6 @@ public class RectangularTreeEngine {
     TreeSet<String> nodes = new TreeSet<String>(allNodes);
     ArrayList<Link> preLinks = new ArrayList<Link>();
     ArrayList<DialogBuiltMotif> sortedMList = new ArrayList<DialogBuiltMotif>();
-    HashSet<String> targetOnly = new HashSet<String>(allNodes);
     
     Iterator<DialogBuiltMotif> mit = motifList.iterator();
     while (mit.hasNext()) {
@@ -260,23 +260,18 @@ public class RectangularTreeEngine {
       for (int i = 0; i < lcount; i++) {
         Link cfl = dbm.getLink(i);
         preLinks.add(cfl);
-        targetOnly.remove(cfl.getSrc());
       }
       sortedMList.add(dbm);
     }
     Collections.sort(sortedMList, new DialogBuiltMotif.DBMComparator());
     
     TreeSet<Link> links = new TreeSet<Link>();
+    StrongComponents.CycleBreaker breaker = new StrongComponents.CycleBreaker(preLinks);
     Iterator<Link> prit = preLinks.iterator();
     while (prit.hasNext()) {
       Link cfl = prit.next();
-      links.add(cfl);
-      if (targetOnly.contains(cfl.getTrg())) {
-       continue;
-      }     
-      CycleFinder cf = new CycleFinder(nodes, links);
-      if (cf.hasACycle()) {
-        links.remove(cfl);
+      if (breaker.addIfAcyclic(cfl)) {
+        links.add(cfl);
       }
     }
 
@@ -378,7 +373,11 @@ public class RectangularTreeEngine {
     }
     Grid retvalGrid = new Grid(retval, refID, refPt, topoSort);
     if (options.doCrossingReduction) {
-      minimizeCrossingsInGrid(retvalGrid, allLinks);
+      if (options.layeringMethod == LayoutOptions.SUGIYAMA) {
+        sweepCrossingsInGrid(retvalGrid, allLinks);
+      } else {
+        minimizeCrossingsInGrid(retvalGrid, allLinks);
+      }
     }
     return (retvalGrid);
   }
@@ -564,6 +563,11 @@ public class RectangularTreeEngine {
     
     TransReducer tr = new TransReducer();
     links = tr.reduceGraph(links);
+    
+    if (method == LayoutOptions.SUGIYAMA) {
+      LayeredDrawing ld = new LayeredDrawing(topoSort.keySet(), links);
+      return (ld.assignLayers(max));
+    }
         
     LayerAssignment la = new LayerAssignment();
     return (la.assignLayers(topoSort, links, max, (method == LayoutOptions.COFFMAN_GRAHAM)));    
@@ -667,6 +671,53 @@ public class RectangularTreeEngine {
     return;
   }
 
+  /***************************************************************************
+  **
+  ** Permute the grid to minimize crossings, ordering all the columns together
+  ** with layer sweeps.  Nodes are shuffled among the rows already occupied in
+  ** each column.
+  */
+  
+  private void sweepCrossingsInGrid(Grid grid, Set<SimpleLink> links) {
+    
+    int cols = grid.getNumCols();
+    int rows = grid.getNumRows();    
+    
+    if (cols <= 1) {
+      return;
+    }
+    
+    HashSet<String> nodes = new HashSet<String>();
+    ArrayList<List<String>> columns = new ArrayList<List<String>>();
+    ArrayList<List<Integer>> slots = new ArrayList<List<Integer>>();
+    for (int i = 0; i < cols; i++) {
+      ArrayList<String> column = new ArrayList<String>();
+      ArrayList<Integer> slotsForCol = new ArrayList<Integer>();
+      for (int j = 0; j < rows; j++) {
+        String node = grid.getCellValue(j, i);
+        if (node != null) {
+          column.add(node);
+          slotsForCol.add(new Integer(j));
+          nodes.add(node);
+        }
+      }
+      columns.add(column);
+      slots.add(slotsForCol);
+    }
+    
+    LayeredDrawing ld = new LayeredDrawing(nodes, links);
+    List<List<String>> ordered = ld.orderLayers(columns, LayeredDrawing.DEFAULT_SWEEPS);
+    for (int i = 0; i < cols; i++) {
+      List<String> column = ordered.get(i);
+      List<Integer> slotsForCol = slots.get(i);
+      int numSlots = slotsForCol.size();
+      for (int j = 0; j < numSlots; j++) {
+        grid.setCellValue(slotsForCol.get(j).intValue(), i, column.get(j));
+      }
+    }
+    return;
+  }
+
   /***************************************************************************
   **
   ** Normalize the grid to eliminate holes and offsets
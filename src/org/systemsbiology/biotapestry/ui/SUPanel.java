@@ -29,6 +29,7 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
 import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
 import java.awt.print.PageFormat;
 import java.awt.print.Printable;
 import java.io.File;
@@ -59,6 +60,8 @@ import org.systemsbiology.biotapestry.cmd.undo.SelectionChangeCmd;
 import org.systemsbiology.biotapestry.db.Database;
 import org.systemsbiology.biotapestry.db.DataAccessContext;
 import org.systemsbiology.biotapestry.embedded.ExternalSelectionChangeEvent;
+import org.systemsbiology.biotapestry.event.BatchChangeListener;
+import org.systemsbiology.biotapestry.event.ChangeEvent;
 import org.systemsbiology.biotapestry.event.EventManager;
 import org.systemsbiology.biotapestry.event.GeneralChangeEvent;
 import org.systemsbiology.biotapestry.event.GeneralChangeListener;
@@ -86,6 +89,7 @@ import org.systemsbiology.biotapestry.util.Vector2D;
 public class SUPanel implements LayoutChangeListener,
                                 ModelChangeListener,
                                 GeneralChangeListener, 
+                                BatchChangeListener,
                                 Printable {
 
   ////////////////////////////////////////////////////////////////////////////
@@ -112,6 +116,7 @@ public class SUPanel implements LayoutChangeListener,
   private boolean lastCtrl_ = false;
   
   private Layout dragLayout_ = null;
+  private Layout.PropChange[] dragUndo_ = null;
   private Layout multiMoveLayout_ = null;    
   private ArrayList<Point> dragFloater_;
   private RunningMove rmov_;
@@ -638,7 +643,48 @@ public class SUPanel implements LayoutChangeListener,
                                                                   dragLayout_, multiMoveLayout_, 
                                                                   null, null, appState_.getFontMgr());
     return (vexp_.exportToStream(stream, calcMap, format, res, zoom, size, sfd));
-  }   
+  }
+
+  /***************************************************************************
+  **
+  ** Draw an export image for the current model, leaving encoding to the caller
+  */
+
+  public ViewExporter.RenderedExport renderForExport(boolean calcMap, double zoom, Dimension size, OverlayStateOracle oso) {
+    return (vexp_.renderForExport(calcMap, zoom, size, buildExportState(oso)));
+  }
+  
+  /***************************************************************************
+  **
+  ** World bounds of the current model, as used for a full image export
+  */  
+  
+  public Rectangle getExportBounds(OverlayStateOracle oso) {
+    return (vexp_.getExportBounds(buildExportState(oso)));
+  }
+  
+  /***************************************************************************
+  **
+  ** Draw one image tile of the current model
+  */  
+  
+  public BufferedImage renderTile(Point2D worldOrigin, double zoom, int tileSize, OverlayStateOracle oso) {
+    return (vexp_.renderTile(worldOrigin, zoom, tileSize, buildExportState(oso)));
+  }
+  
+  /***************************************************************************
+  **
+  ** Drawing state for exports
+  */  
+  
+  private ViewExporter.StateForDraw buildExportState(OverlayStateOracle oso) {
+    DataAccessContext rcx = new DataAccessContext(appState_, appState_.getGenome());
+    rcx.oso = oso;
+    return (new ViewExporter.StateForDraw(appState_, rcx, rmov_,
+                                          menuDrivenShowComponentModule_,
+                                          dragLayout_, multiMoveLayout_,
+                                          null, null, appState_.getFontMgr()));
+  }
 
   /***************************************************************************
   **
@@ -700,6 +746,32 @@ public class SUPanel implements LayoutChangeListener,
     return;
   }
 
+  /***************************************************************************
+  **
+  ** Called with the merged changes from a batch: one redraw covers them all
+  */   
+
+  public void batchOfChangesOccurred(List<ChangeEvent> events) {
+    boolean redraw = false;
+    int num = events.size();
+    for (int i = 0; i < num; i++) {
+      ChangeEvent ce = events.get(i);
+      if (ce instanceof ModelChangeEvent) {
+        appState_.getTextBoxMgr().checkForChanges((ModelChangeEvent)ce);
+        redraw = true;
+      } else if (ce instanceof LayoutChangeEvent) {
+        redraw = true;
+      } else if ((ce instanceof GeneralChangeEvent) && 
+                 (((GeneralChangeEvent)ce).getChangeType() == GeneralChangeEvent.MODEL_DATA_CHANGE)) {
+        redraw = true;
+      }
+    }
+    if (redraw) {
+      drawModel(false);
+    }
+    return;
+  }
+
   ////////////////////////////////////////////////////////////////////////////
   //
   // INNER CLASSES
@@ -749,6 +821,7 @@ public class SUPanel implements LayoutChangeListener,
           lastAbs_ = new Point(me.getX() + screenLoc.x, me.getY() + screenLoc.y);
           lastCtrl_ = me.isControlDown();
           dragLayout_ = null;
+          dragUndo_ = null;
           rmov_ = null;
         //  if (readOnly_) {
         //    return;
@@ -819,6 +892,7 @@ public class SUPanel implements LayoutChangeListener,
         lastView_ = null;
         lastAbs_ = null;
         dragLayout_ = null;
+        dragUndo_ = null;
         multiMoveLayout_ = null;
         DataAccessContext rcx = new DataAccessContext(appState_, appState_.getGenome());
         if (me.isPopupTrigger()) {
@@ -1095,9 +1169,17 @@ public class SUPanel implements LayoutChangeListener,
           dragFloater_.add(pt3);
           myGenomePre_.setFloater(dragFloater_);        
         } else if (appState_.getIsEditor()) { 
-          // How's this for inefficient???
+          //
+          // Copy the layout once per drag.  After that, each preview just
+          // backs out the changes made by the previous one:
+          //
           DataAccessContext rcx = new DataAccessContext(appState_, appState_.getGenome());
-          dragLayout_ = new Layout(rcx.getLayout());
+          if (dragLayout_ == null) {
+            dragLayout_ = new Layout(rcx.getLayout());
+          } else if (dragUndo_ != null) {
+            dragLayout_.propChangesUndo(dragUndo_);
+          }
+          dragUndo_ = null;
           if (rmov_ == null) {
             //
             // ISSUE #215 RMOV generation now using the original lastPress_, not the gridded lastPress_;
@@ -1115,7 +1197,7 @@ public class SUPanel implements LayoutChangeListener,
               giveErrorFeedback();
               return;
             }
-            appState_.getPanelCmds().visualizeAMove(rmov_, pt0, dragLayout_);
+            dragUndo_ = appState_.getPanelCmds().visualizeAMove(rmov_, pt0, dragLayout_);
           }
           // #215 FIX: Do gridding now, not before, to make the floater on-grid.
           UiUtil.forcePtToGrid(pt0.x, pt0.y, pt0);
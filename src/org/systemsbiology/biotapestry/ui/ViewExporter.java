@@ -207,6 +207,20 @@ public class ViewExporter {
   private BoundsMaps exportGuts(Object outObj, boolean calcMap, 
                                 String format, ImageExporter.ResolutionSettings res,
                                 double zoom, Dimension size, StateForDraw sfd) throws IOException {
+    
+    RenderedExport rex = renderForExport(calcMap, zoom, size, sfd);    
+    ImageExporter iex = new ImageExporter();
+    iex.export(outObj, rex.image, format, res);    
+    return (rex.bounds);
+  }
+  
+  /***************************************************************************
+  **
+  ** Draw the export image without encoding it.  This is the part that needs the
+  ** current model state; the returned image can then be encoded on any thread.
+  */  
+  
+  public RenderedExport renderForExport(boolean calcMap, double zoom, Dimension size, StateForDraw sfd) {
     int width;
     int height;
     
@@ -215,13 +229,8 @@ public class ViewExporter {
     }
     
     
-    String currentOverlay = sfd.rcx.oso.getCurrentOverlay();
-    TaggedSet currentNetMods = sfd.rcx.oso.getCurrentNetModules();
     if (size == null) {
-      boolean doModules = (currentOverlay != null) && !currentNetMods.set.isEmpty();
-      Map<String, Layout.OverlayKeySet> allKeys = (doModules) ? sfd.rcx.fgho.fullModuleKeysPerLayout() : null;
-      Rectangle rect = myGenomePre_.getRequiredSize(sfd.rcx, true, true, doModules, doModules,
-                                                    currentOverlay, currentNetMods, allKeys);                  
+      Rectangle rect = getExportBounds(sfd);                  
       width = (int)(rect.width * zoom); 
       height = (int)(rect.height * zoom);
     } else {
@@ -252,6 +261,7 @@ public class ViewExporter {
     } else {
       drawingGuts(g2, false, false, otr, false, false, sfd);
     }
+    g2.dispose();
 
     //
     // Fix for BT-10-27-09:1.  JPEG does not support RGBA.  Don't need to
@@ -261,12 +271,61 @@ public class ViewExporter {
     BufferedImage birgb = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
     Graphics2D g2rgb = birgb.createGraphics();
     g2rgb.drawImage(bi, 0, 0, null);
-        
-    ImageExporter iex = new ImageExporter();
-    iex.export(outObj, birgb, format, res);
+    g2rgb.dispose();
     zts_.setRawCenterPoint(oldCenter, null, false);
     
-    return (retval);
+    return (new RenderedExport(birgb, retval));
+  }
+
+  /***************************************************************************
+  **
+  ** World bounds of a full-model export
+  */  
+  
+  public Rectangle getExportBounds(StateForDraw sfd) {
+    if (sfd.rcx.oso == null) {
+      sfd.rcx.oso = new FreezeDriedOverlayOracle(null, null, NetModuleFree.CurrentSettings.NOTHING_MASKED, null);
+    }
+    String currentOverlay = sfd.rcx.oso.getCurrentOverlay();
+    TaggedSet currentNetMods = sfd.rcx.oso.getCurrentNetModules();
+    boolean doModules = (currentOverlay != null) && !currentNetMods.set.isEmpty();
+    Map<String, Layout.OverlayKeySet> allKeys = (doModules) ? sfd.rcx.fgho.fullModuleKeysPerLayout() : null;
+    return (myGenomePre_.getRequiredSize(sfd.rcx, true, true, doModules, doModules,
+                                         currentOverlay, currentNetMods, allKeys));
+  }
+  
+  /***************************************************************************
+  **
+  ** Draw one square tile of the model: the given world rectangle's upper left
+  ** corner lands on the tile origin, and drawing is clipped to the tile.  Only
+  ** model objects near the tile's world rectangle get presented at all.
+  */  
+  
+  public BufferedImage renderTile(Point2D worldOrigin, double zoom, int tileSize, StateForDraw sfd) {
+    if (sfd.rcx.oso == null) {
+      sfd.rcx.oso = new FreezeDriedOverlayOracle(null, null, NetModuleFree.CurrentSettings.NOTHING_MASKED, null);
+    }
+    BufferedImage bi = new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g2 = bi.createGraphics();
+    g2.setColor(Color.white);
+    g2.fillRect(0, 0, tileSize, tileSize);
+    g2.setClip(0, 0, tileSize, tileSize);
+    Vector2D preTrans = new Vector2D(0.0, 0.0);
+    Vector2D postTrans = new Vector2D(-worldOrigin.getX(), -worldOrigin.getY());
+    OverrideTransform otr = new OverrideTransform(preTrans, zoom, postTrans, false);
+    sfd.imgView = new Rectangle(0, 0, tileSize, tileSize);  
+    double worldSize = tileSize / zoom;
+    double pad = GenomePresentation.BOUNDS_PAD;
+    sfd.worldClip = new Rectangle2D.Double(worldOrigin.getX() - pad, worldOrigin.getY() - pad, 
+                                           worldSize + (2.0 * pad), worldSize + (2.0 * pad));
+    drawingGuts(g2, false, false, otr, false, false, sfd);
+    g2.dispose();
+
+    BufferedImage birgb = new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g2rgb = birgb.createGraphics();
+    g2rgb.drawImage(bi, 0, 0, null);
+    g2rgb.dispose();
+    return (birgb);
   }
 
   /***************************************************************************
@@ -561,6 +620,7 @@ private void exportGroupsInDrawLayer(VisitableObjectCache sourceCache,
       rcxP.lSrc = new LocalLayoutSource(useLayout, rcxP.getGenomeSource());
       rcxP.pixDiam = zts_.currentPixelDiameter();
       rcxP.showBubbles = showBubbles;
+      rcxP.clipRect = sfd.worldClip;
       myGenomePre_.presentGenomeWithOverlay(cgc, overlayCache, floaterCache, g2, ooi, rcxP,
           																	sfd.showRoot, showModuleComponents);
       
@@ -757,6 +817,7 @@ private void exportGroupsInDrawLayer(VisitableObjectCache sourceCache,
     Layout dragLayout;
     Layout multiMoveLayout;
     Rectangle imgView;
+    Rectangle2D worldClip;
     String menuDrivenShowComponentModule;
     XPlatDisplayText displayText;
     FontManager fMgr;
@@ -812,6 +873,21 @@ private void exportGroupsInDrawLayer(VisitableObjectCache sourceCache,
     }
   }   
   
+  /***************************************************************************
+  **
+  ** A drawn, but not yet encoded, export image
+  */
+  
+  public static class RenderedExport {
+    public BufferedImage image;
+    public BoundsMaps bounds;
+    
+    public RenderedExport(BufferedImage image, BoundsMaps bounds) {
+      this.image = image;
+      this.bounds = bounds;
+    }
+  }
+  
   /***************************************************************************
   **
   ** Used to override display transform for drawing
@@ -23,6 +23,7 @@ import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -144,9 +145,25 @@ public class NetworkSearchDialogFactory extends DialogFactory {
 		Vector<TrueObjChoiceContent> retval = new Vector<TrueObjChoiceContent>();
 		retval.add(new TrueObjChoiceContent(rMan.getString("nsearch.fullMatch"),NetworkSearch.MatchTypes.FULL_MATCH_));
 		retval.add(new TrueObjChoiceContent(rMan.getString("nsearch.partialMatch"),NetworkSearch.MatchTypes.PARTIAL_MATCH_));
+		retval.add(new TrueObjChoiceContent(rMan.getString("nsearch.prefixMatch"),NetworkSearch.MatchTypes.PREFIX_MATCH_));
+		retval.add(new TrueObjChoiceContent(rMan.getString("nsearch.fuzzyMatch"),NetworkSearch.MatchTypes.FUZZY_MATCH_));
 		return (retval);
 	}
 
+	/***************************************************************************
+	 ** 
+	 ** Message for a node search that found nothing in the current model,
+	 ** listing the best matches elsewhere if there are any
+	 */
+
+	private static String nothingFoundMessage(BTState appState, String ranked) {
+		ResourceManager rMan = appState.getRMan();
+		if ((ranked == null) || ranked.equals("")) {
+			return (rMan.getString("nsearch.nothingFound"));
+		}
+		return (MessageFormat.format(rMan.getString("nsearch.nothingFoundRanked"), new Object[] {ranked}));
+	}
+
 	/***************************************************************************
 	 ** 
 	 ** Get combo box guts for module method
@@ -672,6 +689,24 @@ public class NetworkSearchDialogFactory extends DialogFactory {
 			return (retval);
 		}
 
+		/**
+		 * queBombForRankedSearch
+		 * 
+		 * Best matches across all the models and the data
+		 * 
+		 * @param search
+		 * @param matchType
+		 * @return
+		 * 
+		 */
+		private String queBombForRankedSearch(String search,NetworkSearch.MatchTypes matchType) {
+			RemoteRequest daBomb = new RemoteRequest("queBombFindRankedMatches");
+			daBomb.setStringArg("search", search);
+			daBomb.setObjectArg("matchType", matchType);
+			RemoteRequest.Result dbres = this.scfh_.receiveRemoteRequest(daBomb);
+			return (dbres.getStringAnswer("ranked"));
+		}
+
 		/**
 		 * checkForErrors
 		 * 
@@ -683,8 +718,9 @@ public class NetworkSearchDialogFactory extends DialogFactory {
 			SearchRequest sr = generateSearchRequest(ui);
 			if (sr != null && sr.found != null && sr.found.isEmpty()) {
 				ResourceManager rMan = appState_.getRMan();
+				String ranked = (sr.whichTab == 0) ? queBombForRankedSearch(sr.search, sr.matchType) : null;
 				return new SimpleUserFeedback(SimpleUserFeedback.JOP.ERROR,
-					rMan.getString("nsearch.nothingFound"),
+					nothingFoundMessage(appState_, ranked),
 					rMan.getString("nsearch.nothingFoundTitle"));
 			}
 			return null;
@@ -791,8 +827,9 @@ public class NetworkSearchDialogFactory extends DialogFactory {
 						request_ = generateSearchRequest();
 						if ((request_.found != null) && request_.found.isEmpty()) {
 							ResourceManager rMan = appState_.getRMan();
+							String ranked = (request_.whichTab == 0) ? queBombForRankedSearch(request_.search, request_.matchType) : null;
 							SimpleUserFeedback suf = new SimpleUserFeedback(
-								SimpleUserFeedback.JOP.ERROR, rMan.getString("nsearch.nothingFound"),rMan.getString("nsearch.nothingFoundTitle")
+								SimpleUserFeedback.JOP.ERROR, nothingFoundMessage(appState_, ranked),rMan.getString("nsearch.nothingFoundTitle")
 							);
 							cfh_.showSimpleUserFeedback(suf);
 						} else {
@@ -1124,6 +1161,8 @@ public class NetworkSearchDialogFactory extends DialogFactory {
 				NetworkSearch.MatchTypes matchType = (NetworkSearch.MatchTypes) ((TrueObjChoiceContent) matchTypeCombo_
 						.getSelectedItem()).val;
 				String search = stringField_.getText().trim();
+				retval.search = search;
+				retval.matchType = matchType;
 				retval.found = queBombForSearch(search, matchType);
 				retval.clearCurrent = !addToCurrentBox_.isSelected();
 			} else {
@@ -1163,6 +1202,20 @@ public class NetworkSearchDialogFactory extends DialogFactory {
 			Set<String> retval = dbres.getSetAnswer("found");
 			return (retval);
 		}
+
+		/***************************************************************************
+		 ** 
+		 ** Ask the expert for the best matches across all the models and the data
+		 ** 
+		 */
+
+		private String queBombForRankedSearch(String search,NetworkSearch.MatchTypes matchType) {
+			RemoteRequest daBomb = new RemoteRequest("queBombFindRankedMatches");
+			daBomb.setStringArg("search", search);
+			daBomb.setObjectArg("matchType", matchType);
+			RemoteRequest.Result dbres = cfh_.routeRemoteRequest(daBomb);
+			return (dbres.getStringAnswer("ranked"));
+		}
 		
 		 /***************************************************************************
      ** 
@@ -109,6 +109,7 @@ public class PertDataPointManagePanel extends AnimatedSplitManagePanel
   private HashMap currentScaleState_;
   private boolean ignoreScaleChange_;
   private JLabel dispLab_;
+  private HashMap<String, PdEntry> entryCache_;
   
   private static final long serialVersionUID = 1L;
 
@@ -129,6 +130,7 @@ public class PertDataPointManagePanel extends AnimatedSplitManagePanel
     super(appState, dacx, pmw, pet, MANAGER_KEY);
     pd_ = pd;
     pmh_ = new PertManageHelper(appState_, pmw, pd, rMan_, gbc_, pet_);
+    entryCache_ = new HashMap<String, PdEntry>();
   
     //
     // Build the filter panel:
@@ -311,6 +313,7 @@ public class PertDataPointManagePanel extends AnimatedSplitManagePanel
     }
     conversionKey_ = key;
     if (change) {
+      entryCache_.clear();
       displayProperties(true);
     }
     return;
@@ -443,6 +446,7 @@ public class PertDataPointManagePanel extends AnimatedSplitManagePanel
   */ 
   
   public void haveAChange(boolean mustDie) {
+    entryCache_.clear();
     filtPanel_.stockFilterPanel();
     PertFilterExpression pfe = filtPanel_.buildPertFilterExpr();
     installNewFilter(pfe);
@@ -528,7 +532,9 @@ public class PertDataPointManagePanel extends AnimatedSplitManagePanel
    
   /***************************************************************************
   **
-  ** Apply the current data values to our UI components
+  ** Apply the current data values to our UI components.  Rows are cached by
+  ** data point across filter changes, and only build their cell strings when
+  ** they are shown or sorted on.
   ** 
   */
   
@@ -544,7 +550,12 @@ public class PertDataPointManagePanel extends AnimatedSplitManagePanel
     int numPert = pertData.size();
     for (int i = 0; i < numPert; i++) {
       PertDataPoint pdp = (PertDataPoint)pertData.get(i);
-      rtd_.rowElements.add(new PdEntry(pdp, pd_, yesStr, noStr));
+      PdEntry pde = entryCache_.get(pdp.getID());
+      if ((pde == null) || (pde.pdp != pdp)) {
+        pde = new PdEntry(pdp, yesStr, noStr);
+        entryCache_.put(pde.key, pde);
+      }
+      rtd_.rowElements.add(pde);
     }
     filtPanel_.updateFilterRenderers(pertData);
     
@@ -655,7 +666,8 @@ public class PertDataPointManagePanel extends AnimatedSplitManagePanel
 
   /***************************************************************************
   **
-  ** Used for the perturbations table
+  ** Used for the perturbations table.  Cells come straight from the row
+  ** entries on demand; nothing is copied into the column lists.
   */
 
   class PertDataTableModel extends ReadOnlyTable.TableModel {
@@ -675,11 +687,10 @@ public class PertDataPointManagePanel extends AnimatedSplitManagePanel
     private final static int REG_RESTRICT_ = 12;
     private final static int NUM_COL_ = 13;   
     
-    private ArrayList hidden_;
+    private List rows_;
     
     PertDataTableModel(BTState appState, List prsList) {
       super(appState, NUM_COL_);
-      hidden_ = new ArrayList();
       colNames_ = new String[] {"pertData.pert",
                                 "pertData.target",
                                 "pertData.time",
@@ -711,36 +722,22 @@ public class PertDataPointManagePanel extends AnimatedSplitManagePanel
    
     public void extractValues(List prsList) {
       super.extractValues(prsList);
-      hidden_.clear();
-      Iterator iit = prsList.iterator();
-      while (iit.hasNext()) { 
-        PdEntry pde = (PdEntry)iit.next();
-        columns_[PERT_].add(pde.perts);
-        columns_[TARGET_].add(pde.target); 
-        columns_[TIME_].add(pde.time);
-        columns_[VALUE_].add(pde.value);
-        columns_[FORCED_].add(pde.forced);
-        columns_[CTRL_].add(pde.control);
-        columns_[TECH_].add(pde.tech);
-        columns_[INVEST_].add(pde.invest);
-        columns_[BATCH_].add(pde.batch);
-        columns_[DATE_].add(pde.date);
-        columns_[FOOTS_].add(pde.footnote);
-        columns_[COMMENT_].add(pde.comment);
-        columns_[REG_RESTRICT_].add(pde.regRes);
-        hidden_.add(pde.key);
-      }
+      rows_ = prsList;
       return;
     }
     
+    protected Object getCellValue(int row, int c) {
+      return (((PdEntry)rows_.get(row)).getColumn(c));
+    }
+    
     String getSelectedKey(int[] selected) {
-      return ((String)hidden_.get(mapSelectionIndex(selected[0])));
+      return (((PdEntry)rows_.get(mapSelectionIndex(selected[0]))).key);
     }
     
     public List getSelectedKeys(int[] selected) {
       ArrayList retval = new ArrayList();
       for (int i = 0; i < selected.length; i++) {
-        retval.add((String)hidden_.get(mapSelectionIndex(selected[i])));
+        retval.add(((PdEntry)rows_.get(mapSelectionIndex(selected[i]))).key);
       }
       return (retval);
     }
@@ -754,67 +751,78 @@ public class PertDataPointManagePanel extends AnimatedSplitManagePanel
   
   /***************************************************************************
   **
-  ** Used for the summary table
+  ** Used for the summary table.  Column strings are built the first time
+  ** they are asked for.
   */
 
   private class PdEntry {
 
-    String perts;
-    String time;
-    String invest;
-    String target;
-    String value;
-    String forced;
-    String control;
-    String tech;
-    String comment;
-    String batch;
-    String date;
-    String footnote;
-    String regRes;
+    PertDataPoint pdp;
     String key;
+    private String yesStr_;
+    private String noStr_;
+    private String[] columns_;
     
-    PdEntry(PertDataPoint pdp, PerturbationData pd, String yesStr, String noStr) {
+    PdEntry(PertDataPoint pdp, String yesStr, String noStr) {
+      this.pdp = pdp;
       key = pdp.getID();
-      invest = pdp.getInvestigatorDisplayString(pd);
-      if (invest == null) invest = "";
-      perts = pdp.getPertDisplayString(pd, PertSources.BRACKET_FOOTS);
-      if (perts == null) perts = "";
-      time = pdp.getTimeDisplayString(pd, false, false);
-      if (time == null) time = "";
-      target = pd.getAnnotatedTargetDisplay(pdp.getTargetKey());
-      if (target == null) target = "";   
-      value = pdp.getScaledDisplayValue(conversionKey_, pd_, true);
-      if (value == null) value = "";
-      Boolean forcedObj = pdp.getForcedSignificance();
-      if (forcedObj == null) {
-        forced = "";
-      } else if (forcedObj.booleanValue()) {
-        forced = yesStr;
-      } else {
-        forced = noStr;
-      }
-      String controlKey = pdp.getControl();
-      if (controlKey == null) {
-        control = "";
-      } else {
-        control = pd_.getConditionDictionary().getExprControl(controlKey).getDisplayString();
+      yesStr_ = yesStr;
+      noStr_ = noStr;
+      columns_ = new String[PertDataTableModel.NUM_COL_];
+    }
+    
+    String getColumn(int col) {
+      String retval = columns_[col];
+      if (retval == null) {
+        retval = buildColumn(col);
+        if (retval == null) {
+          retval = "";
+        }
+        columns_[col] = retval;
       }
-      tech = pdp.getMeasurementDisplayString(pd);
-      if (tech == null) tech = "";
-      comment = pdp.getComment();
-      if (comment == null) comment = "";
-      batch = pdp.getBatchKey();
-      if (batch == null) batch = "";
-      date = pdp.getDate();
-      if (date == null) date = "";
-      List footList = pd.getDataPointNotes(key);
-      footnote = (footList == null) ? "" : pd.getFootnoteListAsString(footList);
-      PerturbationData.RegionRestrict rr = pdp.getRegionRestriction(pd);
-      if (rr != null) {
-        regRes = rr.getDisplayValue();
-      } else {
-        regRes = "";
+      return (retval);
+    }
+    
+    private String buildColumn(int col) {
+      switch (col) {
+        case PertDataTableModel.PERT_:
+          return (pdp.getPertDisplayString(pd_, PertSources.BRACKET_FOOTS));
+        case PertDataTableModel.TARGET_:
+          return (pd_.getAnnotatedTargetDisplay(pdp.getTargetKey()));
+        case PertDataTableModel.TIME_:
+          return (pdp.getTimeDisplayString(pd_, false, false));
+        case PertDataTableModel.VALUE_:
+          return (pdp.getScaledDisplayValue(conversionKey_, pd_, true));
+        case PertDataTableModel.FORCED_:
+          Boolean forcedObj = pdp.getForcedSignificance();
+          if (forcedObj == null) {
+            return ("");
+          }
+          return ((forcedObj.booleanValue()) ? yesStr_ : noStr_);
+        case PertDataTableModel.CTRL_:
+          String controlKey = pdp.getControl();
+          if (controlKey == null) {
+            return ("");
+          }
+          return (pd_.getConditionDictionary().getExprControl(controlKey).getDisplayString());
+        case PertDataTableModel.TECH_:
+          return (pdp.getMeasurementDisplayString(pd_));
+        case PertDataTableModel.INVEST_:
+          return (pdp.getInvestigatorDisplayString(pd_));
+        case PertDataTableModel.BATCH_:
+          return (pdp.getBatchKey());
+        case PertDataTableModel.DATE_:
+          return (pdp.getDate());
+        case PertDataTableModel.FOOTS_:
+          List footList = pd_.getDataPointNotes(key);
+          return ((footList == null) ? "" : pd_.getFootnoteListAsString(footList));
+        case PertDataTableModel.COMMENT_:
+          return (pdp.getComment());
+        case PertDataTableModel.REG_RESTRICT_:
+          PerturbationData.RegionRestrict rr = pdp.getRegionRestriction(pd_);
+          return ((rr == null) ? "" : rr.getDisplayValue());
+        default:
+          throw new IllegalArgumentException();
       }
     }
   }
@@ -184,7 +184,7 @@ public class PertManageHelper  {
       for (int j = 0; j < numElem; j++) {
         Object obj = rtab.rowElements.get(j);
         if (oracle.tableRowMatches(whichKey, obj, tableID)) {
-          selRow = rtab.getModel().mapToSelectionIndex(obj, rtab.rowElements);    
+          selRow = rtab.getModel().mapToViewIndex(j);    
           break;
         }
       }
@@ -737,7 +737,7 @@ public class PertManageHelper  {
   **
   */
   
-  public static class DoubleStrComparator implements Comparator {
+  public static class DoubleStrComparator implements Comparator, ReadOnlyTable.KeyedComparator {
     private Pattern pattern_;
     private Matcher matcher_;
         
@@ -747,39 +747,50 @@ public class PertManageHelper  {
     } 
     
     public int compare(Object o1, Object o2) {
-      String str1 = ((String)o1).trim();
-      String str2 = ((String)o2).trim();
-      boolean str1IsNS = str1.equalsIgnoreCase("NS");
-      boolean str2IsNS = str2.equalsIgnoreCase("NS");
-      matcher_.reset(str1);
-      boolean str1IsDashes = matcher_.matches();
-      matcher_.reset(str2);
-      boolean str2IsDashes = matcher_.matches();
-
-      if (str1IsDashes || str2IsDashes) {
-        if (str1IsDashes && str2IsDashes) {
-          return (str1.length() - str2.length());
-        } else if (str1IsDashes) {
+      return (compareKeys(sortKey(o1), sortKey(o2)));
+    }
+    
+    public Object sortKey(Object cellValue) {
+      String str = ((String)cellValue).trim();
+      DoubleStrKey retval = new DoubleStrKey();
+      matcher_.reset(str);
+      if (matcher_.matches()) {
+        retval.dashCount = str.length();
+        return (retval);
+      }
+      try {
+        retval.value = (str.equalsIgnoreCase("NS")) ? -1.0E-10 : Double.parseDouble(str);
+      } catch (NumberFormatException nfex) {
+        retval.isBad = true;
+      }
+      return (retval);
+    }
+    
+    public int compareKeys(Object key1, Object key2) {
+      DoubleStrKey dsk1 = (DoubleStrKey)key1;
+      DoubleStrKey dsk2 = (DoubleStrKey)key2;
+      if ((dsk1.dashCount != -1) || (dsk2.dashCount != -1)) {
+        if ((dsk1.dashCount != -1) && (dsk2.dashCount != -1)) {
+          return (dsk1.dashCount - dsk2.dashCount);
+        } else if (dsk1.dashCount != -1) {
           return (1);
         } else {
           return (-1);
         }
       }     
-      
-      Double doub1 = null;
-      Double doub2 = null;
-      try {
-        doub1 = (str1IsNS) ? new Double(-1.0E-10) : new Double(str1);
-      } catch (NumberFormatException nfex) {
+      if (dsk1.isBad) {
         return (1);
       }
-      try {
-        doub2 = (str2IsNS) ? new Double(-1.0E-10) : new Double(str2);
-      } catch (NumberFormatException nfex) {
+      if (dsk2.isBad) {
         return (-1);
       }
-          
-      return (doub1.compareTo(doub2));    
+      return (Double.compare(dsk1.value, dsk2.value));    
+    }
+    
+    private static class DoubleStrKey {
+      int dashCount = -1;
+      boolean isBad = false;
+      double value;
     }
   }
   
@@ -789,7 +800,7 @@ public class PertManageHelper  {
   **
   */
   
-  public static class TimeComparator implements Comparator<String> {
+  public static class TimeComparator implements Comparator<String>, ReadOnlyTable.KeyedComparator {
     private TimeAxisDefinition tad_;
     private boolean namedStages_;
         
@@ -799,52 +810,41 @@ public class PertManageHelper  {
     }
       
     public int compare(String o1, String o2) {
-      String str1 = o1.trim();
-      String str2 = o2.trim();
-      int dash1 = str1.indexOf(" to ");
-      int dash2 = str2.indexOf(" to ");
-      
-      String str1a = str1;
-      String str1b = null;
-      if (dash1 != -1) {
-        str1a = str1.substring(0, dash1);
-        str1b = str1.substring(dash1 + 4);    
-      }
+      return (compareKeys(sortKey(o1), sortKey(o2)));
+    }
+    
+    public Object sortKey(Object cellValue) {
+      String str = ((String)cellValue).trim();
+      int dash = str.indexOf(" to ");
       
-      String str2a = str2;
-      String str2b = null;
-      if (dash2 != -1) {
-        str2a = str2.substring(0, dash2);
-        str2b = str2.substring(dash2 + 4);    
+      String stra = str;
+      String strb = null;
+      if (dash != -1) {
+        stra = str.substring(0, dash);
+        strb = str.substring(dash + 4);    
       }
   
-      int val1a;
-      int val1b = TimeAxisDefinition.INVALID_STAGE_NAME;
-      if (namedStages_) {
-        val1a = tad_.getIndexForNamedStage(str1a.trim());
-        if (str1b != null) {
-          val1b = tad_.getIndexForNamedStage(str1b.trim());
-        }      
-      } else {
-        val1a = new Integer(str1a).intValue();
-        if (str1b != null) {
-          val1b = new Integer(str1b).intValue();
-        }            
-      }
-      
-      int val2a;
-      int val2b = TimeAxisDefinition.INVALID_STAGE_NAME;
+      int vala;
+      int valb = TimeAxisDefinition.INVALID_STAGE_NAME;
       if (namedStages_) {
-        val2a = tad_.getIndexForNamedStage(str2a.trim());
-        if (str2b != null) {
-          val2b = tad_.getIndexForNamedStage(str2b.trim());
+        vala = tad_.getIndexForNamedStage(stra.trim());
+        if (strb != null) {
+          valb = tad_.getIndexForNamedStage(strb.trim());
         }      
       } else {
-        val2a = new Integer(str2a).intValue();
-        if (str2b != null) {
-          val2b = new Integer(str2b).intValue();
+        vala = new Integer(stra).intValue();
+        if (strb != null) {
+          valb = new Integer(strb).intValue();
         }            
       }
+      return (new int[] {vala, valb});
+    }
+    
+    public int compareKeys(Object key1, Object key2) {
+      int val1a = ((int[])key1)[0];
+      int val1b = ((int[])key1)[1];
+      int val2a = ((int[])key2)[0];
+      int val2b = ((int[])key2)[1];
       
       //
       // Single time comes before a range if the first times match:
@@ -30,8 +30,8 @@ import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -776,11 +776,23 @@ public class ReadOnlyTable {
     protected ArrayList[] hiddenColumns_;
     protected Class[] colClasses_;
     protected Comparator[] comparators_;
-    protected List sortMap_;
+    protected int[] sortMap_;
     protected int rowCount_;
     protected String[] colNames_;
     protected BTState tabAppState_;
     
+    //
+    // Sorting works on primitive row indices.  The row that sits at each
+    // sorted position is in sortMap_, and viewMap_ is the inverse.  Finished
+    // permutations are kept per click list, and keyed comparator columns keep
+    // their sort keys, until the next extractValues():
+    //
+    
+    private int[] viewMap_;
+    private HashMap<String, int[]> sortCache_;
+    private Object[][] sortKeys_;
+    
+    private static final int INSERTION_SORT_MAX_ = 7;    
     private static final long serialVersionUID = 1L;
     
     protected TableModel(BTState appState, int colNum) {
@@ -789,7 +801,10 @@ public class ReadOnlyTable {
       for (int i = 0; i < colNum; i++) {
         columns_[i] = new ArrayList();
       }
-      sortMap_ = new ArrayList();
+      sortMap_ = new int[0];
+      viewMap_ = new int[0];
+      sortCache_ = new HashMap<String, int[]>();
+      sortKeys_ = new Object[colNum][];
       hiddenColumns_ = new ArrayList[0];
     }
     
@@ -802,20 +817,138 @@ public class ReadOnlyTable {
     }
     
     public void modifyMap(List columns) {
-      int num = columns.size();
-      ArrayList args = new ArrayList();
-      for (int i = 0; i < num; i++) {
-        Integer colNum = (Integer)columns.get(i);
-        int colNumVal = colNum.intValue();
-        boolean positive = (colNumVal >= 0);
-        int trueCol = (positive) ? colNumVal : ((colNumVal == Integer.MIN_VALUE) ? 0 : -colNumVal);
-        List elems = getListAt(trueCol);
-        Comparator compare = getColumnComparator(trueCol);
-        MapBuilderColumnInfo colInfo = new MapBuilderColumnInfo(positive, compare); 
-        MapBuilderArg mba = new MapBuilderArg(elems, colInfo);
-        args.add(mba);
+      String cacheKey = columns.toString();
+      int[] sorted = sortCache_.get(cacheKey);
+      if (sorted == null) {
+        int num = columns.size();
+        int[] sortCols = new int[num];
+        boolean[] positive = new boolean[num];
+        Comparator[] compare = new Comparator[num];
+        for (int i = 0; i < num; i++) {
+          Integer colNum = (Integer)columns.get(i);
+          int colNumVal = colNum.intValue();
+          positive[i] = (colNumVal >= 0);
+          sortCols[i] = (positive[i]) ? colNumVal : ((colNumVal == Integer.MIN_VALUE) ? 0 : -colNumVal);
+          compare[i] = getColumnComparator(sortCols[i]);
+        }
+        sorted = new int[rowCount_];
+        for (int i = 0; i < rowCount_; i++) {
+          sorted[i] = i;
+        }
+        //
+        // Stable, like the Collections.sort() this replaces, so ties keep row order:
+        //
+        int[] aux = sorted.clone();
+        mergeSort(aux, sorted, 0, rowCount_, sortCols, positive, compare);
+        sortCache_.put(cacheKey, sorted);
+      }
+      installSortMap(sorted);
+      return;
+    }
+    
+    /***************************************************************************
+    **
+    ** Get the value of a cell, given the index into the row elements (NOT the
+    ** sorted display row).  Models that build their cells on demand override this.
+    */
+    
+    protected Object getCellValue(int row, int c) {
+      return (getListAt(c).get(row));
+    }
+    
+    /***************************************************************************
+    **
+    ** Install a sort permutation and build its inverse
+    */
+    
+    private void installSortMap(int[] sorted) {
+      sortMap_ = sorted;
+      if (viewMap_.length != rowCount_) {
+        viewMap_ = new int[rowCount_];
+      }
+      for (int i = 0; i < rowCount_; i++) {
+        viewMap_[sortMap_[i]] = i;
+      }
+      return;
+    }
+    
+    /***************************************************************************
+    **
+    ** Get the value to sort a cell on.  Keyed comparator columns get their
+    ** key built once per row; they are built only when a sort gets down to
+    ** that column.
+    */
+    
+    private Object getSortValue(int row, int c, Comparator compare) {
+      if (!(compare instanceof KeyedComparator)) {
+        return (getCellValue(row, c));
+      }
+      Object[] keys = sortKeys_[c];
+      if (keys == null) {
+        keys = new Object[rowCount_];
+        sortKeys_[c] = keys;
+      }
+      if (keys[row] == null) {
+        keys[row] = ((KeyedComparator)compare).sortKey(getCellValue(row, c));
+      }
+      return (keys[row]);
+    }
+    
+    /***************************************************************************
+    **
+    ** Compare two rows over the sort columns
+    */
+    
+    private int compareRows(int row1, int row2, int[] sortCols, boolean[] positive, Comparator[] compare) {
+      for (int i = 0; i < sortCols.length; i++) {
+        int col = sortCols[i];
+        Object val1 = getSortValue(row1, col, compare[i]);
+        Object val2 = getSortValue(row2, col, compare[i]);
+        int compVal;
+        if (compare[i] instanceof KeyedComparator) {
+          compVal = ((KeyedComparator)compare[i]).compareKeys(val1, val2);
+        } else {
+          compVal = compare[i].compare(val1, val2);
+        }
+        if (compVal != 0) {
+          return ((positive[i]) ? compVal : -compVal);
+        }
+      }
+      return (0);
+    }
+    
+    /***************************************************************************
+    **
+    ** Stable merge sort of row indices from src into dest over [low, high)
+    */
+    
+    private void mergeSort(int[] src, int[] dest, int low, int high, 
+                           int[] sortCols, boolean[] positive, Comparator[] compare) {
+      int length = high - low;
+      if (length <= INSERTION_SORT_MAX_) {
+        for (int i = low; i < high; i++) {
+          for (int j = i; (j > low) && (compareRows(dest[j - 1], dest[j], sortCols, positive, compare) > 0); j--) {
+            int swap = dest[j];
+            dest[j] = dest[j - 1];
+            dest[j - 1] = swap;
+          }
+        }
+        return;
+      }
+      int mid = (low + high) >>> 1;
+      mergeSort(dest, src, low, mid, sortCols, positive, compare);
+      mergeSort(dest, src, mid, high, sortCols, positive, compare);
+      if (compareRows(src[mid - 1], src[mid], sortCols, positive, compare) <= 0) {
+        System.arraycopy(src, low, dest, low, length);
+        return;
+      }
+      for (int i = low, p = low, q = mid; i < high; i++) {
+        if ((q >= high) || ((p < mid) && (compareRows(src[p], src[q], sortCols, positive, compare) <= 0))) {
+          dest[i] = src[p++];
+        } else {
+          dest[i] = src[q++];
+        }
       }
-      sortMap_ = MapBuilder.mapFromSort(args);
       return;
     }
 
@@ -849,17 +982,19 @@ public class ReadOnlyTable {
     }
 
     public void extractValues(List rowElements) {
-      sortMap_.clear(); 
       for (int i = 0; i < columns_.length; i++) {
         columns_[i].clear();
       }
-      rowCount_ = 0;
-      Iterator iit = rowElements.iterator();
-      while (iit.hasNext()) {
-        Object dc = iit.next();
-        sortMap_.add(new Integer(rowCount_));
-        rowCount_++;
+      rowCount_ = rowElements.size();
+      sortCache_.clear();
+      for (int i = 0; i < sortKeys_.length; i++) {
+        sortKeys_[i] = null;
       }
+      int[] identity = new int[rowCount_];
+      for (int i = 0; i < rowCount_; i++) {
+        identity[i] = i;
+      }
+      installSortMap(identity);
       return;  
     }
 
@@ -873,20 +1008,21 @@ public class ReadOnlyTable {
     }
 
     public int mapSelectionIndex(int r) {
-      return (((Integer)sortMap_.get(r)).intValue());
+      return (sortMap_[r]);
+    }
+    
+    public int mapToViewIndex(int row) {
+      if ((row < 0) || (row >= rowCount_)) {
+        throw new IllegalArgumentException();
+      }
+      return (viewMap_[row]);
     }
 
     public int mapToSelectionIndex(Object obj, List base) {
       int size = base.size();
       for (int i = 0; i < size; i++) {
         if (obj == base.get(i)) { // note ACTUAL EQUALS HERE!
-          int sSize = sortMap_.size();
-          for (int j = 0; j < sSize; j++) {
-            Integer sVal = (Integer)sortMap_.get(j);
-            if (sVal.intValue() == i) {
-              return (j);
-            }
-          }
+          return (mapToViewIndex(i));
         }
       }
       throw new IllegalArgumentException();
@@ -896,13 +1032,7 @@ public class ReadOnlyTable {
       int size = base.size();
       for (int i = 0; i < size; i++) {
         if (obj.equals(base.get(i))) { 
-          int sSize = sortMap_.size();
-          for (int j = 0; j < sSize; j++) {
-            Integer sVal = (Integer)sortMap_.get(j);
-            if (sVal.intValue() == i) {
-              return (j);
-            }
-          }
+          return (mapToViewIndex(i));
         }
       }
       throw new IllegalArgumentException();
@@ -910,8 +1040,7 @@ public class ReadOnlyTable {
 
     public Object getValueAt(int r, int c) {
       try {
-        List list = getListAt(c);
-        return (list.get(mapSelectionIndex(r)));
+        return (getCellValue(mapSelectionIndex(r), c));
       } catch (Exception ex) {
         tabAppState_.getExceptionHandler().displayException(ex);
       }
@@ -970,6 +1099,18 @@ public class ReadOnlyTable {
     public void selected(Object obj, int whichTab, int[] whichIndex);
   }
   
+  /***************************************************************************
+  **
+  ** A column comparator that can boil a cell down to a sort key once, instead
+  ** of reparsing the cell on every comparison.  Keys must not be null, and
+  ** compareKeys() must order keys the same way compare() orders the cells.
+  */
+
+  public static interface KeyedComparator {
+    public Object sortKey(Object cellValue);
+    public int compareKeys(Object key1, Object key2);
+  }
+  
   /***************************************************************************
   **
   ** Handle selections; do nothing
@@ -1002,109 +1143,6 @@ public class ReadOnlyTable {
     public void pressed(int whichButton);
   }  
   
-  /***************************************************************************
-  **
-  ** Used to build maps
-  */
-  
-  public static class MapBuilderColumnInfo {
-    public boolean positive;
-    public Comparator compare;
-    
-    public MapBuilderColumnInfo(boolean positive, Comparator compare) {
-      this.positive = positive;
-      this.compare = compare;
-    }  
-  }
-  
-  /***************************************************************************
-  **
-  ** Used to build maps
-  */
-  
-  public static class MapBuilderArg {
-    public List elements;
-    public boolean positive;
-    public MapBuilderColumnInfo colInfo;
-    
-    public MapBuilderArg(List elements, MapBuilderColumnInfo colInfo) {
-      this.elements = elements;
-      this.colInfo = colInfo;
-    }  
-  } 
-  
-  /***************************************************************************
-  **
-  ** Used to build maps
-  */
-  
-  public static class MapBuilder implements Comparable {
-
-    private List elements;
-    private Integer index;
-    private List columnProps;
-
-    public MapBuilder(List elements, int index, List columnProps) {
-      this.elements = elements;
-      this.index = new Integer(index);
-      this.columnProps = columnProps;
-    }
-
-    public int compareTo(Object o) {
-      MapBuilder other = (MapBuilder)o;
-      int numElem = this.elements.size();
-      int numElemO = other.elements.size();
-      if (numElem != numElemO) {
-        throw new IllegalArgumentException();
-      }
-      for (int i = 0; i < numElem; i++) {
-        Comparable tComp = (Comparable)this.elements.get(i);
-        Comparable oComp = (Comparable)other.elements.get(i);        
-        int compVal = compareOneElem(tComp, oComp, (MapBuilderColumnInfo)columnProps.get(i));
-        if (compVal != 0) {
-          return (compVal);
-        }
-      }
-      return (0);
-    }
-    
-    private int compareOneElem(Comparable thiso, Comparable othero, MapBuilderColumnInfo mbci) {
-      int retval = mbci.compare.compare(thiso, othero);
-      if (!mbci.positive) {
-        retval = -retval;
-      }
-      return (retval);
-    }    
-    
-    public static List mapFromSort(List toSort) { // list of lists
-      ArrayList builders = new ArrayList();
-      int numLists = toSort.size();
-      int colSize = 0;
-      ArrayList columnProps = new ArrayList();
-      for (int j = 0; j < numLists; j++) {
-        MapBuilderArg mba = (MapBuilderArg)toSort.get(j);
-        columnProps.add(mba.colInfo);
-        if (j == 0) {
-          colSize = mba.elements.size();    
-        }
-      }
-      for (int i = 0; i < colSize; i++) {
-        ArrayList rowData = new ArrayList();
-        for (int j = 0; j < numLists; j++) {       
-          MapBuilderArg mba = (MapBuilderArg)toSort.get(j);
-          rowData.add(mba.elements.get(i));
-        }
-        builders.add(new MapBuilder(rowData, i, columnProps));
-      }
-      Collections.sort(builders);
-      ArrayList retval = new ArrayList();
-      for (int i = 0; i < colSize; i++) {
-        retval.add(((MapBuilder)builders.get(i)).index);
-      }
-      return (retval);
-    }
-  }
-  
   /***************************************************************************
   **
   ** Used to track selections
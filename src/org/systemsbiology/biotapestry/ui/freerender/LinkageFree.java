@@ -387,13 +387,15 @@ public class LinkageFree extends ItemRenderBase implements DrawTreeModelDataSour
       }
     //
     // FIX ME!! This is the legacy method: note no calcs for drops or directs.  Fast,
-    // but incomplete:
+    // but incomplete.  Tree bounds are precompiled:
     //
     } else {
-      Iterator<LinkSegment> sit = bp.getSegments();
-      while (sit.hasNext()) {
-        LinkSegment seg = sit.next();
-        segsToCheck.add(seg);
+      Rectangle2D treeBounds = bp.getTreeGeometry().getTreeBounds();
+      if (treeBounds != null) {
+        minX = treeBounds.getMinX();
+        minY = treeBounds.getMinY();
+        maxX = treeBounds.getMaxX();
+        maxY = treeBounds.getMaxY();
       }
     }    
 
@@ -484,7 +486,7 @@ public class LinkageFree extends ItemRenderBase implements DrawTreeModelDataSour
     }
     Iterator<LinkSegment> sit = null;
     if (itemDrop != null) {
-      sit = bp.getSegmentsToRoot(itemDrop).iterator();
+      sit = bp.getCompiledSegmentsToRoot(itemDrop).iterator();
     }
     
     if (sit == null) {
@@ -214,7 +214,7 @@ public class NetModuleLinkageFree implements DrawTreeModelDataSource, PlacementG
     }
     Iterator<LinkSegment> sit = null;
     if (itemDrop != null) {
-      sit = nmlp.getSegmentsToRoot(itemDrop).iterator();
+      sit = nmlp.getCompiledSegmentsToRoot(itemDrop).iterator();
     }
     
     if (sit == null) {
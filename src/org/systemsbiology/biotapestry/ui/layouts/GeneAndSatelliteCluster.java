@@ -163,6 +163,7 @@ public class GeneAndSatelliteCluster implements Cloneable {
   private boolean isTarget_;
   private HashMap<String, Integer> multiInCoreEstimates_;
   private boolean textToo_;
+  private boolean layeredFanGrids_;
   private BTState appState_;
   
   ////////////////////////////////////////////////////////////////////////////
@@ -177,7 +178,7 @@ public class GeneAndSatelliteCluster implements Cloneable {
   */
         
   public GeneAndSatelliteCluster(BTState appState, String coreID, boolean isStacked, 
-                                 double traceOffset, boolean isTarget, boolean textToo) {
+                                 double traceOffset, boolean isTarget, boolean textToo, boolean layeredFanGrids) {
     
     appState_ = appState;
     coreID_ = coreID;
@@ -201,6 +202,7 @@ public class GeneAndSatelliteCluster implements Cloneable {
     traceOffset_ = traceOffset;
     isTarget_ = isTarget;
     textToo_ = textToo;
+    layeredFanGrids_ = layeredFanGrids;
   }  
    
   ////////////////////////////////////////////////////////////////////////////
@@ -2071,7 +2073,7 @@ public class GeneAndSatelliteCluster implements Cloneable {
   */
   
   public static List<GeneAndSatelliteCluster> findTerminalTargets(BTState appState, GenomeSubset subset, boolean omitNonGenesWithInputs, 
-                                                                  double traceOffset, boolean textToo) {
+                                                                  double traceOffset, boolean textToo, boolean layeredFanGrids) {
     ArrayList<GeneAndSatelliteCluster> retval = new ArrayList<GeneAndSatelliteCluster>();
     //Iterator nit = subset.getNodeSuperSetIterator();
     Iterator<String> nit = subset.getNodeIterator();
@@ -2085,7 +2087,7 @@ public class GeneAndSatelliteCluster implements Cloneable {
             continue;
           }
         }
-        retval.add(new GeneAndSatelliteCluster(appState, nodeID, false, traceOffset, true, textToo));
+        retval.add(new GeneAndSatelliteCluster(appState, nodeID, false, traceOffset, true, textToo, layeredFanGrids));
       }
     }
 
@@ -2132,7 +2134,8 @@ public class GeneAndSatelliteCluster implements Cloneable {
                                                                          SpecialtyLayoutEngine.NodePlaceSupport nps,
                                                                          DataAccessContext irx, 
                                                                          double traceOffset, 
-                                                                         boolean doPhaseTwo, boolean textToo, boolean isStacked) {
+                                                                         boolean doPhaseTwo, boolean textToo, boolean isStacked,
+                                                                         boolean layeredFanGrids) {
       
     //
     // For each terminal target, find inputs that only hit
@@ -2143,7 +2146,7 @@ public class GeneAndSatelliteCluster implements Cloneable {
     ArrayList<GeneAndSatelliteCluster> retval = new ArrayList<GeneAndSatelliteCluster>();
     int num = clusters.size();
     for (int i = 0; i < num; i++) {
-      GeneAndSatelliteCluster clust = new GeneAndSatelliteCluster(appState, clusters.get(i), isStacked, traceOffset, true, textToo);
+      GeneAndSatelliteCluster clust = new GeneAndSatelliteCluster(appState, clusters.get(i), isStacked, traceOffset, true, textToo, layeredFanGrids);
       retval.add(clust);     
       clust.prepFromGroupsPhaseOne(nps, groups, nps.pureCoreNetwork);
     }
@@ -3370,6 +3373,20 @@ public class GeneAndSatelliteCluster implements Cloneable {
     return;
   }
 
+  /***************************************************************************
+  ** 
+  ** Options for laying out the fan grids.  These stick with the defaults, except
+  ** that the specialty layout parameters can ask for layered sweep ordering.
+  */
+  
+  private LayoutOptions fanGridOptions() {
+    LayoutOptions retval = new LayoutOptions();
+    if (layeredFanGrids_) {
+      retval.layeringMethod = LayoutOptions.SUGIYAMA;
+    }
+    return (retval);
+  }
+  
   /***************************************************************************
   ** 
   ** A function
@@ -3411,7 +3428,7 @@ public class GeneAndSatelliteCluster implements Cloneable {
         }
       }
     }
-    LayoutOptions options = new LayoutOptions();
+    LayoutOptions options = fanGridOptions();
     RectangularTreeEngine rte = new RectangularTreeEngine();
     Grid grid = rte.layoutFanInOutHier(allNodes, allLinks, nodesToPlace, motifList, options, null, false);
     // Ditch the core if present.  It just messes things up if it ends up in 
@@ -3461,7 +3478,7 @@ public class GeneAndSatelliteCluster implements Cloneable {
         allLinks.add(sLink);
       }
     }
-    LayoutOptions options = new LayoutOptions();
+    LayoutOptions options = fanGridOptions();
     RectangularTreeEngine rte = new RectangularTreeEngine();
     //
     // Here's a trick!  For years, it seemed OK to have the coreID located in the fan-out grid
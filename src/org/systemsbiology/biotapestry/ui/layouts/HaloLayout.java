@@ -181,6 +181,15 @@ public class HaloLayout implements SpecialtyLayout {
     retval.sld_ = sld;
     return (retval);
   }
+
+  /***************************************************************************
+  **
+  ** Answer if node placement depends on the source order from earlier subsets
+  */
+  
+  public boolean usesExistingSourceOrder() {
+    return (false);
+  }
  
   /***************************************************************************
   **
@@ -228,7 +237,7 @@ public class HaloLayout implements SpecialtyLayout {
     
     Genome genome = rcx.getGenome();
     GenomeSubset subset = new GenomeSubset(appState_, genome.getID(), new Point2D.Double());  
-    List<GeneAndSatelliteCluster> termClusters = GeneAndSatelliteCluster.findTerminalTargets(appState_, subset, false, UiUtil.GRID_SIZE, false); // last two args do not matter here...
+    List<GeneAndSatelliteCluster> termClusters = GeneAndSatelliteCluster.findTerminalTargets(appState_, subset, false, UiUtil.GRID_SIZE, false, false); // last three args do not matter here...
    
     Map<String, Point2D> fakeNolo = new HashMap<String, Point2D>();
     InvertedSrcTrg ist = new InvertedSrcTrg(genome);
@@ -283,7 +292,8 @@ public class HaloLayout implements SpecialtyLayout {
     // NOTE: The cluster map will include singleton nodes!
     //
  
-    termClusters_ = GeneAndSatelliteCluster.findTerminalTargets(sld_.appState, sld_.subset, false, traceOffset, hlParams.textToo);
+    termClusters_ = GeneAndSatelliteCluster.findTerminalTargets(sld_.appState, sld_.subset, false, traceOffset, 
+                                                                hlParams.textToo, hlParams.layeredFanGrids);
     GeneAndSatelliteCluster.fillTargetClusters(termClusters_, sld_.nps, sld_.rcx);
     HashMap<String, GeneAndSatelliteCluster> clusterMap = new HashMap<String, GeneAndSatelliteCluster>();
     int numClust = termClusters_.size();
@@ -702,6 +712,7 @@ public class HaloLayout implements SpecialtyLayout {
     retval.assignColorMethod = ColorTypes.KEEP_COLORS;
     retval.showBubbles = true;
     retval.checkColorOverlap = false;  
+    retval.layeredFanGrids = false;
     return (retval);
   }
   
@@ -721,6 +732,7 @@ public class HaloLayout implements SpecialtyLayout {
     public ColorTypes assignColorMethod;
     public boolean showBubbles;
     public boolean checkColorOverlap;
+    public boolean layeredFanGrids;
      
     public HaloLayoutParams clone() {
       try {
@@ -22,6 +22,7 @@ package org.systemsbiology.biotapestry.ui.layouts;
 
 import java.awt.GridBagLayout;
 import java.awt.GridBagConstraints;
+import javax.swing.JCheckBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JComboBox;
@@ -53,6 +54,7 @@ public class HaloLayoutSetupPanel extends JPanel implements SpecialtyLayoutSetup
   private HaloLayout.HaloLayoutParams params_;
   private JComboBox strategyCombo_;
   private JComboBox overlayOptionCombo_;
+  private JCheckBox layeredFanGridsBox_;
   private BTState appState_;
   
   private static final long serialVersionUID = 1L;
@@ -105,7 +107,10 @@ public class HaloLayoutSetupPanel extends JPanel implements SpecialtyLayoutSetup
     add(overlayLabel, gbc);
     UiUtil.gbcSet(gbc, 1, 1, 1, 1, UiUtil.HOR, 0, 0, 5, 5, 5, 5, UiUtil.CEN, 1.0, 0.0);    
     add(overlayOptionCombo_, gbc);  
-
+    
+    layeredFanGridsBox_ = new JCheckBox(rMan.getString("specialtyLayout.layeredFanGrids"));
+    UiUtil.gbcSet(gbc, 0, 2, 1, 1, UiUtil.HOR, 0, 0, 5, 5, 5, 5, UiUtil.CEN, 1.0, 0.0);    
+    add(layeredFanGridsBox_, gbc);
   }
   
   /***************************************************************************
@@ -149,6 +154,7 @@ public class HaloLayoutSetupPanel extends JPanel implements SpecialtyLayoutSetup
   public void displayProperties() {
     strategyCombo_.setSelectedItem(params_.startType.generateCombo(appState_));
     overlayOptionCombo_.setSelectedItem(NetOverlayProperties.relayoutForCombo(appState_, params_.overlayOption));
+    layeredFanGridsBox_.setSelected(params_.layeredFanGrids);
     return;
   }
   
@@ -180,6 +186,7 @@ public class HaloLayoutSetupPanel extends JPanel implements SpecialtyLayoutSetup
   private void handleUnchecked(HaloLayout.HaloLayoutParams params) {    
     params.startType = ((EnumChoiceContent<HaloLayout.StartSeed>)strategyCombo_.getSelectedItem()).val;
     params.overlayOption = ((ChoiceContent)overlayOptionCombo_.getSelectedItem()).val;
+    params.layeredFanGrids = layeredFanGridsBox_.isSelected();
     return;
   } 
 
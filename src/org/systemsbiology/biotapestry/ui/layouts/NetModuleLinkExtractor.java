@@ -36,7 +36,7 @@ import java.util.TreeMap;
 import java.util.TreeSet;
 
 import org.systemsbiology.biotapestry.analysis.CenteredGridElement;
-import org.systemsbiology.biotapestry.analysis.CycleFinder;
+import org.systemsbiology.biotapestry.analysis.StrongComponents;
 import org.systemsbiology.biotapestry.analysis.GraphSearcher;
 import org.systemsbiology.biotapestry.analysis.GridGrower;
 import org.systemsbiology.biotapestry.analysis.Link;
@@ -1379,16 +1379,15 @@ public class NetModuleLinkExtractor {
       // We drop links that create cycles
       //      
       
+      StrongComponents.CycleBreaker breaker = new StrongComponents.CycleBreaker();
       Iterator<SortedSet<Link>> vit = linkMap.values().iterator();
       while (vit.hasNext()) {
         SortedSet<Link> forRank = vit.next();
         Iterator<Link> fit = forRank.iterator();
         while (fit.hasNext()) {
           Link modLink = fit.next();   
-          linkSet.add(modLink);
-          CycleFinder cf = new CycleFinder(nodeSet, linkSet);
-          if (cf.hasACycle()) {
-            linkSet.remove(modLink);
+          if (breaker.addIfAcyclic(modLink)) {
+            linkSet.add(modLink);
           }
         }
       }
@@ -97,6 +97,14 @@ public interface SpecialtyLayout {
   
   public SpecialtyLayout forkForSubset(SpecialtyLayoutData sld);
   
+  /***************************************************************************
+  **
+  ** Answer if node placement for a subset depends on the source order built
+  ** up by the subsets placed before it
+  */
+  
+  public boolean usesExistingSourceOrder();
+  
   /***************************************************************************
   **
   ** Figure out the node positions.  Returns list of created GASCs
@@ -22,10 +22,12 @@ package org.systemsbiology.biotapestry.ui.layouts;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 
 import org.systemsbiology.biotapestry.app.BTState;
+import org.systemsbiology.biotapestry.cmd.PadCalculatorToo;
 import org.systemsbiology.biotapestry.db.DataAccessContext;
 import org.systemsbiology.biotapestry.genome.Genome;
 import org.systemsbiology.biotapestry.genome.InvertedSrcTrg;
@@ -83,4 +85,16 @@ public class SpecialtyLayoutData {
     nps = new SpecialtyLayoutEngine.NodePlaceSupport(genome, lo, null, null, ist);
     this.rcx = rcx;
   }
+  
+  /***************************************************************************
+  **
+  ** Once a subset placed against a private pad change map has been merged,
+  ** point it back at the map shared by all the subsets.
+  */
+  
+  public void sharePadChanges(Map<String, PadCalculatorToo.PadResult> padChanges) {
+    results.padChanges = padChanges;
+    nps.setPadChanges(padChanges);
+    return;
+  }
 } 
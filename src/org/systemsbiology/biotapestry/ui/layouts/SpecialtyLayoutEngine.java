@@ -30,12 +30,19 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.systemsbiology.biotapestry.analysis.CenteredGridElement;
 import org.systemsbiology.biotapestry.analysis.GridElement;
@@ -130,6 +137,12 @@ public class SpecialtyLayoutEngine {
   private static final int MODULE_EXPAND_LIMIT_ = 50;
   private static final int MODULE_NOPROGRESS_LIMIT_ = 10;
   
+  //
+  // Subset node placement is farmed out to this many threads at most:
+  //
+  
+  private static final int MAX_PLACEMENT_THREADS_ = 4;
+  
   ////////////////////////////////////////////////////////////////////////////
   //
   // PRIVATE MEMBERS
@@ -146,6 +159,7 @@ public class SpecialtyLayoutEngine {
   private DataAccessContext rcx_;
   private DataAccessContext workingRcx_;
   private SpecialtyLayout specL_;
+  private static ExecutorService placementPool_;
   private NetModuleLinkExtractor.SubsetAnalysis sa_;
   private Point2D fullGenomeCenter_;                                                 
   private SpecialtyLayoutEngineParams params_;
@@ -469,69 +483,22 @@ public class SpecialtyLayoutEngine {
     //
    
     TreeMap<Integer, String> existingOrder = new TreeMap<Integer, String>();
-    HashMap<String, PadCalculatorToo.PadResult> globalPadChanges = new HashMap<String, PadCalculatorToo.PadResult>();
+    //
+    // Insertion ordered, so that looking for the first pad change for a source
+    // gives the same answer no matter how the subsets were scheduled:
+    //
+    LinkedHashMap<String, PadCalculatorToo.PadResult> globalPadChanges = new LinkedHashMap<String, PadCalculatorToo.PadResult>();
     gss_ = new GlobalSLEState(globalPadChanges, ist);
 
-    ArrayList<SpecialtyLayout> forkList = new ArrayList<SpecialtyLayout>(); 
-    ArrayList<String> proc = new ArrayList<String>();
-    for (int i = 0; i < numSub; i++) {
-      GenomeSubset subset = topoSortedSubsetList_.get(i);
-      proc.add(subset.getModuleID());
-      SortedMap<Integer, String> customOrder = customOrderForTarget(existingOrder, subset);    
-      Set<String> nodeSet = DataUtil.setFromIterator(subset.getNodeIterator());   
-      
-      //
-      // Most cases have tons of pure target nodes. Links to those nodes 
-      // cannot create cycles, so knowing these nodes helps improve my crappy
-      // cycle-finding step.
-      //
-    
-      HashSet<String> pureTargets = new HashSet<String>(nodeSet);
-      Iterator<String> lit = subset.getLinkageIterator();
-      while (lit.hasNext()) {
-        String linkID = lit.next();
-        Linkage link = rcx_.getGenome().getLinkage(linkID);
-        String src = link.getSource();
-        pureTargets.remove(src);
-      }
-        
-      
-      SpecialtyLayoutData sld = new SpecialtyLayoutData(appState_, subset, workingRcx_, params_, gss_, customOrder, pureTargets, nodeSet);     
-      gss_.addData(sld);
-            
-      SpecialtyLayout forked = specL_.forkForSubset(sld);
-      forkList.add(forked);
-      
-      if (!nodeSet.isEmpty()) {
-        forked.layoutNodes(monitor);
-      } else {
-        return (new LinkRouter.RoutingResult(LinkRouter.LAYOUT_COULD_NOT_PROCEED)); 
-      } 
- 
-      //
-      // Merge together the source orders as they get built:
-      //
-      
-      SortedMap<Integer, String> outOrder = sld.results.getSourceOrder();
-      if (outOrder != null) {
-        int keyBase = 0;
-        if (!existingOrder.isEmpty()) {
-          Integer last = existingOrder.lastKey();
-          keyBase = last.intValue() + 1;
-        }
-        Iterator<Integer> ooit = outOrder.keySet().iterator();
-        while (ooit.hasNext()) {
-          Integer key = ooit.next();
-          String srcID = outOrder.get(key);
-          if (!existingOrder.containsValue(srcID)) {
-            existingOrder.put(new Integer(key.intValue() + keyBase), srcID);
-          }
-        }
-      }
-      
-      if ((monitor != null) && !monitor.keepGoing()) {
-        throw new AsynchExitRequestException();
-      }
+    ArrayList<SpecialtyLayout> forkList = new ArrayList<SpecialtyLayout>();
+    boolean placed;
+    if (specL_.usesExistingSourceOrder() || (numSub < 2) || (placementThreads() < 2)) {
+      placed = layoutSubsetNodes(existingOrder, forkList, monitor);
+    } else {
+      placed = layoutSubsetNodesConcurrently(existingOrder, forkList, monitor);
+    }
+    if (!placed) {
+      return (new LinkRouter.RoutingResult(LinkRouter.LAYOUT_COULD_NOT_PROCEED)); 
     }
     
     //
@@ -1293,6 +1260,255 @@ public class SpecialtyLayoutEngine {
     }
     return (retval);
   }
+
+  /***************************************************************************
+  **
+  ** Lay out the nodes of each subset in topo order, one after the other.  Returns
+  ** false if a subset has no nodes to lay out.
+  */
+  
+  private boolean layoutSubsetNodes(TreeMap<Integer, String> existingOrder, List<SpecialtyLayout> forkList,
+                                    BTProgressMonitor monitor) throws AsynchExitRequestException {
+    int numSub = topoSortedSubsetList_.size();
+    for (int i = 0; i < numSub; i++) {
+      GenomeSubset subset = topoSortedSubsetList_.get(i);
+      SortedMap<Integer, String> customOrder = customOrderForTarget(existingOrder, subset);    
+      Set<String> nodeSet = DataUtil.setFromIterator(subset.getNodeIterator());   
+      Set<String> pureTargets = pureTargetsForSubset(subset, nodeSet);
+      
+      SpecialtyLayoutData sld = new SpecialtyLayoutData(appState_, subset, workingRcx_, params_, gss_, customOrder, pureTargets, nodeSet);     
+      gss_.addData(sld);
+            
+      SpecialtyLayout forked = specL_.forkForSubset(sld);
+      forkList.add(forked);
+      
+      if (!nodeSet.isEmpty()) {
+        forked.layoutNodes(monitor);
+      } else {
+        return (false); 
+      } 
+      mergeSourceOrder(existingOrder, sld);
+      
+      if ((monitor != null) && !monitor.keepGoing()) {
+        throw new AsynchExitRequestException();
+      }
+    }
+    return (true);
+  }
+  
+  /***************************************************************************
+  **
+  ** Lay out the nodes of the subsets on the placement pool.  The only state
+  ** subsets share while placing nodes is the global pad change map, and a subset
+  ** only reads or writes the entries for links with sources in its footprint
+  ** (its own nodes plus the sources feeding them).  So a subset waits only until
+  ** every earlier subset with an overlapping footprint has been merged, then works
+  ** on a private copy of the pad changes.  Subsets are merged back strictly in topo
+  ** order, which leaves the pad changes, source order, and data list exactly as the
+  ** sequential pass builds them.  Returns false if a subset has no nodes to lay out.
+  */
+  
+  private boolean layoutSubsetNodesConcurrently(TreeMap<Integer, String> existingOrder, List<SpecialtyLayout> forkList,
+                                                BTProgressMonitor monitor) throws AsynchExitRequestException {
+    int numSub = topoSortedSubsetList_.size();
+    Map<String, PadCalculatorToo.PadResult> globalPadChanges = gss_.getGlobalPadChanges();
+    InvertedSrcTrg ist = gss_.getInvertedSrcTrg();
+    
+    //
+    // Nobody gets started if a subset is empty.  For each subset, find the last earlier
+    // subset that touches the same sources; it must be merged first:
+    //
+    
+    ArrayList<Set<String>> nodeSets = new ArrayList<Set<String>>();
+    int[] mustFollow = new int[numSub];
+    HashMap<String, Integer> lastToTouch = new HashMap<String, Integer>();
+    for (int i = 0; i < numSub; i++) {
+      GenomeSubset subset = topoSortedSubsetList_.get(i);
+      Set<String> nodeSet = DataUtil.setFromIterator(subset.getNodeIterator());
+      if (nodeSet.isEmpty()) {
+        return (false);
+      }
+      nodeSets.add(nodeSet);
+      HashSet<String> footprint = new HashSet<String>(nodeSet);
+      Iterator<String> nsit = nodeSet.iterator();
+      while (nsit.hasNext()) {
+        footprint.addAll(ist.getSources(nsit.next()));
+      }
+      Integer myIndex = new Integer(i);
+      int follow = -1;
+      Iterator<String> fit = footprint.iterator();
+      while (fit.hasNext()) {
+        Integer last = lastToTouch.put(fit.next(), myIndex);
+        if ((last != null) && (last.intValue() > follow)) {
+          follow = last.intValue();
+        }
+      }
+      mustFollow[i] = follow;
+    }
+ 
+    SpecialtyLayoutData[] slds = new SpecialtyLayoutData[numSub];
+    SpecialtyLayout[] forks = new SpecialtyLayout[numSub];
+    ArrayList<Map<String, PadCalculatorToo.PadResult>> startPads = new ArrayList<Map<String, PadCalculatorToo.PadResult>>();
+    ArrayList<Future<Object>> pending = new ArrayList<Future<Object>>();
+    ExecutorService pool = getPlacementPool();
+    int nextStart = 0;
+    int nextMerge = 0;
+    try {
+      while (nextMerge < numSub) {
+        while ((nextStart < numSub) && (mustFollow[nextStart] < nextMerge)) {
+          GenomeSubset subset = topoSortedSubsetList_.get(nextStart);
+          Set<String> nodeSet = nodeSets.get(nextStart);
+          Set<String> pureTargets = pureTargetsForSubset(subset, nodeSet);
+          //
+          // The PadResults are shared, not cloned: a subset updates the ones for
+          // its own links in place, just like it does in the sequential pass.
+          //
+          LinkedHashMap<String, PadCalculatorToo.PadResult> privatePads = 
+            new LinkedHashMap<String, PadCalculatorToo.PadResult>(globalPadChanges);
+          startPads.add(new HashMap<String, PadCalculatorToo.PadResult>(globalPadChanges));
+          GlobalSLEState privateGss = new GlobalSLEState(privatePads, ist);
+          slds[nextStart] = new SpecialtyLayoutData(appState_, subset, workingRcx_, params_, privateGss, null, pureTargets, nodeSet);
+          forks[nextStart] = specL_.forkForSubset(slds[nextStart]);
+          pending.add(pool.submit(new SubsetPlacer(forks[nextStart], monitor)));
+          nextStart++;
+        }
+        
+        waitForPlacement(pending.get(nextMerge));
+        
+        //
+        // Merge in topo order. Pad changes this subset added or replaced go
+        // into the global map in the order the subset made them:
+        //
+        
+        GenomeSubset subset = topoSortedSubsetList_.get(nextMerge);
+        SpecialtyLayoutData sld = slds[nextMerge];
+        sld.existingOrder = customOrderForTarget(existingOrder, subset);
+        Map<String, PadCalculatorToo.PadResult> before = startPads.get(nextMerge);
+        Map<String, PadCalculatorToo.PadResult> after = sld.results.padChanges;
+        Iterator<String> pcit = after.keySet().iterator();
+        while (pcit.hasNext()) {
+          String linkID = pcit.next();
+          PadCalculatorToo.PadResult pres = after.get(linkID);
+          if (before.get(linkID) != pres) {
+            globalPadChanges.put(linkID, pres);
+          }
+        }
+        sld.sharePadChanges(globalPadChanges);
+        startPads.set(nextMerge, null);
+        gss_.addData(sld);
+        forkList.add(forks[nextMerge]);
+        mergeSourceOrder(existingOrder, sld);
+        nextMerge++;
+        
+        if ((monitor != null) && !monitor.keepGoing()) {
+          throw new AsynchExitRequestException();
+        }
+      }
+    } finally {
+      int numPend = pending.size();
+      for (int i = nextMerge; i < numPend; i++) {
+        pending.get(i).cancel(false);
+      }
+    }
+    return (true);
+  }
+  
+  /***************************************************************************
+  **
+  ** Wait for a subset placement to finish, passing along whatever it threw
+  */
+  
+  private void waitForPlacement(Future<Object> placement) throws AsynchExitRequestException {
+    try {
+      placement.get();
+    } catch (InterruptedException iex) {
+      Thread.currentThread().interrupt();
+      throw new AsynchExitRequestException();
+    } catch (ExecutionException eex) {
+      Throwable cause = eex.getCause();
+      if (cause instanceof AsynchExitRequestException) {
+        throw (AsynchExitRequestException)cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException)cause;
+      } else if (cause instanceof Error) {
+        throw (Error)cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+    return;
+  }
+  
+  /***************************************************************************
+  **
+  ** Most cases have tons of pure target nodes. Links to those nodes 
+  ** cannot create cycles, so the layouts leave them out of the
+  ** StrongComponents cycle breaking entirely.
+  */
+  
+  private Set<String> pureTargetsForSubset(GenomeSubset subset, Set<String> nodeSet) {
+    HashSet<String> pureTargets = new HashSet<String>(nodeSet);
+    Iterator<String> lit = subset.getLinkageIterator();
+    while (lit.hasNext()) {
+      String linkID = lit.next();
+      Linkage link = rcx_.getGenome().getLinkage(linkID);
+      String src = link.getSource();
+      pureTargets.remove(src);
+    }
+    return (pureTargets);
+  }
+  
+  /***************************************************************************
+  **
+  ** Merge together the source orders as they get built
+  */
+  
+  private void mergeSourceOrder(TreeMap<Integer, String> existingOrder, SpecialtyLayoutData sld) {
+    SortedMap<Integer, String> outOrder = sld.results.getSourceOrder();
+    if (outOrder != null) {
+      int keyBase = 0;
+      if (!existingOrder.isEmpty()) {
+        Integer last = existingOrder.lastKey();
+        keyBase = last.intValue() + 1;
+      }
+      Iterator<Integer> ooit = outOrder.keySet().iterator();
+      while (ooit.hasNext()) {
+        Integer key = ooit.next();
+        String srcID = outOrder.get(key);
+        if (!existingOrder.containsValue(srcID)) {
+          existingOrder.put(new Integer(key.intValue() + keyBase), srcID);
+        }
+      }
+    }
+    return;
+  }
+  
+  /***************************************************************************
+  **
+  ** Number of threads to use for subset placement
+  */
+  
+  private static int placementThreads() {
+    return (Math.min(MAX_PLACEMENT_THREADS_, Runtime.getRuntime().availableProcessors()));
+  }
+  
+  /***************************************************************************
+  **
+  ** Get the daemon thread pool shared by all engines for placing subsets
+  */
+  
+  private static synchronized ExecutorService getPlacementPool() {
+    if (placementPool_ == null) {
+      placementPool_ = Executors.newFixedThreadPool(placementThreads(), new ThreadFactory() {
+        private int count_ = 0;
+        public synchronized Thread newThread(Runnable runner) {
+          Thread retval = new Thread(runner, "SubsetPlacement-" + count_++);
+          retval.setDaemon(true);
+          return (retval);
+        }
+      });
+    }
+    return (placementPool_);
+  }
   
   /***************************************************************************
   **
@@ -2307,6 +2523,33 @@ public class SpecialtyLayoutEngine {
     return;
   }
   
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE STATIC INNER CLASSES
+  //
+  ////////////////////////////////////////////////////////////////////////////  
+
+  /***************************************************************************
+  **
+  ** Runs node placement for one subset on the placement pool
+  */
+  
+  private static class SubsetPlacer implements Callable<Object> {
+    
+    private SpecialtyLayout forked_;
+    private BTProgressMonitor monitor_;
+    
+    SubsetPlacer(SpecialtyLayout forked, BTProgressMonitor monitor) {
+      forked_ = forked;
+      monitor_ = monitor;
+    }
+    
+    public Object call() throws AsynchExitRequestException {
+      forked_.layoutNodes(monitor_);
+      return (null);
+    }
+  }
+
   ////////////////////////////////////////////////////////////////////////////
   //
   // PUBLIC STATIC INNER CLASSES
@@ -2387,6 +2630,11 @@ public class SpecialtyLayoutEngine {
       return (finalPadChanges);  
     } 
     
+    public void setPadChanges(Map<String, PadCalculatorToo.PadResult> padChanges) {
+      finalPadChanges = padChanges;
+      return;
+    } 
+    
     public Point2D getPosition(String id) {
       return (placement.get(id));  
     } 
@@ -35,7 +35,7 @@ import java.awt.geom.Point2D;
 
 import org.systemsbiology.biotapestry.analysis.NodeGrouper;
 import org.systemsbiology.biotapestry.analysis.Link;
-import org.systemsbiology.biotapestry.analysis.CycleFinder;
+import org.systemsbiology.biotapestry.analysis.StrongComponents;
 import org.systemsbiology.biotapestry.analysis.GraphSearcher;
 import org.systemsbiology.biotapestry.app.BTState;
 import org.systemsbiology.biotapestry.genome.Genome;
@@ -235,6 +235,16 @@ public class StackedBlockLayout implements SpecialtyLayout {
     retval.sld_ = sld;
     return (retval);
   }
+
+  /***************************************************************************
+  **
+  ** Answer if node placement depends on the source order from earlier subsets.
+  ** It does: the stacked series lines up its sources to match that order.
+  */
+  
+  public boolean usesExistingSourceOrder() {
+    return (true);
+  }
  
   /***************************************************************************
   **
@@ -334,6 +344,7 @@ public class StackedBlockLayout implements SpecialtyLayout {
  
     TreeSet<String> orderedLinkSet = new TreeSet<String>(cc);    
     orderedLinkSet.addAll(DataUtil.setFromIterator(sld_.subset.getLinkageIterator()));
+    ArrayList<Link> candidates = new ArrayList<Link>();
     Iterator<String> lit = orderedLinkSet.iterator();
     while (lit.hasNext()) {
       String linkID = lit.next(); 
@@ -342,13 +353,15 @@ public class StackedBlockLayout implements SpecialtyLayout {
       if ((sld_.pureTargets != null) && sld_.pureTargets.contains(trg)) {
         continue;
       }
-      String src = link.getSource();
-      Link cfl = new Link(src, trg);
-      linkSet.add(cfl);
-      CycleFinder cf = new CycleFinder(nodeSet, linkSet);
-      if (cf.hasACycle()) {
-        linkSet.remove(cfl);
-      }      
+      candidates.add(new Link(link.getSource(), trg));
+    }
+    StrongComponents.CycleBreaker breaker = new StrongComponents.CycleBreaker(candidates);
+    int numCand = candidates.size();
+    for (int i = 0; i < numCand; i++) {
+      Link cfl = candidates.get(i);
+      if (breaker.addIfAcyclic(cfl)) {
+        linkSet.add(cfl);
+      }
     }
     
     //
@@ -384,9 +397,10 @@ public class StackedBlockLayout implements SpecialtyLayout {
     List<String> ttGroups = ng.findTerminalTargetsByGroups(groups);
     List<GeneAndSatelliteCluster> termXClusters = GeneAndSatelliteCluster.fillTargetClustersByGroups(sld_.appState, ttGroups, groups,                                                              
                                                                                                      sld_.nps, sld_.rcx, traceOffset, 
-                                                                                                     false, wlp.spaceForText(), true);
+                                                                                                     false, wlp.spaceForText(), true, 
+                                                                                                     wlp.layeredFanGrids);
     ArrayList<GeneAndSatelliteCluster> sClustList = new ArrayList<GeneAndSatelliteCluster>();
-    findSources(baseGenome, termXClusters, groups, sClustList, wlp.spaceForText(), traceOffset);
+    findSources(baseGenome, termXClusters, groups, sClustList, wlp.spaceForText(), traceOffset, wlp.layeredFanGrids);
     return (new GASCResults(sClustList, termXClusters, queue));
   }
      
@@ -640,6 +654,7 @@ public class StackedBlockLayout implements SpecialtyLayout {
     retval.compressType = CompressTypes.COMPRESS_NORMAL;
     retval.showBubbles = true;
     retval.checkColorOverlap = false;
+    retval.layeredFanGrids = false;
     return (retval);
   }
   
@@ -699,6 +714,7 @@ public class StackedBlockLayout implements SpecialtyLayout {
     public boolean checkColorOverlap;
     public int overlayOption;
     public CompressTypes compressType;
+    public boolean layeredFanGrids;
     
     public StackedBlockLayoutParams clone() {
       try {
@@ -755,7 +771,7 @@ public class StackedBlockLayout implements SpecialtyLayout {
   
   private SortedSet<String> findSources(Genome genome, List<GeneAndSatelliteCluster> termClusters, 
                                         Map<String, NodeGrouper.GroupElement> groups, List<GeneAndSatelliteCluster> sClustList, 
-                                        boolean textToo, double traceOffset) {
+                                        boolean textToo, double traceOffset, boolean layeredFanGrids) {
 
     //
     // Get the set of targets:
@@ -784,7 +800,7 @@ public class StackedBlockLayout implements SpecialtyLayout {
     Iterator<String> psit = sources.iterator();
     while (psit.hasNext()) {
       String srcID = psit.next();
-      GeneAndSatelliteCluster sc = new GeneAndSatelliteCluster(sld_.appState, srcID, true, traceOffset, false, textToo);
+      GeneAndSatelliteCluster sc = new GeneAndSatelliteCluster(sld_.appState, srcID, true, traceOffset, false, textToo, layeredFanGrids);
       sc.prepFromGroupsPhaseOne(sld_.nps, groups, false);
       sClustList.add(sc);
     }    
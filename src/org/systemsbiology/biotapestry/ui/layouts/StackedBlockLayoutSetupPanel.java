@@ -66,6 +66,7 @@ public class StackedBlockLayoutSetupPanel extends JPanel implements SpecialtyLay
   private JComboBox compressTypeCombo_; 
   private JComboBox srcTypeCombo_;
   private JCheckBox separateTargetsBox_;
+  private JCheckBox layeredFanGridsBox_;
   private boolean isForGlobal_;
   private boolean maxDisable_;
   private boolean partialDisable_;
@@ -160,6 +161,7 @@ public class StackedBlockLayoutSetupPanel extends JPanel implements SpecialtyLay
     targTypeCombo_.setSelectedItem(useTG.generateCombo(appState_));
    
     compressTypeCombo_.setSelectedItem(params_.compressType.generateCombo(appState_));
+    layeredFanGridsBox_.setSelected(params_.layeredFanGrids);
   
     if (colorTypeCombo_ != null) {
       colorTypeCombo_.setSelectedItem(params_.assignColorMethod.generateCombo(appState_));
@@ -208,6 +210,8 @@ public class StackedBlockLayoutSetupPanel extends JPanel implements SpecialtyLay
         params_.rowSize = defaultParams.rowSize;
       }
       
+      params_.layeredFanGrids = layeredFanGridsBox_.isSelected();
+      
       if (colorTypeCombo_ != null) {
         params_.showBubbles = doBubblesBox_.isSelected();
         params_.checkColorOverlap = doColorCheckBox_.isSelected();
@@ -355,6 +359,10 @@ public class StackedBlockLayoutSetupPanel extends JPanel implements SpecialtyLay
     UiUtil.gbcSet(gbc, 1, rowNum++, 1, 1, UiUtil.HOR, 0, 0, 5, 5, 5, 5, UiUtil.CEN, 1.0, 0.0);    
     add(overlayOptionCombo_, gbc);  
     
+    layeredFanGridsBox_ = new JCheckBox(rMan.getString("specialtyLayout.layeredFanGrids"));
+    UiUtil.gbcSet(gbc, 0, rowNum++, 1, 1, UiUtil.HOR, 0, 0, 5, 5, 5, 5, UiUtil.CEN, 1.0, 0.0);    
+    add(layeredFanGridsBox_, gbc);
+    
     if (!forSubset_) {   
       JLabel colorTypeLabel = new JLabel(rMan.getString("specialtyLayout.colorStrategy"));
       colorTypeCombo_ = new JComboBox(ColorTypes.getChoices(appState_));
@@ -34,7 +34,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 
 import org.systemsbiology.biotapestry.analysis.Link;
-import org.systemsbiology.biotapestry.analysis.CycleFinder;    
+import org.systemsbiology.biotapestry.analysis.StrongComponents;    
 import org.systemsbiology.biotapestry.analysis.GraphSearcher;
 import org.systemsbiology.biotapestry.db.DataAccessContext;
 import org.systemsbiology.biotapestry.genome.Genome;
@@ -242,6 +242,7 @@ public class SuperSourceCluster {
     // 
     
     HashSet<Link> links = new HashSet<Link>();
+    StrongComponents.CycleBreaker breaker = new StrongComponents.CycleBreaker();
     
     Iterator<String> icit = interClusterLinks_.iterator();
     while (icit.hasNext()) {
@@ -249,10 +250,9 @@ public class SuperSourceCluster {
       String src = srcClusts.get(linkID);
       String trg = trgClusts.get(linkID);
       Link cfl = new Link(src, trg);
-      links.add(cfl);
-      CycleFinder cf = new CycleFinder(clustsForTopoSort, links);
-      if (cf.hasACycle()) {
-        links.remove(cfl);
+      if (breaker.addIfAcyclic(cfl)) {
+        links.add(cfl);
+      } else {
         interFeeds.add(linkID);
       }
     }
@@ -36,7 +36,7 @@ import java.awt.geom.Point2D;
 
 import org.systemsbiology.biotapestry.analysis.NodeGrouper;
 import org.systemsbiology.biotapestry.analysis.Link;
-import org.systemsbiology.biotapestry.analysis.CycleFinder;
+import org.systemsbiology.biotapestry.analysis.StrongComponents;
 import org.systemsbiology.biotapestry.analysis.GraphSearcher;
 import org.systemsbiology.biotapestry.app.BTState;
 import org.systemsbiology.biotapestry.db.DataAccessContext;
@@ -203,6 +203,15 @@ public class WorksheetLayout implements SpecialtyLayout {
     return (retval);
   }
 
+  /***************************************************************************
+  **
+  ** Answer if node placement depends on the source order from earlier subsets
+  */
+  
+  public boolean usesExistingSourceOrder() {
+    return (false);
+  }
+
   /***************************************************************************
   **
   ** Answer if the setup works OK.  Error message if a problem, else null if OK
@@ -278,6 +287,7 @@ public class WorksheetLayout implements SpecialtyLayout {
       
     TreeSet<String> orderedLinkSet = new TreeSet<String>(cc);    
     orderedLinkSet.addAll(DataUtil.setFromIterator(sld_.subset.getLinkageIterator()));
+    ArrayList<Link> candidates = new ArrayList<Link>();
     Iterator<String> lit = orderedLinkSet.iterator();
     while (lit.hasNext()) {
       String linkID = lit.next();
@@ -286,13 +296,15 @@ public class WorksheetLayout implements SpecialtyLayout {
       if ((sld_.pureTargets != null) && sld_.pureTargets.contains(trg)) {
         continue;
       }
-      String src = link.getSource();
-      Link cfl = new Link(src, trg);
-      linkSet.add(cfl);
-      CycleFinder cf = new CycleFinder(sld_.nodeSet, linkSet);
-      if (cf.hasACycle()) {
-        linkSet.remove(cfl);
-      }      
+      candidates.add(new Link(link.getSource(), trg));
+    }
+    StrongComponents.CycleBreaker breaker = new StrongComponents.CycleBreaker(candidates);
+    int numCand = candidates.size();
+    for (int i = 0; i < numCand; i++) {
+      Link cfl = candidates.get(i);
+      if (breaker.addIfAcyclic(cfl)) {
+        linkSet.add(cfl);
+      }
     }
     
     if ((monitor != null) && !monitor.keepGoing()) {
@@ -333,7 +345,7 @@ public class WorksheetLayout implements SpecialtyLayout {
     List<String> ttGroups = ng.findTerminalTargetsByGroups(groups);
     int numTClust = ttGroups.size();
     termClusters_ = GeneAndSatelliteCluster.fillTargetClustersByGroups(sld_.appState, ttGroups, groups, sld_.nps, sld_.rcx,
-                                                                       traceOffset, true, false, false);
+                                                                       traceOffset, true, false, false, wlp.layeredFanGrids);
     
     if ((monitor != null) && !monitor.keepGoing()) {
       throw new AsynchExitRequestException();
@@ -364,7 +376,7 @@ public class WorksheetLayout implements SpecialtyLayout {
     //
     
     ArrayList<GeneAndSatelliteCluster> sClustList = new ArrayList<GeneAndSatelliteCluster>();
-    findSources(sld_.nps, termClusters_, groups, sClustList, traceOffset, wlp.textToo);
+    findSources(sld_.nps, termClusters_, groups, sClustList, traceOffset, wlp.textToo, wlp.layeredFanGrids);
     int numSClust = sClustList.size(); 
 
     if ((monitor != null) && !monitor.keepGoing()) {
@@ -963,6 +975,7 @@ public class WorksheetLayout implements SpecialtyLayout {
     retval.overlayOption = NetOverlayProperties.RELAYOUT_SHIFT_AND_RESIZE_SHAPES;
     retval.traceMult = 2;
     retval.textToo = true;
+    retval.layeredFanGrids = false;
     return (retval);
   }
   
@@ -1002,6 +1015,7 @@ public class WorksheetLayout implements SpecialtyLayout {
     public int overlayOption;
     public boolean textToo;
     public int traceMult;
+    public boolean layeredFanGrids;
   
     public WorksheetLayoutParams clone() {
       try {
@@ -1043,7 +1057,8 @@ public class WorksheetLayout implements SpecialtyLayout {
   private SortedSet<String> findSources(SpecialtyLayoutEngine.NodePlaceSupport nps, 
                                         List<GeneAndSatelliteCluster> termClusters, 
                                         Map<String, NodeGrouper.GroupElement> groups, 
-                                        List<GeneAndSatelliteCluster> sClustList, double traceOffset, boolean textToo) {
+                                        List<GeneAndSatelliteCluster> sClustList, double traceOffset, boolean textToo,
+                                        boolean layeredFanGrids) {
 
     //
     // Get the set of targets:
@@ -1073,7 +1088,7 @@ public class WorksheetLayout implements SpecialtyLayout {
     Iterator<String> psit = sources.iterator();
     while (psit.hasNext()) {
       String srcID = psit.next();
-      GeneAndSatelliteCluster sc = new GeneAndSatelliteCluster(sld_.appState, srcID, false, traceOffset, false, textToo);
+      GeneAndSatelliteCluster sc = new GeneAndSatelliteCluster(sld_.appState, srcID, false, traceOffset, false, textToo, layeredFanGrids);
       sc.prepFromGroupsPhaseOne(sld_.nps, groups, false);
       sClustList.add(sc);
     }    
@@ -59,6 +59,7 @@ public class WorksheetLayoutSetupPanel extends JPanel implements SpecialtyLayout
   private JComboBox colorTypeCombo_;
   private JCheckBox doBubblesBox_;
   private JCheckBox doColorCheckBox_;
+  private JCheckBox layeredFanGridsBox_;
   private JComboBox overlayOptionCombo_;
   private BTState appState_;
   private boolean forSubset_;
@@ -143,6 +144,7 @@ public class WorksheetLayoutSetupPanel extends JPanel implements SpecialtyLayout
     targTypeCombo_.setSelectedItem(params_.targGroups.generateCombo(appState_));
 
     targSizeField_.setText(Integer.toString(params_.targSize));
+    layeredFanGridsBox_.setSelected(params_.layeredFanGrids);
  
     if (colorTypeCombo_ != null) {
       colorTypeCombo_.setSelectedItem(params_.assignColorMethod.generateCombo(appState_));
@@ -192,6 +194,7 @@ public class WorksheetLayoutSetupPanel extends JPanel implements SpecialtyLayout
         params_.showBubbles = doBubblesBox_.isSelected();
         params_.checkColorOverlap = doColorCheckBox_.isSelected();
       }       
+      params_.layeredFanGrids = layeredFanGridsBox_.isSelected();
       
       handleUnchecked(params_, forDiagonal_);
       haveResult_ = true;
@@ -295,6 +298,10 @@ public class WorksheetLayoutSetupPanel extends JPanel implements SpecialtyLayout
     UiUtil.gbcSet(gbc, 1, rowNum++, 1, 1, UiUtil.HOR, 0, 0, 5, 5, 5, 5, UiUtil.CEN, 1.0, 0.0);    
     add(overlayOptionCombo_, gbc); 
     
+    layeredFanGridsBox_ = new JCheckBox(rMan.getString("specialtyLayout.layeredFanGrids"));
+    UiUtil.gbcSet(gbc, 0, rowNum++, 1, 1, UiUtil.HOR, 0, 0, 5, 5, 5, 5, UiUtil.CEN, 1.0, 0.0);    
+    add(layeredFanGridsBox_, gbc);
+    
    if (!forSubset_) {   
       JLabel colorTypeLabel = new JLabel(rMan.getString("specialtyLayout.colorStrategy"));
       colorTypeCombo_ = new JComboBox(ColorTypes.getChoices(appState_));
@@ -51,6 +51,8 @@ public class XPlatCurrentState {
   private HashMap<String, String> mutableNames_;
   private HashMap<String, Boolean> conditionalStates_;
   private Map<FlowMeister.FlowKey, Boolean> fes_;
+  private int fesVersion_;
+  private boolean fesIsDelta_;
   private Map<XPlatModelNode.NodeKey, Map<FlowMeister.FlowKey, Boolean>> modelTreeState_;
   
   ////////////////////////////////////////////////////////////////////////////
@@ -130,6 +132,20 @@ public class XPlatCurrentState {
     return;
   }
   
+  /***************************************************************************
+  **
+  ** Enables can instead be just the entries that changed since a version the
+  ** client has already seen. The version tags these enables, so the client
+  ** can hand it back next time.
+  */ 
+   
+  public void mainCommandEnables(Map<FlowMeister.FlowKey, Boolean> fes, int version, boolean isDelta) {
+    fes_ = fes;
+    fesVersion_ = version;
+    fesIsDelta_ = isDelta;
+    return;
+  }
+  
   /***************************************************************************
   **
   ** Get menu for placeholder tag
@@ -234,4 +250,12 @@ public class XPlatCurrentState {
 	  
 	  return Collections.unmodifiableMap(fes_);
   }
+  
+  public int getFlowEnabledVersion() {
+    return (fesVersion_);
+  }
+  
+  public boolean getFlowEnabledIsDelta() {
+    return (fesIsDelta_);
+  }
 }
@@ -83,6 +83,14 @@ public class LinkPlacementGrid {
   private static final int HORZ_RUN = 2;
   private static final int BAD_RUN  = 3;
   
+  private static final int OCC_OCCUPIED_     = 0x01;
+  private static final int OCC_REQUIRED_     = 0x02;
+  private static final int OCC_REQ_NON_NODE_ = 0x04;
+  private static final int OCC_NODE_         = 0x08;
+  private static final int OCC_LINK_         = 0x10;
+  private static final int OCC_TERMINAL_     = 0x20;
+  private static final int NUM_OCC_KINDS_    = 6;
+
   private static final int NO_CLEANUP_           = 0;    
   private static final int DID_CLEANUP_          = 1;
 
@@ -135,6 +143,8 @@ public class LinkPlacementGrid {
   private Rectangle bounds_;
   private double sqrt2o2_;
   private HashSet<String> drawnLinks_;
+  private OccupancyTally rowTally_;
+  private OccupancyTally colTally_;
   
   ////////////////////////////////////////////////////////////////////////////
   //
@@ -155,6 +165,8 @@ public class LinkPlacementGrid {
     sqrt2o2_ = Math.sqrt(2.0) / 2.0;
     bounds_ = null;
     drawnLinks_ = new HashSet<String>();
+    rowTally_ = new OccupancyTally();
+    colTally_ = new OccupancyTally();
   }
   
   ////////////////////////////////////////////////////////////////////////////
@@ -202,7 +214,7 @@ public class LinkPlacementGrid {
       Point pt = it.next();
       if (retval.bounds_.contains(pt)) {
         GridContents gc = this.getGridContents(pt, false);
-        retval.patternx_.put((Point)pt.clone(), gc.clone()); 
+        retval.putCell((Point)pt.clone(), gc.clone()); 
       }
     }
     
@@ -3671,7 +3683,7 @@ public class LinkPlacementGrid {
   */
   
   private void dropFromPattern(Point cellPt) { 
-    patternx_.remove(cellPt);
+    removeCell(cellPt);
     return;  
   }
   
@@ -3764,10 +3776,11 @@ public class LinkPlacementGrid {
     }    
     GridContents gc = patternx_.get(cellPt);
     if (gc == null) {
-      gc = new GridContents(entry);
-      patternx_.put(cellPt, gc);
+      putCell(cellPt, new GridContents(entry));
     } else {
+      tallyCell(cellPt, gc, -1);
       gc.mergeContents(entry);
+      tallyCell(cellPt, gc, 1);
     }
     return;
   }  
@@ -3794,13 +3807,182 @@ public class LinkPlacementGrid {
       return;
     }     
     if ((gc == null) || dropGroupEntries(gc)) {
-      patternx_.remove(pt);
+      removeCell(pt);
     } else {
-      patternx_.put(pt, gc);         
+      putCell(pt, gc);         
     }
     return;
   }      
   
+  /***************************************************************************
+  **
+  ** All additions to the pattern go through here to keep occupancy tallies current
+  */
+  
+  private void putCell(Point pt, GridContents gc) {
+    GridContents old = patternx_.put(pt, gc);
+    if (old != null) {
+      tallyCell(pt, old, -1);
+    }
+    tallyCell(pt, gc, 1);
+    return;
+  }
+  
+  /***************************************************************************
+  **
+  ** All removals from the pattern go through here to keep occupancy tallies current
+  */
+  
+  private void removeCell(Point pt) {
+    GridContents old = patternx_.remove(pt);
+    if (old != null) {
+      tallyCell(pt, old, -1);
+    }
+    return;
+  }
+  
+  /***************************************************************************
+  **
+  ** Add or remove the cell from the row and column occupancy tallies
+  */
+  
+  private void tallyCell(Point pt, GridContents gc, int delta) {
+    int mask = occupancyMask(gc);
+    rowTally_.tally(pt.y, mask, delta);
+    colTally_.tally(pt.x, mask, delta);
+    return;
+  }
+  
+  /***************************************************************************
+  **
+  ** Classify stored cell contents for the occupancy tallies.  "Required" matches
+  ** cellNotRequired(): anything other than a run (or group) is required.
+  */
+  
+  private int occupancyMask(GridContents gc) {
+    if (gc.entry != null) {
+      return (OCC_OCCUPIED_ | occupancyMaskForType(gc.entry.type));
+    }
+    int mask = OCC_OCCUPIED_;
+    int size = gc.extra.size();
+    for (int i = 0; i < size; i++) {
+      mask |= occupancyMaskForType(gc.extra.get(i).type);
+    }
+    return (mask);
+  }
+  
+  /***************************************************************************
+  **
+  ** Classify a single entry type for the occupancy tallies
+  */
+  
+  private int occupancyMaskForType(int type) {
+    switch (type) {
+      case IS_GROUP:
+        return (0);
+      case IS_RUN:
+        return (OCC_LINK_);
+      case IS_NODE:
+      case IS_NODE_INBOUND_OK:
+        return (OCC_NODE_ | OCC_REQUIRED_);
+      case IS_RESERVED_DEPARTURE_RUN:
+      case IS_RESERVED_ARRIVAL_RUN:
+      case IS_RESERVED_MULTI_LINK_ARRIVAL_RUN:
+        return (OCC_TERMINAL_ | OCC_REQUIRED_ | OCC_REQ_NON_NODE_);
+      default:
+        return (OCC_LINK_ | OCC_REQUIRED_ | OCC_REQ_NON_NODE_);
+    }
+  }
+  
+  /***************************************************************************
+  **
+  ** Answer if any group covers a cell in the given row (or column if !isRow) inside
+  ** the given bounds on the other axis (may be null).  Matches the group cells
+  ** produced by the PatternIterator.
+  */
+  
+  private boolean groupCoversLine(int line, MinMax otherBounds, boolean isRow) {
+    Iterator<Rectangle> git = groups_.values().iterator();
+    while (git.hasNext()) {
+      Rectangle rect = git.next();
+      int grpX = rect.x / 10;
+      int grpY = rect.y / 10;
+      int grpW = rect.width / 10;
+      int grpH = rect.height / 10;
+      if ((grpW <= 0) || (grpH <= 0)) {
+        continue;
+      }
+      int lineMin = (isRow) ? grpY : grpX;
+      int lineMax = lineMin + ((isRow) ? grpH : grpW) - 1;
+      if ((line < lineMin) || (line > lineMax)) {
+        continue;
+      }
+      if (otherBounds == null) {
+        return (true);
+      }
+      int otherMin = (isRow) ? grpX : grpY;
+      int otherMax = otherMin + ((isRow) ? grpW : grpH) - 1;
+      if ((otherMax >= otherBounds.min) && (otherMin <= otherBounds.max)) {
+        return (true);
+      }
+    }
+    return (false);
+  }
+  
+  /***************************************************************************
+  **
+  ** Answer the range of rows (or columns if !isRow) occupied by stored cells
+  ** or groups.  Null if nothing is there.
+  */
+  
+  private MinMax occupiedRange(boolean isRow) {
+    MinMax retval = ((isRow) ? rowTally_ : colTally_).occupiedRange();
+    Iterator<Rectangle> git = groups_.values().iterator();
+    while (git.hasNext()) {
+      Rectangle rect = git.next();
+      int grpW = rect.width / 10;
+      int grpH = rect.height / 10;
+      if ((grpW <= 0) || (grpH <= 0)) {
+        continue;
+      }
+      int lineMin = (isRow) ? rect.y / 10 : rect.x / 10;
+      int lineMax = lineMin + ((isRow) ? grpH : grpW) - 1;
+      if (retval == null) {
+        retval = new MinMax(lineMin, lineMax);
+      } else {
+        retval = retval.union(new MinMax(lineMin, lineMax));
+      }
+    }
+    return (retval);
+  }
+  
+  /***************************************************************************
+  **
+  ** Answer emptiness from the occupancy tallies alone.  Returns null if the
+  ** tallies cannot decide and the cells need to be examined.
+  */
+  
+  private Boolean lineIsEmptyFromTally(int line, MinMax otherBounds, boolean makeRegionsOpaque, 
+                                       Set<String> ignoreNodes, boolean isRow) {
+    //
+    // If we are making regions opaque, any group cell is required:
+    //
+    if (makeRegionsOpaque && groupCoversLine(line, otherBounds, isRow)) {
+      return (Boolean.FALSE);
+    }
+    OccupancyTally tally = (isRow) ? rowTally_ : colTally_;
+    if (tally.count(line, OCC_REQUIRED_) == 0) {
+      return (Boolean.TRUE);
+    }
+    if (otherBounds != null) {
+      return (null);
+    }
+    if (tally.count(line, OCC_REQ_NON_NODE_) > 0) {
+      return (Boolean.FALSE);
+    }
+    return ((ignoreNodes == null) ? Boolean.FALSE : null);
+  }
+  
   /***************************************************************************
   **
   ** Write a modified 
@@ -4336,6 +4518,13 @@ public class LinkPlacementGrid {
   */
   
   public MinMax getMinMaxYForRange(MinMax xRange, BTProgressMonitor monitor) throws AsynchExitRequestException {
+    if ((monitor != null) && !monitor.keepGoing()) {
+      throw new AsynchExitRequestException();
+    }
+    if (xRange == null) {
+      return (occupiedRange(true));
+    }
+    
     //
     // Go through the keys for the given range and return the
     // minimum.
@@ -4343,9 +4532,6 @@ public class LinkPlacementGrid {
     
     int minValue = Integer.MAX_VALUE;
     int maxValue = Integer.MIN_VALUE;
-    if ((monitor != null) && !monitor.keepGoing()) {
-      throw new AsynchExitRequestException();
-    }
     Iterator<Point> kit = new PatternIterator(true, false);
     while (kit.hasNext()) {
       Point pt = kit.next();
@@ -4381,6 +4567,13 @@ public class LinkPlacementGrid {
   */
   
   public MinMax getMinMaxXForRange(MinMax yRange, BTProgressMonitor monitor) throws AsynchExitRequestException {
+    if ((monitor != null) && !monitor.keepGoing()) {
+      throw new AsynchExitRequestException();
+    }
+    if (yRange == null) {
+      return (occupiedRange(false));
+    }
+    
     //
     // Go through the keys for the given range and return the
     // minimum.
@@ -6322,6 +6515,10 @@ public class LinkPlacementGrid {
   */
   
   private boolean rowIsEmpty(int y, MinMax xBounds, boolean makeRegionsOpaque, Set<String> ignoreNodes) {
+    Boolean fromTally = lineIsEmptyFromTally(y, xBounds, makeRegionsOpaque, ignoreNodes, true);
+    if (fromTally != null) {
+      return (fromTally.booleanValue());
+    }
     if (xBounds != null) {
       Point pt = new Point(xBounds.min, y);
       for (int i = xBounds.min; i <= xBounds.max; i++) {
@@ -6368,6 +6565,12 @@ public class LinkPlacementGrid {
     if (!reversable) {
       return (true);
     }
+    //
+    // Only node cells stacked on node cells can block:
+    //
+    if ((rowTally_.count(y, OCC_NODE_) == 0) || (rowTally_.count(y - 1, OCC_NODE_) == 0)) {
+      return (true);
+    }
     ArrayList<String> nodeList = new ArrayList<String>();
     ArrayList<String> neighborList = new ArrayList<String>();
     Point pt = new Point(xBounds.min, y);
@@ -6419,6 +6622,10 @@ public class LinkPlacementGrid {
   */
   
   private boolean columnIsEmpty(int x, MinMax yBounds, boolean makeRegionsOpaque, Set<String> ignoreNodes) {
+    Boolean fromTally = lineIsEmptyFromTally(x, yBounds, makeRegionsOpaque, ignoreNodes, false);
+    if (fromTally != null) {
+      return (fromTally.booleanValue());
+    }
     if (yBounds != null) {
       Point pt = new Point(x, yBounds.min);
       for (int i = yBounds.min; i <= yBounds.max; i++) {
@@ -6464,6 +6671,12 @@ public class LinkPlacementGrid {
     if (!reversable) {
       return (true);
     }
+    //
+    // Only node cells next to node cells can block:
+    //
+    if ((colTally_.count(x, OCC_NODE_) == 0) || (colTally_.count(x - 1, OCC_NODE_) == 0)) {
+      return (true);
+    }
     ArrayList<String> nodeList = new ArrayList<String>();
     ArrayList<String> neighborList = new ArrayList<String>();
     Point pt = new Point(x, yBounds.min);
@@ -9882,6 +10095,83 @@ public class LinkPlacementGrid {
   ////////////////////////////////////////////////////////////////////////////
   
   
+  /***************************************************************************
+  **
+  ** Per-row (or per-column) counts of occupied cells, broken out by the kind of
+  ** contents, maintained as cells are written.
+  */
+  
+  private static class OccupancyTally {
+    
+    private int origin_;
+    private int[][] counts_;
+     
+    OccupancyTally() {
+      origin_ = 0;
+      counts_ = new int[NUM_OCC_KINDS_][0];
+    }
+    
+    void tally(int line, int mask, int delta) {
+      ensureCapacity(line);
+      int index = line - origin_;
+      for (int i = 0; i < NUM_OCC_KINDS_; i++) {
+        if ((mask & (1 << i)) != 0) {
+          counts_[i][index] += delta;
+        }
+      }
+      return;
+    }
+    
+    int count(int line, int kind) {
+      int index = line - origin_;
+      int[] forKind = counts_[Integer.numberOfTrailingZeros(kind)];
+      if ((index < 0) || (index >= forKind.length)) {
+        return (0);
+      }
+      return (forKind[index]);
+    }
+    
+    MinMax occupiedRange() {
+      int[] occupied = counts_[Integer.numberOfTrailingZeros(OCC_OCCUPIED_)];
+      int first = -1;
+      int last = -1;
+      for (int i = 0; i < occupied.length; i++) {
+        if (occupied[i] != 0) {
+          if (first == -1) {
+            first = i;
+          }
+          last = i;
+        }
+      }
+      return ((first == -1) ? null : new MinMax(first + origin_, last + origin_));
+    }
+    
+    private void ensureCapacity(int line) {
+      int length = counts_[0].length;
+      if (length == 0) {
+        origin_ = line - 16;
+        for (int i = 0; i < NUM_OCC_KINDS_; i++) {
+          counts_[i] = new int[32];
+        }
+        return;
+      }
+      int index = line - origin_;
+      if ((index >= 0) && (index < length)) {
+        return;
+      }
+      int newOrigin = (index < 0) ? line - length : origin_;
+      int newLength = (index < 0) ? length - index + length : Math.max(length * 2, index + 1);
+      int shift = origin_ - newOrigin;
+      for (int i = 0; i < NUM_OCC_KINDS_; i++) {
+        int[] bigger = new int[newLength];
+        System.arraycopy(counts_[i], 0, bigger, shift, length);
+        counts_[i] = bigger;
+      }
+      origin_ = newOrigin;
+      return;
+    }
+  }
+  
   /***************************************************************************
   **
   ** Used to iterate over a pattern, including grid entries for groups if requested
@@ -34,12 +34,14 @@ public class MultiUrlRetrievalWorker implements Runnable, UrlRetrievalWorkerClie
   private UrlRetrievalWorkerClient client_;
   private ArrayList theUrls_;
   private ResourceManager rMan_;
+  private boolean cancelled_;
  
   public MultiUrlRetrievalWorker(List theUrls, UrlRetrievalWorkerClient client, ResourceManager rMan) {
     client_ = client;
     theUrls_ = new ArrayList(theUrls);
     myResults_ = new ArrayList();
     rMan_ = rMan;
+    cancelled_ = false;
   }
   
   public void run() {
@@ -51,11 +53,30 @@ public class MultiUrlRetrievalWorker implements Runnable, UrlRetrievalWorkerClie
         buf.append((String)theUrls_.get(i));
       }
       fakeKey_ = buf.toString();
+      Thread[] fetchers = new Thread[numUrls];
       for (int i = 0; i < numUrls; i++) {
         String url = (String)theUrls_.get(i);
         UrlRetrievalWorker worker = new UrlRetrievalWorker(url, this, rMan_);
-        Thread runThread = new Thread(worker);
-        runThread.start();
+        fetchers[i] = new Thread(worker, "UrlRetrieval-" + i);
+        fetchers[i].setDaemon(true);
+        fetchers[i].start();
+      }
+      //
+      // Stay running until the fetches are done, so whoever runs us can
+      // cancel them by interrupting this thread:
+      //
+      try {
+        for (int i = 0; i < numUrls; i++) {
+          fetchers[i].join();
+        }
+      } catch (InterruptedException iex) {
+        synchronized (this) {
+          cancelled_ = true;
+        }
+        for (int i = 0; i < numUrls; i++) {
+          fetchers[i].interrupt();
+        }
+        return;
       }
       // To clear "pending" status:
       if (numUrls == 0) {
@@ -69,7 +90,10 @@ public class MultiUrlRetrievalWorker implements Runnable, UrlRetrievalWorkerClie
   
   public void retrievedResult(String theUrl, String result) {
     final String thisResult;
-    synchronized (this) {     
+    synchronized (this) {
+      if (cancelled_) {
+        return;
+      }
       int numUrls = theUrls_.size();    
       for (int i = 0; i < numUrls; i++) {
         String url = (String)theUrls_.get(i);
@@ -27,7 +27,11 @@ import java.util.Iterator;
 
 /****************************************************************************
 **
-** A class for laying out patterns
+** A class for laying out patterns.  Single cells live in 64x64 chunks, each
+** holding one occupancy bit per cell (a long per row) plus an interned value
+** ID per cell.  A reverse index maps each value to the chunks holding it.
+** Copies share chunks and index entries until one side writes to them, so
+** nondestructivePlace() only pays for the chunks it changes.
 */
 
 public class PatternGrid {
@@ -37,6 +41,10 @@ public class PatternGrid {
   // PRIVATE CONSTANTS
   //
   //////////////////////////////////////////////////////////////////////////// 
+
+  private static final int CHUNK_SHIFT_ = 6;
+  private static final int CHUNK_SIZE_ = 1 << CHUNK_SHIFT_;
+  private static final int CHUNK_MASK_ = CHUNK_SIZE_ - 1;
    
   ////////////////////////////////////////////////////////////////////////////
   //
@@ -50,8 +58,11 @@ public class PatternGrid {
   //
   ////////////////////////////////////////////////////////////////////////////
   
-  private HashMap pattern_;
-  private ArrayList rects_;
+  private HashMap<Long, Chunk> chunks_;
+  private ArrayList<CellIndex> index_;
+  private ValueTable values_;
+  private ArrayList<RectWithID> rects_;
+  private Chunk lastChunk_;
   
   ////////////////////////////////////////////////////////////////////////////
   //
@@ -65,30 +76,42 @@ public class PatternGrid {
   */
 
   public PatternGrid() {
-    pattern_ = new HashMap();
-    rects_ = new ArrayList();
+    chunks_ = new HashMap<Long, Chunk>();
+    index_ = new ArrayList<CellIndex>();
+    index_.add(null);
+    values_ = new ValueTable();
+    rects_ = new ArrayList<RectWithID>();
+    lastChunk_ = null;
   }
   
   /***************************************************************************
   **
-  ** Copy Constructor (deep - except shared Strings)
+  ** Copy Constructor.  Chunks, index entries, and the value table are shared
+  ** until somebody writes to them.  The shared pieces get frozen, so whichever
+  ** grid writes first makes its own copy.
   */
 
   public PatternGrid(PatternGrid other) {
-    this.pattern_ = new HashMap();
-    Iterator kit = other.pattern_.keySet().iterator();
-    while (kit.hasNext()) {
-      Point pt = (Point)kit.next();
-      String gval = (String)other.pattern_.get(pt);
-      this.pattern_.put(new Point(pt), gval);
+    Iterator<Chunk> cit = other.chunks_.values().iterator();
+    while (cit.hasNext()) {
+      cit.next().shared = true;
     }
-    
-    this.rects_ = new ArrayList();
-    int numRect = other.rects_.size();
-    for (int i = 0; i < numRect; i++) {
-      RectWithID rect = (RectWithID)other.rects_.get(i);
-      this.rects_.add(new RectWithID(rect));
-    } 
+    Iterator<CellIndex> iit = other.index_.iterator();
+    while (iit.hasNext()) {
+      CellIndex ci = iit.next();
+      if (ci != null) {
+        ci.shared = true;
+      }
+    }
+    other.values_.shared = true;
+    this.chunks_ = new HashMap<Long, Chunk>(other.chunks_);
+    this.index_ = new ArrayList<CellIndex>(other.index_);
+    this.values_ = other.values_;
+    //
+    // Rectangles are never changed once placed, so they can be shared:
+    //
+    this.rects_ = new ArrayList<RectWithID>(other.rects_);
+    this.lastChunk_ = null;
   }
 
   ////////////////////////////////////////////////////////////////////////////
@@ -106,8 +129,23 @@ public class PatternGrid {
     if (val == null) {
       throw new IllegalArgumentException();
     }
-    Point pt = new Point(x, y);
-    pattern_.put(pt, val);
+    int id = internValue(val);
+    Chunk chunk = writableChunk(x >> CHUNK_SHIFT_, y >> CHUNK_SHIFT_, true);
+    int lx = x & CHUNK_MASK_;
+    int ly = y & CHUNK_MASK_;
+    int cell = (ly << CHUNK_SHIFT_) | lx;
+    int oldID = chunk.vals[cell];
+    if (oldID == id) {
+      return;
+    }
+    if (oldID != 0) {
+      changeIndex(oldID, chunk.key, -1);
+    } else {
+      chunk.occ[ly] |= (1L << lx);
+      chunk.count++;
+    }
+    chunk.vals[cell] = id;
+    changeIndex(id, chunk.key, 1);
     return;
   }
   
@@ -117,19 +155,19 @@ public class PatternGrid {
   */
   
   public String getValue(int x, int y) {
-    Point pt = new Point(x, y);
-    
-    String retval = (String)pattern_.get(pt);
-    if (retval != null) {
-      return (retval);
+    Chunk chunk = readChunk(x >> CHUNK_SHIFT_, y >> CHUNK_SHIFT_);
+    if (chunk != null) {
+      int id = chunk.vals[((y & CHUNK_MASK_) << CHUNK_SHIFT_) | (x & CHUNK_MASK_)];
+      if (id != 0) {
+        return (values_.names.get(id));
+      }
     }
     
     int numRect = rects_.size();
     for (int i = 0; i < numRect; i++) {
-      RectWithID rectwid = (RectWithID)rects_.get(i);
-      Rectangle rect = rectwid.rect;
+      Rectangle rect = rects_.get(i).rect;
       if ((x >= rect.x) && (y >= rect.y) && (x < (rect.x + rect.width)) && (y < (rect.y + rect.height))) {
-        return (rectwid.id);
+        return (rects_.get(i).id);
       }
     }
     return (null);
@@ -145,18 +183,25 @@ public class PatternGrid {
     if (value == null) {
       throw new IllegalArgumentException();
     }
-    Iterator kit = pattern_.keySet().iterator();
-    while (kit.hasNext()) {
-      Point pt = (Point)kit.next();
-      String gval = (String)pattern_.get(pt);
-      if (value.equals(gval)) {
-        return (pt);
+    Integer id = values_.ids.get(value);
+    if (id != null) {
+      int idVal = id.intValue();
+      CellIndex ci = index_.get(idVal);
+      if ((ci != null) && !ci.counts.isEmpty()) {
+        Chunk chunk = chunks_.get(ci.counts.keySet().iterator().next());
+        for (int i = 0; i < chunk.vals.length; i++) {
+          if (chunk.vals[i] == idVal) {
+            return (new Point((chunk.cx << CHUNK_SHIFT_) + (i & CHUNK_MASK_),
+                              (chunk.cy << CHUNK_SHIFT_) + (i >> CHUNK_SHIFT_)));
+          }
+        }
+        throw new IllegalStateException();
       }
     }
     
     int numRect = rects_.size();
     for (int i = 0; i < numRect; i++) {
-      RectWithID rect = (RectWithID)rects_.get(i);
+      RectWithID rect = rects_.get(i);
       if (value.equals(rect.id)) {
         return (new Point(rect.rect.x, rect.rect.y));
       }
@@ -198,19 +243,11 @@ public class PatternGrid {
           RectWithID rwid = new RectWithID(val, rect);
           rects_.add(0, rwid);
         }
-      }
-      //
-      // Entries in the pattern map take precedence, so any intersection
-      // needs to be nulled out:
-      //
-      Point pt = new Point(0, 0);
-      for (int x = 0; x < maxX; x++) {
-        for (int y = 0; y < maxY; y++) {
-          pt.setLocation(px + x, py + y);
-          if (pattern_.containsKey(pt)) {
-            pattern_.remove(pt);
-          }
-        }
+        //
+        // Single cells take precedence, so any intersection
+        // needs to be nulled out:
+        //
+        clearBox(px, py, maxX, maxY);
       }       
       return;
     }
@@ -242,29 +279,78 @@ public class PatternGrid {
   public boolean emptyIntersection(Pattern pat, int px, int py) {
     int maxX = pat.getWidth();
     int maxY = pat.getHeight();
-    
+    if ((maxX <= 0) || (maxY <= 0)) {
+      return (true);
+    }   
+
+    Rectangle pRect = new Rectangle(px, py, maxX, maxY);
+    boolean isBox = pat.isFilledBox();
+
     //
-    // Quick kill of rectangle intersections:
-    
-    if (pat.isFilledBox() && pattern_.isEmpty()) {
-      Rectangle pRect = new Rectangle(px, py, maxX, maxY);
-      int numRect = rects_.size();
-      for (int i = 0; i < numRect; i++) {
-        RectWithID rect = (RectWithID)rects_.get(i);
-        if (rect.rect.intersects(pRect)) {
-          return (false);
+    // Quick kill of rectangle intersections.  For a filled box, that is
+    // the end of it; otherwise we need to look at the cells in the overlap.
+    //
+
+    int numRect = rects_.size();
+    for (int i = 0; i < numRect; i++) {
+      Rectangle rect = rects_.get(i).rect;
+      if (!rect.intersects(pRect)) {
+        continue;
+      }
+      if (isBox) {
+        return (false);
+      }
+      Rectangle inter = rect.intersection(pRect);
+      int endX = inter.x + inter.width;
+      int endY = inter.y + inter.height;
+      for (int x = inter.x; x < endX; x++) {
+        for (int y = inter.y; y < endY; y++) {
+          if (pat.getValue(x - px, y - py) != null) {
+            return (false);
+          }
         }
       }
+    }
+
+    if (chunks_.isEmpty()) {
       return (true);
-    }   
+    }
 
-    for (int x = 0; x < maxX; x++) {
-      for (int y = 0; y < maxY; y++) {
-        String patValue = pat.getValue(x, y);
-        String myValue = getValue(px + x, py + y);
-        if ((patValue != null) && (myValue != null)) {
-          return (false);
+    if (isBox) {
+      return (!anyOccupied(px, py, maxX, maxY));
+    }
+
+    //
+    // Build up the pattern row a word at a time and AND it against the
+    // occupancy rows:
+    //
+
+    int endX = px + maxX - 1;
+    for (int y = 0; y < maxY; y++) {
+      int gy = py + y;
+      int cy = gy >> CHUNK_SHIFT_;
+      int ly = gy & CHUNK_MASK_;
+      int gx = px;
+      while (gx <= endX) {
+        int cx = gx >> CHUNK_SHIFT_;
+        int base = cx << CHUNK_SHIFT_;
+        int windowEnd = Math.min(endX, base + CHUNK_MASK_);
+        Chunk chunk = readChunk(cx, cy);
+        if (chunk != null) {
+          long occRow = chunk.occ[ly];
+          if ((occRow & colMask(gx - base, windowEnd - base)) != 0L) {
+            long patRow = 0L;
+            for (int x = gx; x <= windowEnd; x++) {
+              if (pat.getValue(x - px, y) != null) {
+                patRow |= (1L << (x - base));
+              }
+            }
+            if ((patRow & occRow) != 0L) {
+              return (false);
+            }
+          }
         }
+        gx = windowEnd + 1;
       }
     }    
     return (true);
@@ -279,34 +365,44 @@ public class PatternGrid {
   
   public MinMax getMinMaxYForRange(MinMax xRange) {
     //
-    // Go through the keys for the given range and return the
+    // Go through the chunks for the given range and return the
     // minimum.
     //
     
     int minValue = Integer.MAX_VALUE;
     int maxValue = Integer.MIN_VALUE;
     
-    Iterator kit = pattern_.keySet().iterator();
-    while (kit.hasNext()) {
-      Point pt = (Point)kit.next();
-      String gval = (String)pattern_.get(pt);
-      if (gval == null) {
-        continue;
+    Iterator<Chunk> cit = chunks_.values().iterator();
+    while (cit.hasNext()) {
+      Chunk chunk = cit.next();
+      int base = chunk.cx << CHUNK_SHIFT_;
+      long mask = -1L;
+      if (xRange != null) {
+        int lo = Math.max(xRange.min - base, 0);
+        int hi = Math.min(xRange.max - base, CHUNK_MASK_);
+        if (lo > hi) {
+          continue;
+        }
+        mask = colMask(lo, hi);
       }
-      if ((xRange == null) || ((pt.x >= xRange.min) && (pt.x <= xRange.max))) {
-        if (pt.y < minValue) {
-          minValue = pt.y;
+      int yBase = chunk.cy << CHUNK_SHIFT_;
+      for (int ly = 0; ly < CHUNK_SIZE_; ly++) {
+        if ((chunk.occ[ly] & mask) != 0L) {
+          minValue = Math.min(minValue, yBase + ly);
+          break;
         }
-        if (pt.y > maxValue) {
-          maxValue = pt.y;
+      }
+      for (int ly = CHUNK_MASK_; ly >= 0; ly--) {
+        if ((chunk.occ[ly] & mask) != 0L) {
+          maxValue = Math.max(maxValue, yBase + ly);
+          break;
         }
       }
     }
     
     int numRect = rects_.size();
     for (int i = 0; i < numRect; i++) {
-      RectWithID rectwid = (RectWithID)rects_.get(i);
-      Rectangle rect = rectwid.rect;
+      Rectangle rect = rects_.get(i).rect;
       if (rect.y < minValue) {
         minValue = rect.y;
       }
@@ -332,34 +428,38 @@ public class PatternGrid {
   
   public MinMax getMinMaxXForRange(MinMax yRange) {
     //
-    // Go through the keys for the given range and return the
+    // Go through the chunks for the given range and return the
     // minimum.
     //
     
     int minValue = Integer.MAX_VALUE;
     int maxValue = Integer.MIN_VALUE;
     
-    Iterator kit = pattern_.keySet().iterator();
-    while (kit.hasNext()) {
-      Point pt = (Point)kit.next();
-      String gval = (String)pattern_.get(pt);
-      if (gval == null) {
-        continue;
+    Iterator<Chunk> cit = chunks_.values().iterator();
+    while (cit.hasNext()) {
+      Chunk chunk = cit.next();
+      int base = chunk.cy << CHUNK_SHIFT_;
+      int lo = 0;
+      int hi = CHUNK_MASK_;
+      if (yRange != null) {
+        lo = Math.max(yRange.min - base, 0);
+        hi = Math.min(yRange.max - base, CHUNK_MASK_);
       }
-      if ((yRange == null) || ((pt.y >= yRange.min) && (pt.y <= yRange.max))) {
-        if (pt.x < minValue) {
-          minValue = pt.x;
-        }
-        if (pt.x > maxValue) {
-          maxValue = pt.x;
-        }
+      long cols = 0L;
+      for (int ly = lo; ly <= hi; ly++) {
+        cols |= chunk.occ[ly];
       }
+      if (cols == 0L) {
+        continue;
+      }
+      int xBase = chunk.cx << CHUNK_SHIFT_;
+      minValue = Math.min(minValue, xBase + Long.numberOfTrailingZeros(cols));
+      maxValue = Math.max(maxValue, xBase + CHUNK_MASK_ - Long.numberOfLeadingZeros(cols));
     }
     
     int numRect = rects_.size();
     for (int i = 0; i < numRect; i++) {
-      RectWithID rectwid = (RectWithID)rects_.get(i);
-      Rectangle rect = rectwid.rect;
+      Rectangle rect = rects_.get(i).rect;
       if (rect.x < minValue) {
         minValue = rect.x;
       }
@@ -445,11 +545,6 @@ public class PatternGrid {
   //
   //////////////////////////////////////////////////////////////////////////// 
 
-  ////////////////////////////////////////////////////////////////////////////
-  //
-  // PUBLIC INNER CLASSES
-  //
-  ////////////////////////////////////////////////////////////////////////////
   ////////////////////////////////////////////////////////////////////////////
   //
   // PUBLIC INNER CLASSES
@@ -461,6 +556,212 @@ public class PatternGrid {
   // PRIVATE INSTANCE METHODS
   //
   ////////////////////////////////////////////////////////////////////////////  
+
+  /***************************************************************************
+  **
+  ** Chunk key
+  */
+
+  private static long chunkKey(int cx, int cy) {
+    return ((((long)cx) << 32) | (cy & 0xffffffffL));
+  }
+
+  /***************************************************************************
+  **
+  ** Bit mask covering columns lo through hi (inclusive) of a chunk row
+  */
+
+  private static long colMask(int lo, int hi) {
+    return ((-1L >>> (CHUNK_MASK_ - hi)) & (-1L << lo));
+  }
+
+  /***************************************************************************
+  **
+  ** Get the chunk for reading; may be null.  Remembers the last hit so runs of
+  ** lookups in the same chunk skip the map.
+  */
+
+  private Chunk readChunk(int cx, int cy) {
+    if ((lastChunk_ != null) && (lastChunk_.cx == cx) && (lastChunk_.cy == cy)) {
+      return (lastChunk_);
+    }
+    Chunk retval = chunks_.get(Long.valueOf(chunkKey(cx, cy)));
+    if (retval != null) {
+      lastChunk_ = retval;
+    }
+    return (retval);
+  }
+
+  /***************************************************************************
+  **
+  ** Get a chunk we are allowed to write to, copying a shared one first.  If
+  ** not there, it is created if asked for, else we return null.
+  */
+
+  private Chunk writableChunk(int cx, int cy, boolean create) {
+    Chunk retval = readChunk(cx, cy);
+    if (retval == null) {
+      if (!create) {
+        return (null);
+      }
+      retval = new Chunk(cx, cy);
+      chunks_.put(retval.key, retval);
+    } else if (retval.shared) {
+      retval = new Chunk(retval);
+      chunks_.put(retval.key, retval);
+    } else {
+      return (retval);
+    }
+    lastChunk_ = retval;
+    return (retval);
+  }
+
+  /***************************************************************************
+  **
+  ** Get the ID for a value, adding it to the table if needed
+  */
+
+  private int internValue(String val) {
+    Integer id = values_.ids.get(val);
+    if (id != null) {
+      return (id.intValue());
+    }
+    if (values_.shared) {
+      values_ = new ValueTable(values_);
+    }
+    int retval = values_.names.size();
+    values_.names.add(val);
+    values_.ids.put(val, Integer.valueOf(retval));
+    while (index_.size() <= retval) {
+      index_.add(null);
+    }
+    return (retval);
+  }
+
+  /***************************************************************************
+  **
+  ** Bump the count of cells with the given value in the given chunk
+  */
+
+  private void changeIndex(int id, Long key, int delta) {
+    CellIndex ci = index_.get(id);
+    if (ci == null) {
+      ci = new CellIndex();
+      index_.set(id, ci);
+    } else if (ci.shared) {
+      ci = new CellIndex(ci);
+      index_.set(id, ci);
+    }
+    int[] count = ci.counts.get(key);
+    if (count == null) {
+      count = new int[1];
+      ci.counts.put(key, count);
+    }
+    count[0] += delta;
+    if (count[0] <= 0) {
+      ci.counts.remove(key);
+    }
+    return;
+  }
+
+  /***************************************************************************
+  **
+  ** Find the chunks overlapping the given box.  For a big box, it is cheaper to
+  ** go through the chunks we have than to probe for every possible one.
+  */
+
+  private ArrayList<Chunk> chunksInBox(int x, int y, int w, int h) {
+    ArrayList<Chunk> retval = new ArrayList<Chunk>();
+    int minCX = x >> CHUNK_SHIFT_;
+    int maxCX = (x + w - 1) >> CHUNK_SHIFT_;
+    int minCY = y >> CHUNK_SHIFT_;
+    int maxCY = (y + h - 1) >> CHUNK_SHIFT_;
+    long probes = ((long)(maxCX - minCX + 1)) * ((long)(maxCY - minCY + 1));
+    if (probes > chunks_.size()) {
+      Iterator<Chunk> cit = chunks_.values().iterator();
+      while (cit.hasNext()) {
+        Chunk chunk = cit.next();
+        if ((chunk.cx >= minCX) && (chunk.cx <= maxCX) && (chunk.cy >= minCY) && (chunk.cy <= maxCY)) {
+          retval.add(chunk);
+        }
+      }
+    } else {
+      for (int cx = minCX; cx <= maxCX; cx++) {
+        for (int cy = minCY; cy <= maxCY; cy++) {
+          Chunk chunk = readChunk(cx, cy);
+          if (chunk != null) {
+            retval.add(chunk);
+          }
+        }
+      }
+    }
+    return (retval);
+  }
+
+  /***************************************************************************
+  **
+  ** Answer if any single cell in the box is occupied
+  */
+
+  private boolean anyOccupied(int x, int y, int w, int h) {
+    ArrayList<Chunk> inBox = chunksInBox(x, y, w, h);
+    int numChunk = inBox.size();
+    for (int i = 0; i < numChunk; i++) {
+      Chunk chunk = inBox.get(i);
+      int xBase = chunk.cx << CHUNK_SHIFT_;
+      int yBase = chunk.cy << CHUNK_SHIFT_;
+      long mask = colMask(Math.max(x - xBase, 0), Math.min(x + w - 1 - xBase, CHUNK_MASK_));
+      int loY = Math.max(y - yBase, 0);
+      int hiY = Math.min(y + h - 1 - yBase, CHUNK_MASK_);
+      for (int ly = loY; ly <= hiY; ly++) {
+        if ((chunk.occ[ly] & mask) != 0L) {
+          return (true);
+        }
+      }
+    }
+    return (false);
+  }
+
+  /***************************************************************************
+  **
+  ** Clear out all single cells in the box
+  */
+
+  private void clearBox(int x, int y, int w, int h) {
+    ArrayList<Chunk> inBox = chunksInBox(x, y, w, h);
+    int numChunk = inBox.size();
+    for (int i = 0; i < numChunk; i++) {
+      Chunk chunk = inBox.get(i);
+      int xBase = chunk.cx << CHUNK_SHIFT_;
+      int yBase = chunk.cy << CHUNK_SHIFT_;
+      long mask = colMask(Math.max(x - xBase, 0), Math.min(x + w - 1 - xBase, CHUNK_MASK_));
+      int loY = Math.max(y - yBase, 0);
+      int hiY = Math.min(y + h - 1 - yBase, CHUNK_MASK_);
+      for (int ly = loY; ly <= hiY; ly++) {
+        long hits = chunk.occ[ly] & mask;
+        if (hits == 0L) {
+          continue;
+        }
+        if (chunk.shared) {
+          chunk = writableChunk(chunk.cx, chunk.cy, false);
+        }
+        chunk.occ[ly] &= ~hits;
+        while (hits != 0L) {
+          int lx = Long.numberOfTrailingZeros(hits);
+          hits &= (hits - 1L);
+          int cell = (ly << CHUNK_SHIFT_) | lx;
+          changeIndex(chunk.vals[cell], chunk.key, -1);
+          chunk.vals[cell] = 0;
+          chunk.count--;
+        }
+      }
+      if (chunk.count == 0) {
+        chunks_.remove(chunk.key);
+        lastChunk_ = null;
+      }
+    }
+    return;
+  }
   
   ////////////////////////////////////////////////////////////////////////////
   //
@@ -476,10 +777,90 @@ public class PatternGrid {
       this.id = id;
       this.rect = (Rectangle)rect.clone();
     }
+  }
     
-    RectWithID(RectWithID other) {
-      this.id = other.id;
-      this.rect = (Rectangle)other.rect.clone();
+  /***************************************************************************
+  **
+  ** A square of cells: one occupancy word per row, plus the value IDs (zero
+  ** for empty).  Once shared by a copy it is frozen, and writers copy it first.
+  */
+
+  private static class Chunk {
+    int cx;
+    int cy;
+    Long key;
+    boolean shared;
+    long[] occ;
+    int[] vals;
+    int count;
+
+    Chunk(int cx, int cy) {
+      this.cx = cx;
+      this.cy = cy;
+      this.key = Long.valueOf(chunkKey(cx, cy));
+      this.shared = false;
+      this.occ = new long[CHUNK_SIZE_];
+      this.vals = new int[CHUNK_SIZE_ * CHUNK_SIZE_];
+      this.count = 0;
+    }
+
+    Chunk(Chunk other) {
+      this.cx = other.cx;
+      this.cy = other.cy;
+      this.key = other.key;
+      this.shared = false;
+      this.occ = other.occ.clone();
+      this.vals = other.vals.clone();
+      this.count = other.count;
+    }
+  }
+
+  /***************************************************************************
+  **
+  ** Which chunks hold a given value, with cell counts
+  */
+
+  private static class CellIndex {
+    boolean shared;
+    HashMap<Long, int[]> counts;
+
+    CellIndex() {
+      this.shared = false;
+      this.counts = new HashMap<Long, int[]>();
+    }
+
+    CellIndex(CellIndex other) {
+      this.shared = false;
+      this.counts = new HashMap<Long, int[]>();
+      Iterator<Long> kit = other.counts.keySet().iterator();
+      while (kit.hasNext()) {
+        Long key = kit.next();
+        this.counts.put(key, new int[] {other.counts.get(key)[0]});
+      }
+    }
+  }
+
+  /***************************************************************************
+  **
+  ** Interned values.  ID zero is reserved for empty cells.
+  */
+
+  private static class ValueTable {
+    boolean shared;
+    ArrayList<String> names;
+    HashMap<String, Integer> ids;
+
+    ValueTable() {
+      this.shared = false;
+      this.names = new ArrayList<String>();
+      this.names.add(null);
+      this.ids = new HashMap<String, Integer>();
+    }
+
+    ValueTable(ValueTable other) {
+      this.shared = false;
+      this.names = new ArrayList<String>(other.names);
+      this.ids = new HashMap<String, Integer>(other.ids);
     }   
   }
 }
@@ -0,0 +1,417 @@
+/*
+**    Copyright (C) 2003-2013 Institute for Systems Biology
+**                            Seattle, Washington, USA.
+**
+**    This library is free software; you can redistribute it and/or
+**    modify it under the terms of the GNU Lesser General Public
+**    License as published by the Free Software Foundation; either
+**    version 2.1 of the License, or (at your option) any later version.
+**
+**    This library is distributed in the hope that it will be useful,
+**    but WITHOUT ANY WARRANTY; without even the implied warranty of
+**    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+**    Lesser General Public License for more details.
+**
+**    You should have received a copy of the GNU Lesser General Public
+**    License along with this library; if not, write to the Free Software
+**    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+package org.systemsbiology.biotapestry.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/****************************************************************************
+**
+** Finds which axis-aligned segments might touch each other.  Segments are
+** indexed as whole runs, not as points binned along their length, so the cost
+** is O((n + k) log n) for n segments and k touching pairs no matter how long
+** the segments are.  Horizontal-vertical contacts come from a sweep-line over X
+** with the live horizontal runs keyed by Y.  Parallel contacts come from a sweep
+** of each row (or column) of runs sorted by start.
+**
+** Answers are conservative: every pair within the tolerance of each other is
+** reported, and the caller does the exact geometry test.  The arrays are kept
+** between uses, so one index can be cleared and refilled for each pass.
+*/
+
+public class SegmentIndex {
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE CONSTANTS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  private static final double DEFAULT_TOLERANCE_ = 1.0;
+
+  private static final int INSERT_ = 0;
+  private static final int QUERY_  = 1;
+  private static final int REMOVE_ = 2;
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE VARIABLES
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  private double tolerance_;
+  private int count_;
+  private double[] minX_;
+  private double[] maxX_;
+  private double[] minY_;
+  private double[] maxY_;
+  private boolean[] isVert_;
+
+  private int numPairs_;
+  private int[] pairA_;
+  private int[] pairB_;
+
+  private int[] contactStart_;
+  private int[] contacts_;
+  private boolean ready_;
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC CONSTRUCTORS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Constructor
+  */
+
+  public SegmentIndex() {
+    this(DEFAULT_TOLERANCE_);
+  }
+
+  /***************************************************************************
+  **
+  ** Constructor
+  */
+
+  public SegmentIndex(double tolerance) {
+    tolerance_ = tolerance;
+    minX_ = new double[16];
+    maxX_ = new double[16];
+    minY_ = new double[16];
+    maxY_ = new double[16];
+    isVert_ = new boolean[16];
+    pairA_ = new int[16];
+    pairB_ = new int[16];
+    contactStart_ = new int[17];
+    contacts_ = new int[32];
+    clear();
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PUBLIC METHODS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Drop all the segments, but hang onto the storage
+  */
+
+  public void clear() {
+    count_ = 0;
+    numPairs_ = 0;
+    ready_ = false;
+    return;
+  }
+
+  /***************************************************************************
+  **
+  ** Add a horizontal or vertical segment.  Segments are numbered in the order
+  ** they are added, starting at zero; that number is returned.
+  */
+
+  public int addSegment(double startX, double startY, double endX, double endY) {
+    boolean isVert;
+    if (startY == endY) {
+      isVert = false;
+    } else if (startX == endX) {
+      isVert = true;
+    } else {
+      throw new IllegalArgumentException();
+    }
+    if (count_ == minX_.length) {
+      int newSize = count_ * 2;
+      minX_ = Arrays.copyOf(minX_, newSize);
+      maxX_ = Arrays.copyOf(maxX_, newSize);
+      minY_ = Arrays.copyOf(minY_, newSize);
+      maxY_ = Arrays.copyOf(maxY_, newSize);
+      isVert_ = Arrays.copyOf(isVert_, newSize);
+    }
+    minX_[count_] = Math.min(startX, endX);
+    maxX_[count_] = Math.max(startX, endX);
+    minY_[count_] = Math.min(startY, endY);
+    maxY_[count_] = Math.max(startY, endY);
+    isVert_[count_] = isVert;
+    ready_ = false;
+    return (count_++);
+  }
+
+  /***************************************************************************
+  **
+  ** Get the number of segments
+  */
+
+  public int size() {
+    return (count_);
+  }
+
+  /***************************************************************************
+  **
+  ** Get the segments that might touch the given one, in increasing order.
+  */
+
+  public int[] getContacts(int segment) {
+    if ((segment < 0) || (segment >= count_)) {
+      throw new IllegalArgumentException();
+    }
+    if (!ready_) {
+      findContacts();
+    }
+    return (Arrays.copyOfRange(contacts_, contactStart_[segment], contactStart_[segment + 1]));
+  }
+
+  /***************************************************************************
+  **
+  ** Get the count of touching pairs
+  */
+
+  public int pairCount() {
+    if (!ready_) {
+      findContacts();
+    }
+    return (numPairs_);
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  //
+  // PRIVATE METHODS
+  //
+  ////////////////////////////////////////////////////////////////////////////
+
+  /***************************************************************************
+  **
+  ** Run the sweeps and build the per-segment contact lists
+  */
+
+  private void findContacts() {
+    numPairs_ = 0;
+    ArrayList<Integer> horiz = new ArrayList<Integer>();
+    ArrayList<Integer> vert = new ArrayList<Integer>();
+    for (int i = 0; i < count_; i++) {
+      if (isVert_[i]) {
+        vert.add(new Integer(i));
+      } else {
+        horiz.add(new Integer(i));
+      }
+    }
+    parallelContacts(horiz, minY_, minX_, maxX_);
+    parallelContacts(vert, minX_, minY_, maxY_);
+    crossingContacts(horiz, vert);
+
+    //
+    // Pack the pairs into per-segment lists:
+    //
+
+    if (contactStart_.length < count_ + 1) {
+      contactStart_ = new int[count_ + 1];
+    }
+    Arrays.fill(contactStart_, 0, count_ + 1, 0);
+    for (int i = 0; i < numPairs_; i++) {
+      contactStart_[pairA_[i] + 1]++;
+      contactStart_[pairB_[i] + 1]++;
+    }
+    for (int i = 0; i < count_; i++) {
+      contactStart_[i + 1] += contactStart_[i];
+    }
+    int total = contactStart_[count_];
+    if (contacts_.length < total) {
+      contacts_ = new int[total];
+    }
+    int[] fill = Arrays.copyOf(contactStart_, count_);
+    for (int i = 0; i < numPairs_; i++) {
+      contacts_[fill[pairA_[i]]++] = pairB_[i];
+      contacts_[fill[pairB_[i]]++] = pairA_[i];
+    }
+    for (int i = 0; i < count_; i++) {
+      Arrays.sort(contacts_, contactStart_[i], contactStart_[i + 1]);
+    }
+    ready_ = true;
+    return;
+  }
+
+  /***************************************************************************
+  **
+  ** Find contacts between runs going the same way.  Runs are grouped into
+  ** rows by their fixed coordinate, then each row is swept from low to high.
+  */
+
+  private void parallelContacts(ArrayList<Integer> segs, final double[] fixed,
+                                final double[] low, final double[] high) {
+    int numSegs = segs.size();
+    if (numSegs < 2) {
+      return;
+    }
+    Integer[] byFixed = segs.toArray(new Integer[numSegs]);
+    Arrays.sort(byFixed, new Comparator<Integer>() {
+      public int compare(Integer seg1, Integer seg2) {
+        int cmp = Double.compare(fixed[seg1.intValue()], fixed[seg2.intValue()]);
+        return ((cmp != 0) ? cmp : Double.compare(low[seg1.intValue()], low[seg2.intValue()]));
+      }
+    });
+
+    PriorityQueue<Integer> live = new PriorityQueue<Integer>(16, new Comparator<Integer>() {
+      public int compare(Integer seg1, Integer seg2) {
+        return (Double.compare(high[seg1.intValue()], high[seg2.intValue()]));
+      }
+    });
+
+    int rowStart = 0;
+    while (rowStart < numSegs) {
+      int rowEnd = rowStart + 1;
+      while ((rowEnd < numSegs) &&
+             ((fixed[byFixed[rowEnd].intValue()] - fixed[byFixed[rowEnd - 1].intValue()]) <= tolerance_)) {
+        rowEnd++;
+      }
+      //
+      // Rows built by chaining might be a bit fuzzy; sort by start again
+      // if we glued together different values:
+      //
+      if (fixed[byFixed[rowStart].intValue()] != fixed[byFixed[rowEnd - 1].intValue()]) {
+        Arrays.sort(byFixed, rowStart, rowEnd, new Comparator<Integer>() {
+          public int compare(Integer seg1, Integer seg2) {
+            return (Double.compare(low[seg1.intValue()], low[seg2.intValue()]));
+          }
+        });
+      }
+      live.clear();
+      for (int i = rowStart; i < rowEnd; i++) {
+        Integer seg = byFixed[i];
+        double start = low[seg.intValue()];
+        while (!live.isEmpty() && ((high[live.peek().intValue()] + tolerance_) < start)) {
+          live.poll();
+        }
+        Iterator<Integer> lit = live.iterator();
+        while (lit.hasNext()) {
+          addPair(lit.next().intValue(), seg.intValue());
+        }
+        live.add(seg);
+      }
+      rowStart = rowEnd;
+    }
+    return;
+  }
+
+  /***************************************************************************
+  **
+  ** Find contacts between horizontal and vertical runs.  Sweep over X; the live
+  ** horizontal runs are kept sorted by Y so each vertical run just asks for the
+  ** ones inside its Y span.
+  */
+
+  private void crossingContacts(ArrayList<Integer> horiz, ArrayList<Integer> vert) {
+    int numH = horiz.size();
+    int numV = vert.size();
+    if ((numH == 0) || (numV == 0)) {
+      return;
+    }
+    int numEvents = (2 * numH) + numV;
+    final double[] evtX = new double[numEvents];
+    final int[] evtType = new int[numEvents];
+    int[] evtSeg = new int[numEvents];
+    int count = 0;
+    for (int i = 0; i < numH; i++) {
+      int seg = horiz.get(i).intValue();
+      evtX[count] = minX_[seg] - tolerance_;
+      evtType[count] = INSERT_;
+      evtSeg[count++] = seg;
+      evtX[count] = maxX_[seg] + tolerance_;
+      evtType[count] = REMOVE_;
+      evtSeg[count++] = seg;
+    }
+    for (int i = 0; i < numV; i++) {
+      int seg = vert.get(i).intValue();
+      evtX[count] = minX_[seg];
+      evtType[count] = QUERY_;
+      evtSeg[count++] = seg;
+    }
+
+    Integer[] order = new Integer[numEvents];
+    for (int i = 0; i < numEvents; i++) {
+      order[i] = new Integer(i);
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      public int compare(Integer evt1, Integer evt2) {
+        int cmp = Double.compare(evtX[evt1.intValue()], evtX[evt2.intValue()]);
+        return ((cmp != 0) ? cmp : (evtType[evt1.intValue()] - evtType[evt2.intValue()]));
+      }
+    });
+
+    TreeMap<Double, ArrayList<Integer>> live = new TreeMap<Double, ArrayList<Integer>>();
+    for (int i = 0; i < numEvents; i++) {
+      int evt = order[i].intValue();
+      int seg = evtSeg[evt];
+      Double yKey = new Double(minY_[seg]);
+      switch (evtType[evt]) {
+        case INSERT_:
+          ArrayList<Integer> atY = live.get(yKey);
+          if (atY == null) {
+            atY = new ArrayList<Integer>();
+            live.put(yKey, atY);
+          }
+          atY.add(new Integer(seg));
+          break;
+        case REMOVE_:
+          ArrayList<Integer> fromY = live.get(yKey);
+          fromY.remove(new Integer(seg));
+          if (fromY.isEmpty()) {
+            live.remove(yKey);
+          }
+          break;
+        case QUERY_:
+          Double loY = new Double(minY_[seg] - tolerance_);
+          Double hiY = new Double(maxY_[seg] + tolerance_);
+          Iterator<ArrayList<Integer>> hit = live.subMap(loY, true, hiY, true).values().iterator();
+          while (hit.hasNext()) {
+            ArrayList<Integer> crossing = hit.next();
+            int numCross = crossing.size();
+            for (int j = 0; j < numCross; j++) {
+              addPair(crossing.get(j).intValue(), seg);
+            }
+          }
+          break;
+        default:
+          throw new IllegalStateException();
+      }
+    }
+    return;
+  }
+
+  /***************************************************************************
+  **
+  ** Record a pair
+  */
+
+  private void addPair(int seg1, int seg2) {
+    if (numPairs_ == pairA_.length) {
+      pairA_ = Arrays.copyOf(pairA_, numPairs_ * 2);
+      pairB_ = Arrays.copyOf(pairB_, numPairs_ * 2);
+    }
+    pairA_[numPairs_] = seg1;
+    pairB_[numPairs_++] = seg2;
+    return;
+  }
+}
@@ -146,12 +146,21 @@ public class UiUtil {
     double abs = Math.abs(val);
     if (abs == 0.0) {
       return ("0.0");
-    } else if (abs < (hiRes ? 1.0E-2 : 1.0E-1)) {
-      return (tinyNums_.format(val));
+    }
+    //
+    // Formats are not thread-safe, and headless batch jobs can be running
+    // on several threads at once:
+    //
+    NumberFormat useFormat;
+    if (abs < (hiRes ? 1.0E-2 : 1.0E-1)) {
+      useFormat = tinyNums_;
     } else if (abs >= 100.0) {
-      return (hugeNums_.format(val));
+      useFormat = hugeNums_;
     } else {
-      return ((hiRes) ? regNumsHi_.format(val) : regNums_.format(val));
+      useFormat = (hiRes) ? regNumsHi_ : regNums_;
+    }
+    synchronized (useFormat) {
+      return (useFormat.format(val));
     }
   }
   
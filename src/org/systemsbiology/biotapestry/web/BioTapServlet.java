@@ -229,6 +229,21 @@ public class BioTapServlet extends HttpServlet {
 					response.setContentType("image/png");
 					wsa_.getImage(appState, modelID, os); 				
 					break;
+				case MODEL_TILE:
+					modelID = request.getParameter("model");
+					int revision = Integer.parseInt(request.getParameter("revision"));
+					int level = Integer.parseInt(request.getParameter("level"));
+					int col = Integer.parseInt(request.getParameter("col"));
+					int row = Integer.parseInt(request.getParameter("row"));
+					response.setContentType("image/png");
+					wsa_.getImageTile(appState, modelID, revision, level, col, row, os);
+					break;
+				case MODEL_TILE_INFO:
+					modelID = request.getParameter("model");
+					response.setContentType("application/json");
+					response.setCharacterEncoding(charEncoding_);
+					os.write(serializer.deepSerialize(wsa_.getImageTileInfo(appState, modelID)).getBytes(charEncoding_));
+					break;
 		        case MODEL_ANNOT_IMAGE:
 					 modelID = request.getParameter("model");
 					 String annotMime = wsa_.getAnnotationImageType(appState, modelID);
@@ -552,6 +567,8 @@ public class BioTapServlet extends HttpServlet {
 		SET_MODEL,
 		MODEL_JSON,
 		MODEL_IMAGE,
+		MODEL_TILE,
+		MODEL_TILE_INFO,
 		COMMAND,
 		MODEL_TREE,
 		MENU_DEF,
@@ -574,6 +591,8 @@ public class BioTapServlet extends HttpServlet {
 				stringToType.put("setmodel", RequestTargetType.SET_MODEL);
 				stringToType.put("modeljson", RequestTargetType.MODEL_JSON);
 				stringToType.put("modelimage", RequestTargetType.MODEL_IMAGE);
+				stringToType.put("modeltile", RequestTargetType.MODEL_TILE);
+				stringToType.put("modeltileinfo", RequestTargetType.MODEL_TILE_INFO);
 				stringToType.put("command", RequestTargetType.COMMAND);
 				stringToType.put("modeltree", RequestTargetType.MODEL_TREE);
 				stringToType.put("menudef", RequestTargetType.MENU_DEF);